@@ -25,6 +25,7 @@ import org.sonar.server.computation.monitoring.CeTasksMBeanImpl;
 import org.sonar.server.computation.queue.CeQueueCleaner;
 import org.sonar.server.computation.queue.CeQueueInitializer;
 import org.sonar.server.computation.queue.InternalCeQueueImpl;
+import org.sonar.server.computation.queue.PendingTaskNotifier;
 
 public class CeQueueModule extends Module {
   @Override
@@ -32,6 +33,7 @@ public class CeQueueModule extends Module {
     add(
       // queue state
       InternalCeQueueImpl.class,
+      PendingTaskNotifier.class,
 
       // queue monitoring
       CEQueueStatusImpl.class,
@@ -61,7 +61,6 @@ import org.sonar.db.DaoModule;
 import org.sonar.db.DatabaseChecker;
 import org.sonar.db.DbClient;
 import org.sonar.db.DefaultDatabase;
-import org.sonar.db.purge.PurgeProfiler;
 import org.sonar.db.version.DatabaseVersion;
 import org.sonar.process.Props;
 import org.sonar.server.component.ComponentCleanerService;
@@ -220,7 +219,6 @@ public class ComputeEngineContainerImpl implements ComputeEngineContainer {
       org.sonar.core.persistence.MyBatis.class,
       DatabaseServerCompatibility.class,
       DatabaseVersion.class,
-      PurgeProfiler.class,
       ServerFileSystemImpl.class,
       new TempFolderProvider(),
       System2.INSTANCE,
@@ -61,6 +61,28 @@ public interface CEQueueStatus {
    */
   long addError(long processingTime);
 
+  /**
+   * Adds the time a task waited in the queue before being picked up by a worker to the queue latency counter.
+   *
+   * @param latency duration between submission and start of processing, in ms
+   *
+   * @return the new queue latency
+   *
+   * @see #getQueueLatency()
+   *
+   * @throws IllegalArgumentException if latency is < 0
+   */
+  long addQueueLatency(long latency);
+
+  /**
+   * Adds 1 to the count of polls of the queue which did not return any task.
+   *
+   * @return the new count of idle polls
+   *
+   * @see #getIdlePollCount()
+   */
+  long addIdlePoll();
+
   /**
    * Count of batch reports waiting for processing since startup, including reports received before instance startup.
    */
@@ -85,4 +107,15 @@ public interface CEQueueStatus {
    * Time spent processing batch reports since startup, in milliseconds.
    */
   long getProcessingTime();
+
+  /**
+   * Time spent by the batch reports in the queue, from their submission to the start of their processing, since
+   * startup, in milliseconds.
+   */
+  long getQueueLatency();
+
+  /**
+   * Count of polls of the queue which did not return any task since startup.
+   */
+  long getIdlePollCount();
 }
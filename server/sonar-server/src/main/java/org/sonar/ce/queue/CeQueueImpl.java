@@ -72,6 +72,7 @@ public class CeQueueImpl implements CeQueue {
       CeQueueDto dto = new CeTaskSubmitToInsertedCeQueueDto(dbSession, dbClient).apply(submission);
       CeTask task = loadTask(dbSession, dto);
       dbSession.commit();
+      onSubmitted(1);
       return task;
 
     } finally {
@@ -93,6 +94,7 @@ public class CeQueueImpl implements CeQueue {
         .toList();
       List<CeTask> tasks = loadTasks(dbSession, ceQueueDtos);
       dbSession.commit();
+      onSubmitted(tasks.size());
       return tasks;
 
     } finally {
@@ -100,6 +102,13 @@ public class CeQueueImpl implements CeQueue {
     }
   }
 
+  /**
+   * Called once the submitted tasks are committed in database. Does nothing by default.
+   */
+  protected void onSubmitted(int taskCount) {
+    // nothing to do by default
+  }
+
   protected CeTask loadTask(DbSession dbSession, CeQueueDto dto) {
     if (dto.getComponentUuid() == null) {
       return new CeQueueDtoToCeTask().apply(dto);
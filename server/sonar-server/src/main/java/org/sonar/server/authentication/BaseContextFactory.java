@@ -26,20 +26,23 @@ import org.sonar.api.server.authentication.BaseIdentityProvider;
 import org.sonar.api.server.authentication.UserIdentity;
 import org.sonar.db.DbClient;
 import org.sonar.db.user.UserDto;
+import org.sonar.server.user.PermissionCache;
 import org.sonar.server.user.ServerUserSession;
 import org.sonar.server.user.ThreadLocalUserSession;
 
 public class BaseContextFactory {
 
   private final DbClient dbClient;
+  private final PermissionCache permissionCache;
   private final ThreadLocalUserSession threadLocalUserSession;
   private final UserIdentityAuthenticator userIdentityAuthenticator;
   private final Server server;
   private final JwtHttpHandler jwtHttpHandler;
 
   public BaseContextFactory(DbClient dbClient, UserIdentityAuthenticator userIdentityAuthenticator, Server server, JwtHttpHandler jwtHttpHandler,
-    ThreadLocalUserSession threadLocalUserSession) {
+    ThreadLocalUserSession threadLocalUserSession, PermissionCache permissionCache) {
     this.dbClient = dbClient;
+    this.permissionCache = permissionCache;
     this.userIdentityAuthenticator = userIdentityAuthenticator;
     this.server = server;
     this.jwtHttpHandler = jwtHttpHandler;
@@ -80,7 +83,7 @@ public class BaseContextFactory {
     public void authenticate(UserIdentity userIdentity) {
       UserDto userDto = userIdentityAuthenticator.authenticate(userIdentity, identityProvider);
       jwtHttpHandler.generateToken(userDto, request, response);
-      threadLocalUserSession.set(ServerUserSession.createForUser(dbClient, userDto));
+      threadLocalUserSession.set(ServerUserSession.createForUser(dbClient, permissionCache, userDto));
     }
   }
 }
@@ -30,6 +30,7 @@ import org.sonar.api.server.ServerSide;
 import org.sonar.db.DbClient;
 import org.sonar.db.user.UserDto;
 import org.sonar.server.exceptions.UnauthorizedException;
+import org.sonar.server.user.PermissionCache;
 import org.sonar.server.user.ServerUserSession;
 import org.sonar.server.user.ThreadLocalUserSession;
 
@@ -69,6 +70,7 @@ public class UserSessionInitializer {
     .build();
 
   private final DbClient dbClient;
+  private final PermissionCache permissionCache;
   private final Settings settings;
   private final JwtHttpHandler jwtHttpHandler;
   private final BasicAuthenticator basicAuthenticator;
@@ -76,8 +78,9 @@ public class UserSessionInitializer {
   private final ThreadLocalUserSession threadLocalSession;
 
   public UserSessionInitializer(DbClient dbClient, Settings settings, JwtHttpHandler jwtHttpHandler, BasicAuthenticator basicAuthenticator,
-    SsoAuthenticator ssoAuthenticator, ThreadLocalUserSession threadLocalSession) {
+    SsoAuthenticator ssoAuthenticator, ThreadLocalUserSession threadLocalSession, PermissionCache permissionCache) {
     this.dbClient = dbClient;
+    this.permissionCache = permissionCache;
     this.settings = settings;
     this.jwtHttpHandler = jwtHttpHandler;
     this.basicAuthenticator = basicAuthenticator;
@@ -107,14 +110,14 @@ public class UserSessionInitializer {
   private void setUserSession(HttpServletRequest request, HttpServletResponse response) {
     Optional<UserDto> user = authenticate(request, response);
     if (user.isPresent()) {
-      ServerUserSession session = createForUser(dbClient, user.get());
+      ServerUserSession session = createForUser(dbClient, permissionCache, user.get());
       threadLocalSession.set(session);
       request.setAttribute(ACCESS_LOG_LOGIN, session.getLogin());
     } else {
       if (settings.getBoolean(CORE_FORCE_AUTHENTICATION_PROPERTY)) {
         throw new UnauthorizedException("User must be authenticated");
       }
-      threadLocalSession.set(createForAnonymous(dbClient));
+      threadLocalSession.set(createForAnonymous(dbClient, permissionCache));
       request.setAttribute(ACCESS_LOG_LOGIN, "-");
     }
   }
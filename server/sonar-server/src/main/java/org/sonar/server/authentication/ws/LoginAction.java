@@ -34,6 +34,7 @@ import org.sonar.db.user.UserDto;
 import org.sonar.server.authentication.CredentialsAuthenticator;
 import org.sonar.server.authentication.JwtHttpHandler;
 import org.sonar.server.exceptions.UnauthorizedException;
+import org.sonar.server.user.PermissionCache;
 import org.sonar.server.user.ServerUserSession;
 import org.sonar.server.user.ThreadLocalUserSession;
 
@@ -47,12 +48,15 @@ public class LoginAction extends ServletFilter {
   private static final String POST = "POST";
 
   private final DbClient dbClient;
+  private final PermissionCache permissionCache;
   private final CredentialsAuthenticator credentialsAuthenticator;
   private final JwtHttpHandler jwtHttpHandler;
   private final ThreadLocalUserSession threadLocalUserSession;
 
-  public LoginAction(DbClient dbClient, CredentialsAuthenticator credentialsAuthenticator, JwtHttpHandler jwtHttpHandler, ThreadLocalUserSession threadLocalUserSession) {
+  public LoginAction(DbClient dbClient, CredentialsAuthenticator credentialsAuthenticator, JwtHttpHandler jwtHttpHandler, ThreadLocalUserSession threadLocalUserSession,
+    PermissionCache permissionCache) {
     this.dbClient = dbClient;
+    this.permissionCache = permissionCache;
     this.credentialsAuthenticator = credentialsAuthenticator;
     this.jwtHttpHandler = jwtHttpHandler;
     this.threadLocalUserSession = threadLocalUserSession;
@@ -75,7 +79,7 @@ public class LoginAction extends ServletFilter {
     try {
       UserDto userDto = authenticate(request);
       jwtHttpHandler.generateToken(userDto, request, response);
-      threadLocalUserSession.set(ServerUserSession.createForUser(dbClient, userDto));
+      threadLocalUserSession.set(ServerUserSession.createForUser(dbClient, permissionCache, userDto));
       // TODO add chain.doFilter when Rack filter will not be executed after this filter (or use a Servlet)
     } catch (UnauthorizedException e) {
       response.setStatus(e.httpCode());
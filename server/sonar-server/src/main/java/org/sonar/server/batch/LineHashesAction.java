@@ -0,0 +1,113 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.batch;
+
+import com.google.common.base.Splitter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.source.FileSourceDto;
+import org.sonar.scanner.protocol.input.ScannerInput;
+import org.sonar.server.user.UserSession;
+import org.sonarqube.ws.MediaTypes;
+
+import static org.sonar.api.web.UserRole.USER;
+import static org.sonar.core.util.stream.Collectors.uniqueIndex;
+import static org.sonar.server.ws.KeyExamples.KEY_FILE_EXAMPLE_001;
+import static org.sonar.server.ws.KeyExamples.KEY_FILE_EXAMPLE_002;
+import static org.sonar.server.ws.WsUtils.checkRequest;
+
+/**
+ * Bulk version of api/sources/hash, so that the scanner does not request the line hashes file by file
+ */
+public class LineHashesAction implements BatchWsAction {
+
+  static final int MAX_KEYS = 500;
+  private static final String PARAM_KEYS = "keys";
+  private static final Splitter END_OF_LINE_SPLITTER = Splitter.on('\n');
+
+  private final DbClient dbClient;
+  private final UserSession userSession;
+
+  public LineHashesAction(DbClient dbClient, UserSession userSession) {
+    this.dbClient = dbClient;
+    this.userSession = userSession;
+  }
+
+  @Override
+  public void define(WebService.NewController controller) {
+    WebService.NewAction action = controller.createAction("line_hashes")
+      .setDescription("Return the line hashes of files, as a stream of delimited protobuf messages. Files which do not exist or " +
+        "have no source are ignored. Require Browse permission on the projects of the files.")
+      .setSince("6.2")
+      .setResponseExample(getClass().getResource("line_hashes-example.proto"))
+      .setInternal(true)
+      .setHandler(this);
+
+    action
+      .createParam(PARAM_KEYS)
+      .setRequired(true)
+      .setDescription("File key. The parameter must be called once for each file. Maximum " + MAX_KEYS + " keys.")
+      .setExampleValue(PARAM_KEYS + "=" + KEY_FILE_EXAMPLE_001 + "&" + PARAM_KEYS + "=" + KEY_FILE_EXAMPLE_002);
+  }
+
+  @Override
+  public void handle(Request request, Response response) throws Exception {
+    List<String> fileKeys = request.mandatoryMultiParam(PARAM_KEYS);
+    checkRequest(fileKeys.size() <= MAX_KEYS, "Number of file keys must not exceed %s", MAX_KEYS);
+
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      List<ComponentDto> files = dbClient.componentDao().selectByKeys(dbSession, fileKeys);
+      files.stream()
+        .map(ComponentDto::projectUuid)
+        .distinct()
+        .forEach(projectUuid -> userSession.checkComponentUuidPermission(USER, projectUuid));
+      Map<String, String> keysByUuid = files.stream().collect(uniqueIndex(ComponentDto::uuid, ComponentDto::key, files.size()));
+
+      response.stream().setMediaType(MediaTypes.PROTOBUF);
+      OutputStream output = response.stream().output();
+      ScannerInput.FileLineHashes.Builder builder = ScannerInput.FileLineHashes.newBuilder();
+      for (FileSourceDto source : dbClient.fileSourceDao().selectLineHashesByFileUuids(dbSession, keysByUuid.keySet())) {
+        writeLineHashes(keysByUuid.get(source.getFileUuid()), source.getLineHashes(), builder, output);
+      }
+    }
+  }
+
+  private static void writeLineHashes(String fileKey, @Nullable String lineHashes, ScannerInput.FileLineHashes.Builder builder,
+    OutputStream out) {
+    builder.clear().setKey(fileKey);
+    if (lineHashes != null) {
+      builder.addAllLineHash(END_OF_LINE_SPLITTER.split(lineHashes));
+    }
+    try {
+      builder.build().writeDelimitedTo(out);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to serialize line hashes of file " + fileKey, e);
+    }
+  }
+}
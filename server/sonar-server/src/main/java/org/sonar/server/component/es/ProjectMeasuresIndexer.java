@@ -22,6 +22,7 @@ package org.sonar.server.component.es;
 
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import javax.annotation.Nullable;
 import org.elasticsearch.action.index.IndexRequest;
 import org.sonar.db.DbClient;
@@ -55,6 +56,22 @@ public class ProjectMeasuresIndexer extends BaseIndexer {
     doIndex(createBulkIndexer(false), 0L, projectUuid);
   }
 
+  /**
+   * Indexes the given projects, see {@link org.sonar.server.es.PartitionedIndexer}
+   */
+  public void indexProjects(List<String> projectUuids) {
+    BulkIndexer bulk = createBulkIndexer(false);
+    bulk.start();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      for (String projectUuid : projectUuids) {
+        try (ProjectMeasuresIndexerIterator rowIt = ProjectMeasuresIndexerIterator.create(dbSession, 0L, projectUuid)) {
+          rowIt.forEachRemaining(doc -> bulk.add(newIndexRequest(toProjectMeasuresDoc(doc))));
+        }
+      }
+    }
+    bulk.stop();
+  }
+
   public void deleteProject(String uuid) {
     esClient
       .prepareDelete(INDEX_PROJECT_MEASURES, TYPE_PROJECT_MEASURES, uuid)
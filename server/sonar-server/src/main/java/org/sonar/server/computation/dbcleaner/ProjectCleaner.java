@@ -20,6 +20,7 @@
 package org.sonar.server.computation.dbcleaner;
 
 import java.util.Collection;
+import java.util.Collections;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.config.Settings;
@@ -42,33 +43,67 @@ import static org.sonar.db.purge.PurgeConfiguration.newDefaultPurgeConfiguration
 public class ProjectCleaner {
   private static final Logger LOG = Loggers.get(ProjectCleaner.class);
 
-  private final PurgeProfiler profiler;
   private final PurgeListener purgeListener;
   private final PurgeDao purgeDao;
   private final DefaultPeriodCleaner periodCleaner;
 
-  public ProjectCleaner(PurgeDao purgeDao, DefaultPeriodCleaner periodCleaner, PurgeProfiler profiler, PurgeListener purgeListener) {
+  public ProjectCleaner(PurgeDao purgeDao, DefaultPeriodCleaner periodCleaner, PurgeListener purgeListener) {
     this.purgeDao = purgeDao;
     this.periodCleaner = periodCleaner;
-    this.profiler = profiler;
     this.purgeListener = purgeListener;
   }
 
+  /**
+   * Purges the historical data of a project during the processing of its analysis report. Errors are logged
+   * and do not fail the analysis.
+   */
   public ProjectCleaner purge(DbSession session, IdUuidPair idUuidPair, Settings projectSettings, Collection<String> disabledComponentUuids) {
+    execute(session, idUuidPair, projectSettings, disabledComponentUuids, false);
+    return this;
+  }
+
+  /**
+   * Purges the historical data of a project in a task of type {@link org.sonar.db.ce.CeTaskTypes#PURGE}.
+   * Contrary to {@link #purge(DbSession, IdUuidPair, Settings, Collection)}, errors are propagated, so that
+   * the task fails.
+   *
+   * @return the number of deleted or updated rows
+   */
+  public long purgeOrFail(DbSession session, IdUuidPair idUuidPair, Settings projectSettings) {
+    return execute(session, idUuidPair, projectSettings, Collections.emptyList(), true);
+  }
+
+  private long execute(DbSession session, IdUuidPair idUuidPair, Settings projectSettings, Collection<String> disabledComponentUuids, boolean failOnError) {
     long start = System.currentTimeMillis();
-    profiler.reset();
+    // the profiler is not shared by the concurrent purges
+    PurgeProfiler profiler = new PurgeProfiler();
 
     PurgeConfiguration configuration = newDefaultPurgeConfiguration(projectSettings, idUuidPair, disabledComponentUuids);
 
-    cleanHistoricalData(session, configuration.rootProjectIdUuid().getUuid(), projectSettings);
-    doPurge(session, configuration);
+    cleanHistoricalData(session, configuration.rootProjectIdUuid().getUuid(), projectSettings, profiler, failOnError);
+    doPurge(session, configuration, profiler, failOnError);
 
     session.commit();
-    logProfiling(start, projectSettings);
+    logProfiling(profiler, start, projectSettings);
+    return profiler.getTotalRows();
+  }
+
+  /**
+   * Purges only the data of the components disabled by the analysis, so that their issues are resolved without
+   * waiting for {@link #purge(DbSession, IdUuidPair, Settings, Collection)}, which can be executed later by
+   * a task of type {@link org.sonar.db.ce.CeTaskTypes#PURGE}.
+   */
+  public ProjectCleaner purgeDisabledComponents(DbSession session, Collection<String> disabledComponentUuids) {
+    try {
+      purgeDao.purgeDisabledComponents(session, disabledComponentUuids, purgeListener);
+    } catch (Exception e) {
+      // purge errors must no fail the report analysis
+      LOG.error("Fail to purge disabled components", e);
+    }
     return this;
   }
 
-  private void logProfiling(long start, Settings settings) {
+  private static void logProfiling(PurgeProfiler profiler, long start, Settings settings) {
     if (settings.getBoolean(CoreProperties.PROFILING_LOG_PROPERTY)) {
       long duration = System.currentTimeMillis() - start;
       LOG.info("\n -------- Profiling for purge: " + TimeUtils.formatDuration(duration) + " --------\n");
@@ -77,21 +112,27 @@ public class ProjectCleaner {
     }
   }
 
-  private void cleanHistoricalData(DbSession session, String rootUuid, Settings settings) {
+  private void cleanHistoricalData(DbSession session, String rootUuid, Settings settings, PurgeProfiler profiler, boolean failOnError) {
     try {
-      periodCleaner.clean(session, rootUuid, settings);
-    } catch (Exception e) {
-      // purge errors must no fail the batch
-      LOG.error("Fail to clean historical data [uuid=" + rootUuid + "]", e);
+      periodCleaner.clean(session, rootUuid, settings, profiler);
+    } catch (RuntimeException e) {
+      handleError("Fail to clean historical data [uuid=" + rootUuid + "]", e, failOnError);
     }
   }
 
-  private void doPurge(DbSession session, PurgeConfiguration configuration) {
+  private void doPurge(DbSession session, PurgeConfiguration configuration, PurgeProfiler profiler, boolean failOnError) {
     try {
       purgeDao.purge(session, configuration, purgeListener, profiler);
-    } catch (Exception e) {
-      // purge errors must no fail the report analysis
-      LOG.error("Fail to purge data [id=" + configuration.rootProjectIdUuid().getId() + "]", e);
+    } catch (RuntimeException e) {
+      handleError("Fail to purge data [id=" + configuration.rootProjectIdUuid().getId() + "]", e, failOnError);
+    }
+  }
+
+  private static void handleError(String message, RuntimeException e, boolean failOnError) {
+    if (failOnError) {
+      throw new IllegalStateException(message, e);
     }
+    // purge errors must no fail the report analysis
+    LOG.error(message, e);
   }
 }
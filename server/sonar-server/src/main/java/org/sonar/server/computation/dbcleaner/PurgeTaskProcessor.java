@@ -0,0 +1,83 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.dbcleaner;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.ce.queue.CeTask;
+import org.sonar.ce.queue.CeTaskResult;
+import org.sonar.ce.settings.ProjectSettingsFactory;
+import org.sonar.ce.taskprocessor.CeTaskProcessor;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.ce.CeTaskTypes;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.purge.IdUuidPair;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Purges the historical data of a project (or view) out of the processing of its analysis report.
+ * Disabled components are not purged here, they are purged by the analysis itself.
+ */
+public class PurgeTaskProcessor implements CeTaskProcessor {
+
+  private static final Logger LOG = Loggers.get(PurgeTaskProcessor.class);
+  private static final Set<String> HANDLED_TYPES = Collections.singleton(CeTaskTypes.PURGE);
+
+  private final DbClient dbClient;
+  private final ProjectCleaner projectCleaner;
+  private final ProjectSettingsFactory projectSettingsFactory;
+
+  public PurgeTaskProcessor(DbClient dbClient, ProjectCleaner projectCleaner, ProjectSettingsFactory projectSettingsFactory) {
+    this.dbClient = dbClient;
+    this.projectCleaner = projectCleaner;
+    this.projectSettingsFactory = projectSettingsFactory;
+  }
+
+  @Override
+  public Set<String> getHandledCeTaskTypes() {
+    return HANDLED_TYPES;
+  }
+
+  @Override
+  @CheckForNull
+  public CeTaskResult process(CeTask task) {
+    String componentUuid = requireNonNull(task.getComponentUuid(), "Purge task must have a component");
+    // non-batch session, so that the numbers of deleted rows are returned by the database
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      Optional<ComponentDto> component = dbClient.componentDao().selectByUuid(dbSession, componentUuid);
+      if (!component.isPresent()) {
+        // component has been deleted since the submission of the task
+        return null;
+      }
+      long start = System.currentTimeMillis();
+      IdUuidPair idUuidPair = new IdUuidPair(component.get().getId(), componentUuid);
+      long rows = projectCleaner.purgeOrFail(dbSession, idUuidPair, projectSettingsFactory.newProjectSettings(component.get().getKey()));
+      long duration = Math.max(1L, System.currentTimeMillis() - start);
+      LOG.info("Purged {} rows of {} in {} ms ({} rows/s)", rows, component.get().getKey(), duration, rows * 1000L / duration);
+      return null;
+    }
+  }
+}
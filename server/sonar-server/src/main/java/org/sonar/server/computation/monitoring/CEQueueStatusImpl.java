@@ -34,6 +34,8 @@ public class CEQueueStatusImpl implements CEQueueStatus {
   private final AtomicLong error = new AtomicLong(0);
   private final AtomicLong success = new AtomicLong(0);
   private final AtomicLong processingTime = new AtomicLong(0);
+  private final AtomicLong queueLatency = new AtomicLong(0);
+  private final AtomicLong idlePolls = new AtomicLong(0);
 
   public CEQueueStatusImpl(DbClient dbClient) {
     this.dbClient = dbClient;
@@ -58,6 +60,17 @@ public class CEQueueStatusImpl implements CEQueueStatus {
     return success.incrementAndGet();
   }
 
+  @Override
+  public long addQueueLatency(long latencyInMs) {
+    checkArgument(latencyInMs >= 0, "Queue latency can not be < 0");
+    return queueLatency.addAndGet(latencyInMs);
+  }
+
+  @Override
+  public long addIdlePoll() {
+    return idlePolls.incrementAndGet();
+  }
+
   private void addProcessingTime(long ms) {
     checkArgument(ms >= 0, "Processing time can not be < 0");
     processingTime.addAndGet(ms);
@@ -89,4 +102,14 @@ public class CEQueueStatusImpl implements CEQueueStatus {
   public long getProcessingTime() {
     return processingTime.get();
   }
+
+  @Override
+  public long getQueueLatency() {
+    return queueLatency.get();
+  }
+
+  @Override
+  public long getIdlePollCount() {
+    return idlePolls.get();
+  }
 }
@@ -48,6 +48,16 @@ public interface CeTasksMBean {
    */
   long getProcessingTime();
 
+  /**
+   * Time spent by reports in the queue before being processed, since startup, in milliseconds.
+   */
+  long getQueueLatency();
+
+  /**
+   * Count of polls of the queue which did not return any task since startup.
+   */
+  long getIdlePollCount();
+
   /**
    * Configured number of Workers.
    */
@@ -73,6 +73,16 @@ public class CeTasksMBeanImpl implements CeTasksMBean, Startable, SystemInfoSect
     return queueStatus.getProcessingTime();
   }
 
+  @Override
+  public long getQueueLatency() {
+    return queueStatus.getQueueLatency();
+  }
+
+  @Override
+  public long getIdlePollCount() {
+    return queueStatus.getIdlePollCount();
+  }
+
   @Override
   public int getWorkerCount() {
     return ceConfiguration.getWorkerCount();
@@ -87,6 +97,8 @@ public class CeTasksMBeanImpl implements CeTasksMBean, Startable, SystemInfoSect
     builder.addAttributesBuilder().setKey("Processed With Error").setLongValue(getErrorCount()).build();
     builder.addAttributesBuilder().setKey("Processed With Success").setLongValue(getSuccessCount()).build();
     builder.addAttributesBuilder().setKey("Processing Time (ms)").setLongValue(getProcessingTime()).build();
+    builder.addAttributesBuilder().setKey("Queue Latency (ms)").setLongValue(getQueueLatency()).build();
+    builder.addAttributesBuilder().setKey("Idle Polls").setLongValue(getIdlePollCount()).build();
     builder.addAttributesBuilder().setKey("Worker Count").setLongValue(getWorkerCount()).build();
     return builder.build();
   }
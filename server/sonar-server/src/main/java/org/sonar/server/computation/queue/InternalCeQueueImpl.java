@@ -24,7 +24,12 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.log4j.Logger;
@@ -39,6 +44,7 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.ce.CeActivityDto;
 import org.sonar.db.ce.CeQueueDto;
+import org.sonar.server.computation.configuration.CeConfiguration;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
@@ -49,15 +55,33 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
   private final System2 system2;
   private final DbClient dbClient;
   private final CEQueueStatus queueStatus;
+  private final PendingTaskNotifier pendingTaskNotifier;
+  private final int workerCount;
 
   // state
   private AtomicBoolean peekPaused = new AtomicBoolean(false);
+  /**
+   * Tasks already peeked in database (status is IN_PROGRESS) but not yet returned to a worker. Guarded by itself.
+   */
+  private final Deque<CeQueueDto> readyTasks = new ArrayDeque<>();
+  /**
+   * Number of tasks returned to workers and not removed yet from the queue
+   */
+  private final AtomicInteger tasksInProgress = new AtomicInteger(0);
 
-  public InternalCeQueueImpl(System2 system2, DbClient dbClient, UuidFactory uuidFactory, CEQueueStatus queueStatus) {
+  public InternalCeQueueImpl(System2 system2, DbClient dbClient, UuidFactory uuidFactory, CEQueueStatus queueStatus,
+    PendingTaskNotifier pendingTaskNotifier, CeConfiguration ceConfiguration) {
     super(dbClient, uuidFactory);
     this.system2 = system2;
     this.dbClient = dbClient;
     this.queueStatus = queueStatus;
+    this.pendingTaskNotifier = pendingTaskNotifier;
+    this.workerCount = ceConfiguration.getWorkerCount();
+  }
+
+  @Override
+  protected void onSubmitted(int taskCount) {
+    pendingTaskNotifier.notifyPendingTasks(taskCount);
   }
 
   @Override
@@ -67,27 +91,60 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
     }
     DbSession dbSession = dbClient.openSession(false);
     try {
-      Optional<CeQueueDto> dto = dbClient.ceQueueDao().peek(dbSession);
-      CeTask task = null;
-      if (dto.isPresent()) {
-        task = loadTask(dbSession, dto.get());
-        queueStatus.addInProgress();
+      CeQueueDto dto;
+      int remainingReadyTasks;
+      synchronized (readyTasks) {
+        // peek is checked again as pausePeek() releases the ready tasks while holding the lock
+        if (readyTasks.isEmpty() && !peekPaused.get()) {
+          readyTasks.addAll(dbClient.ceQueueDao().peek(dbSession, countIdleWorkers()));
+        }
+        dto = readyTasks.poll();
+        remainingReadyTasks = readyTasks.size();
+      }
+      if (dto == null) {
+        queueStatus.addIdlePoll();
+        return Optional.absent();
       }
-      return Optional.fromNullable(task);
+      tasksInProgress.incrementAndGet();
+      CeTask task = loadTask(dbSession, dto);
+      queueStatus.addInProgress();
+      addQueueLatency(dto);
+      // wake up a worker for each ready task or, if there is none, let another worker check whether more tasks are pending
+      pendingTaskNotifier.notifyPendingTasks(Math.max(1, remainingReadyTasks));
+      return Optional.of(task);
 
     } finally {
       dbClient.closeSession(dbSession);
     }
   }
 
+  /**
+   * Tasks are switched to IN_PROGRESS in database when they are peeked, so no more tasks are reserved than the
+   * number of workers which are ready to process them immediately. The worker calling {@link #peek()} is one of them.
+   */
+  private int countIdleWorkers() {
+    return Math.max(1, workerCount - tasksInProgress.get());
+  }
+
+  private void addQueueLatency(CeQueueDto dto) {
+    Long startedAt = dto.getStartedAt();
+    if (startedAt != null) {
+      queueStatus.addQueueLatency(Math.max(0L, startedAt - dto.getCreatedAt()));
+    }
+  }
+
   @Override
   public int clear() {
+    synchronized (readyTasks) {
+      readyTasks.clear();
+    }
     return cancelAll(true);
   }
 
   @Override
   public void remove(CeTask task, CeActivityDto.Status status, @Nullable CeTaskResult taskResult, @Nullable Throwable error) {
     checkArgument(error == null || status == CeActivityDto.Status.FAILED, "Error can be provided only when status is FAILED");
+    tasksInProgress.updateAndGet(count -> Math.max(0, count - 1));
     DbSession dbSession = dbClient.openSession(false);
     try {
       Optional<CeQueueDto> queueDto = dbClient.ceQueueDao().selectByUuid(dbSession, task.getUuid());
@@ -160,6 +217,30 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
   @Override
   public void pausePeek() {
     this.peekPaused.set(true);
+    releaseReadyTasks();
+  }
+
+  /**
+   * Tasks peeked in database but not yet returned to workers are put back in status PENDING.
+   */
+  private void releaseReadyTasks() {
+    List<String> taskUuids = new ArrayList<>();
+    synchronized (readyTasks) {
+      for (CeQueueDto readyTask : readyTasks) {
+        taskUuids.add(readyTask.getUuid());
+      }
+      readyTasks.clear();
+    }
+    if (taskUuids.isEmpty()) {
+      return;
+    }
+    DbSession dbSession = dbClient.openSession(false);
+    try {
+      dbClient.ceQueueDao().resetToPendingStatus(dbSession, taskUuids);
+      dbSession.commit();
+    } finally {
+      dbClient.closeSession(dbSession);
+    }
   }
 
   @Override
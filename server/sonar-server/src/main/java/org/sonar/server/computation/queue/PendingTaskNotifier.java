@@ -0,0 +1,63 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.queue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.sonar.api.ce.ComputeEngineSide;
+
+/**
+ * In-process notification of new pending tasks in the queue, so that idle Compute Engine
+ * workers can process them immediately instead of waiting for the next polling of the database.
+ * <p>
+ * Tasks submitted by another process (for example by the Web Server) are not notified. They are
+ * still picked up by the regular polling.
+ * </p>
+ */
+@ComputeEngineSide
+public class PendingTaskNotifier {
+
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * @param count the maximum number of tasks which may be eligible for processing
+   */
+  public void notifyPendingTasks(int count) {
+    if (count <= 0) {
+      return;
+    }
+    for (Listener listener : listeners) {
+      listener.onPendingTasks(count);
+    }
+  }
+
+  @FunctionalInterface
+  public interface Listener {
+    void onPendingTasks(int count);
+  }
+}
@@ -23,6 +23,9 @@ import org.sonar.server.computation.queue.ReportSubmitter;
 import org.sonar.core.platform.Module;
 import org.sonar.server.computation.task.projectanalysis.container.ContainerFactoryImpl;
 import org.sonar.server.computation.task.projectanalysis.taskprocessor.ReportTaskProcessor;
+import org.sonar.server.computation.task.projectanalysis.webhook.WebhookCallerImpl;
+import org.sonar.server.computation.task.projectanalysis.webhook.WebhookDeliveryStorage;
+import org.sonar.server.computation.task.projectanalysis.webhook.WebhookDispatcher;
 import org.sonar.server.computation.task.step.ComputationStepExecutor;
 
 public class ProjectAnalysisTaskModule extends Module {
@@ -33,6 +36,11 @@ public class ProjectAnalysisTaskModule extends Module {
       ContainerFactoryImpl.class,
       ComputationStepExecutor.class,
       ReportTaskProcessor.class,
-      ReportSubmitter.class);
+      ReportSubmitter.class,
+
+      // webhooks are sent asynchronously, after the end of tasks
+      WebhookCallerImpl.class,
+      WebhookDeliveryStorage.class,
+      WebhookDispatcher.class);
   }
 }
@@ -0,0 +1,63 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.batch;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.annotation.CheckForNull;
+
+/**
+ * Entries of a report which is extracted to a directory
+ */
+class DirectoryReportEntries implements ReportEntries {
+
+  private final File dir;
+
+  DirectoryReportEntries(File dir) {
+    this.dir = dir;
+  }
+
+  @Override
+  @CheckForNull
+  public InputStream open(String name) {
+    File file = new File(dir, name);
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      return new BufferedInputStream(new FileInputStream(file));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to open file " + file, e);
+    }
+  }
+
+  @Override
+  public String location(String name) {
+    return new File(dir, name).toString();
+  }
+
+  @Override
+  public void close() {
+    // nothing to close
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.batch;
+
+import java.io.InputStream;
+import javax.annotation.CheckForNull;
+
+/**
+ * Access to the files of the analysis report, whether the report is extracted to a directory or
+ * is still zipped.
+ */
+interface ReportEntries extends AutoCloseable {
+
+  /**
+   * Opens the entry with the given name, relative to the root of the report. The stream
+   * must be closed by caller.
+   *
+   * @return {@code null} if the entry does not exist
+   * @throws IllegalStateException if the entry exists but can't be read
+   */
+  @CheckForNull
+  InputStream open(String name);
+
+  /**
+   * Human-readable location of the entry, for logs and error messages
+   */
+  String location(String name);
+
+  @Override
+  void close();
+
+}
@@ -0,0 +1,73 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.batch;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.CheckForNull;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Entries of a zipped report. They are read straight from the zip file, without extracting it to disk.
+ * Entries are located through the central directory, which is loaded once when the zip file is opened,
+ * so that the report is never scanned sequentially.
+ */
+class ZipReportEntries implements ReportEntries {
+
+  private final File zip;
+  private final ZipFile zipFile;
+
+  ZipReportEntries(File zip) {
+    this.zip = zip;
+    try {
+      this.zipFile = new ZipFile(zip);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to open analysis report " + zip, e);
+    }
+  }
+
+  @Override
+  @CheckForNull
+  public InputStream open(String name) {
+    ZipEntry entry = zipFile.getEntry(name);
+    if (entry == null || entry.isDirectory()) {
+      return null;
+    }
+    try {
+      return new BufferedInputStream(zipFile.getInputStream(entry));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to open entry " + location(name), e);
+    }
+  }
+
+  @Override
+  public String location(String name) {
+    return zip + "!/" + name;
+  }
+
+  @Override
+  public void close() {
+    IOUtils.closeQuietly(zipFile);
+  }
+}
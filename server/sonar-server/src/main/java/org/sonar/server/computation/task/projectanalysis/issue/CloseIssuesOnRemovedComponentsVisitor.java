@@ -25,7 +25,6 @@ import org.sonar.core.issue.DefaultIssue;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
-import org.sonar.server.util.cache.DiskCache;
 
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
 
@@ -54,7 +53,7 @@ public class CloseIssuesOnRemovedComponentsVisitor extends TypeAwareVisitorAdapt
   }
 
   private void closeIssuesForDeletedComponentUuids(Set<String> deletedComponentUuids) {
-    DiskCache<DefaultIssue>.DiskAppender cacheAppender = issueCache.newAppender();
+    IssueCache.Appender cacheAppender = issueCache.newAppender();
     try {
       for (String deletedComponentUuid : deletedComponentUuids) {
         List<DefaultIssue> issues = baseIssuesLoader.loadForComponentUuid(deletedComponentUuid);
@@ -19,25 +19,201 @@
  */
 package org.sonar.server.computation.task.projectanalysis.issue;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.System2;
 import org.sonar.api.utils.TempFolder;
 import org.sonar.core.issue.DefaultIssue;
-import org.sonar.server.util.cache.DiskCache;
+import org.sonar.core.util.CloseableIterator;
 
 /**
  * Cache of all the issues involved in the analysis. Their state is as it will be
  * persisted in database (after issue tracking, auto-assignment, ...)
+ * <p/>
+ * Issues are encoded with {@link IssueCacheCodec} and grouped in LZ4-compressed blocks, so that
+ * reading them does not rely on Java serialization.
+ * <p/>
+ * Only a single appender must be opened at the same time.
  */
-public class IssueCache extends DiskCache<DefaultIssue> {
+public class IssueCache {
+
+  /**
+   * Maximum size of a block before compression. A new block is started when this size is reached.
+   */
+  static final int MAX_BLOCK_SIZE = 64 * 1024;
+
+  private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+  private final File file;
+  private final System2 system2;
 
   // this constructor is used by picocontainer
   public IssueCache(TempFolder tempFolder, System2 system2) throws IOException {
-    super(tempFolder.newFile("issues", ".dat"), system2);
+    this(tempFolder.newFile("issues", ".dat"), system2);
   }
 
   public IssueCache(File file, System2 system2) {
-    super(file, system2);
+    this.system2 = system2;
+    this.file = file;
+    OutputStream output = null;
+    try {
+      // truncates the file if it already exists
+      output = new FileOutputStream(file);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write into file: " + file, e);
+    } finally {
+      IOUtils.closeQuietly(output);
+    }
+  }
+
+  public Appender newAppender() {
+    return new Appender();
+  }
+
+  /**
+   * Full scan of the issues, in the order they have been appended.
+   */
+  public CloseableIterator<DefaultIssue> traverse() {
+    try {
+      return new FileIterator(new DataInputStream(new BufferedInputStream(new FileInputStream(file))));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to traverse file: " + file, e);
+    }
+  }
+
+  /**
+   * Format of block is:
+   * <ul>
+   *   <li>int: number of issues</li>
+   *   <li>int: size of uncompressed data</li>
+   *   <li>int: size of compressed data</li>
+   *   <li>bytes: compressed data</li>
+   * </ul>
+   *
+   * @return {@code null} if the end of file is reached before the block, or the issues of the block
+   * @throws EOFException if the end of file is reached in the middle of the block
+   */
+  @CheckForNull
+  private static List<DefaultIssue> readBlock(DataInputStream input) throws IOException {
+    int firstByte = input.read();
+    if (firstByte < 0) {
+      return null;
+    }
+    int count = (firstByte << 24) | (input.readUnsignedByte() << 16) | input.readUnsignedShort();
+    int rawLength = input.readInt();
+    int compressedLength = input.readInt();
+    byte[] compressed = new byte[compressedLength];
+    input.readFully(compressed);
+    byte[] raw = LZ4.fastDecompressor().decompress(compressed, rawLength);
+    DataInputStream rawInput = new DataInputStream(new ByteArrayInputStream(raw));
+    List<DefaultIssue> issues = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      issues.add(IssueCacheCodec.read(rawInput));
+    }
+    return issues;
+  }
+
+  public class Appender implements AutoCloseable {
+    private final DataOutputStream output;
+    private final ByteArrayOutputStream rawBlock = new ByteArrayOutputStream(MAX_BLOCK_SIZE);
+    private final DataOutputStream rawBlockOutput = new DataOutputStream(rawBlock);
+    private final LZ4Compressor compressor = LZ4.fastCompressor();
+    private int blockCount = 0;
+
+    private Appender() {
+      try {
+        this.output = new DataOutputStream(new FileOutputStream(file, true));
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to open file " + file, e);
+      }
+    }
+
+    public Appender append(DefaultIssue issue) {
+      try {
+        if (rawBlock.size() >= MAX_BLOCK_SIZE) {
+          flushBlock();
+        }
+        IssueCacheCodec.write(rawBlockOutput, issue);
+        blockCount++;
+        return this;
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to write into file " + file, e);
+      }
+    }
+
+    private void flushBlock() throws IOException {
+      byte[] raw = rawBlock.toByteArray();
+      byte[] compressed = new byte[compressor.maxCompressedLength(raw.length)];
+      int compressedLength = compressor.compress(raw, 0, raw.length, compressed, 0, compressed.length);
+      output.writeInt(blockCount);
+      output.writeInt(raw.length);
+      output.writeInt(compressedLength);
+      output.write(compressed, 0, compressedLength);
+      rawBlock.reset();
+      blockCount = 0;
+    }
+
+    @Override
+    public void close() {
+      try {
+        if (blockCount > 0) {
+          flushBlock();
+        }
+      } catch (IOException e) {
+        IOUtils.closeQuietly(output);
+        throw new IllegalStateException("Fail to write into file " + file, e);
+      }
+      system2.close(output);
+    }
+  }
+
+  private static class FileIterator extends CloseableIterator<DefaultIssue> {
+    private final DataInputStream input;
+    private Iterator<DefaultIssue> currentBlock = null;
+
+    private FileIterator(DataInputStream input) {
+      this.input = input;
+    }
+
+    @Override
+    @CheckForNull
+    protected DefaultIssue doNext() {
+      try {
+        while (currentBlock == null || !currentBlock.hasNext()) {
+          List<DefaultIssue> block = readBlock(input);
+          if (block == null) {
+            return null;
+          }
+          currentBlock = block.iterator();
+        }
+        return currentBlock.next();
+      } catch (EOFException e) {
+        // the end of file is expected only between blocks
+        throw new IllegalStateException("Fail to read issues, file is truncated", e);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read issues", e);
+      }
+    }
+
+    @Override
+    protected void doClose() {
+      IOUtils.closeQuietly(input);
+    }
   }
 }
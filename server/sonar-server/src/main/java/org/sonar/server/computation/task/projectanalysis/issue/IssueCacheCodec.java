@@ -0,0 +1,443 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.db.protobuf.DbIssues;
+
+/**
+ * Binary encoding of {@link DefaultIssue} used by {@link IssueCache}. Contrary to Java serialization,
+ * no class descriptors are written: fields are written in a fixed order, prefixed by a presence flag
+ * when they are nullable.
+ */
+final class IssueCacheCodec {
+
+  private static final int NULL_LENGTH = -1;
+
+  private static final byte VALUE_NULL = 0;
+  private static final byte VALUE_STRING = 1;
+  private static final byte VALUE_LONG = 2;
+  private static final byte VALUE_INTEGER = 3;
+  private static final byte VALUE_DOUBLE = 4;
+  private static final byte VALUE_RULE_TYPE = 5;
+
+  private static final int NO_CURRENT_CHANGE = -1;
+  private static final int DETACHED_CURRENT_CHANGE = -2;
+
+  private IssueCacheCodec() {
+    // only static methods
+  }
+
+  static void write(DataOutput output, DefaultIssue issue) throws IOException {
+    writeString(output, issue.key());
+    RuleType type = issue.type();
+    output.writeByte(type == null ? NULL_LENGTH : type.getDbConstant());
+    writeString(output, issue.componentUuid());
+    writeString(output, issue.componentKey());
+    writeString(output, issue.moduleUuid());
+    writeString(output, issue.moduleUuidPath());
+    writeString(output, issue.projectUuid());
+    writeString(output, issue.projectKey());
+    RuleKey ruleKey = issue.ruleKey();
+    writeString(output, ruleKey == null ? null : ruleKey.repository());
+    writeString(output, ruleKey == null ? null : ruleKey.rule());
+    writeString(output, issue.language());
+    writeString(output, issue.severity());
+    writeString(output, issue.message());
+    writeInteger(output, issue.line());
+    writeDouble(output, issue.gap());
+    Duration effort = issue.effort();
+    writeLong(output, effort == null ? null : effort.toMinutes());
+    writeString(output, issue.status());
+    writeString(output, issue.resolution());
+    writeString(output, issue.assignee());
+    writeString(output, issue.checksum());
+    writeString(output, issue.authorLogin());
+    writeDate(output, issue.creationDate());
+    writeDate(output, issue.updateDate());
+    writeDate(output, issue.closeDate());
+    writeLong(output, issue.selectedAt());
+    output.writeByte(flags(issue));
+    writeAttributes(output, issue.attributes());
+    writeTags(output, issue.tags());
+    writeComments(output, issue.comments());
+    writeChanges(output, issue.changes(), issue.currentChange());
+    writeLocations(output, issue.getLocations());
+  }
+
+  static DefaultIssue read(DataInput input) throws IOException {
+    DefaultIssue issue = new DefaultIssue();
+    issue.setKey(readString(input));
+    byte type = input.readByte();
+    if (type != NULL_LENGTH) {
+      issue.setType(RuleType.valueOf(type));
+    }
+    issue.setComponentUuid(readString(input));
+    issue.setComponentKey(readString(input));
+    issue.setModuleUuid(readString(input));
+    issue.setModuleUuidPath(readString(input));
+    issue.setProjectUuid(readString(input));
+    issue.setProjectKey(readString(input));
+    String ruleRepository = readString(input);
+    String rule = readString(input);
+    if (ruleRepository != null && rule != null) {
+      issue.setRuleKey(RuleKey.of(ruleRepository, rule));
+    }
+    issue.setLanguage(readString(input));
+    issue.setSeverity(readString(input));
+    issue.setMessage(readString(input));
+    issue.setLine(readInteger(input));
+    issue.setGap(readDouble(input));
+    Long effort = readLong(input);
+    issue.setEffort(effort == null ? null : Duration.create(effort));
+    String status = readString(input);
+    if (status != null) {
+      issue.setStatus(status);
+    }
+    issue.setResolution(readString(input));
+    issue.setAssignee(readString(input));
+    issue.setChecksum(readString(input));
+    issue.setAuthorLogin(readString(input));
+    issue.setCreationDate(readDate(input));
+    issue.setUpdateDate(readDate(input));
+    issue.setCloseDate(readDate(input));
+    issue.setSelectedAt(readLong(input));
+    readFlags(input.readByte(), issue);
+    readAttributes(input, issue);
+    readTags(input, issue);
+    readComments(input, issue);
+    readChanges(input, issue);
+    readLocations(input, issue);
+    return issue;
+  }
+
+  private static byte flags(DefaultIssue issue) {
+    int flags = 0;
+    flags |= issue.manualSeverity() ? 1 : 0;
+    flags |= issue.isNew() ? (1 << 1) : 0;
+    flags |= issue.isBeingClosed() ? (1 << 2) : 0;
+    flags |= issue.isOnDisabledRule() ? (1 << 3) : 0;
+    flags |= issue.isChanged() ? (1 << 4) : 0;
+    flags |= issue.mustSendNotifications() ? (1 << 5) : 0;
+    return (byte) flags;
+  }
+
+  private static void readFlags(byte flags, DefaultIssue issue) {
+    issue.setManualSeverity((flags & 1) != 0);
+    issue.setNew((flags & (1 << 1)) != 0);
+    issue.setBeingClosed((flags & (1 << 2)) != 0);
+    issue.setOnDisabledRule((flags & (1 << 3)) != 0);
+    issue.setChanged((flags & (1 << 4)) != 0);
+    issue.setSendNotifications((flags & (1 << 5)) != 0);
+  }
+
+  private static void writeAttributes(DataOutput output, Map<String, String> attributes) throws IOException {
+    output.writeInt(attributes.size());
+    for (Map.Entry<String, String> entry : attributes.entrySet()) {
+      writeString(output, entry.getKey());
+      writeString(output, entry.getValue());
+    }
+  }
+
+  private static void readAttributes(DataInput input, DefaultIssue issue) throws IOException {
+    int size = input.readInt();
+    if (size > 0) {
+      Map<String, String> attributes = new LinkedHashMap<>(size);
+      for (int i = 0; i < size; i++) {
+        attributes.put(readString(input), readString(input));
+      }
+      issue.setAttributes(attributes);
+    }
+  }
+
+  private static void writeTags(DataOutput output, Set<String> tags) throws IOException {
+    output.writeInt(tags.size());
+    for (String tag : tags) {
+      writeString(output, tag);
+    }
+  }
+
+  private static void readTags(DataInput input, DefaultIssue issue) throws IOException {
+    int size = input.readInt();
+    if (size > 0) {
+      Set<String> tags = new LinkedHashSet<>(size);
+      for (int i = 0; i < size; i++) {
+        tags.add(readString(input));
+      }
+      issue.setTags(tags);
+    }
+  }
+
+  private static void writeComments(DataOutput output, List<IssueComment> comments) throws IOException {
+    output.writeInt(comments.size());
+    for (IssueComment comment : comments) {
+      DefaultIssueComment c = (DefaultIssueComment) comment;
+      writeString(output, c.key());
+      writeString(output, c.issueKey());
+      writeString(output, c.userLogin());
+      writeString(output, c.markdownText());
+      writeDate(output, c.createdAt());
+      writeDate(output, c.updatedAt());
+      output.writeBoolean(c.isNew());
+    }
+  }
+
+  private static void readComments(DataInput input, DefaultIssue issue) throws IOException {
+    int size = input.readInt();
+    for (int i = 0; i < size; i++) {
+      issue.addComment(new DefaultIssueComment()
+        .setKey(readString(input))
+        .setIssueKey(readString(input))
+        .setUserLogin(readString(input))
+        .setMarkdownText(readString(input))
+        .setCreatedAt(readDate(input))
+        .setUpdatedAt(readDate(input))
+        .setNew(input.readBoolean()));
+    }
+  }
+
+  /**
+   * The same {@link FieldDiffs} instance can be referenced several times, by {@link DefaultIssue#currentChange()}
+   * and by {@link DefaultIssue#changes()}. References are preserved by writing each distinct instance once.
+   */
+  private static void writeChanges(DataOutput output, List<FieldDiffs> changes, @Nullable FieldDiffs currentChange) throws IOException {
+    Map<FieldDiffs, Integer> refs = new IdentityHashMap<>();
+    List<FieldDiffs> distinct = new ArrayList<>();
+    for (FieldDiffs change : changes) {
+      if (!refs.containsKey(change)) {
+        refs.put(change, distinct.size());
+        distinct.add(change);
+      }
+    }
+    output.writeInt(distinct.size());
+    for (FieldDiffs change : distinct) {
+      writeFieldDiffs(output, change);
+    }
+    output.writeInt(changes.size());
+    for (FieldDiffs change : changes) {
+      output.writeInt(refs.get(change));
+    }
+    if (currentChange == null) {
+      output.writeInt(NO_CURRENT_CHANGE);
+    } else if (refs.containsKey(currentChange)) {
+      output.writeInt(refs.get(currentChange));
+    } else {
+      output.writeInt(DETACHED_CURRENT_CHANGE);
+      writeFieldDiffs(output, currentChange);
+    }
+  }
+
+  private static void readChanges(DataInput input, DefaultIssue issue) throws IOException {
+    int distinctSize = input.readInt();
+    List<FieldDiffs> distinct = new ArrayList<>(distinctSize);
+    for (int i = 0; i < distinctSize; i++) {
+      distinct.add(readFieldDiffs(input));
+    }
+    int size = input.readInt();
+    List<FieldDiffs> changes = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      changes.add(distinct.get(input.readInt()));
+    }
+    int currentChange = input.readInt();
+    if (currentChange == DETACHED_CURRENT_CHANGE) {
+      issue.setCurrentChange(readFieldDiffs(input));
+    } else if (currentChange != NO_CURRENT_CHANGE) {
+      issue.setCurrentChange(distinct.get(currentChange));
+    }
+    // overrides the list modified by setCurrentChange()
+    issue.setChanges(size == 0 ? null : changes);
+  }
+
+  private static void writeFieldDiffs(DataOutput output, FieldDiffs diffs) throws IOException {
+    writeString(output, diffs.issueKey());
+    writeString(output, diffs.userLogin());
+    writeDate(output, diffs.creationDate());
+    output.writeInt(diffs.diffs().size());
+    for (Map.Entry<String, FieldDiffs.Diff> entry : diffs.diffs().entrySet()) {
+      writeString(output, entry.getKey());
+      writeDiffValue(output, entry.getValue().oldValue());
+      writeDiffValue(output, entry.getValue().newValue());
+    }
+  }
+
+  private static FieldDiffs readFieldDiffs(DataInput input) throws IOException {
+    FieldDiffs diffs = new FieldDiffs()
+      .setIssueKey(readString(input))
+      .setUserLogin(readString(input))
+      .setCreationDate(readDate(input));
+    int size = input.readInt();
+    for (int i = 0; i < size; i++) {
+      diffs.setDiff(readString(input), readDiffValue(input), readDiffValue(input));
+    }
+    return diffs;
+  }
+
+  private static void writeDiffValue(DataOutput output, @Nullable Serializable value) throws IOException {
+    if (value == null) {
+      output.writeByte(VALUE_NULL);
+    } else if (value instanceof Long) {
+      output.writeByte(VALUE_LONG);
+      output.writeLong((Long) value);
+    } else if (value instanceof Integer) {
+      output.writeByte(VALUE_INTEGER);
+      output.writeInt((Integer) value);
+    } else if (value instanceof Double) {
+      output.writeByte(VALUE_DOUBLE);
+      output.writeDouble((Double) value);
+    } else if (value instanceof RuleType) {
+      output.writeByte(VALUE_RULE_TYPE);
+      output.writeInt(((RuleType) value).getDbConstant());
+    } else {
+      // other values are persisted as strings in table ISSUE_CHANGES
+      output.writeByte(VALUE_STRING);
+      writeString(output, value.toString());
+    }
+  }
+
+  @CheckForNull
+  private static Serializable readDiffValue(DataInput input) throws IOException {
+    byte type = input.readByte();
+    switch (type) {
+      case VALUE_NULL:
+        return null;
+      case VALUE_STRING:
+        return readString(input);
+      case VALUE_LONG:
+        return input.readLong();
+      case VALUE_INTEGER:
+        return input.readInt();
+      case VALUE_DOUBLE:
+        return input.readDouble();
+      case VALUE_RULE_TYPE:
+        return RuleType.valueOf(input.readInt());
+      default:
+        throw new IllegalStateException("Unsupported type of value: " + type);
+    }
+  }
+
+  private static void writeLocations(DataOutput output, @Nullable Object locations) throws IOException {
+    if (locations == null) {
+      output.writeInt(NULL_LENGTH);
+    } else if (locations instanceof DbIssues.Locations) {
+      byte[] bytes = ((DbIssues.Locations) locations).toByteArray();
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    } else {
+      throw new IllegalStateException("Unsupported type of locations: " + locations.getClass());
+    }
+  }
+
+  private static void readLocations(DataInput input, DefaultIssue issue) throws IOException {
+    int length = input.readInt();
+    if (length != NULL_LENGTH) {
+      byte[] bytes = new byte[length];
+      input.readFully(bytes);
+      issue.setLocations(DbIssues.Locations.parseFrom(bytes));
+    }
+  }
+
+  private static void writeString(DataOutput output, @Nullable String s) throws IOException {
+    if (s == null) {
+      output.writeInt(NULL_LENGTH);
+    } else {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+  }
+
+  @CheckForNull
+  private static String readString(DataInput input) throws IOException {
+    int length = input.readInt();
+    if (length == NULL_LENGTH) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeInteger(DataOutput output, @Nullable Integer i) throws IOException {
+    output.writeBoolean(i != null);
+    if (i != null) {
+      output.writeInt(i);
+    }
+  }
+
+  @CheckForNull
+  private static Integer readInteger(DataInput input) throws IOException {
+    return input.readBoolean() ? input.readInt() : null;
+  }
+
+  private static void writeLong(DataOutput output, @Nullable Long l) throws IOException {
+    output.writeBoolean(l != null);
+    if (l != null) {
+      output.writeLong(l);
+    }
+  }
+
+  @CheckForNull
+  private static Long readLong(DataInput input) throws IOException {
+    return input.readBoolean() ? input.readLong() : null;
+  }
+
+  private static void writeDouble(DataOutput output, @Nullable Double d) throws IOException {
+    output.writeBoolean(d != null);
+    if (d != null) {
+      output.writeDouble(d);
+    }
+  }
+
+  @CheckForNull
+  private static Double readDouble(DataInput input) throws IOException {
+    return input.readBoolean() ? input.readDouble() : null;
+  }
+
+  private static void writeDate(DataOutput output, @Nullable Date date) throws IOException {
+    writeLong(output, date == null ? null : date.getTime());
+  }
+
+  @CheckForNull
+  private static Date readDate(DataInput input) throws IOException {
+    Long time = readLong(input);
+    return time == null ? null : new Date(time);
+  }
+}
@@ -22,8 +22,10 @@ package org.sonar.server.computation.task.projectanalysis.step;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -52,8 +54,6 @@ import org.sonar.server.computation.task.step.ComputationStep;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
-import static java.util.function.Function.identity;
-import static org.sonar.core.util.stream.Collectors.uniqueIndex;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.DIRECTORY;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.SUBVIEW;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
@@ -86,25 +86,44 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
     DbSession dbSession = dbClient.openSession(false);
     try {
       List<Metric> metrics = StreamSupport.stream(metricRepository.getAll().spliterator(), false).filter(NumericMetric.INSTANCE::apply).collect(Collectors.toList());
-      new DepthTraversalTypeAwareCrawler(new VariationMeasuresVisitor(dbSession, metrics))
+      Set<Integer> metricIds = metrics.stream().map(MetricDtoToMetricId.INSTANCE::apply).collect(Collectors.toSet());
+      Map<Integer, PastMeasures> pastMeasuresByPeriodIndex = new LinkedHashMap<>();
+      for (Period period : periodsHolder.getPeriods()) {
+        pastMeasuresByPeriodIndex.put(period.getIndex(), loadPastMeasures(dbSession, period, metricIds));
+      }
+      new DepthTraversalTypeAwareCrawler(new VariationMeasuresVisitor(metrics, pastMeasuresByPeriodIndex))
         .visit(treeRootHolder.getRoot());
     } finally {
       dbClient.closeSession(dbSession);
     }
   }
 
+  /**
+   * Past measures of all the components are loaded by a single streamed query per period, instead of
+   * one query per component and per period.
+   */
+  private PastMeasures loadPastMeasures(DbSession dbSession, Period period, Set<Integer> metricIds) {
+    PastMeasures pastMeasures = new PastMeasures();
+    dbClient.measureDao().selectPastMeasuresOfAnalysis(dbSession, period.getAnalysisUuid(), metricIds, context -> {
+      PastMeasureDto dto = (PastMeasureDto) context.getResultObject();
+      if (dto.hasValue()) {
+        pastMeasures.add(dto.getComponentUuid(), dto.getMetricId(), dto.getValue());
+      }
+    });
+    pastMeasures.sort();
+    return pastMeasures;
+  }
+
   private class VariationMeasuresVisitor extends TypeAwareVisitorAdapter {
 
-    private final DbSession session;
-    private final Set<Integer> metricIds;
     private final List<Metric> metrics;
+    private final Map<Integer, PastMeasures> pastMeasuresByPeriodIndex;
 
-    VariationMeasuresVisitor(DbSession session, List<Metric> metrics) {
+    VariationMeasuresVisitor(List<Metric> metrics, Map<Integer, PastMeasures> pastMeasuresByPeriodIndex) {
       // measures on files are currently purged, so past measures are not available on files
       super(CrawlerDepthLimit.reportMaxDepth(DIRECTORY).withViewsMaxDepth(SUBVIEW), PRE_ORDER);
-      this.session = session;
-      this.metricIds = metrics.stream().map(MetricDtoToMetricId.INSTANCE::apply).collect(Collectors.toSet());
       this.metrics = metrics;
+      this.pastMeasuresByPeriodIndex = pastMeasuresByPeriodIndex;
     }
 
     @Override
@@ -115,23 +134,18 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
 
     private MeasuresWithVariationRepository computeMeasuresWithVariations(Component component) {
       MeasuresWithVariationRepository measuresWithVariationRepository = new MeasuresWithVariationRepository();
-      for (Period period : periodsHolder.getPeriods()) {
-        List<PastMeasureDto> pastMeasures = dbClient.measureDao()
-          .selectPastMeasures(session, component.getUuid(), period.getAnalysisUuid(), metricIds);
-        setVariationMeasures(component, pastMeasures, period.getIndex(), measuresWithVariationRepository);
+      for (Map.Entry<Integer, PastMeasures> entry : pastMeasuresByPeriodIndex.entrySet()) {
+        setVariationMeasures(component, entry.getValue(), entry.getKey(), measuresWithVariationRepository);
       }
       return measuresWithVariationRepository;
     }
 
-    private void setVariationMeasures(Component component, List<PastMeasureDto> pastMeasures, int period, MeasuresWithVariationRepository measuresWithVariationRepository) {
-      Map<MeasureKey, PastMeasureDto> pastMeasuresByMeasureKey = pastMeasures
-        .stream()
-        .collect(uniqueIndex(m -> new MeasureKey(metricRepository.getById((long) m.getMetricId()).getKey(), null), identity()));
+    private void setVariationMeasures(Component component, PastMeasures pastMeasures, int period, MeasuresWithVariationRepository measuresWithVariationRepository) {
+      ComponentPastMeasures componentPastMeasures = pastMeasures.get(component.getUuid());
       for (Metric metric : metrics) {
         Optional<Measure> measure = measureRepository.getRawMeasure(component, metric);
         if (measure.isPresent() && !measure.get().hasVariations()) {
-          PastMeasureDto pastMeasure = pastMeasuresByMeasureKey.get(new MeasureKey(metric.getKey(), null));
-          double pastValue = (pastMeasure != null && pastMeasure.hasValue()) ? pastMeasure.getValue() : 0d;
+          double pastValue = componentPastMeasures == null ? 0d : componentPastMeasures.getValue(metric.getId());
           measuresWithVariationRepository.add(metric, measure.get(), period, computeVariation(measure.get(), pastValue));
         }
       }
@@ -188,6 +202,69 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
     }
   }
 
+  /**
+   * Values of the past measures of an analysis, by component
+   */
+  private static final class PastMeasures {
+    private final Map<String, ComponentPastMeasures> byComponentUuid = new HashMap<>();
+
+    void add(String componentUuid, int metricId, double value) {
+      byComponentUuid.computeIfAbsent(componentUuid, uuid -> new ComponentPastMeasures()).add(metricId, value);
+    }
+
+    void sort() {
+      byComponentUuid.values().forEach(ComponentPastMeasures::sort);
+    }
+
+    @CheckForNull
+    ComponentPastMeasures get(String componentUuid) {
+      return byComponentUuid.get(componentUuid);
+    }
+  }
+
+  /**
+   * Values of the past measures of a component, stored in primitive arrays sorted by metric id
+   */
+  private static final class ComponentPastMeasures {
+    private int[] metricIds = new int[16];
+    private double[] values = new double[16];
+    private int size = 0;
+
+    void add(int metricId, double value) {
+      if (size == metricIds.length) {
+        metricIds = Arrays.copyOf(metricIds, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      }
+      metricIds[size] = metricId;
+      values[size] = value;
+      size++;
+    }
+
+    void sort() {
+      // insertion sort, as there are at most a few hundreds of numeric metrics
+      for (int i = 1; i < size; i++) {
+        int metricId = metricIds[i];
+        double value = values[i];
+        int j = i - 1;
+        while (j >= 0 && metricIds[j] > metricId) {
+          metricIds[j + 1] = metricIds[j];
+          values[j + 1] = values[j];
+          j--;
+        }
+        metricIds[j + 1] = metricId;
+        values[j + 1] = value;
+      }
+    }
+
+    /**
+     * @return 0 if the measure does not exist or has no value
+     */
+    double getValue(int metricId) {
+      int index = Arrays.binarySearch(metricIds, 0, size, metricId);
+      return index >= 0 ? values[index] : 0d;
+    }
+  }
+
   private static final class MeasureWithVariations {
     private final Metric metric;
     private final Measure measure;
@@ -20,11 +20,21 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nonnull;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.duplication.DuplicationUnitDto;
@@ -79,7 +89,10 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
   @Override
   public void execute() {
     if (crossProjectDuplicationStatusHolder.isEnabled()) {
-      new DepthTraversalTypeAwareCrawler(new CrossProjectDuplicationVisitor()).visit(treeRootHolder.getRoot());
+      HashesCollector hashesCollector = new HashesCollector();
+      new DepthTraversalTypeAwareCrawler(hashesCollector).visit(treeRootHolder.getRoot());
+      Map<String, Multimap<String, Block>> candidatesByLanguage = selectCandidates(hashesCollector.hashesByLanguage);
+      new DepthTraversalTypeAwareCrawler(new CrossProjectDuplicationVisitor(candidatesByLanguage)).visit(treeRootHolder.getRoot());
     }
   }
 
@@ -88,10 +101,53 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
     return "Compute cross project duplications";
   }
 
+  /**
+   * Loads at once the blocks of the other projects sharing a hash with the files of the analysis, instead of
+   * requesting them file by file. Blocks are indexed by hash in memory, so that each file is then served
+   * without requesting the database.
+   */
+  private Map<String, Multimap<String, Block>> selectCandidates(Map<String, Set<String>> hashesByLanguage) {
+    Analysis projectAnalysis = analysisMetadataHolder.getBaseAnalysis();
+    String analysisUuid = projectAnalysis == null ? null : projectAnalysis.getUuid();
+    Map<String, Multimap<String, Block>> candidatesByLanguage = new HashMap<>();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      for (Map.Entry<String, Set<String>> entry : hashesByLanguage.entrySet()) {
+        Multimap<String, Block> candidatesByHash = ArrayListMultimap.create();
+        dbClient.duplicationDao().selectCandidates(dbSession, analysisUuid, entry.getKey(), entry.getValue(), context -> {
+          DuplicationUnitDto dto = (DuplicationUnitDto) context.getResultObject();
+          candidatesByHash.put(dto.getHash(), DtoToBlock.INSTANCE.apply(dto));
+        });
+        LOGGER.debug("Found {} cross project duplication candidates for {} hashes of language {}", candidatesByHash.size(), entry.getValue().size(), entry.getKey());
+        candidatesByLanguage.put(entry.getKey(), candidatesByHash);
+      }
+    }
+    return candidatesByLanguage;
+  }
+
+  private class HashesCollector extends TypeAwareVisitorAdapter {
+    private final Map<String, Set<String>> hashesByLanguage = new HashMap<>();
+
+    private HashesCollector() {
+      super(CrawlerDepthLimit.FILE, PRE_ORDER);
+    }
+
+    @Override
+    public void visitFile(Component file) {
+      try (CloseableIterator<CpdTextBlock> blocks = reportReader.readCpdTextBlocks(file.getReportAttributes().getRef())) {
+        if (blocks.hasNext()) {
+          Set<String> hashes = hashesByLanguage.computeIfAbsent(file.getFileAttributes().getLanguageKey(), language -> new HashSet<>());
+          blocks.forEachRemaining(block -> hashes.add(block.getHash()));
+        }
+      }
+    }
+  }
+
   private class CrossProjectDuplicationVisitor extends TypeAwareVisitorAdapter {
+    private final Map<String, Multimap<String, Block>> candidatesByLanguage;
 
-    private CrossProjectDuplicationVisitor() {
+    private CrossProjectDuplicationVisitor(Map<String, Multimap<String, Block>> candidatesByLanguage) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
+      this.candidatesByLanguage = candidatesByLanguage;
     }
 
     @Override
@@ -102,28 +158,28 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
         return;
       }
 
-      Collection<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).toList();
-      List<DuplicationUnitDto> dtos = selectDuplicates(file, hashes);
-      if (dtos.isEmpty()) {
+      Collection<Block> duplicatedBlocks = selectDuplicates(file, cpdTextBlocks);
+      if (duplicatedBlocks.isEmpty()) {
         return;
       }
 
-      Collection<Block> duplicatedBlocks = from(dtos).transform(DtoToBlock.INSTANCE).toList();
       Collection<Block> originBlocks = from(cpdTextBlocks).transform(new CpdTextBlockToBlock(file.getKey())).toList();
       LOGGER.trace("Found {} duplicated cpd blocks on file {}", duplicatedBlocks.size(), file.getKey());
 
       integrateCrossProjectDuplications.computeCpd(file, originBlocks, duplicatedBlocks);
     }
 
-    private List<DuplicationUnitDto> selectDuplicates(Component file, Collection<String> hashes) {
-      DbSession dbSession = dbClient.openSession(false);
-      try {
-        Analysis projectAnalysis = analysisMetadataHolder.getBaseAnalysis();
-        String analysisUuid = projectAnalysis == null ? null : projectAnalysis.getUuid();
-        return dbClient.duplicationDao().selectCandidates(dbSession, analysisUuid, file.getFileAttributes().getLanguageKey(), hashes);
-      } finally {
-        dbClient.closeSession(dbSession);
+    private List<Block> selectDuplicates(Component file, List<CpdTextBlock> cpdTextBlocks) {
+      Multimap<String, Block> candidatesByHash = candidatesByLanguage.get(file.getFileAttributes().getLanguageKey());
+      if (candidatesByHash == null) {
+        return Collections.emptyList();
+      }
+      Set<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).copyInto(new LinkedHashSet<>());
+      List<Block> duplicatedBlocks = new ArrayList<>();
+      for (String hash : hashes) {
+        duplicatedBlocks.addAll(candidatesByHash.get(hash));
       }
+      return duplicatedBlocks;
     }
   }
 
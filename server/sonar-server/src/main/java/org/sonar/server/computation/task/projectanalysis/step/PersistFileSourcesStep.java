@@ -20,15 +20,25 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.ObjectUtils;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
@@ -44,6 +54,7 @@ import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthL
 import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.duplication.Duplication;
 import org.sonar.server.computation.task.projectanalysis.duplication.DuplicationRepository;
 import org.sonar.server.computation.task.projectanalysis.scm.Changeset;
 import org.sonar.server.computation.task.projectanalysis.scm.ScmInfo;
@@ -61,8 +72,17 @@ import org.sonar.server.computation.task.step.ComputationStep;
 
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
+/**
+ * Sources are computed, serialized, compressed and hashed by a pool of threads, see {@link #THREADS_PROPERTY}. Only
+ * the sources which changed since the previous analysis are written to database, by the calling thread and in the order
+ * of the component tree, in transactions of {@link #FILES_PER_TRANSACTION} files.
+ */
 public class PersistFileSourcesStep implements ComputationStep {
 
+  static final String THREADS_PROPERTY = "sonar.internal.ce.fileSources.threads";
+  private static final int DEFAULT_THREADS = 2;
+  static final int FILES_PER_TRANSACTION = 100;
+
   private final DbClient dbClient;
   private final System2 system2;
   private final TreeRootHolder treeRootHolder;
@@ -70,9 +90,10 @@ public class PersistFileSourcesStep implements ComputationStep {
   private final SourceLinesRepository sourceLinesRepository;
   private final ScmInfoRepository scmInfoRepository;
   private final DuplicationRepository duplicationRepository;
+  private final Settings settings;
 
   public PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
-    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository) {
+    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, Settings settings) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.treeRootHolder = treeRootHolder;
@@ -80,30 +101,54 @@ public class PersistFileSourcesStep implements ComputationStep {
     this.sourceLinesRepository = sourceLinesRepository;
     this.scmInfoRepository = scmInfoRepository;
     this.duplicationRepository = duplicationRepository;
+    this.settings = settings;
   }
 
   @Override
   public void execute() {
+    int threads = getThreads();
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("CE_file_sources-%d")
+      .setDaemon(true)
+      .build());
     // Don't use batch insert for file_sources since keeping all data in memory can produce OOM for big files
     DbSession session = dbClient.openSession(false);
     try {
-      new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(session))
+      FileSourceVisitor visitor = new FileSourceVisitor(session, executorService, threads);
+      new DepthTraversalTypeAwareCrawler(visitor)
         .visit(treeRootHolder.getRoot());
+      visitor.persistPendingSources(0);
+      session.commit();
     } finally {
+      executorService.shutdownNow();
       MyBatis.closeQuietly(session);
     }
   }
 
+  int getThreads() {
+    String value = settings.getString(THREADS_PROPERTY);
+    if (value == null) {
+      return DEFAULT_THREADS;
+    }
+    return Math.max(1, Integer.parseInt(value));
+  }
+
   private class FileSourceVisitor extends TypeAwareVisitorAdapter {
 
     private final DbSession session;
+    private final ExecutorService executorService;
+    private final int maxPendingSources;
+    private final Deque<PendingSource> pendingSources = new ArrayDeque<>();
 
     private Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
     private String projectUuid;
+    private int uncommittedFiles = 0;
 
-    private FileSourceVisitor(DbSession session) {
+    private FileSourceVisitor(DbSession session, ExecutorService executorService, int threads) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
       this.session = session;
+      this.executorService = executorService;
+      this.maxPendingSources = 2 * threads;
     }
 
     @Override
@@ -116,16 +161,53 @@ public class PersistFileSourcesStep implements ComputationStep {
         });
     }
 
+    /**
+     * Repositories are not thread-safe, so they are read by the calling thread. Only the report files of the
+     * component and the previous hashes of its source, which are not shared, are read by the worker.
+     */
     @Override
     public void visitFile(Component file) {
       int fileRef = file.getReportAttributes().getRef();
       ScannerReport.Component component = reportReader.readComponent(fileRef);
+      Optional<ScmInfo> scmInfo = scmInfoRepository.getScmInfo(file);
+      List<Duplication> duplications = ImmutableList.copyOf(duplicationRepository.getDuplications(file));
+      FileSourceDto previousDto = previousFileSourcesByUuid.get(file.getUuid());
+      Future<FileSourceDto> future = executorService.submit(() -> computeSource(file, component, scmInfo, duplications, previousDto));
+      pendingSources.add(new PendingSource(file, future, previousDto == null));
+      persistPendingSources(maxPendingSources);
+    }
+
+    private void persistPendingSources(int maxRemaining) {
+      while (pendingSources.size() > maxRemaining) {
+        PendingSource pendingSource = pendingSources.poll();
+        FileSourceDto dto = pendingSource.get();
+        if (dto != null) {
+          if (pendingSource.isNew) {
+            dbClient.fileSourceDao().insert(session, dto);
+          } else {
+            dbClient.fileSourceDao().update(session, dto);
+          }
+          uncommittedFiles++;
+          if (uncommittedFiles == FILES_PER_TRANSACTION) {
+            session.commit();
+            uncommittedFiles = 0;
+          }
+        }
+      }
+    }
+
+    /**
+     * @return the source to be inserted or updated, or {@code null} if the source did not change since the previous analysis
+     */
+    @CheckForNull
+    private FileSourceDto computeSource(Component file, ScannerReport.Component component, Optional<ScmInfo> scmInfo, List<Duplication> duplications,
+      @Nullable FileSourceDto previousDto) {
       CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
-      LineReaders lineReaders = new LineReaders(reportReader, scmInfoRepository, duplicationRepository, file);
+      LineReaders lineReaders = new LineReaders(reportReader, scmInfo, duplications, file);
       try {
         ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), component.getLines());
         ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
-        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
+        return toDto(fileSourceData, file.getUuid(), lineReaders.getLatestChange(), previousDto);
       } catch (Exception e) {
         throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
       } finally {
@@ -134,17 +216,17 @@ public class PersistFileSourcesStep implements ComputationStep {
       }
     }
 
-    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
+    @CheckForNull
+    private FileSourceDto toDto(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange, @Nullable FileSourceDto previousDto) {
       DbFileSources.Data fileData = fileSourceData.getFileSourceData();
 
       byte[] data = FileSourceDto.encodeSourceData(fileData);
       String dataHash = DigestUtils.md5Hex(data);
       String srcHash = fileSourceData.getSrcHash();
       String lineHashes = fileSourceData.getLineHashes();
-      FileSourceDto previousDto = previousFileSourcesByUuid.get(componentUuid);
 
       if (previousDto == null) {
-        FileSourceDto dto = new FileSourceDto()
+        return new FileSourceDto()
           .setProjectUuid(projectUuid)
           .setFileUuid(componentUuid)
           .setDataType(Type.SOURCE)
@@ -155,26 +237,22 @@ public class PersistFileSourcesStep implements ComputationStep {
           .setCreatedAt(system2.now())
           .setUpdatedAt(system2.now())
           .setRevision(computeRevision(latestChange));
-        dbClient.fileSourceDao().insert(session, dto);
-        session.commit();
-      } else {
-        // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
-        boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
-        boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
-        String revision = computeRevision(latestChange);
-        boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
-        if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
-          previousDto
-            .setBinaryData(data)
-            .setDataHash(dataHash)
-            .setSrcHash(srcHash)
-            .setLineHashes(lineHashes)
-            .setRevision(revision)
-            .setUpdatedAt(system2.now());
-          dbClient.fileSourceDao().update(session, previousDto);
-          session.commit();
-        }
       }
+      // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
+      boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
+      boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
+      String revision = computeRevision(latestChange);
+      boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
+      if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
+        return previousDto
+          .setBinaryData(data)
+          .setDataHash(dataHash)
+          .setSrcHash(srcHash)
+          .setLineHashes(lineHashes)
+          .setRevision(revision)
+          .setUpdatedAt(system2.now());
+      }
+      return null;
     }
 
     @CheckForNull
@@ -186,19 +264,43 @@ public class PersistFileSourcesStep implements ComputationStep {
     }
   }
 
+  private static class PendingSource {
+    private final Component file;
+    private final Future<FileSourceDto> future;
+    private final boolean isNew;
+
+    PendingSource(Component file, Future<FileSourceDto> future, boolean isNew) {
+      this.file = file;
+      this.future = future;
+      this.isNew = isNew;
+    }
+
+    @CheckForNull
+    FileSourceDto get() {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(String.format("Interrupted while persisting sources of %s", file.getKey()), e);
+      } catch (ExecutionException e) {
+        Throwables.propagateIfPossible(e.getCause());
+        throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e.getCause());
+      }
+    }
+  }
+
   private static class LineReaders {
     private final List<LineReader> readers = new ArrayList<>();
     private final List<CloseableIterator<?>> closeables = new ArrayList<>();
     @CheckForNull
     private final ScmLineReader scmLineReader;
 
-    LineReaders(BatchReportReader reportReader, ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, Component component) {
+    LineReaders(BatchReportReader reportReader, Optional<ScmInfo> scmInfoOptional, List<Duplication> duplications, Component component) {
       int componentRef = component.getReportAttributes().getRef();
       CloseableIterator<ScannerReport.LineCoverage> coverageIt = reportReader.readComponentCoverage(componentRef);
       closeables.add(coverageIt);
       readers.add(new CoverageLineReader(coverageIt));
 
-      Optional<ScmInfo> scmInfoOptional = scmInfoRepository.getScmInfo(component);
       if (scmInfoOptional.isPresent()) {
         this.scmLineReader = new ScmLineReader(scmInfoOptional.get());
         readers.add(scmLineReader);
@@ -215,7 +317,7 @@ public class PersistFileSourcesStep implements ComputationStep {
       closeables.add(symbolsIt);
       readers.add(new SymbolsLineReader(component, symbolsIt, rangeOffsetConverter));
 
-      readers.add(new DuplicationLineReader(duplicationRepository.getDuplications(component)));
+      readers.add(new DuplicationLineReader(duplications));
     }
 
     List<LineReader> readers() {
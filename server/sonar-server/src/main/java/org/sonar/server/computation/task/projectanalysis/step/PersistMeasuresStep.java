@@ -20,13 +20,16 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Predicate;
-import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.measure.MeasureDao;
@@ -44,7 +47,7 @@ import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository;
 import org.sonar.server.computation.task.step.ComputationStep;
 
-import static com.google.common.collect.FluentIterable.from;
+import static com.google.common.base.Preconditions.checkArgument;
 import static org.sonar.api.measures.CoreMetrics.CLASS_COMPLEXITY_DISTRIBUTION_KEY;
 import static org.sonar.api.measures.CoreMetrics.FILE_COMPLEXITY_DISTRIBUTION_KEY;
 import static org.sonar.api.measures.CoreMetrics.FUNCTION_COMPLEXITY_DISTRIBUTION_KEY;
@@ -52,6 +55,13 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
 
 public class PersistMeasuresStep implements ComputationStep {
 
+  /**
+   * Number of rows of the multi-row inserts, at most {@link MeasureDao#MAX_ROWS_PER_INSERT}
+   */
+  static final String ROWS_PER_INSERT_PROPERTY = "sonar.internal.ce.measures.rowsPerInsert";
+
+  private static final Logger LOGGER = Loggers.get(PersistMeasuresStep.class);
+
   /**
    * List of metrics that should not be persisted on file measure (Waiting for SONAR-6688 to be implemented)
    */
@@ -65,14 +75,16 @@ public class PersistMeasuresStep implements ComputationStep {
   private final MeasureToMeasureDto measureToMeasureDto;
   private final TreeRootHolder treeRootHolder;
   private final MeasureRepository measureRepository;
+  private final Settings settings;
 
   public PersistMeasuresStep(DbClient dbClient, MetricRepository metricRepository, MeasureToMeasureDto measureToMeasureDto,
-    TreeRootHolder treeRootHolder, MeasureRepository measureRepository) {
+    TreeRootHolder treeRootHolder, MeasureRepository measureRepository, Settings settings) {
     this.dbClient = dbClient;
     this.metricRepository = metricRepository;
     this.measureToMeasureDto = measureToMeasureDto;
     this.treeRootHolder = treeRootHolder;
     this.measureRepository = measureRepository;
+    this.settings = settings;
   }
 
   @Override
@@ -82,21 +94,52 @@ public class PersistMeasuresStep implements ComputationStep {
 
   @Override
   public void execute() {
+    long start = System.nanoTime();
     DbSession dbSession = dbClient.openSession(true);
     try {
-      new DepthTraversalTypeAwareCrawler(new MeasureVisitor(dbSession)).visit(treeRootHolder.getRoot());
+      MeasureVisitor visitor = new MeasureVisitor(dbSession, getRowsPerInsert());
+      new DepthTraversalTypeAwareCrawler(visitor).visit(treeRootHolder.getRoot());
+      visitor.flush();
       dbSession.commit();
+      logThroughput(visitor, System.nanoTime() - start);
     } finally {
       dbSession.close();
     }
   }
 
+  private int getRowsPerInsert() {
+    String value = settings.getString(ROWS_PER_INSERT_PROPERTY);
+    if (value == null) {
+      return MeasureDao.MAX_ROWS_PER_INSERT;
+    }
+    int rowsPerInsert = Integer.parseInt(value);
+    checkArgument(rowsPerInsert > 0 && rowsPerInsert <= MeasureDao.MAX_ROWS_PER_INSERT,
+      "Property %s must be between 1 and %s, got %s", ROWS_PER_INSERT_PROPERTY, MeasureDao.MAX_ROWS_PER_INSERT, rowsPerInsert);
+    return rowsPerInsert;
+  }
+
+  private static void logThroughput(MeasureVisitor visitor, long elapsedNanos) {
+    if (LOGGER.isDebugEnabled()) {
+      long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+      long rowsPerSecond = elapsedMs == 0L ? visitor.rows : (visitor.rows * 1_000L / elapsedMs);
+      LOGGER.debug("{} measures persisted with {} statements in {} ms ({} rows/s)", visitor.rows, visitor.statements, elapsedMs, rowsPerSecond);
+    }
+  }
+
   private class MeasureVisitor extends TypeAwareVisitorAdapter {
     private final DbSession session;
+    private final MeasureDao measureDao;
+    private final int rowsPerInsert;
+    private final List<MeasureDto> buffer;
+    private long rows = 0L;
+    private long statements = 0L;
 
-    private MeasureVisitor(DbSession session) {
+    private MeasureVisitor(DbSession session, int rowsPerInsert) {
       super(CrawlerDepthLimit.LEAVES, PRE_ORDER);
       this.session = session;
+      this.measureDao = dbClient.measureDao();
+      this.rowsPerInsert = rowsPerInsert;
+      this.buffer = new ArrayList<>(rowsPerInsert);
     }
 
     @Override
@@ -113,24 +156,34 @@ public class PersistMeasuresStep implements ComputationStep {
         }
 
         Metric metric = metricRepository.getByKey(metricKey);
-        Predicate<Measure> notBestValueOptimized = Predicates.not(BestValueOptimization.from(metric, component));
-        MeasureDao measureDao = dbClient.measureDao();
-        for (Measure measure : from(measures.getValue()).filter(NonEmptyMeasure.INSTANCE).filter(notBestValueOptimized)) {
-          MeasureDto measureDto = measureToMeasureDto.toMeasureDto(measure, metric, component);
-          measureDao.insert(session, measureDto);
+        Predicate<Measure> bestValueOptimized = BestValueOptimization.from(metric, component);
+        for (Measure measure : measures.getValue()) {
+          if (isNonEmpty(measure) && !bestValueOptimized.apply(measure)) {
+            add(measureToMeasureDto.toMeasureDto(measure, metric, component));
+          }
         }
       }
     }
 
-  }
-
-  private enum NonEmptyMeasure implements Predicate<Measure> {
-    INSTANCE;
+    private void add(MeasureDto measureDto) {
+      buffer.add(measureDto);
+      if (buffer.size() == rowsPerInsert) {
+        flush();
+      }
+    }
 
-    @Override
-    public boolean apply(@Nonnull Measure input) {
-      return input.getValueType() != Measure.ValueType.NO_VALUE || input.hasVariations() || input.getData() != null;
+    private void flush() {
+      if (!buffer.isEmpty()) {
+        measureDao.insert(session, buffer, rowsPerInsert);
+        rows += buffer.size();
+        statements++;
+        buffer.clear();
+      }
     }
   }
 
+  private static boolean isNonEmpty(Measure measure) {
+    return measure.getValueType() != Measure.ValueType.NO_VALUE || measure.hasVariations() || measure.getData() != null;
+  }
+
 }
@@ -19,8 +19,13 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import org.sonar.api.config.Settings;
+import org.sonar.ce.queue.CeQueue;
+import org.sonar.ce.queue.CeTaskSubmit;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.ce.CeQueueDto;
+import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.db.purge.IdUuidPair;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.DbIdsRepository;
@@ -39,21 +44,29 @@ import static org.sonar.server.computation.task.projectanalysis.component.Crawle
 
 public class PurgeDatastoresStep implements ComputationStep {
 
+  /**
+   * When enabled, the historical data of the project is purged by a task of type {@link CeTaskTypes#PURGE}
+   * submitted to the queue, instead of being purged by this step.
+   */
+  static final String ASYNC_PURGE_PROPERTY = "sonar.internal.ce.purge.async";
+
   private final ProjectCleaner projectCleaner;
   private final DbClient dbClient;
   private final DbIdsRepository dbIdsRepository;
   private final TreeRootHolder treeRootHolder;
   private final SettingsRepository settingsRepository;
   private final DisabledComponentsHolder disabledComponentsHolder;
+  private final CeQueue ceQueue;
 
   public PurgeDatastoresStep(DbClient dbClient, ProjectCleaner projectCleaner, DbIdsRepository dbIdsRepository, TreeRootHolder treeRootHolder,
-    SettingsRepository settingsRepository, DisabledComponentsHolder disabledComponentsHolder) {
+    SettingsRepository settingsRepository, DisabledComponentsHolder disabledComponentsHolder, CeQueue ceQueue) {
     this.projectCleaner = projectCleaner;
     this.dbClient = dbClient;
     this.dbIdsRepository = dbIdsRepository;
     this.treeRootHolder = treeRootHolder;
     this.settingsRepository = settingsRepository;
     this.disabledComponentsHolder = disabledComponentsHolder;
+    this.ceQueue = ceQueue;
   }
 
   @Override
@@ -75,14 +88,34 @@ public class PurgeDatastoresStep implements ComputationStep {
   private void execute(Component root) {
     DbSession session = dbClient.openSession(true);
     try {
-      IdUuidPair idUuidPair = new IdUuidPair(dbIdsRepository.getComponentId(root), root.getUuid());
-      projectCleaner.purge(session, idUuidPair, settingsRepository.getSettings(root), disabledComponentsHolder.getUuids());
+      Settings settings = settingsRepository.getSettings(root);
+      if (settings.getBoolean(ASYNC_PURGE_PROPERTY) && !ceQueue.isSubmitPaused()) {
+        projectCleaner.purgeDisabledComponents(session, disabledComponentsHolder.getUuids());
+        submitPurgeTask(session, root);
+      } else {
+        IdUuidPair idUuidPair = new IdUuidPair(dbIdsRepository.getComponentId(root), root.getUuid());
+        projectCleaner.purge(session, idUuidPair, settings, disabledComponentsHolder.getUuids());
+      }
       session.commit();
     } finally {
       dbClient.closeSession(session);
     }
   }
 
+  /**
+   * Purge tasks are coalesced: a new task is not submitted if one is already pending for the same component.
+   */
+  private void submitPurgeTask(DbSession session, Component root) {
+    boolean pending = dbClient.ceQueueDao().selectByComponentUuid(session, root.getUuid()).stream()
+      .anyMatch(dto -> CeTaskTypes.PURGE.equals(dto.getTaskType()) && dto.getStatus() == CeQueueDto.Status.PENDING);
+    if (!pending) {
+      CeTaskSubmit.Builder submit = ceQueue.prepareSubmit();
+      submit.setType(CeTaskTypes.PURGE);
+      submit.setComponentUuid(root.getUuid());
+      ceQueue.submit(submit.build());
+    }
+  }
+
   @Override
   public String getDescription() {
     return "Purge db";
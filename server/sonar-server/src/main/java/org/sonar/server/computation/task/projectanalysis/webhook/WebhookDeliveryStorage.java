@@ -20,6 +20,9 @@
 package org.sonar.server.computation.task.projectanalysis.webhook;
 
 import com.google.common.base.Throwables;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.UuidFactory;
@@ -46,18 +49,25 @@ public class WebhookDeliveryStorage {
     this.uuidFactory = uuidFactory;
   }
 
-  public void persist(WebhookDelivery delivery) {
-    WebhookDeliveryDao dao = dbClient.webhookDeliveryDao();
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      dao.insert(dbSession, toDto(delivery));
-      dbSession.commit();
+  /**
+   * Insert the deliveries within a single batch session and transaction, then purge the old deliveries
+   * of their projects
+   */
+  public void persist(Collection<WebhookDelivery> deliveries) {
+    if (deliveries.isEmpty()) {
+      return;
     }
-  }
-
-  public void purge(String componentUuid) {
-    long beforeDate = system.now() - ALIVE_DELAY_MS;
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      dbClient.webhookDeliveryDao().deleteComponentBeforeDate(dbSession, componentUuid, beforeDate);
+    WebhookDeliveryDao dao = dbClient.webhookDeliveryDao();
+    try (DbSession dbSession = dbClient.openSession(true)) {
+      Set<String> componentUuids = new HashSet<>();
+      for (WebhookDelivery delivery : deliveries) {
+        dao.insert(dbSession, toDto(delivery));
+        componentUuids.add(delivery.getWebhook().getComponentUuid());
+      }
+      long beforeDate = system.now() - ALIVE_DELAY_MS;
+      for (String componentUuid : componentUuids) {
+        dao.deleteComponentBeforeDate(dbSession, componentUuid, beforeDate);
+      }
       dbSession.commit();
     }
   }
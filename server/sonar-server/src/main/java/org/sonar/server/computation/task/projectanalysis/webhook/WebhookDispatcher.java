@@ -0,0 +1,294 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.webhook;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import okhttp3.HttpUrl;
+import org.picocontainer.Startable;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Sends webhooks asynchronously, so that the duration of Compute Engine tasks does not depend on
+ * the response times of the receivers.
+ * <ul>
+ *   <li>the number of deliveries waiting to be sent is bounded. When the limit is reached, the new deliveries
+ *   are not sent and are persisted as failed</li>
+ *   <li>the number of concurrent calls to a same host is limited</li>
+ *   <li>calls failing because of a connectivity error or of a HTTP 5xx status are retried with an exponential backoff</li>
+ *   <li>deliveries are persisted by batches, and periodically so that they are not kept in memory while
+ *   other deliveries are pending</li>
+ * </ul>
+ */
+@ComputeEngineSide
+public class WebhookDispatcher implements Startable {
+
+  private static final Logger LOGGER = Loggers.get(WebhookDispatcher.class);
+  private static final String THREAD_NAME_FORMAT = "Webhooks-%d";
+
+  static final String THREADS_PROPERTY = "sonar.internal.webhooks.threads";
+  static final String QUEUE_SIZE_PROPERTY = "sonar.internal.webhooks.queueSize";
+  static final String MAX_CALLS_PER_HOST_PROPERTY = "sonar.internal.webhooks.maxConcurrentCallsPerHost";
+  static final String MAX_ATTEMPTS_PROPERTY = "sonar.internal.webhooks.maxAttempts";
+  static final String RETRY_DELAY_PROPERTY = "sonar.internal.webhooks.retryDelayMs";
+  static final String STOP_TIMEOUT_PROPERTY = "sonar.internal.webhooks.stopTimeoutMs";
+  static final String FLUSH_DELAY_PROPERTY = "sonar.internal.webhooks.flushDelayMs";
+  private static final int DEFAULT_THREADS = 5;
+  private static final int DEFAULT_QUEUE_SIZE = 1_000;
+  private static final int DEFAULT_MAX_CALLS_PER_HOST = 2;
+  private static final int DEFAULT_MAX_ATTEMPTS = 3;
+  private static final long DEFAULT_RETRY_DELAY_MS = 1_000L;
+  private static final long BUSY_HOST_DELAY_MS = 100L;
+  private static final int PERSISTENCE_BATCH_SIZE = 100;
+  private static final long DEFAULT_STOP_TIMEOUT_MS = 10_000L;
+  private static final long DEFAULT_FLUSH_DELAY_MS = 5_000L;
+
+  private final WebhookCaller caller;
+  private final WebhookDeliveryStorage deliveryStorage;
+  private final System2 system;
+  private final int threads;
+  private final int queueSize;
+  private final int maxCallsPerHost;
+  private final int maxAttempts;
+  private final long retryDelayMs;
+  private final long stopTimeoutMs;
+  private final long flushDelayMs;
+  private final AtomicInteger pendingDeliveries = new AtomicInteger(0);
+  private final Map<String, Semaphore> permitsByHost = new ConcurrentHashMap<>();
+  private final BlockingQueue<WebhookDelivery> deliveriesToPersist = new LinkedBlockingQueue<>();
+  /**
+   * Attempts submitted to the executor and not started yet. The tasks returned by
+   * {@link ScheduledThreadPoolExecutor#shutdownNow()} wrap them and can't be unwrapped.
+   */
+  private final Set<Attempt> scheduledAttempts = ConcurrentHashMap.newKeySet();
+
+  private ScheduledThreadPoolExecutor executor;
+
+  public WebhookDispatcher(Settings settings, WebhookCaller caller, WebhookDeliveryStorage deliveryStorage, System2 system) {
+    this.caller = caller;
+    this.deliveryStorage = deliveryStorage;
+    this.system = system;
+    this.threads = settings.hasKey(THREADS_PROPERTY) ? settings.getInt(THREADS_PROPERTY) : DEFAULT_THREADS;
+    this.queueSize = settings.hasKey(QUEUE_SIZE_PROPERTY) ? settings.getInt(QUEUE_SIZE_PROPERTY) : DEFAULT_QUEUE_SIZE;
+    this.maxCallsPerHost = settings.hasKey(MAX_CALLS_PER_HOST_PROPERTY) ? settings.getInt(MAX_CALLS_PER_HOST_PROPERTY) : DEFAULT_MAX_CALLS_PER_HOST;
+    this.maxAttempts = settings.hasKey(MAX_ATTEMPTS_PROPERTY) ? settings.getInt(MAX_ATTEMPTS_PROPERTY) : DEFAULT_MAX_ATTEMPTS;
+    this.retryDelayMs = settings.hasKey(RETRY_DELAY_PROPERTY) ? settings.getLong(RETRY_DELAY_PROPERTY) : DEFAULT_RETRY_DELAY_MS;
+    this.stopTimeoutMs = settings.hasKey(STOP_TIMEOUT_PROPERTY) ? settings.getLong(STOP_TIMEOUT_PROPERTY) : DEFAULT_STOP_TIMEOUT_MS;
+    this.flushDelayMs = settings.hasKey(FLUSH_DELAY_PROPERTY) ? settings.getLong(FLUSH_DELAY_PROPERTY) : DEFAULT_FLUSH_DELAY_MS;
+  }
+
+  @Override
+  public void start() {
+    executor = new ScheduledThreadPoolExecutor(threads, new ThreadFactoryBuilder()
+      .setNameFormat(THREAD_NAME_FORMAT)
+      .setDaemon(true)
+      .build());
+    // periodic tasks are cancelled by shutdown(), so this one does not delay stop()
+    executor.scheduleWithFixedDelay(() -> persistCompletedDeliveries(Integer.MAX_VALUE), flushDelayMs, flushDelayMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Waits for the calls in progress and for the scheduled retries, which are not retried again, then persists
+   * all the completed deliveries. The deliveries still scheduled after the timeout are persisted as failed.
+   */
+  @Override
+  public void stop() {
+    if (executor != null) {
+      executor.shutdown();
+      try {
+        if (!executor.awaitTermination(stopTimeoutMs, TimeUnit.MILLISECONDS)) {
+          LOGGER.warn("Webhook deliveries not completed within {}ms are cancelled", stopTimeoutMs);
+        }
+      } catch (InterruptedException e) {
+        LOGGER.warn("Interrupted while waiting for webhook deliveries to complete", e);
+        Thread.currentThread().interrupt();
+      }
+      executor.shutdownNow();
+      cancelScheduledAttempts();
+    }
+    persistCompletedDeliveries(Integer.MAX_VALUE);
+  }
+
+  private void cancelScheduledAttempts() {
+    for (Attempt attempt : new ArrayList<>(scheduledAttempts)) {
+      if (scheduledAttempts.remove(attempt)) {
+        attempt.cancel(new IllegalStateException("Webhook delivery cancelled because the server is stopping"));
+      }
+    }
+  }
+
+  /**
+   * Does not wait for the webhook to be called. The resulting {@link WebhookDelivery} is persisted
+   * once completed.
+   */
+  public void dispatch(Webhook webhook, WebhookPayload payload) {
+    if (pendingDeliveries.incrementAndGet() > queueSize) {
+      LOGGER.warn("Webhook '{}' is not sent because too many deliveries are pending | url={}", webhook.getName(), webhook.getUrl());
+      complete(new WebhookDelivery.Builder()
+        .setWebhook(webhook)
+        .setPayload(payload)
+        .setAt(system.now())
+        .setError(new IllegalStateException("Too many pending webhook deliveries, limit is " + queueSize))
+        .build());
+      return;
+    }
+    Attempt attempt = new Attempt(webhook, payload, 1, null);
+    scheduledAttempts.add(attempt);
+    try {
+      executor.execute(attempt);
+    } catch (RejectedExecutionException e) {
+      scheduledAttempts.remove(attempt);
+      attempt.cancel(e);
+    }
+  }
+
+  private class Attempt implements Runnable {
+    private final Webhook webhook;
+    private final WebhookPayload payload;
+    private final int number;
+    @Nullable
+    private final WebhookDelivery previousDelivery;
+
+    Attempt(Webhook webhook, WebhookPayload payload, int number, @Nullable WebhookDelivery previousDelivery) {
+      this.webhook = webhook;
+      this.payload = payload;
+      this.number = number;
+      this.previousDelivery = previousDelivery;
+    }
+
+    @Override
+    public void run() {
+      if (!scheduledAttempts.remove(this)) {
+        // already cancelled by stop()
+        return;
+      }
+      Semaphore hostPermits = permitsByHost.computeIfAbsent(hostOf(webhook.getUrl()), h -> new Semaphore(maxCallsPerHost));
+      if (!hostPermits.tryAcquire()) {
+        // do not block the thread, so that the other hosts are still served
+        reschedule(this, BUSY_HOST_DELAY_MS);
+        return;
+      }
+      WebhookDelivery delivery;
+      try {
+        delivery = caller.call(webhook, payload);
+      } catch (RuntimeException e) {
+        delivery = new WebhookDelivery.Builder()
+          .setWebhook(webhook)
+          .setPayload(payload)
+          .setAt(system.now())
+          .setError(e)
+          .build();
+      } finally {
+        hostPermits.release();
+      }
+
+      if (number < maxAttempts && !executor.isShutdown() && isRetryable(delivery)) {
+        long delayMs = retryDelayMs << (number - 1);
+        LOGGER.debug("Retry webhook '{}' in {}ms | url={} | attempt={}", webhook.getName(), delayMs, webhook.getUrl(), number + 1);
+        reschedule(new Attempt(webhook, payload, number + 1, delivery), delayMs);
+      } else {
+        complete(delivery);
+      }
+    }
+
+    private void reschedule(Attempt attempt, long delayMs) {
+      scheduledAttempts.add(attempt);
+      try {
+        executor.schedule(attempt, delayMs, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        // stopping
+        scheduledAttempts.remove(attempt);
+        attempt.cancel(e);
+      }
+    }
+
+    /**
+     * Completes the delivery without calling the webhook. The failure of the previous attempt, if any,
+     * is kept.
+     */
+    void cancel(Exception cause) {
+      complete(previousDelivery != null ? previousDelivery : new WebhookDelivery.Builder()
+        .setWebhook(webhook)
+        .setPayload(payload)
+        .setAt(system.now())
+        .setError(cause)
+        .build());
+    }
+  }
+
+  private static boolean isRetryable(WebhookDelivery delivery) {
+    return delivery.getError().isPresent() || delivery.getHttpStatus().map(status -> status >= 500).orElse(false);
+  }
+
+  private static String hostOf(String url) {
+    HttpUrl httpUrl = HttpUrl.parse(url);
+    return httpUrl == null ? url : (httpUrl.host() + ":" + httpUrl.port());
+  }
+
+  private void complete(WebhookDelivery delivery) {
+    log(delivery);
+    deliveriesToPersist.add(delivery);
+    int pending = pendingDeliveries.decrementAndGet();
+    if (pending <= 0 || deliveriesToPersist.size() >= PERSISTENCE_BATCH_SIZE) {
+      persistCompletedDeliveries(PERSISTENCE_BATCH_SIZE);
+    }
+  }
+
+  private void persistCompletedDeliveries(int maxDeliveries) {
+    List<WebhookDelivery> deliveries = new ArrayList<>();
+    deliveriesToPersist.drainTo(deliveries, maxDeliveries);
+    if (deliveries.isEmpty()) {
+      return;
+    }
+    try {
+      deliveryStorage.persist(deliveries);
+    } catch (RuntimeException e) {
+      LOGGER.error("Fail to persist {} webhook deliveries", deliveries.size(), e);
+    }
+  }
+
+  private static void log(WebhookDelivery delivery) {
+    Optional<String> error = delivery.getErrorMessage();
+    if (error.isPresent()) {
+      LOGGER.debug("Failed to send webhook '{}' | url={} | message={}",
+        delivery.getWebhook().getName(), delivery.getWebhook().getUrl(), error.get());
+    } else {
+      LOGGER.debug("Sent webhook '{}' | url={} | time={}ms | status={}",
+        delivery.getWebhook().getName(), delivery.getWebhook().getUrl(), delivery.getDurationInMs().orElse(-1), delivery.getHttpStatus().orElse(-1));
+    }
+  }
+}
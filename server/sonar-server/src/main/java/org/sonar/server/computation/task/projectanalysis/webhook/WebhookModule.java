@@ -24,9 +24,6 @@ import org.sonar.core.platform.Module;
 public class WebhookModule extends Module {
   @Override
   protected void configureModule() {
-    add(
-      WebhookCallerImpl.class,
-      WebhookDeliveryStorage.class,
-      WebhookPostTask.class);
+    add(WebhookPostTask.class);
   }
 }
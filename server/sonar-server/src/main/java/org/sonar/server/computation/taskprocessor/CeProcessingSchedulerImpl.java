@@ -31,24 +31,41 @@ import org.picocontainer.Startable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.computation.configuration.CeConfiguration;
+import org.sonar.server.computation.queue.PendingTaskNotifier;
 
 import static com.google.common.util.concurrent.Futures.addCallback;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
-public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startable {
+/**
+ * Chains the executions of the workers. A worker which did not find any task waits for the polling delay
+ * before checking the queue again, unless it is woken up earlier by {@link PendingTaskNotifier}.
+ * <p>
+ * Tasks submitted by the Web Server are not notified, so right after a worker processed a task, the queue
+ * is polled with shorter delays, which double up to the polling delay. Analyses tend to be submitted in
+ * bursts, so the next ones are picked up sooner without polling more often when the queue is idle.
+ * </p>
+ */
+public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startable, PendingTaskNotifier.Listener {
   private static final Logger LOG = Loggers.get(CeProcessingSchedulerImpl.class);
+  /**
+   * Number of polls with a shorter delay after a task is processed. The first one waits for 1/8 of the polling delay.
+   */
+  private static final int SHORT_DELAY_POLLS = 3;
 
   private final CeProcessingSchedulerExecutorService executorService;
   private final CeWorkerCallable workerRunnable;
+  private final PendingTaskNotifier pendingTaskNotifier;
 
   private final long delayBetweenTasks;
   private final TimeUnit timeUnit;
   private final ChainingCallback[] chainingCallbacks;
 
   public CeProcessingSchedulerImpl(CeConfiguration ceConfiguration,
-    CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerCallable workerRunnable) {
+    CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerCallable workerRunnable,
+    PendingTaskNotifier pendingTaskNotifier) {
     this.executorService = processingExecutorService;
     this.workerRunnable = workerRunnable;
+    this.pendingTaskNotifier = pendingTaskNotifier;
 
     this.delayBetweenTasks = ceConfiguration.getQueuePollingDelay();
     this.timeUnit = MILLISECONDS;
@@ -69,33 +86,57 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
   public void startScheduling() {
     for (ChainingCallback chainingCallback : chainingCallbacks) {
       ListenableScheduledFuture<Boolean> future = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
+      chainingCallback.setIdle(future);
       addCallback(future, chainingCallback, executorService);
     }
+    pendingTaskNotifier.addListener(this);
   }
 
   @Override
   public void stop() {
+    pendingTaskNotifier.removeListener(this);
     for (ChainingCallback chainingCallback : chainingCallbacks) {
       chainingCallback.stop();
     }
   }
 
+  /**
+   * Wakes up at most {@code count} idle workers.
+   */
+  @Override
+  public void onPendingTasks(int count) {
+    int remaining = count;
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      if (remaining == 0) {
+        return;
+      }
+      if (chainingCallback.wakeUp()) {
+        remaining--;
+      }
+    }
+  }
+
   private class ChainingCallback implements FutureCallback<Boolean> {
     private final AtomicBoolean keepRunning = new AtomicBoolean(true);
+    private final AtomicBoolean idle = new AtomicBoolean(false);
+    private int emptyPollsSinceLastTask = SHORT_DELAY_POLLS;
     @CheckForNull
-    private ListenableFuture<Boolean> workerFuture;
+    private volatile ListenableFuture<Boolean> workerFuture;
 
     @Override
     public void onSuccess(@Nullable Boolean result) {
+      idle.set(false);
       if (result != null && result) {
+        emptyPollsSinceLastTask = 0;
         chainWithoutDelay();
       } else {
-        chainWithDelay();
+        chainWithDelay(nextPollingDelay());
       }
     }
 
     @Override
     public void onFailure(Throwable t) {
+      idle.set(false);
       if (t instanceof Error) {
         LOG.error("Compute Engine execution failed. Scheduled processing interrupted.", t);
       } else {
@@ -110,13 +151,38 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       addCallback();
     }
 
-    private void chainWithDelay() {
+    private void chainWithDelay(long delay) {
       if (keepRunning()) {
-        workerFuture = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
+        setIdle(executorService.schedule(workerRunnable, delay, timeUnit));
       }
       addCallback();
     }
 
+    private long nextPollingDelay() {
+      long delay = delayBetweenTasks >> (SHORT_DELAY_POLLS - emptyPollsSinceLastTask);
+      emptyPollsSinceLastTask = Math.min(emptyPollsSinceLastTask + 1, SHORT_DELAY_POLLS);
+      return delay;
+    }
+
+    private void setIdle(ListenableFuture<Boolean> delayedWorkerFuture) {
+      this.workerFuture = delayedWorkerFuture;
+      this.idle.set(true);
+    }
+
+    /**
+     * Cancels the delayed execution of an idle worker. Cancellation is reported to {@link #onFailure(Throwable)}
+     * which submits the worker without delay.
+     *
+     * @return {@code true} if the worker was idle and has been woken up
+     */
+    private boolean wakeUp() {
+      if (!keepRunning() || !idle.compareAndSet(true, false)) {
+        return false;
+      }
+      ListenableFuture<Boolean> future = workerFuture;
+      return future != null && future.cancel(false);
+    }
+
     private void addCallback() {
       if (workerFuture != null && keepRunning()) {
         Futures.addCallback(workerFuture, this, executorService);
@@ -21,6 +21,8 @@ package org.sonar.server.es;
 
 import com.google.common.base.Throwables;
 import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -28,6 +30,8 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import org.picocontainer.Startable;
 
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+
 public abstract class BaseIndexer implements Startable {
 
   private final ThreadPoolExecutor executor;
@@ -36,6 +40,7 @@ public abstract class BaseIndexer implements Startable {
   private final String dateFieldName;
   protected final EsClient esClient;
   private volatile long lastUpdatedAt = -1L;
+  private final ConcurrentMap<String, ProjectIndexing> projectIndexings = new ConcurrentHashMap<>();
 
   protected BaseIndexer(EsClient client, long threadKeepAliveSeconds, String indexName, String typeName,
     String dateFieldName) {
@@ -66,6 +71,54 @@ public abstract class BaseIndexer implements Startable {
     }
   }
 
+  /**
+   * Whether the type does not contain any documents. Otherwise the date of the last indexed document is kept,
+   * so that it is not requested again by the next call to {@link #index(IndexerTask)}.
+   */
+  public boolean isEmpty() {
+    long maxUpdatedAt = esClient.getMaxFieldValue(indexName, typeName, dateFieldName);
+    if (maxUpdatedAt <= 0L) {
+      return true;
+    }
+    lastUpdatedAt = maxUpdatedAt;
+    return false;
+  }
+
+  /**
+   * Indexes the documents of a project. Contrary to {@link #index(IndexerTask)}, the task is executed by the
+   * calling thread, so that different projects are indexed in parallel. Requests on the same project are
+   * serialized, and the ones waiting while the project is being indexed are coalesced into a single execution.
+   * The date of the last indexed document is kept per project.
+   *
+   * @param projectFieldName field of the project UUID in the indexed documents, used to get the date of the last
+   *                         document of the project that was indexed before startup
+   */
+  protected void indexProject(String projectUuid, String projectFieldName, IndexerTask task) {
+    long requestedAt = System.currentTimeMillis();
+    ProjectIndexing indexing = projectIndexings.computeIfAbsent(projectUuid, uuid -> new ProjectIndexing());
+    synchronized (indexing) {
+      if (indexing.lastStartedAt > requestedAt) {
+        // an indexing which started after this request completed while waiting for the lock
+        return;
+      }
+      long startedAt = System.currentTimeMillis();
+      if (indexing.lastUpdatedAt == -1L) {
+        indexing.lastUpdatedAt = esClient.getMaxFieldValue(indexName, typeName, dateFieldName, termQuery(projectFieldName, projectUuid));
+      }
+      long l = task.index(indexing.lastUpdatedAt);
+      // l can be 0 if no documents were indexed
+      indexing.lastUpdatedAt = Math.max(l, indexing.lastUpdatedAt);
+      indexing.lastStartedAt = startedAt;
+    }
+  }
+
+  /**
+   * Forgets the date of the last indexed document of the project, for example when its documents are deleted
+   */
+  protected void resetProject(String projectUuid) {
+    projectIndexings.remove(projectUuid);
+  }
+
   public void index() {
     index(this::doIndex);
   }
@@ -82,6 +135,11 @@ public abstract class BaseIndexer implements Startable {
     executor.shutdown();
   }
 
+  private static class ProjectIndexing {
+    private long lastUpdatedAt = -1L;
+    private long lastStartedAt = -1L;
+  }
+
   @FunctionalInterface
   public interface IndexerTask {
     long index(long lastUpdatedAt);
@@ -20,25 +20,23 @@
 package org.sonar.server.es;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Maps;
-import java.util.Map;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequest;
-import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
-import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequestBuilder;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequestBuilder;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
-import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHitField;
 import org.elasticsearch.search.sort.SortOrder;
@@ -52,7 +50,11 @@ import static java.lang.String.format;
 /**
  * Helper to bulk requests in an efficient way :
  * <ul>
- *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
+ *   <li>bulk request is sent on the wire when its size is higher than a threshold, 1Mb at startup, which
+ *   is adapted to the latency of requests, unless it is fixed with {@link #setFlushByteSize(long)}</li>
+ *   <li>bulk requests are executed concurrently. Concurrency is adapted to the latency of requests and to
+ *   rejections, see {@link BulkThrottle}</li>
+ *   <li>throughput is recorded in {@link EsClient#getBulkIndexerStats(String)}</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
  *   <li>index refresh is optional (enabled by default)</li>
  * </ul>
@@ -61,19 +63,22 @@ public class BulkIndexer implements Startable {
 
   private static final Logger LOGGER = Loggers.get(BulkIndexer.class);
   private static final long FLUSH_BYTE_SIZE = new ByteSizeValue(1, ByteSizeUnit.MB).bytes();
-  private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
   private static final String ALREADY_STARTED_MESSAGE = "Bulk indexing is already started";
+  private static final int DELETION_SCROLL_SIZE = 1_000;
 
   private final EsClient client;
   private final String indexName;
-  private boolean large = false;
+  private LargeIndexingSettings largeIndexingSettings = null;
   private long flushByteSize = FLUSH_BYTE_SIZE;
+  private boolean adaptiveFlushByteSize = true;
   private BulkRequestBuilder bulkRequest = null;
-  private Map<String, Object> largeInitialSettings = null;
   private final AtomicLong counter = new AtomicLong(0L);
   private final int concurrentRequests;
-  private final Semaphore semaphore;
+  private final int maxConcurrentRequests;
+  private final BulkIndexerStats stats;
   private final ProgressLogger progress;
+  private BulkThrottle throttle;
+  private long startedAt;
 
   public BulkIndexer(EsClient client, String indexName) {
     this.client = client;
@@ -82,8 +87,11 @@ public class BulkIndexer implements Startable {
       .setPluralLabel("requests");
 
     // see https://jira.sonarsource.com/browse/SONAR-8075
-    this.concurrentRequests = Math.max(1, Runtime.getRuntime().availableProcessors() / 5);
-    this.semaphore = new Semaphore(concurrentRequests);
+    // Concurrency starts low, then grows as long as Elasticsearch is responsive.
+    int processors = Runtime.getRuntime().availableProcessors();
+    this.concurrentRequests = Math.max(1, processors / 5);
+    this.maxConcurrentRequests = Math.max(1, processors / 2);
+    this.stats = client.getBulkIndexerStats(indexName);
   }
 
   /**
@@ -92,45 +100,35 @@ public class BulkIndexer implements Startable {
    */
   public BulkIndexer setLarge(boolean b) {
     Preconditions.checkState(bulkRequest == null, ALREADY_STARTED_MESSAGE);
-    this.large = b;
+    this.largeIndexingSettings = b ? new LargeIndexingSettings(client, indexName) : null;
     return this;
   }
 
+  /**
+   * Fixes the size of bulk requests, which is otherwise adapted to their latency
+   */
   public BulkIndexer setFlushByteSize(long flushByteSize) {
     this.flushByteSize = flushByteSize;
+    this.adaptiveFlushByteSize = false;
     return this;
   }
 
   @Override
   public void start() {
     Preconditions.checkState(bulkRequest == null, ALREADY_STARTED_MESSAGE);
-    if (large) {
-      largeInitialSettings = Maps.newHashMap();
-      Map<String, Object> bulkSettings = Maps.newHashMap();
-      GetSettingsResponse settingsResp = client.nativeClient().admin().indices().prepareGetSettings(indexName).get();
-
-      // deactivate replicas
-      int initialReplicas = Integer.parseInt(settingsResp.getSetting(indexName, IndexMetaData.SETTING_NUMBER_OF_REPLICAS));
-      if (initialReplicas > 0) {
-        largeInitialSettings.put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, initialReplicas);
-        bulkSettings.put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0);
-      }
-
-      // deactivate periodical refresh
-      String refreshInterval = settingsResp.getSetting(indexName, REFRESH_INTERVAL_SETTING);
-      largeInitialSettings.put(REFRESH_INTERVAL_SETTING, refreshInterval);
-      bulkSettings.put(REFRESH_INTERVAL_SETTING, "-1");
-
-      updateSettings(bulkSettings);
+    if (largeIndexingSettings != null) {
+      largeIndexingSettings.apply();
     }
     bulkRequest = client.prepareBulk().setRefresh(false);
+    throttle = new BulkThrottle(concurrentRequests, maxConcurrentRequests, flushByteSize, adaptiveFlushByteSize);
+    startedAt = System.currentTimeMillis();
     counter.set(0L);
     progress.start();
   }
 
   public void add(ActionRequest request) {
     bulkRequest.request().add(request);
-    if (bulkRequest.request().estimatedSizeInBytes() >= flushByteSize) {
+    if (bulkRequest.request().estimatedSizeInBytes() >= throttle.getFlushByteSize()) {
       executeBulk();
     }
   }
@@ -139,18 +137,24 @@ public class BulkIndexer implements Startable {
     searchRequest
       .addSort("_doc", SortOrder.ASC)
       .setScroll(TimeValue.timeValueMinutes(5))
-      .setSize(100)
+      .setSize(DELETION_SCROLL_SIZE)
       // load only doc ids, not _source fields
       .setFetchSource(false);
 
-    // this search is synchronous. An optimization would be to be non-blocking,
-    // but it requires to tracking pending requests in close().
-    // Same semaphore can't be reused because of potential deadlock (requires to acquire
-    // two locks)
+    // Next page of the scroll is requested before converting the current one
+    // into deletions, so that the two are executed in parallel. Scroll requests
+    // are not throttled as they can't be rejected by the bulk queue.
     SearchResponse searchResponse = searchRequest.get();
 
     while (true) {
       SearchHit[] hits = searchResponse.getHits().getHits();
+      String scrollId = searchResponse.getScrollId();
+      if (hits.length == 0) {
+        client.nativeClient().prepareClearScroll().addScrollId(scrollId).get();
+        break;
+      }
+      PlainActionFuture<SearchResponse> nextPage = PlainActionFuture.newFuture();
+      client.prepareSearchScroll(scrollId).setScroll(TimeValue.timeValueMinutes(5)).execute(nextPage);
       for (SearchHit hit : hits) {
         DeleteRequestBuilder deleteRequestBuilder = client.prepareDelete(hit.index(), hit.type(), hit.getId());
         SearchHitField routing = hit.field("_routing");
@@ -159,13 +163,7 @@ public class BulkIndexer implements Startable {
         }
         add(deleteRequestBuilder.request());
       }
-
-      String scrollId = searchResponse.getScrollId();
-      searchResponse = client.prepareSearchScroll(scrollId).setScroll(TimeValue.timeValueMinutes(5)).get();
-      if (hits.length == 0) {
-        client.nativeClient().prepareClearScroll().addScrollId(scrollId).get();
-        break;
-      }
+      searchResponse = nextPage.actionGet();
     }
   }
 
@@ -188,61 +186,73 @@ public class BulkIndexer implements Startable {
       executeBulk();
     }
     try {
-      if (semaphore.tryAcquire(concurrentRequests, 10, TimeUnit.MINUTES)) {
-        semaphore.release(concurrentRequests);
+      if (!throttle.awaitCompletion(10, TimeUnit.MINUTES)) {
+        LOGGER.warn("Elasticsearch bulk requests still being executed after 10 minutes on index {}", indexName);
       }
     } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
       throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes", e);
     }
+    stats.addActiveTime(System.currentTimeMillis() - startedAt);
     progress.stop();
     client.prepareRefresh(indexName).get();
-    if (large) {
-      // optimize lucene segments and revert index settings
-      // Optimization must be done before re-applying replicas:
-      // http://www.elasticsearch.org/blog/performance-considerations-elasticsearch-indexing/
-      client.prepareForceMerge(indexName).get();
-
-      updateSettings(largeInitialSettings);
+    if (largeIndexingSettings != null) {
+      largeIndexingSettings.revert();
     }
     bulkRequest = null;
   }
 
-  private void updateSettings(Map<String, Object> settings) {
-    UpdateSettingsRequestBuilder req = client.nativeClient().admin().indices().prepareUpdateSettings(indexName);
-    req.setSettings(settings);
-    req.get();
-  }
-
   private void executeBulk() {
     final BulkRequestBuilder req = this.bulkRequest;
     this.bulkRequest = client.prepareBulk().setRefresh(false);
-    semaphore.acquireUninterruptibly();
-    req.execute(new BulkResponseActionListener(req));
+    throttle.acquire();
+    req.execute(new BulkResponseActionListener(req, req.request().estimatedSizeInBytes(), System.currentTimeMillis()));
   }
 
   private class BulkResponseActionListener implements ActionListener<BulkResponse> {
     private final BulkRequestBuilder req;
+    private final long byteSize;
+    private final long sentAt;
 
-    BulkResponseActionListener(BulkRequestBuilder req) {
+    BulkResponseActionListener(BulkRequestBuilder req, long byteSize, long sentAt) {
       this.req = req;
+      this.byteSize = byteSize;
+      this.sentAt = sentAt;
     }
 
     @Override
     public void onResponse(BulkResponse response) {
-      semaphore.release();
-      counter.addAndGet(response.getItems().length);
+      try {
+        counter.addAndGet(response.getItems().length);
 
-      for (BulkItemResponse item : response.getItems()) {
-        if (item.isFailed()) {
-          LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+        int rejections = 0;
+        for (BulkItemResponse item : response.getItems()) {
+          if (item.isFailed()) {
+            if (item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+              rejections++;
+            }
+            LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+          }
         }
+        stats.addBulkResponse(response.getItems().length - rejections, byteSize, rejections);
+        throttle.onResponse(System.currentTimeMillis() - sentAt, rejections);
+      } finally {
+        throttle.release();
       }
     }
 
     @Override
     public void onFailure(Throwable e) {
-      semaphore.release();
-      LOGGER.error("Fail to execute bulk index request: " + req, e);
+      try {
+        boolean rejected = ExceptionsHelper.unwrapCause(e) instanceof EsRejectedExecutionException;
+        if (rejected) {
+          stats.addBulkResponse(0, 0L, req.numberOfActions());
+        }
+        throttle.onFailure(rejected);
+        LOGGER.error("Fail to execute bulk index request: " + req, e);
+      } finally {
+        throttle.release();
+      }
     }
   }
 }
@@ -0,0 +1,72 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of the bulk requests sent by {@link BulkIndexer} to an index, since startup.
+ * Rates are computed over the time spent in bulk indexing sessions, not over the uptime.
+ */
+public class BulkIndexerStats {
+
+  private final AtomicLong docs = new AtomicLong();
+  private final AtomicLong bytes = new AtomicLong();
+  private final AtomicLong rejections = new AtomicLong();
+  private final AtomicLong activeMillis = new AtomicLong();
+
+  void addBulkResponse(int docCount, long byteCount, int rejectionCount) {
+    docs.addAndGet(docCount);
+    bytes.addAndGet(byteCount);
+    rejections.addAndGet(rejectionCount);
+  }
+
+  void addActiveTime(long millis) {
+    activeMillis.addAndGet(millis);
+  }
+
+  public long getDocs() {
+    return docs.get();
+  }
+
+  public long getBytes() {
+    return bytes.get();
+  }
+
+  /**
+   * Number of documents rejected by Elasticsearch because its bulk queue was full
+   */
+  public long getRejections() {
+    return rejections.get();
+  }
+
+  public long getDocsPerSecond() {
+    return perSecond(docs.get());
+  }
+
+  public long getBytesPerSecond() {
+    return perSecond(bytes.get());
+  }
+
+  private long perSecond(long count) {
+    long millis = activeMillis.get();
+    return millis == 0L ? 0L : (count * 1_000L / millis);
+  }
+}
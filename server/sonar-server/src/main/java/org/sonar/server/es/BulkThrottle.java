@@ -0,0 +1,144 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.TimeUnit;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+
+/**
+ * Adapts the size and the number of concurrent bulk requests to the responsiveness of Elasticsearch:
+ * <ul>
+ *   <li>both are halved when Elasticsearch rejects documents because its bulk queue is full</li>
+ *   <li>size grows while requests are fast, and shrinks when they are slow</li>
+ *   <li>concurrency grows by one when a round of fast requests succeeded, up to a maximum</li>
+ * </ul>
+ * {@link #acquire()} blocks the caller while the maximum number of concurrent requests is reached, so that
+ * the producer of documents is slowed down when Elasticsearch can't follow.
+ */
+class BulkThrottle {
+
+  static final long MIN_FLUSH_BYTE_SIZE = new ByteSizeValue(256, ByteSizeUnit.KB).bytes();
+  static final long MAX_FLUSH_BYTE_SIZE = new ByteSizeValue(16, ByteSizeUnit.MB).bytes();
+  static final long TARGET_LATENCY_MS = 1_000L;
+
+  private final int maxConcurrency;
+  private final boolean adaptiveFlushByteSize;
+  private int concurrency;
+  private long flushByteSize;
+  private int inFlight = 0;
+  private int fastResponses = 0;
+
+  /**
+   * @param adaptiveFlushByteSize if false, then {@code flushByteSize} is never changed
+   */
+  BulkThrottle(int concurrency, int maxConcurrency, long flushByteSize, boolean adaptiveFlushByteSize) {
+    this.concurrency = concurrency;
+    this.maxConcurrency = Math.max(concurrency, maxConcurrency);
+    this.flushByteSize = flushByteSize;
+    this.adaptiveFlushByteSize = adaptiveFlushByteSize;
+  }
+
+  synchronized int getConcurrency() {
+    return concurrency;
+  }
+
+  synchronized long getFlushByteSize() {
+    return flushByteSize;
+  }
+
+  /**
+   * Waits until a new request can be sent
+   */
+  synchronized void acquire() {
+    boolean interrupted = false;
+    while (inFlight >= concurrency) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    inFlight++;
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Must be called once for each {@link #acquire()}, after {@link #onResponse(long, int)} or {@link #onFailure(boolean)}
+   */
+  synchronized void release() {
+    inFlight--;
+    notifyAll();
+  }
+
+  /**
+   * @return false if requests are still being executed after the timeout
+   */
+  synchronized boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (inFlight > 0) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0L) {
+        return false;
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, remaining);
+    }
+    return true;
+  }
+
+  synchronized void onResponse(long latencyMs, int rejections) {
+    if (rejections > 0) {
+      backOff();
+    } else if (latencyMs > 2 * TARGET_LATENCY_MS) {
+      fastResponses = 0;
+      concurrency = Math.max(1, concurrency - 1);
+      resize(flushByteSize / 2);
+    } else if (latencyMs <= TARGET_LATENCY_MS) {
+      if (latencyMs < TARGET_LATENCY_MS / 2) {
+        resize(flushByteSize * 3 / 2);
+      }
+      fastResponses++;
+      if (fastResponses >= concurrency && concurrency < maxConcurrency) {
+        fastResponses = 0;
+        concurrency++;
+      }
+    }
+  }
+
+  synchronized void onFailure(boolean rejected) {
+    if (rejected) {
+      backOff();
+    }
+  }
+
+  private void backOff() {
+    fastResponses = 0;
+    concurrency = Math.max(1, concurrency / 2);
+    resize(flushByteSize / 2);
+  }
+
+  private void resize(long size) {
+    if (adaptiveFlushByteSize) {
+      flushByteSize = Math.min(MAX_FLUSH_BYTE_SIZE, Math.max(MIN_FLUSH_BYTE_SIZE, size));
+    }
+  }
+}
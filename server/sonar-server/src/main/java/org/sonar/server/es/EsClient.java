@@ -20,6 +20,8 @@
 package org.sonar.server.es;
 
 import java.io.Closeable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequestBuilder;
 import org.elasticsearch.action.admin.cluster.node.stats.NodesStatsRequestBuilder;
 import org.elasticsearch.action.admin.cluster.state.ClusterStateRequestBuilder;
@@ -43,6 +45,7 @@ import org.elasticsearch.action.search.SearchScrollRequestBuilder;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.health.ClusterHealthStatus;
 import org.elasticsearch.common.Priority;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.metrics.max.Max;
@@ -79,11 +82,19 @@ public class EsClient implements Closeable {
   public static final Logger LOGGER = Loggers.get("es");
 
   private final Client nativeClient;
+  private final ConcurrentMap<String, BulkIndexerStats> bulkIndexerStats = new ConcurrentHashMap<>();
 
   public EsClient(Client nativeClient) {
     this.nativeClient = requireNonNull(nativeClient);
   }
 
+  /**
+   * Throughput of bulk indexing on the given index, see {@link BulkIndexer}
+   */
+  public BulkIndexerStats getBulkIndexerStats(String indexName) {
+    return bulkIndexerStats.computeIfAbsent(indexName, name -> new BulkIndexerStats());
+  }
+
   public RefreshRequestBuilder prepareRefresh(String... indices) {
     return new ProxyRefreshRequestBuilder(nativeClient()).setIndices(indices);
   }
@@ -179,9 +190,16 @@ public class EsClient implements Closeable {
   }
 
   public long getMaxFieldValue(String indexName, String typeName, String fieldName) {
+    return getMaxFieldValue(indexName, typeName, fieldName, QueryBuilders.matchAllQuery());
+  }
+
+  /**
+   * Maximum value of the field among the documents matching the query
+   */
+  public long getMaxFieldValue(String indexName, String typeName, String fieldName, QueryBuilder query) {
     SearchRequestBuilder request = prepareSearch(indexName)
       .setTypes(typeName)
-      .setQuery(QueryBuilders.matchAllQuery())
+      .setQuery(query)
       .setSize(0)
       .addAggregation(AggregationBuilders.max("latest").field(fieldName));
 
@@ -22,9 +22,12 @@ package org.sonar.server.es;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.server.component.es.ProjectMeasuresIndexDefinition;
 import org.sonar.server.component.es.ProjectMeasuresIndexer;
+import org.sonar.server.issue.index.IssueIndexDefinition;
 import org.sonar.server.issue.index.IssueIndexer;
 import org.sonar.server.permission.index.PermissionIndexer;
+import org.sonar.server.test.index.TestIndexDefinition;
 import org.sonar.server.test.index.TestIndexer;
 import org.sonar.server.user.index.UserIndexer;
 import org.sonar.server.view.index.ViewIndexer;
@@ -39,6 +42,7 @@ public class IndexerStartupTask {
   private final UserIndexer userIndexer;
   private final ViewIndexer viewIndexer;
   private final ProjectMeasuresIndexer projectMeasuresIndexer;
+  private final PartitionedIndexer partitionedIndexer;
   private final Settings settings;
 
   /**
@@ -48,13 +52,14 @@ public class IndexerStartupTask {
    */
   public IndexerStartupTask(TestIndexer testIndexer, PermissionIndexer permissionIndexer, IssueIndexer issueIndexer,
                             UserIndexer userIndexer, ViewIndexer viewIndexer, ProjectMeasuresIndexer projectMeasuresIndexer,
-                            Settings settings) {
+                            PartitionedIndexer partitionedIndexer, Settings settings) {
     this.testIndexer = testIndexer;
     this.permissionIndexer = permissionIndexer;
     this.issueIndexer = issueIndexer;
     this.userIndexer = userIndexer;
     this.viewIndexer = viewIndexer;
     this.projectMeasuresIndexer = projectMeasuresIndexer;
+    this.partitionedIndexer = partitionedIndexer;
     this.settings = settings;
   }
 
@@ -65,10 +70,10 @@ public class IndexerStartupTask {
       permissionIndexer.indexAllIfEmpty();
 
       LOG.info("Index issues");
-      issueIndexer.index();
+      index(IssueIndexDefinition.INDEX, IssueIndexDefinition.TYPE_ISSUE, issueIndexer, issueIndexer::indexProjects);
 
       LOG.info("Index tests");
-      testIndexer.index();
+      index(TestIndexDefinition.INDEX, TestIndexDefinition.TYPE, testIndexer, testIndexer::indexProjects);
 
       LOG.info("Index users");
       userIndexer.index();
@@ -77,7 +82,20 @@ public class IndexerStartupTask {
       viewIndexer.index();
 
       LOG.info("Index project measures");
-      projectMeasuresIndexer.index();
+      index(ProjectMeasuresIndexDefinition.INDEX_PROJECT_MEASURES, ProjectMeasuresIndexDefinition.TYPE_PROJECT_MEASURES,
+        projectMeasuresIndexer, projectMeasuresIndexer::indexProjects);
+    }
+  }
+
+  /**
+   * All the projects are indexed by partitions when the type is empty, for example after an upgrade, otherwise
+   * only the documents updated since last indexing are indexed.
+   */
+  private void index(String indexName, String typeName, BaseIndexer indexer, PartitionedIndexer.PartitionTask fullIndexing) {
+    if (partitionedIndexer.isRequired(indexName, typeName, indexer)) {
+      partitionedIndexer.index(indexName, typeName, fullIndexing);
+    } else {
+      indexer.index();
     }
   }
 
@@ -0,0 +1,77 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+
+/**
+ * Settings of an index which are temporarily changed while it is populated from scratch: replicas and
+ * automatic refresh are disabled, then lucene segments are optimized and the initial settings are
+ * restored at the end.
+ */
+public class LargeIndexingSettings {
+
+  private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
+
+  private final EsClient client;
+  private final String indexName;
+  private Map<String, Object> initialSettings = null;
+
+  public LargeIndexingSettings(EsClient client, String indexName) {
+    this.client = client;
+    this.indexName = indexName;
+  }
+
+  public void apply() {
+    initialSettings = new HashMap<>();
+    Map<String, Object> bulkSettings = new HashMap<>();
+    GetSettingsResponse settingsResp = client.nativeClient().admin().indices().prepareGetSettings(indexName).get();
+
+    // deactivate replicas
+    int initialReplicas = Integer.parseInt(settingsResp.getSetting(indexName, IndexMetaData.SETTING_NUMBER_OF_REPLICAS));
+    if (initialReplicas > 0) {
+      initialSettings.put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, initialReplicas);
+      bulkSettings.put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0);
+    }
+
+    // deactivate periodical refresh
+    String refreshInterval = settingsResp.getSetting(indexName, REFRESH_INTERVAL_SETTING);
+    initialSettings.put(REFRESH_INTERVAL_SETTING, refreshInterval);
+    bulkSettings.put(REFRESH_INTERVAL_SETTING, "-1");
+
+    updateSettings(bulkSettings);
+  }
+
+  public void revert() {
+    // optimize lucene segments and revert index settings
+    // Optimization must be done before re-applying replicas:
+    // http://www.elasticsearch.org/blog/performance-considerations-elasticsearch-indexing/
+    client.prepareForceMerge(indexName).get();
+
+    updateSettings(initialSettings);
+  }
+
+  private void updateSettings(Map<String, Object> settings) {
+    client.nativeClient().admin().indices().prepareUpdateSettings(indexName).setSettings(settings).get();
+  }
+}
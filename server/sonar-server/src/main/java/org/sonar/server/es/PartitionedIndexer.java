@@ -0,0 +1,254 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.server.property.InternalProperties;
+
+import static java.lang.String.format;
+
+/**
+ * Full indexing of the documents of all the projects, executed at startup when an index is empty. Projects are
+ * sorted by UUID and split into partitions of consecutive UUIDs, which are indexed concurrently. Each partition is
+ * expected to be indexed with its own DB session and {@link BulkIndexer}.
+ * <p>
+ * The UUID of the last project of the completed partitions, as long as all the previous partitions are completed
+ * too, is recorded in table INTERNAL_PROPERTIES. An indexing interrupted by a crash is resumed at next startup
+ * from the projects which UUID is greater than this checkpoint. Projects created since the first startup are
+ * indexed by their analysis, whatever their UUID.
+ * </p>
+ */
+public class PartitionedIndexer {
+
+  /**
+   * Number of partitions indexed concurrently, so number of DB connections in use
+   */
+  static final String THREADS_PROPERTY = "sonar.internal.es.reindex.threads";
+
+  @VisibleForTesting
+  static final String CHECKPOINT_PREFIX = "es.reindex.";
+
+  private static final Logger LOG = Loggers.get(PartitionedIndexer.class);
+  private static final int MAX_THREADS = 8;
+  private static final int MAX_PARTITION_SIZE = 100;
+  private static final int PARTITIONS_PER_THREAD = 4;
+  private static final String STARTED = "STARTED";
+  private static final char CHECKPOINT_SEPARATOR = ':';
+
+  private final DbClient dbClient;
+  private final EsClient esClient;
+  private final InternalProperties internalProperties;
+  private final Settings settings;
+
+  public PartitionedIndexer(DbClient dbClient, EsClient esClient, InternalProperties internalProperties, Settings settings) {
+    this.dbClient = dbClient;
+    this.esClient = esClient;
+    this.internalProperties = internalProperties;
+    this.settings = settings;
+  }
+
+  /**
+   * Full indexing is required if the previous full indexing was not completed, or if the type of the
+   * given indexer does not have any documents.
+   */
+  public boolean isRequired(String indexName, String typeName, BaseIndexer indexer) {
+    return readCheckpoint(indexName, typeName).isPresent() || indexer.isEmpty();
+  }
+
+  public void index(String indexName, String typeName, PartitionTask task) {
+    String checkpointKey = checkpointKey(indexName, typeName);
+    Optional<String> checkpointValue = readCheckpoint(indexName, typeName);
+    List<String> projectUuids = selectProjectUuidsToIndex(checkpointValue.flatMap(PartitionedIndexer::toLastIndexedUuid));
+    if (projectUuids.isEmpty()) {
+      // nothing to index, for example on a fresh install
+      if (checkpointValue.isPresent()) {
+        internalProperties.write(checkpointKey, null);
+      }
+      return;
+    }
+    if (checkpointValue.isPresent()) {
+      LOG.info("Resume indexing of {}/{}", indexName, typeName);
+    } else {
+      internalProperties.write(checkpointKey, STARTED);
+    }
+
+    int threads = getThreads();
+    List<Partition> partitions = partition(projectUuids, threads);
+    Checkpoint checkpoint = new Checkpoint(checkpointKey, partitions);
+
+    // replicas and periodical refresh are disabled during the whole indexing, not for each partition
+    LargeIndexingSettings largeIndexingSettings = new LargeIndexingSettings(esClient, indexName);
+    largeIndexingSettings.apply();
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("PartitionedIndexer-" + indexName + "-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < partitions.size(); i++) {
+        int partitionIndex = i;
+        futures.add(executor.submit(() -> {
+          task.index(partitions.get(partitionIndex).getProjectUuids());
+          checkpoint.complete(partitionIndex);
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(format("Indexing of %s/%s has been interrupted", indexName, typeName), e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(format("Fail to index %s/%s", indexName, typeName), e.getCause());
+    } finally {
+      executor.shutdownNow();
+      largeIndexingSettings.revert();
+    }
+    internalProperties.write(checkpointKey, null);
+  }
+
+  private List<String> selectProjectUuidsToIndex(Optional<String> lastIndexedUuid) {
+    List<String> uuids = new ArrayList<>();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      for (ComponentDto project : dbClient.componentDao().selectProjects(dbSession)) {
+        String uuid = project.uuid();
+        if (!lastIndexedUuid.isPresent() || uuid.compareTo(lastIndexedUuid.get()) > 0) {
+          uuids.add(uuid);
+        }
+      }
+    }
+    Collections.sort(uuids);
+    return uuids;
+  }
+
+  /**
+   * @param sortedUuids sorted UUIDs of projects
+   */
+  @VisibleForTesting
+  static List<Partition> partition(List<String> sortedUuids, int threads) {
+    int size = Math.max(1, Math.min(MAX_PARTITION_SIZE, sortedUuids.size() / (threads * PARTITIONS_PER_THREAD)));
+    List<Partition> partitions = new ArrayList<>();
+    for (int from = 0; from < sortedUuids.size(); from += size) {
+      partitions.add(new Partition(new ArrayList<>(sortedUuids.subList(from, Math.min(from + size, sortedUuids.size())))));
+    }
+    return partitions;
+  }
+
+  private int getThreads() {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    if (threads <= 0) {
+      threads = Math.min(MAX_THREADS, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+    return threads;
+  }
+
+  /**
+   * @return empty if no full indexing is in progress
+   */
+  private Optional<String> readCheckpoint(String indexName, String typeName) {
+    return internalProperties.read(checkpointKey(indexName, typeName)).filter(value -> !value.isEmpty());
+  }
+
+  /**
+   * @return the UUID of the last project indexed by the completed partitions, if any
+   */
+  private static Optional<String> toLastIndexedUuid(String checkpointValue) {
+    int separator = checkpointValue.indexOf(CHECKPOINT_SEPARATOR);
+    if (separator < 0) {
+      return Optional.empty();
+    }
+    return Optional.of(checkpointValue.substring(separator + 1));
+  }
+
+  private static String checkpointKey(String indexName, String typeName) {
+    return CHECKPOINT_PREFIX + indexName + "." + typeName;
+  }
+
+  @FunctionalInterface
+  public interface PartitionTask {
+    /**
+     * Indexes all the documents of the given projects. Method is called concurrently by several threads.
+     */
+    void index(List<String> projectUuids);
+  }
+
+  /**
+   * Consecutive project UUIDs
+   */
+  @VisibleForTesting
+  static class Partition {
+    private final List<String> projectUuids;
+
+    private Partition(List<String> projectUuids) {
+      this.projectUuids = projectUuids;
+    }
+
+    List<String> getProjectUuids() {
+      return projectUuids;
+    }
+
+    String getLastUuid() {
+      return projectUuids.get(projectUuids.size() - 1);
+    }
+  }
+
+  /**
+   * Partitions are completed in any order. The checkpoint moves forward only when the partitions which precede
+   * the completed one are completed too, so that all the projects before the checkpoint are indexed.
+   */
+  private class Checkpoint {
+    private final String key;
+    private final List<Partition> partitions;
+    private final boolean[] completed;
+    private int firstNotCompleted = 0;
+
+    Checkpoint(String key, List<Partition> partitions) {
+      this.key = key;
+      this.partitions = partitions;
+      this.completed = new boolean[partitions.size()];
+    }
+
+    synchronized void complete(int partitionIndex) {
+      completed[partitionIndex] = true;
+      int previous = firstNotCompleted;
+      while (firstNotCompleted < completed.length && completed[firstNotCompleted]) {
+        firstNotCompleted++;
+      }
+      if (firstNotCompleted > previous) {
+        internalProperties.write(key, STARTED + CHECKPOINT_SEPARATOR + partitions.get(firstNotCompleted - 1).getLastUuid());
+      }
+    }
+  }
+}
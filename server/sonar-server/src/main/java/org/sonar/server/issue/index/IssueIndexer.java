@@ -62,7 +62,23 @@ public class IssueIndexer extends BaseIndexer {
   }
 
   public void index(String projectUuid) {
-    super.index(lastUpdatedAt -> doIndex(createBulkIndexer(false), lastUpdatedAt, projectUuid));
+    indexProject(projectUuid, FIELD_ISSUE_PROJECT_UUID, lastUpdatedAt -> doIndex(createBulkIndexer(false), lastUpdatedAt, projectUuid));
+  }
+
+  /**
+   * Indexes all the issues of the given projects, see {@link org.sonar.server.es.PartitionedIndexer}
+   */
+  public void indexProjects(List<String> projectUuids) {
+    BulkIndexer bulk = createBulkIndexer(false);
+    bulk.start();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      for (String projectUuid : projectUuids) {
+        try (IssueResultSetIterator rowIt = IssueResultSetIterator.create(dbClient, dbSession, 0L, projectUuid)) {
+          rowIt.forEachRemaining(issue -> bulk.add(newIndexRequest(issue)));
+        }
+      }
+    }
+    bulk.stop();
   }
 
   /**
@@ -104,6 +120,7 @@ public class IssueIndexer extends BaseIndexer {
       .setQuery(boolQuery().must(termQuery(FIELD_ISSUE_PROJECT_UUID, uuid)));
     bulk.addDeletion(search);
     bulk.stop();
+    resetProject(uuid);
   }
 
   public void deleteByKeys(String projectUuid, List<String> issueKeys) {
@@ -51,6 +51,7 @@ import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTreeQuery;
 import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.measure.MeasureDto;
+import org.sonar.db.measure.MeasureQuery;
 import org.sonar.db.measure.MeasureTreeQuery;
 import org.sonar.db.metric.MetricDto;
 import org.sonar.db.metric.MetricDtoFunctions;
@@ -66,11 +67,14 @@ import static com.google.common.collect.FluentIterable.from;
 import static com.google.common.collect.Sets.newHashSet;
 import static java.lang.String.format;
 import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
 import static java.util.Objects.requireNonNull;
 import static org.sonar.api.utils.Paging.offset;
 import static org.sonar.server.component.ComponentFinder.ParamNames.BASE_COMPONENT_ID_AND_KEY;
 import static org.sonar.server.component.ComponentFinder.ParamNames.DEVELOPER_ID_AND_KEY;
 import static org.sonar.server.measure.ws.ComponentTreeAction.LEAVES_STRATEGY;
+import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_PERIOD_SORT;
+import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_SORT;
 import static org.sonar.server.measure.ws.ComponentTreeAction.STRATEGIES;
 import static org.sonar.server.measure.ws.ComponentTreeAction.WITH_MEASURES_ONLY_METRIC_SORT_FILTER;
 import static org.sonar.server.measure.ws.SnapshotDtoToWsPeriods.snapshotToWsPeriods;
@@ -108,14 +112,16 @@ public class ComponentTreeDataLoader {
       List<ComponentDto> components = searchComponents(dbSession, componentTreeQuery);
       List<MetricDto> metrics = searchMetrics(dbSession, wsRequest);
       List<WsMeasures.Period> periods = snapshotToWsPeriods(baseSnapshot.get());
-      Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = searchMeasuresByComponentUuidAndMetric(dbSession, baseComponent, componentTreeQuery, components,
-        metrics, periods, developerId);
+      Table<String, MetricDto, MeasureDto> measuresOfMetricToSort = searchMeasuresOfMetricToSort(dbSession, baseComponent, componentTreeQuery, components,
+        metrics, periods, developerId, wsRequest);
 
-      components = filterComponents(components, measuresByComponentUuidAndMetric, metrics, wsRequest);
-      components = sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
+      components = filterComponents(components, measuresOfMetricToSort, metrics, wsRequest);
+      components = sortComponents(components, wsRequest, metrics, measuresOfMetricToSort);
 
       int componentCount = components.size();
       components = paginateComponents(components, wsRequest);
+      Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = searchMeasuresByComponentUuidAndMetric(dbSession, baseComponent, components,
+        metrics, periods, developerId);
 
       return ComponentTreeData.builder()
         .setBaseComponent(baseComponent)
@@ -176,19 +182,53 @@ public class ComponentTreeDataLoader {
     return metrics;
   }
 
-  private Table<String, MetricDto, MeasureDto> searchMeasuresByComponentUuidAndMetric(DbSession dbSession, ComponentDto baseComponent, ComponentTreeQuery componentTreeQuery,
-    List<ComponentDto> components, List<MetricDto> metrics, List<WsMeasures.Period> periods, @Nullable Long developerId) {
+  /**
+   * Only the measures of the metric used to sort or to filter components are loaded for all the components of the tree.
+   * Empty if components are neither sorted nor filtered by metric.
+   */
+  private Table<String, MetricDto, MeasureDto> searchMeasuresOfMetricToSort(DbSession dbSession, ComponentDto baseComponent, ComponentTreeQuery componentTreeQuery,
+    List<ComponentDto> components, List<MetricDto> metrics, List<WsMeasures.Period> periods, @Nullable Long developerId, ComponentTreeWsRequest wsRequest) {
+    Optional<MetricDto> metricToSort = from(metrics).firstMatch(new MatchMetricKey(wsRequest.getMetricSort()));
+    if (!metricToSort.isPresent() || !isSortedOrFilteredByMetric(wsRequest)) {
+      return HashBasedTable.create();
+    }
 
-    Map<Integer, MetricDto> metricsById = Maps.uniqueIndex(metrics, MetricDtoFunctions.toId());
     MeasureTreeQuery measureQuery = MeasureTreeQuery.builder()
       .setStrategy(MeasureTreeQuery.Strategy.valueOf(componentTreeQuery.getStrategy().name()))
       .setNameOrKeyQuery(componentTreeQuery.getNameOrKeyQuery())
       .setQualifiers(componentTreeQuery.getQualifiers())
       .setPersonId(developerId)
-      .setMetricIds(new ArrayList<>(metricsById.keySet()))
+      .setMetricIds(singletonList(metricToSort.get().getId()))
       .build();
     List<MeasureDto> measureDtos = dbClient.measureDao().selectTreeByQuery(dbSession, baseComponent, measureQuery);
+    return toTable(measureDtos, components, singletonList(metricToSort.get()), periods);
+  }
+
+  private static boolean isSortedOrFilteredByMetric(ComponentTreeWsRequest wsRequest) {
+    List<String> sort = wsRequest.getSort();
+    return componentWithMeasuresOnly(wsRequest) || (sort != null && (sort.contains(METRIC_SORT) || sort.contains(METRIC_PERIOD_SORT)));
+  }
+
+  /**
+   * Measures of all the requested metrics are loaded only for the base component and for the components of the page
+   */
+  private Table<String, MetricDto, MeasureDto> searchMeasuresByComponentUuidAndMetric(DbSession dbSession, ComponentDto baseComponent, List<ComponentDto> components,
+    List<MetricDto> metrics, List<WsMeasures.Period> periods, @Nullable Long developerId) {
+    List<String> componentUuids = new ArrayList<>(components.size() + 1);
+    componentUuids.add(baseComponent.uuid());
+    components.forEach(c -> componentUuids.add(c.uuid()));
+    MeasureQuery measureQuery = MeasureQuery.builder()
+      .setComponentUuids(firstNonNull(baseComponent.projectUuid(), baseComponent.uuid()), componentUuids)
+      .setPersonId(developerId)
+      .setMetricIds(metrics.stream().map(MetricDto::getId).collect(Collectors.toList()))
+      .build();
+    List<MeasureDto> measureDtos = dbClient.measureDao().selectByQuery(dbSession, measureQuery);
+    return toTable(measureDtos, components, metrics, periods);
+  }
 
+  private static Table<String, MetricDto, MeasureDto> toTable(List<MeasureDto> measureDtos, List<ComponentDto> components, List<MetricDto> metrics,
+    List<WsMeasures.Period> periods) {
+    Map<Integer, MetricDto> metricsById = Maps.uniqueIndex(metrics, MetricDtoFunctions.toId());
     Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = HashBasedTable.create(components.size(), metrics.size());
     for (MeasureDto measureDto : measureDtos) {
       measuresByComponentUuidAndMetric.put(
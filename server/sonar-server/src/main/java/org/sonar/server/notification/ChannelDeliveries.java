@@ -0,0 +1,177 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.notification;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.sonar.api.notifications.Notification;
+import org.sonar.api.notifications.NotificationChannel;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Deliveries of notifications, executed by one thread per {@link NotificationChannel}, so that a slow
+ * channel does not delay the others. Deliveries of a channel are executed in the order of submission,
+ * at a maximum rate when {@code maxDeliveriesPerSecond} is positive.
+ * Deliveries which are not started when stopping are cancelled, and their notifications are returned
+ * by {@link #awaitTermination()} so that they can be put back in the queue.
+ * This class is not thread-safe, deliveries are submitted by a single thread.
+ */
+class ChannelDeliveries {
+
+  private static final Logger LOG = Loggers.get(ChannelDeliveries.class);
+  private static final String THREAD_NAME_PREFIX = "sq-notification-channel-";
+
+  private final double maxDeliveriesPerSecond;
+  private final long stopTimeoutMs;
+  private final Map<NotificationChannel, ChannelWorker> workersByChannel = new ConcurrentHashMap<>();
+  private final List<Delivery> pendingDeliveries = new ArrayList<>();
+  private volatile boolean stopped = false;
+
+  ChannelDeliveries(double maxDeliveriesPerSecond, long stopTimeoutMs) {
+    this.maxDeliveriesPerSecond = maxDeliveriesPerSecond;
+    this.stopTimeoutMs = stopTimeoutMs;
+  }
+
+  void submit(Notification notification, String username, NotificationChannel channel) {
+    Future<?> future;
+    if (stopped) {
+      future = Futures.immediateCancelledFuture();
+    } else {
+      ChannelWorker worker = workersByChannel.computeIfAbsent(channel, c -> new ChannelWorker(maxDeliveriesPerSecond));
+      try {
+        future = worker.executor.submit(() -> {
+          if (worker.rateLimiter != null) {
+            worker.rateLimiter.acquire();
+          }
+          NotificationService.deliver(notification, username, channel);
+        });
+      } catch (RejectedExecutionException e) {
+        // stopping
+        future = Futures.immediateCancelledFuture();
+      }
+    }
+    pendingDeliveries.add(new Delivery(notification, future));
+  }
+
+  /**
+   * Waits for all the submitted deliveries to be done
+   *
+   * @return the notifications of which at least one delivery has not been executed because of {@link #stop()}
+   */
+  Collection<Notification> awaitTermination() {
+    try {
+      for (Delivery delivery : pendingDeliveries) {
+        await(delivery.future);
+      }
+    } catch (InterruptedException e) {
+      LOG.warn("Interrupted while waiting for deliveries of notifications");
+      Thread.currentThread().interrupt();
+    }
+    Set<Notification> undelivered = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Delivery delivery : pendingDeliveries) {
+      if (!delivery.future.isDone() || delivery.future.isCancelled()) {
+        undelivered.add(delivery.notification);
+      }
+    }
+    pendingDeliveries.clear();
+    return undelivered;
+  }
+
+  private static void await(Future<?> delivery) throws InterruptedException {
+    try {
+      delivery.get();
+    } catch (CancellationException e) {
+      // not executed because of stop()
+    } catch (ExecutionException e) {
+      // should not occur, failures of deliveries are logged by NotificationService
+      LOG.error("Fail to deliver notification", e);
+    }
+  }
+
+  /**
+   * Waits for the submitted deliveries to be executed, then interrupts the deliveries in progress and
+   * cancels the ones which are not started. Deliveries submitted afterwards are cancelled.
+   */
+  void stop() {
+    stopped = true;
+    for (ChannelWorker worker : workersByChannel.values()) {
+      worker.executor.shutdown();
+    }
+    try {
+      for (ChannelWorker worker : workersByChannel.values()) {
+        worker.executor.awaitTermination(stopTimeoutMs, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException e) {
+      LOG.error("Error during stop of deliveries of notifications", e);
+      Thread.currentThread().interrupt();
+    }
+    for (ChannelWorker worker : workersByChannel.values()) {
+      // tasks returned by shutdownNow() are the futures returned by submit()
+      for (Runnable notStarted : worker.executor.shutdownNow()) {
+        if (notStarted instanceof Future) {
+          ((Future<?>) notStarted).cancel(false);
+        }
+      }
+    }
+  }
+
+  private static class Delivery {
+    private final Notification notification;
+    private final Future<?> future;
+
+    Delivery(Notification notification, Future<?> future) {
+      this.notification = notification;
+      this.future = future;
+    }
+  }
+
+  private static class ChannelWorker {
+    private final ExecutorService executor;
+    @Nullable
+    private final RateLimiter rateLimiter;
+
+    ChannelWorker(double maxDeliveriesPerSecond) {
+      this.executor = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder()
+          .setNameFormat(THREAD_NAME_PREFIX + "%d")
+          .setPriority(Thread.MIN_PRIORITY)
+          .build());
+      this.rateLimiter = maxDeliveriesPerSecond > 0 ? RateLimiter.create(maxDeliveriesPerSecond) : null;
+    }
+  }
+}
@@ -27,8 +27,11 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
 import java.io.IOException;
 import java.io.InvalidClassException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.api.notifications.Notification;
 import org.sonar.api.notifications.NotificationChannel;
@@ -97,13 +100,34 @@ public class DefaultNotificationManager implements NotificationManager {
     }
     notificationQueueDao.delete(notificationDtos);
 
-    return convertToNotification(notificationDtos);
+    return convertToNotification(notificationDtos.get(0));
   }
 
-  private Notification convertToNotification(List<NotificationQueueDto> notifications) {
+  /**
+   * Give the {@code batchSize} oldest notifications of the queue so that they can be processed. They are removed
+   * from the queue. The notifications which can't be read are ignored.
+   */
+  public List<Notification> getFromQueue(int batchSize) {
+    List<NotificationQueueDto> notificationDtos = notificationQueueDao.selectOldest(batchSize);
+    if (notificationDtos.isEmpty()) {
+      return Collections.emptyList();
+    }
+    notificationQueueDao.delete(notificationDtos);
+
+    List<Notification> notifications = new ArrayList<>(notificationDtos.size());
+    for (NotificationQueueDto notificationDto : notificationDtos) {
+      Notification notification = convertToNotification(notificationDto);
+      if (notification != null) {
+        notifications.add(notification);
+      }
+    }
+    return notifications;
+  }
+
+  @CheckForNull
+  private Notification convertToNotification(NotificationQueueDto notification) {
     try {
-      // If batchSize is increased then we should return a list instead of a single element
-      return notifications.get(0).toNotification();
+      return notification.toNotification();
     } catch (InvalidClassException e) {
       // SONAR-4739
       if (!alreadyLoggedDeserializationIssue) {
@@ -21,6 +21,9 @@ package org.sonar.server.notification;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -53,20 +56,33 @@ public class NotificationDaemon implements Startable {
 
   public static final String PROPERTY_DELAY = "sonar.notifications.delay";
   public static final String PROPERTY_DELAY_BEFORE_REPORTING_STATUS = "sonar.notifications.runningDelayBeforeReportingStatus";
+  static final String BATCH_SIZE_PROPERTY = "sonar.internal.notifications.batchSize";
+  static final String MAX_DELIVERIES_PER_SECOND_PROPERTY = "sonar.internal.notifications.maxDeliveriesPerSecondByChannel";
+  static final String STOP_TIMEOUT_PROPERTY = "sonar.internal.notifications.stopTimeoutMs";
+  private static final int DEFAULT_BATCH_SIZE = 100;
+  private static final long DEFAULT_STOP_TIMEOUT_MS = 5_000L;
 
   private final long delayInSeconds;
   private final long delayBeforeReportingStatusInSeconds;
+  private final int batchSize;
+  private final long stopTimeoutMs;
   private final DefaultNotificationManager manager;
   private final NotificationService service;
+  private final ChannelDeliveries deliveries;
 
   private ScheduledExecutorService executorService;
-  private boolean stopping = false;
+  private volatile boolean stopping = false;
 
   public NotificationDaemon(Settings settings, DefaultNotificationManager manager, NotificationService service) {
     this.delayInSeconds = settings.getLong(PROPERTY_DELAY);
     this.delayBeforeReportingStatusInSeconds = settings.getLong(PROPERTY_DELAY_BEFORE_REPORTING_STATUS);
+    this.batchSize = settings.hasKey(BATCH_SIZE_PROPERTY) ? settings.getInt(BATCH_SIZE_PROPERTY) : DEFAULT_BATCH_SIZE;
+    this.stopTimeoutMs = settings.hasKey(STOP_TIMEOUT_PROPERTY) ? settings.getLong(STOP_TIMEOUT_PROPERTY) : DEFAULT_STOP_TIMEOUT_MS;
     this.manager = manager;
     this.service = service;
+    // no limit by default
+    Double maxDeliveriesPerSecond = settings.getDouble(MAX_DELIVERIES_PER_SECOND_PROPERTY);
+    this.deliveries = new ChannelDeliveries(maxDeliveriesPerSecond == null ? 0d : maxDeliveriesPerSecond, stopTimeoutMs);
   }
 
   @Override
@@ -86,15 +102,23 @@ public class NotificationDaemon implements Startable {
     LOG.info("Notification service started (delay {} sec.)", delayInSeconds);
   }
 
+  /**
+   * Notifications of the batch in progress which are not delivered when stopping are put back in the queue,
+   * so they are delivered after restart. Some recipients of these notifications may then be notified twice.
+   */
   @Override
   public void stop() {
     try {
       stopping = true;
       executorService.shutdown();
-      executorService.awaitTermination(5, TimeUnit.SECONDS);
+      executorService.awaitTermination(stopTimeoutMs, TimeUnit.MILLISECONDS);
+      deliveries.stop();
+      // let the batch in progress put back its undelivered notifications in the queue
+      executorService.awaitTermination(stopTimeoutMs, TimeUnit.MILLISECONDS);
     } catch (InterruptedException e) {
       LOG.error("Error during stop of notification service", e);
       Thread.currentThread().interrupt();
+      deliveries.stop();
     }
     LOG.info("Notification service stopped");
   }
@@ -105,10 +129,17 @@ public class NotificationDaemon implements Startable {
     long lastLog = start;
     long notifSentCount = 0;
 
-    Notification notifToSend = manager.getFromQueue();
-    while (notifToSend != null) {
-      service.deliver(notifToSend);
-      notifSentCount++;
+    List<Notification> notifsToSend = manager.getFromQueue(batchSize);
+    while (!notifsToSend.isEmpty()) {
+      for (Notification notifToSend : notifsToSend) {
+        service.deliver(notifToSend, deliveries);
+      }
+      Collection<Notification> undelivered = deliveries.awaitTermination();
+      notifSentCount += notifsToSend.size() - undelivered.size();
+      if (!undelivered.isEmpty()) {
+        LOG.info("{} notifications not delivered because of stop are put back in queue", undelivered.size());
+        manager.scheduleForSending(new ArrayList<>(undelivered));
+      }
       if (stopping) {
         break;
       }
@@ -119,7 +150,7 @@ public class NotificationDaemon implements Startable {
         long spentTimeInMinutes = (now - start) / (60 * 1000);
         log(notifSentCount, remainingNotifCount, spentTimeInMinutes);
       }
-      notifToSend = manager.getFromQueue();
+      notifsToSend = manager.getFromQueue(batchSize);
     }
   }
 
@@ -65,6 +65,19 @@ public class NotificationService {
   }
 
   public void deliver(Notification notification) {
+    dispatch(notification, findRecipients(notification));
+  }
+
+  /**
+   * Same as {@link #deliver(Notification)}, except that deliveries are executed asynchronously by {@code deliveries}
+   */
+  void deliver(Notification notification, ChannelDeliveries deliveries) {
+    for (Map.Entry<String, NotificationChannel> recipient : findRecipients(notification).entries()) {
+      deliveries.submit(notification, recipient.getKey(), recipient.getValue());
+    }
+  }
+
+  private SetMultimap<String, NotificationChannel> findRecipients(Notification notification) {
     final SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
     for (NotificationDispatcher dispatcher : dispatchers) {
       NotificationDispatcher.Context context = new ContextImpl(recipients);
@@ -75,25 +88,29 @@ public class NotificationService {
         LOG.warn(String.format("Unable to dispatch notification %s using %s", notification, dispatcher), e);
       }
     }
-    dispatch(notification, recipients);
+    return recipients;
   }
 
-  private void dispatch(Notification notification, SetMultimap<String, NotificationChannel> recipients) {
+  private static void dispatch(Notification notification, SetMultimap<String, NotificationChannel> recipients) {
     for (Map.Entry<String, Collection<NotificationChannel>> entry : recipients.asMap().entrySet()) {
       String username = entry.getKey();
       Collection<NotificationChannel> userChannels = entry.getValue();
       LOG.debug("For user {} via {}", username, userChannels);
       for (NotificationChannel channel : userChannels) {
-        try {
-          channel.deliver(notification, username);
-        } catch (Exception e) {
-          // catch all exceptions in order to deliver via other channels
-          LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
-        }
+        deliver(notification, username, channel);
       }
     }
   }
 
+  static void deliver(Notification notification, String username, NotificationChannel channel) {
+    try {
+      channel.deliver(notification, username);
+    } catch (Exception e) {
+      // catch all exceptions in order to deliver via other channels
+      LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
+    }
+  }
+
   @VisibleForTesting
   protected List<NotificationDispatcher> getDispatchers() {
     return dispatchers;
@@ -31,6 +31,7 @@ import org.elasticsearch.cluster.health.ClusterHealthStatus;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.server.es.BulkIndexerStats;
 import org.sonar.server.es.EsClient;
 
 import static org.apache.commons.io.FileUtils.byteCountToDisplaySize;
@@ -93,6 +94,11 @@ public class EsMonitor extends BaseMonitorMBean implements EsMonitorMBean {
       attributes.put("Docs", indexStats.getValue().getPrimaries().getDocs().getCount());
       attributes.put("Shards", indexStats.getValue().getShards().length);
       attributes.put("Store Size", byteCountToDisplaySize(indexStats.getValue().getPrimaries().getStore().getSizeInBytes()));
+      BulkIndexerStats bulkStats = esClient.getBulkIndexerStats(indexStats.getKey());
+      attributes.put("Bulk Indexed Docs", bulkStats.getDocs());
+      attributes.put("Bulk Indexing Docs/sec", bulkStats.getDocsPerSecond());
+      attributes.put("Bulk Indexing Bytes/sec", bulkStats.getBytesPerSecond());
+      attributes.put("Bulk Rejections", bulkStats.getRejections());
     }
     return indices;
   }
@@ -0,0 +1,83 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.sonar.server.user.PermissionCache;
+
+/**
+ * Statistics of the cache of permissions shared by the user sessions
+ */
+public class PermissionCacheMonitor extends BaseMonitorMBean implements PermissionCacheMonitorMBean {
+
+  private final PermissionCache permissionCache;
+
+  public PermissionCacheMonitor(PermissionCache permissionCache) {
+    this.permissionCache = permissionCache;
+  }
+
+  @Override
+  public String name() {
+    return "PermissionCache";
+  }
+
+  @Override
+  public double getHitRate() {
+    return permissionCache.getHitRate();
+  }
+
+  @Override
+  public long getHitCount() {
+    return permissionCache.getHitCount();
+  }
+
+  @Override
+  public long getMissCount() {
+    return permissionCache.getMissCount();
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return permissionCache.getEvictionCount();
+  }
+
+  @Override
+  public long getEntryCount() {
+    return permissionCache.getSize();
+  }
+
+  @Override
+  public long getEstimatedMemoryBytes() {
+    return permissionCache.getEstimatedMemoryBytes();
+  }
+
+  @Override
+  public Map<String, Object> attributes() {
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    attributes.put("Hit Rate", getHitRate());
+    attributes.put("Hits", getHitCount());
+    attributes.put("Misses", getMissCount());
+    attributes.put("Evictions", getEvictionCount());
+    attributes.put("Entries", getEntryCount());
+    attributes.put("Estimated Memory (bytes)", getEstimatedMemoryBytes());
+    return attributes;
+  }
+}
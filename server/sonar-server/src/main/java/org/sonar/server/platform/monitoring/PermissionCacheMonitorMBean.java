@@ -0,0 +1,44 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+public interface PermissionCacheMonitorMBean {
+
+  /**
+   * Ratio of the lookups of permissions that were served by the cache, between 0 and 1
+   */
+  double getHitRate();
+
+  long getHitCount();
+
+  long getMissCount();
+
+  /**
+   * Number of entries removed because of the size limit or of expiration
+   */
+  long getEvictionCount();
+
+  long getEntryCount();
+
+  /**
+   * Rough estimation of the heap used by the cached values, in bytes
+   */
+  long getEstimatedMemoryBytes();
+}
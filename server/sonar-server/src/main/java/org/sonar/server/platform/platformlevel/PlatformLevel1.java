@@ -34,7 +34,6 @@ import org.sonar.db.DaoModule;
 import org.sonar.db.DatabaseChecker;
 import org.sonar.db.DbClient;
 import org.sonar.db.DefaultDatabase;
-import org.sonar.db.purge.PurgeProfiler;
 import org.sonar.db.semaphore.SemaphoresImpl;
 import org.sonar.db.version.DatabaseVersion;
 import org.sonar.server.app.ProcessCommandWrapperImpl;
@@ -92,7 +91,6 @@ public class PlatformLevel1 extends PlatformLevel {
       org.sonar.core.persistence.MyBatis.class,
       DatabaseServerCompatibility.class,
       DatabaseVersion.class,
-      PurgeProfiler.class,
       ServerFileSystemImpl.class,
       SemaphoresImpl.class,
       TempFolderCleaner.class,
@@ -114,6 +114,7 @@ import org.sonar.server.platform.PersistentSettings;
 import org.sonar.server.platform.ServerLogging;
 import org.sonar.server.platform.SettingsChangeNotifier;
 import org.sonar.server.platform.monitoring.DatabaseMonitor;
+import org.sonar.server.platform.monitoring.PermissionCacheMonitor;
 import org.sonar.server.platform.monitoring.EsMonitor;
 import org.sonar.server.platform.monitoring.JvmPropsMonitor;
 import org.sonar.server.platform.monitoring.PluginsMonitor;
@@ -214,6 +215,7 @@ import org.sonar.server.user.DefaultUserFinder;
 import org.sonar.server.user.DefaultUserService;
 import org.sonar.server.user.DeprecatedUserFinder;
 import org.sonar.server.user.NewUserNotifier;
+import org.sonar.server.user.PermissionCache;
 import org.sonar.server.user.SecurityRealmFactory;
 import org.sonar.server.user.UserUpdater;
 import org.sonar.server.user.index.UserIndex;
@@ -357,6 +359,7 @@ public class PlatformLevel4 extends PlatformLevel {
       UserIndexer.class,
       UserIndex.class,
       UserUpdater.class,
+      PermissionCache.class,
       UsersWsModule.class,
       UserTokenModule.class,
 
@@ -500,6 +503,7 @@ public class PlatformLevel4 extends PlatformLevel {
       PluginsMonitor.class,
       JvmPropsMonitor.class,
       DatabaseMonitor.class,
+      PermissionCacheMonitor.class,
       MigrateDbAction.class,
       LogsAction.class,
       ChangeLogLevelAction.class,
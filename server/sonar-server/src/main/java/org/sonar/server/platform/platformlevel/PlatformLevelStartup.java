@@ -21,6 +21,7 @@ package org.sonar.server.platform.platformlevel;
 
 import org.sonar.server.app.ProcessCommandWrapper;
 import org.sonar.server.es.IndexerStartupTask;
+import org.sonar.server.es.PartitionedIndexer;
 import org.sonar.server.organization.DefaultOrganizationEnforcer;
 import org.sonar.server.platform.ServerLifecycleNotifier;
 import org.sonar.server.platform.web.RegisterServletFilters;
@@ -51,6 +52,7 @@ public class PlatformLevelStartup extends PlatformLevel {
 
     addIfStartupLeader(
       IndexerStartupTask.class,
+      PartitionedIndexer.class,
       RegisterMetrics.class,
       RegisterQualityGates.class,
       RegisterRules.class,
@@ -23,6 +23,7 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -78,20 +79,23 @@ public class RuleActivator {
 
   public List<ActiveRuleChange> activate(DbSession dbSession, RuleActivation activation, String profileKey) {
     RuleActivatorContext context = contextFactory.create(profileKey, activation.getRuleKey(), dbSession);
-    return doActivate(dbSession, activation, context);
+    return doActivate(dbSession, activation, context, null);
   }
 
   public List<ActiveRuleChange> activate(DbSession dbSession, RuleActivation activation, QProfileName profileName) {
     RuleActivatorContext context = contextFactory.create(profileName, activation.getRuleKey(), dbSession);
-    return doActivate(dbSession, activation, context);
+    return doActivate(dbSession, activation, context, null);
   }
 
   List<ActiveRuleChange> activate(DbSession dbSession, RuleActivation activation, QualityProfileDto profileDto) {
     RuleActivatorContext context = contextFactory.create(profileDto, activation.getRuleKey(), dbSession);
-    return doActivate(dbSession, activation, context);
+    return doActivate(dbSession, activation, context, null);
   }
 
-  private List<ActiveRuleChange> doActivate(DbSession dbSession, RuleActivation activation, RuleActivatorContext context) {
+  /**
+   * @param cache data preloaded by a bulk activation, else {@code null} to read and update profiles one by one
+   */
+  private List<ActiveRuleChange> doActivate(DbSession dbSession, RuleActivation activation, RuleActivatorContext context, @Nullable RuleActivatorCache cache) {
     context.verifyForActivation();
     List<ActiveRuleChange> changes = Lists.newArrayList();
     ActiveRuleChange change;
@@ -136,24 +140,31 @@ public class RuleActivator {
 
     if (change != null) {
       changes.add(change);
-      persist(change, context, dbSession);
+      persist(change, context, dbSession, cache);
     }
 
     if (!stopPropagation) {
-      changes.addAll(cascadeActivation(dbSession, activation, context.profile().getKey()));
+      changes.addAll(cascadeActivation(dbSession, activation, context.profile().getKey(), cache));
     }
 
     if (!changes.isEmpty()) {
-      updateProfileDates(dbSession, context);
+      if (cache == null) {
+        updateProfileDates(dbSession, context);
+      } else {
+        cache.setUpdated(context.profile());
+      }
     }
     return changes;
   }
 
   private void updateProfileDates(DbSession dbSession, RuleActivatorContext context) {
-    QualityProfileDto profile = context.profile();
-    profile.setRulesUpdatedAtAsDate(context.getInitDate());
+    updateProfileDates(dbSession, context.profile(), context.getInitDate());
+  }
+
+  private void updateProfileDates(DbSession dbSession, QualityProfileDto profile, Date date) {
+    profile.setRulesUpdatedAtAsDate(date);
     if (userSession.isLoggedIn()) {
-      profile.setUserUpdatedAt(context.getInitDate().getTime());
+      profile.setUserUpdatedAt(date.getTime());
     }
     db.qualityProfileDao().update(dbSession, profile);
   }
@@ -228,35 +239,40 @@ public class RuleActivator {
     return null;
   }
 
-  private List<ActiveRuleChange> cascadeActivation(DbSession session, RuleActivation activation, String profileKey) {
+  private List<ActiveRuleChange> cascadeActivation(DbSession session, RuleActivation activation, String profileKey, @Nullable RuleActivatorCache cache) {
     List<ActiveRuleChange> changes = Lists.newArrayList();
 
     // get all inherited profiles
-    List<QualityProfileDto> children = db.qualityProfileDao().selectChildren(session, profileKey);
+    List<QualityProfileDto> children = cache == null ? db.qualityProfileDao().selectChildren(session, profileKey) : cache.children(profileKey);
     for (QualityProfileDto child : children) {
       RuleActivation childActivation = new RuleActivation(activation).setCascade(true);
-      changes.addAll(activate(session, childActivation, child.getKey()));
+      if (cache == null) {
+        changes.addAll(activate(session, childActivation, child.getKey()));
+      } else {
+        RuleActivatorContext childContext = contextFactory.create(cache, child.getKey(), activation.getRuleKey());
+        changes.addAll(doActivate(session, childActivation, childContext, cache));
+      }
     }
     return changes;
   }
 
-  private ActiveRuleDto persist(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession) {
+  private ActiveRuleDto persist(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession, @Nullable RuleActivatorCache cache) {
     ActiveRuleDto activeRule = null;
     if (change.getType() == ActiveRuleChange.Type.ACTIVATED) {
-      activeRule = doInsert(change, context, dbSession);
+      activeRule = doInsert(change, context, dbSession, cache);
     } else if (change.getType() == ActiveRuleChange.Type.DEACTIVATED) {
       ActiveRuleDao dao = db.activeRuleDao();
       dao.delete(dbSession, change.getKey());
 
     } else if (change.getType() == ActiveRuleChange.Type.UPDATED) {
-      activeRule = doUpdate(change, context, dbSession);
+      activeRule = doUpdate(change, context, dbSession, cache);
     }
 
     db.qProfileChangeDao().insert(dbSession, change.toDto());
     return activeRule;
   }
 
-  private ActiveRuleDto doInsert(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession) {
+  private ActiveRuleDto doInsert(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession, @Nullable RuleActivatorCache cache) {
     ActiveRuleDto activeRule;
     ActiveRuleDao dao = db.activeRuleDao();
     activeRule = ActiveRuleDto.createFor(context.profile(), context.rule());
@@ -271,17 +287,23 @@ public class RuleActivator {
     activeRule.setUpdatedAt(system2.now());
     activeRule.setCreatedAt(system2.now());
     dao.insert(dbSession, activeRule);
+    if (cache != null) {
+      cache.addActiveRule(activeRule);
+    }
     for (Map.Entry<String, String> param : change.getParameters().entrySet()) {
       if (param.getValue() != null) {
         ActiveRuleParamDto paramDto = ActiveRuleParamDto.createFor(context.ruleParamsByKeys().get(param.getKey()));
         paramDto.setValue(param.getValue());
         dao.insertParam(dbSession, activeRule, paramDto);
+        if (cache != null) {
+          cache.addActiveRuleParam(activeRule, paramDto);
+        }
       }
     }
     return activeRule;
   }
 
-  private ActiveRuleDto doUpdate(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession) {
+  private ActiveRuleDto doUpdate(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession, @Nullable RuleActivatorCache cache) {
     ActiveRuleDao dao = db.activeRuleDao();
     ActiveRuleDto activeRule = context.activeRule();
     if (activeRule != null) {
@@ -304,6 +326,9 @@ public class RuleActivator {
             activeRuleParamDto = ActiveRuleParamDto.createFor(context.ruleParamsByKeys().get(param.getKey()));
             activeRuleParamDto.setValue(param.getValue());
             dao.insertParam(dbSession, activeRule, activeRuleParamDto);
+            if (cache != null) {
+              cache.addActiveRuleParam(activeRule, activeRuleParamDto);
+            }
           }
         } else {
           if (param.getValue() != null) {
@@ -311,6 +336,9 @@ public class RuleActivator {
             dao.updateParam(dbSession, activeRule, activeRuleParamDto);
           } else {
             dao.deleteParam(dbSession, activeRule, activeRuleParamDto);
+            if (cache != null) {
+              cache.removeActiveRuleParam(activeRule, activeRuleParamDto);
+            }
           }
         }
       }
@@ -373,7 +401,7 @@ public class RuleActivator {
     }
     change = ActiveRuleChange.createFor(ActiveRuleChange.Type.DEACTIVATED, key);
     changes.add(change);
-    persist(change, context, dbSession);
+    persist(change, context, dbSession, null);
 
     // get all inherited profiles
     List<QualityProfileDto> profiles = db.qualityProfileDao().selectChildren(dbSession, key.qProfile());
@@ -404,17 +432,22 @@ public class RuleActivator {
     return value;
   }
 
+  /**
+   * Profiles, rules and active rules are loaded once for all the rules matching the query, instead of
+   * once per rule and per profile. Dates of the profiles are updated once.
+   */
   BulkChangeResult bulkActivate(RuleQuery ruleQuery, String profileKey, @Nullable String severity) {
     DbSession dbSession = db.openSession(false);
     BulkChangeResult result = new BulkChangeResult();
     try {
-      Iterator<RuleKey> rules = ruleIndex.searchAll(ruleQuery);
-      while (rules.hasNext()) {
-        RuleKey ruleKey = rules.next();
+      List<RuleKey> ruleKeys = newArrayList(ruleIndex.searchAll(ruleQuery));
+      RuleActivatorCache cache = RuleActivatorCache.load(db, dbSession, profileKey, ruleKeys);
+      for (RuleKey ruleKey : ruleKeys) {
         try {
           RuleActivation activation = new RuleActivation(ruleKey);
           activation.setSeverity(severity);
-          List<ActiveRuleChange> changes = activate(dbSession, activation, profileKey);
+          RuleActivatorContext context = contextFactory.create(cache, profileKey, ruleKey);
+          List<ActiveRuleChange> changes = doActivate(dbSession, activation, context, cache);
           result.addChanges(changes);
           if (!changes.isEmpty()) {
             result.incrementSucceeded();
@@ -426,6 +459,10 @@ public class RuleActivator {
           result.getErrors().add(e.errors());
         }
       }
+      Date now = new Date();
+      for (QualityProfileDto profile : cache.updatedProfiles()) {
+        updateProfileDates(dbSession, profile, now);
+      }
       dbSession.commit();
       activeRuleIndexer.index(result.getChanges());
     } finally {
@@ -0,0 +1,147 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.qualityprofile;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.qualityprofile.ActiveRuleDto;
+import org.sonar.db.qualityprofile.ActiveRuleKey;
+import org.sonar.db.qualityprofile.ActiveRuleParamDto;
+import org.sonar.db.qualityprofile.QualityProfileDto;
+import org.sonar.db.rule.RuleDto;
+import org.sonar.db.rule.RuleParamDto;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Profiles, rules and active rules involved in the bulk activation of rules on a profile. They are loaded
+ * at once, instead of once per rule and per profile of the hierarchy. The cache is kept up-to-date with
+ * the changes persisted by {@link RuleActivator}, so that descendant profiles see the changes of their parent.
+ */
+class RuleActivatorCache {
+
+  private final Map<String, QualityProfileDto> profilesByKey = new HashMap<>();
+  private final ListMultimap<String, QualityProfileDto> childrenByKey = ArrayListMultimap.create();
+  private final Map<RuleKey, RuleDto> rulesByKey = new HashMap<>();
+  private final ListMultimap<Integer, RuleParamDto> ruleParamsByRuleId = ArrayListMultimap.create();
+  private final Map<ActiveRuleKey, ActiveRuleDto> activeRulesByKey = new HashMap<>();
+  private final ListMultimap<Integer, ActiveRuleParamDto> activeRuleParamsByActiveRuleId = ArrayListMultimap.create();
+  private final Map<String, QualityProfileDto> updatedProfilesByKey = new LinkedHashMap<>();
+
+  private RuleActivatorCache() {
+    // use load()
+  }
+
+  /**
+   * Loads the profile, its parent and descendants, the rules and their active rules on these profiles.
+   */
+  static RuleActivatorCache load(DbClient db, DbSession dbSession, String profileKey, Collection<RuleKey> ruleKeys) {
+    RuleActivatorCache cache = new RuleActivatorCache();
+    QualityProfileDto profile = db.qualityProfileDao().selectByKey(dbSession, profileKey);
+    if (profile == null) {
+      // activations fail with "profile not found"
+      return cache;
+    }
+    cache.profilesByKey.put(profile.getKey(), profile);
+    for (QualityProfileDto descendant : db.qualityProfileDao().selectDescendants(dbSession, profileKey)) {
+      cache.profilesByKey.put(descendant.getKey(), descendant);
+      cache.childrenByKey.put(descendant.getParentKee(), descendant);
+    }
+
+    List<RuleDto> rules = db.ruleDao().selectByKeys(dbSession, new ArrayList<>(ruleKeys));
+    List<Integer> ruleIds = rules.stream().map(RuleDto::getId).collect(toList());
+    rules.forEach(rule -> cache.rulesByKey.put(rule.getKey(), rule));
+    db.ruleDao().selectRuleParamsByRuleIds(dbSession, ruleIds).forEach(param -> cache.ruleParamsByRuleId.put(param.getRuleId(), param));
+
+    Set<String> profileKeys = new HashSet<>(cache.profilesByKey.keySet());
+    String parentKey = profile.getParentKee();
+    if (parentKey != null) {
+      profileKeys.add(parentKey);
+    }
+    List<ActiveRuleDto> activeRules = db.activeRuleDao().selectByRuleIdsAndProfileKeys(dbSession, ruleIds, profileKeys);
+    activeRules.forEach(activeRule -> cache.activeRulesByKey.put(activeRule.getKey(), activeRule));
+    List<Integer> activeRuleIds = activeRules.stream().map(ActiveRuleDto::getId).collect(toList());
+    db.activeRuleDao().selectParamsByActiveRuleIds(dbSession, activeRuleIds)
+      .forEach(param -> cache.activeRuleParamsByActiveRuleId.put(param.getActiveRuleId(), param));
+    return cache;
+  }
+
+  @CheckForNull
+  QualityProfileDto profile(String profileKey) {
+    return profilesByKey.get(profileKey);
+  }
+
+  List<QualityProfileDto> children(String profileKey) {
+    return childrenByKey.get(profileKey);
+  }
+
+  @CheckForNull
+  RuleDto rule(RuleKey ruleKey) {
+    return rulesByKey.get(ruleKey);
+  }
+
+  List<RuleParamDto> ruleParams(RuleDto rule) {
+    return ruleParamsByRuleId.get(rule.getId());
+  }
+
+  @CheckForNull
+  ActiveRuleDto activeRule(ActiveRuleKey key) {
+    return activeRulesByKey.get(key);
+  }
+
+  List<ActiveRuleParamDto> activeRuleParams(ActiveRuleDto activeRule) {
+    return activeRuleParamsByActiveRuleId.get(activeRule.getId());
+  }
+
+  void addActiveRule(ActiveRuleDto activeRule) {
+    activeRulesByKey.put(activeRule.getKey(), activeRule);
+  }
+
+  void addActiveRuleParam(ActiveRuleDto activeRule, ActiveRuleParamDto param) {
+    activeRuleParamsByActiveRuleId.put(activeRule.getId(), param);
+  }
+
+  void removeActiveRuleParam(ActiveRuleDto activeRule, ActiveRuleParamDto param) {
+    activeRuleParamsByActiveRuleId.remove(activeRule.getId(), param);
+  }
+
+  /**
+   * Dates of the profile are updated once at the end of the bulk activation
+   */
+  void setUpdated(QualityProfileDto profile) {
+    updatedProfilesByKey.put(profile.getKey(), profile);
+  }
+
+  Collection<QualityProfileDto> updatedProfiles() {
+    return updatedProfilesByKey.values();
+  }
+}
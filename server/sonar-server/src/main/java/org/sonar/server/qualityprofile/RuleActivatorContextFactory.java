@@ -65,6 +65,29 @@ public class RuleActivatorContextFactory {
     return create(ruleKey, session, new RuleActivatorContext().setProfile(profile));
   }
 
+  /**
+   * Same as {@link #create(String, RuleKey, DbSession)}, but data are read from the cache instead of db
+   */
+  RuleActivatorContext create(RuleActivatorCache cache, String profileKey, RuleKey ruleKey) {
+    QualityProfileDto profile = cache.profile(profileKey);
+    if (profile == null) {
+      throw new BadRequestException("Quality profile not found: " + profileKey);
+    }
+    RuleDto rule = cache.rule(ruleKey);
+    if (rule == null) {
+      throw new BadRequestException("Rule not found: " + ruleKey);
+    }
+    RuleActivatorContext context = new RuleActivatorContext().setProfile(profile);
+    context.setRule(rule);
+    context.setRuleParams(cache.ruleParams(rule));
+    initActiveRules(cache, ActiveRuleKey.of(profileKey, ruleKey), context, false);
+    String parentKee = profile.getParentKee();
+    if (parentKee != null) {
+      initActiveRules(cache, ActiveRuleKey.of(parentKee, ruleKey), context, true);
+    }
+    return context;
+  }
+
   private RuleActivatorContext create(RuleKey ruleKey, DbSession session, RuleActivatorContext context) {
     initRule(ruleKey, context, session);
     initActiveRules(context.profile().getKey(), ruleKey, context, session, false);
@@ -100,4 +123,16 @@ public class RuleActivatorContextFactory {
       context.setActiveRuleParams(activeRuleParams);
     }
   }
+
+  private static void initActiveRules(RuleActivatorCache cache, ActiveRuleKey key, RuleActivatorContext context, boolean parent) {
+    ActiveRuleDto activeRule = cache.activeRule(key);
+    Collection<ActiveRuleParamDto> activeRuleParams = activeRule == null ? null : cache.activeRuleParams(activeRule);
+    if (parent) {
+      context.setParentActiveRule(activeRule);
+      context.setParentActiveRuleParams(activeRuleParams);
+    } else {
+      context.setActiveRule(activeRule);
+      context.setActiveRuleParams(activeRuleParams);
+    }
+  }
 }
@@ -25,6 +25,7 @@ import static org.sonar.server.test.index.TestIndexDefinition.INDEX;
 import static org.sonar.server.test.index.TestIndexDefinition.TYPE;
 
 import java.util.Iterator;
+import java.util.List;
 import javax.annotation.Nullable;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
@@ -58,6 +59,22 @@ public class TestIndexer extends BaseIndexer {
     return doIndex(bulk, dbRows);
   }
 
+  /**
+   * Indexes all the tests of the given projects, see {@link org.sonar.server.es.PartitionedIndexer}
+   */
+  public void indexProjects(List<String> projectUuids) {
+    BulkIndexer bulk = new BulkIndexer(esClient, INDEX);
+    bulk.start();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      for (String projectUuid : projectUuids) {
+        try (TestResultSetIterator rowIt = TestResultSetIterator.create(dbClient, dbSession, 0L, projectUuid)) {
+          rowIt.forEachRemaining(row -> row.getUpdateRequests().forEach(bulk::add));
+        }
+      }
+    }
+    bulk.stop();
+  }
+
   @Override
   protected long doIndex(long lastUpdatedAt) {
     return doIndex(lastUpdatedAt, null);
@@ -0,0 +1,152 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.sonar.api.config.Settings;
+import org.sonar.api.server.ServerSide;
+import org.sonar.db.permission.PermissionVersion;
+
+/**
+ * Permissions and groups of users, shared by the {@link ServerUserSession} of all the HTTP requests.
+ * <p>
+ * Entries are keyed by the current {@link PermissionVersion}, which is incremented on each write of permissions,
+ * groups or group memberships, so that entries loaded before a write are not read anymore. Entries also expire after
+ * a configurable delay, which bounds the staleness of the values when the writes are done by another process or are
+ * rolled back. Size of cache is bounded by the total number of values (groups, permissions or projects).
+ * </p>
+ */
+@ServerSide
+public class PermissionCache {
+
+  static final String MAX_VALUES_PROPERTY = "sonar.internal.permissions.cache.maxValues";
+  static final String TTL_SECONDS_PROPERTY = "sonar.internal.permissions.cache.ttlSeconds";
+  static final int DEFAULT_MAX_VALUES = 500_000;
+  static final int DEFAULT_TTL_SECONDS = 60;
+
+  /**
+   * Rough estimation of the heap used by a cached value (reference and short String)
+   */
+  private static final int ESTIMATED_BYTES_PER_VALUE = 80;
+
+  enum Kind {
+    GROUPS, GLOBAL_PERMISSIONS, ORGANIZATION_PERMISSIONS, PROJECT_KEYS, PROJECT_UUIDS
+  }
+
+  private final PermissionVersion permissionVersion;
+  private final Cache<Key, Set<String>> cache;
+
+  public PermissionCache(PermissionVersion permissionVersion, Settings settings) {
+    this.permissionVersion = permissionVersion;
+    int maxValues = settings.hasKey(MAX_VALUES_PROPERTY) ? settings.getInt(MAX_VALUES_PROPERTY) : DEFAULT_MAX_VALUES;
+    int ttlSeconds = settings.hasKey(TTL_SECONDS_PROPERTY) ? settings.getInt(TTL_SECONDS_PROPERTY) : DEFAULT_TTL_SECONDS;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(Math.max(0, maxValues))
+      .weigher((Key key, Set<String> values) -> values.size() + 1)
+      .expireAfterWrite(Math.max(0, ttlSeconds), TimeUnit.SECONDS)
+      .recordStats()
+      .build();
+  }
+
+  /**
+   * Returns the cached values of the given user, or loads and caches them if missing or out-of-date.
+   *
+   * @param login login of user, {@code null} for anonymous
+   * @param param organization uuid or permission, depending on {@code kind}
+   */
+  Set<String> get(@Nullable String login, Kind kind, @Nullable String param, Supplier<Collection<String>> loader) {
+    Key key = new Key(permissionVersion.get(), login, kind, param);
+    Set<String> values = cache.getIfPresent(key);
+    if (values == null) {
+      values = ImmutableSet.copyOf(loader.get());
+      cache.put(key, values);
+    }
+    return values;
+  }
+
+  public long getHitCount() {
+    return cache.stats().hitCount();
+  }
+
+  public long getMissCount() {
+    return cache.stats().missCount();
+  }
+
+  public double getHitRate() {
+    return cache.stats().hitRate();
+  }
+
+  public long getEvictionCount() {
+    return cache.stats().evictionCount();
+  }
+
+  public long getSize() {
+    return cache.size();
+  }
+
+  public long getValueCount() {
+    return cache.asMap().values().stream().mapToLong(Set::size).sum();
+  }
+
+  public long getEstimatedMemoryBytes() {
+    return getValueCount() * ESTIMATED_BYTES_PER_VALUE;
+  }
+
+  private static final class Key {
+    private final long version;
+    @Nullable
+    private final String login;
+    private final Kind kind;
+    @Nullable
+    private final String param;
+
+    private Key(long version, @Nullable String login, Kind kind, @Nullable String param) {
+      this.version = version;
+      this.login = login;
+      this.kind = kind;
+      this.param = param;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key other = (Key) o;
+      return version == other.version && kind == other.kind && Objects.equals(login, other.login) && Objects.equals(param, other.param);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(version, login, kind, param);
+    }
+  }
+}
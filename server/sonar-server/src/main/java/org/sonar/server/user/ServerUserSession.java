@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
@@ -53,6 +54,8 @@ public class ServerUserSession extends AbstractUserSession {
   @CheckForNull
   private final UserDto userDto;
   private final DbClient dbClient;
+  @CheckForNull
+  private final PermissionCache permissionCache;
   private final ResourceDao resourceDao;
   private final Set<String> userGroups;
   private List<String> globalPermissions = null;
@@ -63,32 +66,53 @@ public class ServerUserSession extends AbstractUserSession {
   private List<String> projectPermissionsCheckedByKey = new ArrayList<>();
   private List<String> projectPermissionsCheckedByUuid = new ArrayList<>();
 
-  private ServerUserSession(DbClient dbClient, @Nullable UserDto userDto) {
+  private ServerUserSession(DbClient dbClient, @Nullable PermissionCache permissionCache, @Nullable UserDto userDto) {
     this.userDto = userDto;
     this.dbClient = dbClient;
+    this.permissionCache = permissionCache;
     this.resourceDao = dbClient.resourceDao();
     this.userGroups = loadUserGroups();
   }
 
   public static ServerUserSession createForUser(DbClient dbClient, UserDto userDto) {
     requireNonNull(userDto, "UserDto must not be null");
-    return new ServerUserSession(dbClient, userDto);
+    return new ServerUserSession(dbClient, null, userDto);
+  }
+
+  /**
+   * Same as {@link #createForUser(DbClient, UserDto)}, but groups and permissions are read from the
+   * given cache shared by sessions.
+   */
+  public static ServerUserSession createForUser(DbClient dbClient, PermissionCache permissionCache, UserDto userDto) {
+    requireNonNull(userDto, "UserDto must not be null");
+    return new ServerUserSession(dbClient, permissionCache, userDto);
   }
 
   public static ServerUserSession createForAnonymous(DbClient dbClient) {
-    return new ServerUserSession(dbClient, null);
+    return new ServerUserSession(dbClient, null, null);
+  }
+
+  public static ServerUserSession createForAnonymous(DbClient dbClient, PermissionCache permissionCache) {
+    return new ServerUserSession(dbClient, permissionCache, null);
+  }
+
+  private Collection<String> cached(PermissionCache.Kind kind, @Nullable String param, Supplier<Collection<String>> loader) {
+    if (permissionCache == null) {
+      return loader.get();
+    }
+    return permissionCache.get(getLogin(), kind, param, loader);
   }
 
   private Set<String> loadUserGroups() {
     if (this.userDto == null) {
       return Collections.singleton(DefaultGroups.ANYONE);
     }
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      return Stream.concat(
-        Stream.of(DefaultGroups.ANYONE),
-        dbClient.groupDao().selectByUserLogin(dbSession, userDto.getLogin()).stream().map(GroupDto::getName))
-        .collect(Collectors.toSet());
-    }
+    Collection<String> groupNames = cached(PermissionCache.Kind.GROUPS, null, () -> {
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        return dbClient.groupDao().selectByUserLogin(dbSession, userDto.getLogin()).stream().map(GroupDto::getName).collect(Collectors.toList());
+      }
+    });
+    return Stream.concat(Stream.of(DefaultGroups.ANYONE), groupNames.stream()).collect(Collectors.toSet());
   }
 
   @Override
@@ -134,7 +158,7 @@ public class ServerUserSession extends AbstractUserSession {
     if (permissionsByOrganizationUuid == null) {
       permissionsByOrganizationUuid = HashMultimap.create();
     }
-    Set<String> permissions;
+    Collection<String> permissions;
     if (permissionsByOrganizationUuid.containsKey(organizationUuid)) {
       permissions = permissionsByOrganizationUuid.get(organizationUuid);
     } else {
@@ -144,19 +168,21 @@ public class ServerUserSession extends AbstractUserSession {
     return permissions.contains(permission);
  }
 
-  private Set<String> loadOrganizationPermissions(String organizationUuid) {
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      if (userDto != null && userDto.getId() != null) {
-        return dbClient.authorizationDao().selectOrganizationPermissions(dbSession, organizationUuid, userDto.getId());
+  private Collection<String> loadOrganizationPermissions(String organizationUuid) {
+    return cached(PermissionCache.Kind.ORGANIZATION_PERMISSIONS, organizationUuid, () -> {
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        if (userDto != null && userDto.getId() != null) {
+          return dbClient.authorizationDao().selectOrganizationPermissions(dbSession, organizationUuid, userDto.getId());
+        }
+        return dbClient.authorizationDao().selectOrganizationPermissionsOfAnonymous(dbSession, organizationUuid);
       }
-      return dbClient.authorizationDao().selectOrganizationPermissionsOfAnonymous(dbSession, organizationUuid);
-    }
+    });
   }
 
   @Override
   public List<String> globalPermissions() {
     if (globalPermissions == null) {
-      List<String> permissionKeys = dbClient.authorizationDao().selectGlobalPermissions(getLogin());
+      Collection<String> permissionKeys = cached(PermissionCache.Kind.GLOBAL_PERMISSIONS, null, () -> dbClient.authorizationDao().selectGlobalPermissions(getLogin()));
       globalPermissions = ImmutableList.copyOf(permissionKeys);
     }
     return globalPermissions;
@@ -189,13 +215,15 @@ public class ServerUserSession extends AbstractUserSession {
       return true;
     }
     if (!projectPermissionsCheckedByKey.contains(permission)) {
-      try (DbSession dbSession = dbClient.openSession(false)) {
-        Collection<String> projectKeys = dbClient.authorizationDao().selectAuthorizedRootProjectsKeys(dbSession, getUserId(), permission);
-        for (String key : projectKeys) {
-          projectKeyByPermission.put(permission, key);
+      Collection<String> projectKeys = cached(PermissionCache.Kind.PROJECT_KEYS, permission, () -> {
+        try (DbSession dbSession = dbClient.openSession(false)) {
+          return dbClient.authorizationDao().selectAuthorizedRootProjectsKeys(dbSession, getUserId(), permission);
         }
-        projectPermissionsCheckedByKey.add(permission);
+      });
+      for (String key : projectKeys) {
+        projectKeyByPermission.put(permission, key);
       }
+      projectPermissionsCheckedByKey.add(permission);
     }
     return projectKeyByPermission.get(permission).contains(projectKey);
   }
@@ -225,10 +253,12 @@ public class ServerUserSession extends AbstractUserSession {
   // To keep private
   private boolean hasProjectPermissionByUuid(String permission, String projectUuid) {
     if (!projectPermissionsCheckedByUuid.contains(permission)) {
-      try (DbSession dbSession = dbClient.openSession(false)) {
-        Collection<String> projectUuids = dbClient.authorizationDao().selectAuthorizedRootProjectsUuids(dbSession, getUserId(), permission);
-        addProjectPermission(permission, projectUuids);
-      }
+      Collection<String> projectUuids = cached(PermissionCache.Kind.PROJECT_UUIDS, permission, () -> {
+        try (DbSession dbSession = dbClient.openSession(false)) {
+          return dbClient.authorizationDao().selectAuthorizedRootProjectsUuids(dbSession, getUserId(), permission);
+        }
+      });
+      addProjectPermission(permission, projectUuids);
     }
     return projectUuidByPermission.get(permission).contains(projectUuid);
   }
@@ -0,0 +1,152 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.batch;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.utils.System2;
+import org.sonar.api.web.UserRole;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ComponentTesting;
+import org.sonar.db.source.FileSourceDto;
+import org.sonar.scanner.protocol.input.ScannerInput.FileLineHashes;
+import org.sonar.server.exceptions.BadRequestException;
+import org.sonar.server.exceptions.ForbiddenException;
+import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.ws.WsActionTester;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LineHashesActionTest {
+
+  private static final String PROJECT_UUID = "ABCD";
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  @Rule
+  public UserSessionRule userSessionRule = UserSessionRule.standalone();
+
+  private DbClient dbClient = db.getDbClient();
+  private DbSession dbSession = db.getSession();
+  private ComponentDto project = ComponentTesting.newProjectDto(PROJECT_UUID).setKey("struts");
+
+  private WsActionTester tester = new WsActionTester(new LineHashesAction(dbClient, userSessionRule));
+
+  @Before
+  public void before() {
+    dbClient.componentDao().insert(dbSession, project);
+    dbSession.commit();
+  }
+
+  @Test
+  public void return_line_hashes_of_files() throws Exception {
+    insertFileWithLineHashes("F1", "struts:Action.java", "ABC\nDEF\n\nGHI");
+    insertFileWithLineHashes("F2", "struts:Form.java", "JKL");
+    userSessionRule.login("john").addProjectUuidPermissions(UserRole.USER, PROJECT_UUID);
+
+    List<FileLineHashes> result = call(asList("struts:Action.java", "struts:Form.java"));
+
+    assertThat(result).extracting(FileLineHashes::getKey).containsOnly("struts:Action.java", "struts:Form.java");
+    FileLineHashes action = result.stream().filter(f -> f.getKey().equals("struts:Action.java")).findFirst().get();
+    assertThat(action.getLineHashList()).containsExactly("ABC", "DEF", "", "GHI");
+  }
+
+  @Test
+  public void ignore_unknown_files_and_files_without_source() throws Exception {
+    insertFileWithLineHashes("F1", "struts:Action.java", "ABC");
+    dbClient.componentDao().insert(dbSession, ComponentTesting.newFileDto(project, null, "F2").setKey("struts:NoSource.java"));
+    dbSession.commit();
+    userSessionRule.login("john").addProjectUuidPermissions(UserRole.USER, PROJECT_UUID);
+
+    List<FileLineHashes> result = call(asList("struts:Action.java", "struts:NoSource.java", "struts:Unknown.java"));
+
+    assertThat(result).extracting(FileLineHashes::getKey).containsExactly("struts:Action.java");
+  }
+
+  @Test
+  public void support_file_keys_containing_commas_and_spaces() throws Exception {
+    insertFileWithLineHashes("F1", "struts:Foo, Bar.java", "ABC");
+    insertFileWithLineHashes("F2", "struts: Baz.java ", "DEF");
+    userSessionRule.login("john").addProjectUuidPermissions(UserRole.USER, PROJECT_UUID);
+
+    List<FileLineHashes> result = call(asList("struts:Foo, Bar.java", "struts: Baz.java "));
+
+    assertThat(result).extracting(FileLineHashes::getKey).containsOnly("struts:Foo, Bar.java", "struts: Baz.java ");
+  }
+
+  @Test
+  public void fail_without_browse_permission_on_project() throws Exception {
+    insertFileWithLineHashes("F1", "struts:Action.java", "ABC");
+    userSessionRule.login("john");
+
+    thrown.expect(ForbiddenException.class);
+
+    call(asList("struts:Action.java"));
+  }
+
+  @Test
+  public void fail_if_too_many_keys() throws Exception {
+    userSessionRule.login("john").addProjectUuidPermissions(UserRole.USER, PROJECT_UUID);
+    List<String> keys = new ArrayList<>(Collections.nCopies(LineHashesAction.MAX_KEYS, "struts:Action.java"));
+    keys.add("struts:Form.java");
+
+    thrown.expect(BadRequestException.class);
+    thrown.expectMessage("Number of file keys must not exceed 500");
+
+    call(keys);
+  }
+
+  private List<FileLineHashes> call(List<String> keys) throws Exception {
+    InputStream input = tester.newRequest().setMultiParam("keys", keys).execute().getInputStream();
+    List<FileLineHashes> result = new ArrayList<>();
+    FileLineHashes message = FileLineHashes.parseDelimitedFrom(input);
+    while (message != null) {
+      result.add(message);
+      message = FileLineHashes.parseDelimitedFrom(input);
+    }
+    return result;
+  }
+
+  private void insertFileWithLineHashes(String uuid, String key, String lineHashes) {
+    dbClient.componentDao().insert(dbSession, ComponentTesting.newFileDto(project, null, uuid).setKey(key));
+    dbClient.fileSourceDao().insert(dbSession, new FileSourceDto()
+      .setProjectUuid(PROJECT_UUID)
+      .setFileUuid(uuid)
+      .setLineHashes(lineHashes)
+      .setDataType(FileSourceDto.Type.SOURCE)
+      .setCreatedAt(1_500_000_000_000L)
+      .setUpdatedAt(1_500_000_000_000L));
+    dbSession.commit();
+  }
+}
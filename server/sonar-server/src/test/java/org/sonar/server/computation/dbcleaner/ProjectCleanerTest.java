@@ -20,11 +20,13 @@
 package org.sonar.server.computation.dbcleaner;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.config.Settings;
 import org.sonar.api.config.MapSettings;
-import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.LogTester;
 import org.sonar.core.config.PurgeConstants;
 import org.sonar.db.DbSession;
 import org.sonar.db.purge.IdUuidPair;
@@ -34,27 +36,33 @@ import org.sonar.db.purge.PurgeListener;
 import org.sonar.db.purge.PurgeProfiler;
 import org.sonar.db.purge.period.DefaultPeriodCleaner;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.any;
-import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 public class ProjectCleanerTest {
 
+  @Rule
+  public LogTester logTester = new LogTester();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
   private ProjectCleaner underTest;
   private PurgeDao dao = mock(PurgeDao.class);
-  private PurgeProfiler profiler = mock(PurgeProfiler.class);
   private DefaultPeriodCleaner periodCleaner = mock(DefaultPeriodCleaner.class);
   private PurgeListener purgeListener = mock(PurgeListener.class);
   private Settings settings = new MapSettings();
 
   @Before
   public void before() {
-    this.underTest = new ProjectCleaner(dao, periodCleaner, profiler, purgeListener);
+    this.underTest = new ProjectCleaner(dao, periodCleaner, purgeListener);
   }
 
   @Test
@@ -63,7 +71,7 @@ public class ProjectCleanerTest {
 
     underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings, emptyList());
 
-    verify(profiler, never()).dump(anyLong(), any(Logger.class));
+    assertThat(logTester.logs()).noneMatch(log -> log.contains("Profiling for purge"));
   }
 
   @Test
@@ -72,7 +80,7 @@ public class ProjectCleanerTest {
 
     underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings, emptyList());
 
-    verify(profiler).dump(anyLong(), any(Logger.class));
+    assertThat(logTester.logs()).anyMatch(log -> log.contains("Profiling for purge"));
   }
 
   @Test
@@ -81,7 +89,7 @@ public class ProjectCleanerTest {
 
     underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings, emptyList());
 
-    verify(periodCleaner).clean(any(DbSession.class), anyString(), any(Settings.class));
+    verify(periodCleaner).clean(any(DbSession.class), anyString(), any(Settings.class), any(PurgeProfiler.class));
     verify(dao).purge(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class), any(PurgeProfiler.class));
   }
 
@@ -96,10 +104,41 @@ public class ProjectCleanerTest {
 
   @Test
   public void if_profiler_cleaning_fails_it_should_not_interrupt_program_execution() {
-    doThrow(RuntimeException.class).when(periodCleaner).clean(any(DbSession.class), anyString(), any(Settings.class));
+    doThrow(RuntimeException.class).when(periodCleaner).clean(any(DbSession.class), anyString(), any(Settings.class), any(PurgeProfiler.class));
 
     underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings, emptyList());
 
-    verify(periodCleaner).clean(any(DbSession.class), anyString(), any(Settings.class));
+    verify(periodCleaner).clean(any(DbSession.class), anyString(), any(Settings.class), any(PurgeProfiler.class));
+  }
+
+  @Test
+  public void purgeOrFail_fails_if_dao_purge_fails() {
+    IdUuidPair project = new IdUuidPair(1L, "P1");
+    doThrow(new IllegalStateException("failure")).when(dao).purge(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class), any(PurgeProfiler.class));
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to purge data [id=1]");
+
+    underTest.purgeOrFail(mock(DbSession.class), project, settings);
+  }
+
+  @Test
+  public void purgeOrFail_fails_if_period_cleaning_fails() {
+    IdUuidPair project = new IdUuidPair(1L, "P1");
+    doThrow(new IllegalStateException("failure")).when(periodCleaner).clean(any(DbSession.class), anyString(), any(Settings.class), any(PurgeProfiler.class));
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to clean historical data [uuid=P1]");
+
+    underTest.purgeOrFail(mock(DbSession.class), project, settings);
+  }
+
+  @Test
+  public void purgeDisabledComponents_purges_only_disabled_components() {
+    underTest.purgeDisabledComponents(mock(DbSession.class), asList("u1", "u2"));
+
+    verify(dao).purgeDisabledComponents(any(DbSession.class), eq(asList("u1", "u2")), eq(purgeListener));
+    verify(dao, never()).purge(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class), any(PurgeProfiler.class));
+    verify(periodCleaner, never()).clean(any(DbSession.class), anyString(), any(Settings.class), any(PurgeProfiler.class));
   }
 }
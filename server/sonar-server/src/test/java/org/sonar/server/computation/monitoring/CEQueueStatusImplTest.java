@@ -50,6 +50,34 @@ public class CEQueueStatusImplTest {
     assertThat(underTest.getErrorCount()).isEqualTo(0);
     assertThat(underTest.getSuccessCount()).isEqualTo(0);
     assertThat(underTest.getProcessingTime()).isEqualTo(0);
+    assertThat(underTest.getQueueLatency()).isEqualTo(0);
+    assertThat(underTest.getIdlePollCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void addQueueLatency_increases_QueueLatency() {
+    underTest.addQueueLatency(100);
+    underTest.addQueueLatency(20);
+
+    assertThat(underTest.getQueueLatency()).isEqualTo(120);
+    assertThat(underTest.getProcessingTime()).isEqualTo(0);
+  }
+
+  @Test
+  public void addQueueLatency_throws_IAE_if_latency_is_less_than_0() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Queue latency can not be < 0");
+
+    underTest.addQueueLatency(-1);
+  }
+
+  @Test
+  public void addIdlePoll_increases_IdlePollCount() {
+    underTest.addIdlePoll();
+    underTest.addIdlePoll();
+
+    assertThat(underTest.getIdlePollCount()).isEqualTo(2);
+    assertThat(underTest.getInProgressCount()).isEqualTo(0);
   }
 
   @Test
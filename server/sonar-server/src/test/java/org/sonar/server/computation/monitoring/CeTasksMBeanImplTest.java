@@ -37,6 +37,8 @@ public class CeTasksMBeanImplTest {
   private static final long ERROR_COUNT = 10;
   private static final long SUCCESS_COUNT = 13;
   private static final long PROCESSING_TIME = 987;
+  private static final long QUEUE_LATENCY = 654;
+  private static final long IDLE_POLL_COUNT = 32;
   private static final int WORKER_COUNT = 56;
 
   private CeTasksMBeanImpl underTest = new CeTasksMBeanImpl(new DumbCEQueueStatus(), new DumbCeConfiguration());
@@ -59,6 +61,8 @@ public class CeTasksMBeanImplTest {
     assertThat(underTest.getErrorCount()).isEqualTo(ERROR_COUNT);
     assertThat(underTest.getSuccessCount()).isEqualTo(SUCCESS_COUNT);
     assertThat(underTest.getProcessingTime()).isEqualTo(PROCESSING_TIME);
+    assertThat(underTest.getQueueLatency()).isEqualTo(QUEUE_LATENCY);
+    assertThat(underTest.getIdlePollCount()).isEqualTo(IDLE_POLL_COUNT);
   }
 
   @Test
@@ -70,7 +74,7 @@ public class CeTasksMBeanImplTest {
   public void export_system_info() {
     ProtobufSystemInfo.Section section = underTest.toProtobuf();
     assertThat(section.getName()).isEqualTo("Compute Engine Tasks");
-    assertThat(section.getAttributesCount()).isEqualTo(6);
+    assertThat(section.getAttributesCount()).isEqualTo(8);
   }
 
   /**
@@ -119,6 +123,26 @@ public class CeTasksMBeanImplTest {
       return PROCESSING_TIME;
     }
 
+    @Override
+    public long addQueueLatency(long latency) {
+      return methodNotImplemented();
+    }
+
+    @Override
+    public long getQueueLatency() {
+      return QUEUE_LATENCY;
+    }
+
+    @Override
+    public long addIdlePoll() {
+      return methodNotImplemented();
+    }
+
+    @Override
+    public long getIdlePollCount() {
+      return IDLE_POLL_COUNT;
+    }
+
     private long methodNotImplemented() {
       throw new UnsupportedOperationException("Not Implemented");
     }
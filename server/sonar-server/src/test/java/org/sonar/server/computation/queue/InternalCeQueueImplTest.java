@@ -42,6 +42,7 @@ import org.sonar.db.ce.CeQueueDto;
 import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTesting;
+import org.sonar.server.computation.configuration.CeConfigurationRule;
 import org.sonar.server.computation.monitoring.CEQueueStatusImpl;
 
 import static java.util.Arrays.asList;
@@ -49,6 +50,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.guava.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class InternalCeQueueImplTest {
@@ -66,7 +69,10 @@ public class InternalCeQueueImplTest {
 
   UuidFactory uuidFactory = UuidFactoryImpl.INSTANCE;
   CEQueueStatus queueStatus = new CEQueueStatusImpl(dbTester.getDbClient());
-  InternalCeQueue underTest = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus);
+  PendingTaskNotifier pendingTaskNotifier = new PendingTaskNotifier();
+  PendingTaskNotifier.Listener pendingTaskListener = mock(PendingTaskNotifier.Listener.class);
+  CeConfigurationRule ceConfiguration = new CeConfigurationRule();
+  InternalCeQueue underTest = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, pendingTaskNotifier, ceConfiguration);
 
   @Test
   public void submit_returns_task_populated_from_CeTaskSubmit_and_creates_CeQueue_row() {
@@ -238,6 +244,110 @@ public class InternalCeQueueImplTest {
     assertThat(peek.isPresent()).isFalse();
   }
 
+  @Test
+  public void submit_notifies_pending_task() {
+    pendingTaskNotifier.addListener(pendingTaskListener);
+
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+
+    verify(pendingTaskListener).onPendingTasks(1);
+  }
+
+  @Test
+  public void massSubmit_notifies_pending_tasks() {
+    pendingTaskNotifier.addListener(pendingTaskListener);
+
+    underTest.massSubmit(asList(createTaskSubmit(CeTaskTypes.REPORT, "PROJECT_1", null), createTaskSubmit(CeTaskTypes.REPORT, "PROJECT_2", null)));
+
+    verify(pendingTaskListener).onPendingTasks(2);
+  }
+
+  @Test
+  public void peek_notifies_that_more_tasks_may_be_pending_and_updates_queue_latency() {
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    pendingTaskNotifier.addListener(pendingTaskListener);
+
+    underTest.peek();
+
+    verify(pendingTaskListener).onPendingTasks(1);
+    assertThat(queueStatus.getQueueLatency()).isEqualTo(0);
+    assertThat(queueStatus.getIdlePollCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void peek_counts_idle_polls() {
+    pendingTaskNotifier.addListener(pendingTaskListener);
+
+    underTest.peek();
+    underTest.peek();
+
+    assertThat(queueStatus.getIdlePollCount()).isEqualTo(2);
+    verifyZeroInteractions(pendingTaskListener);
+  }
+
+  @Test
+  public void peek_reserves_as_many_tasks_as_workers_and_returns_them_one_by_one() {
+    ceConfiguration.setWorkerCount(2);
+    underTest = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, pendingTaskNotifier, ceConfiguration);
+    CeTask task1 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    CeTask task3 = submit(CeTaskTypes.REPORT, "PROJECT_3");
+    pendingTaskNotifier.addListener(pendingTaskListener);
+
+    assertThat(underTest.peek().get().getUuid()).isEqualTo(task1.getUuid());
+    verify(pendingTaskListener).onPendingTasks(1);
+    verifyQueueStatus(task1, CeQueueDto.Status.IN_PROGRESS);
+    verifyQueueStatus(task2, CeQueueDto.Status.IN_PROGRESS);
+    verifyQueueStatus(task3, CeQueueDto.Status.PENDING);
+
+    assertThat(underTest.peek().get().getUuid()).isEqualTo(task2.getUuid());
+    assertThat(underTest.peek().get().getUuid()).isEqualTo(task3.getUuid());
+    assertThat(underTest.peek().isPresent()).isFalse();
+  }
+
+  @Test
+  public void peek_does_not_reserve_more_tasks_than_idle_workers() {
+    ceConfiguration.setWorkerCount(3);
+    underTest = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, pendingTaskNotifier, ceConfiguration);
+    CeTask task1 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    CeTask task3 = submit(CeTaskTypes.REPORT, "PROJECT_3");
+    CeTask task4 = submit(CeTaskTypes.REPORT, "PROJECT_4");
+    CeTask task5 = submit(CeTaskTypes.REPORT, "PROJECT_5");
+    underTest.peek();
+    underTest.peek();
+    underTest.peek();
+
+    // a single worker is idle
+    underTest.remove(task1, CeActivityDto.Status.SUCCESS, null, null);
+    assertThat(underTest.peek().get().getUuid()).isEqualTo(task4.getUuid());
+
+    verifyQueueStatus(task2, CeQueueDto.Status.IN_PROGRESS);
+    verifyQueueStatus(task3, CeQueueDto.Status.IN_PROGRESS);
+    verifyQueueStatus(task5, CeQueueDto.Status.PENDING);
+  }
+
+  @Test
+  public void pausePeek_puts_back_reserved_tasks_in_pending_status() {
+    ceConfiguration.setWorkerCount(2);
+    underTest = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, pendingTaskNotifier, ceConfiguration);
+    CeTask task1 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+
+    underTest.peek();
+    underTest.pausePeek();
+
+    verifyQueueStatus(task1, CeQueueDto.Status.IN_PROGRESS);
+    verifyQueueStatus(task2, CeQueueDto.Status.PENDING);
+
+    underTest.resumePeek();
+    assertThat(underTest.peek().get().getUuid()).isEqualTo(task2.getUuid());
+  }
+
+  private void verifyQueueStatus(CeTask task, CeQueueDto.Status expectedStatus) {
+    assertThat(dbTester.getDbClient().ceQueueDao().selectByUuid(session, task.getUuid()).get().getStatus()).isEqualTo(expectedStatus);
+  }
+
   @Test
   public void peek_nothing_if_paused() throws Exception {
     submit(CeTaskTypes.REPORT, "PROJECT_1");
@@ -25,6 +25,8 @@ import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.utils.ZipUtils;
 import org.sonar.api.utils.internal.JUnitTempFolder;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.scanner.protocol.output.ScannerReport;
@@ -54,15 +56,19 @@ public class BatchReportReaderImplTest {
 
   @Rule
   public JUnitTempFolder tempFolder = new JUnitTempFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
 
+  private File reportDir;
   private ScannerReportWriter writer;
   private BatchReportReaderImpl underTest;
 
   @Before
   public void setUp() {
-    BatchReportDirectoryHolder holder = new ImmutableBatchReportDirectoryHolder(tempFolder.newDir());
+    reportDir = tempFolder.newDir();
+    BatchReportDirectoryHolder holder = new ImmutableBatchReportDirectoryHolder(reportDir);
     underTest = new BatchReportReaderImpl(holder);
-    writer = new ScannerReportWriter(holder.getDirectory());
+    writer = new ScannerReportWriter(reportDir);
   }
 
   @Test(expected = IllegalStateException.class)
@@ -315,4 +321,70 @@ public class BatchReportReaderImplTest {
     assertThat(res).containsExactly(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2);
     res.close();
   }
+
+  @Test
+  public void read_entries_of_zipped_report() throws IOException {
+    writer.writeComponent(COMPONENT);
+    writer.writeComponentIssues(COMPONENT_REF, of(ISSUE));
+    writer.writeComponentChangesets(CHANGESETS);
+    FileUtils.writeLines(writer.getSourceFile(COMPONENT_REF), of("1", "2", "3"));
+    FileUtils.write(writer.getFileStructure().analysisLog(), "log1\nlog2");
+    BatchReportReaderImpl zipReader = readerOfZippedReport();
+
+    assertThat(zipReader.readComponent(COMPONENT_REF)).isEqualTo(COMPONENT);
+    assertThat(zipReader.readChangesets(COMPONENT_REF)).isEqualTo(CHANGESETS);
+    try (CloseableIterator<ScannerReport.Issue> res = zipReader.readComponentIssues(COMPONENT_REF)) {
+      assertThat(res).containsExactly(ISSUE);
+    }
+    try (CloseableIterator<String> res = zipReader.readFileSource(COMPONENT_REF).get()) {
+      assertThat(res).containsExactly("1", "2", "3");
+    }
+    try (CloseableIterator<String> res = zipReader.readScannerLogs()) {
+      assertThat(res).containsExactly("log1", "log2");
+    }
+    zipReader.stop();
+  }
+
+  @Test
+  public void missing_entries_of_zipped_report_are_empty() throws IOException {
+    writer.writeComponent(COMPONENT);
+    BatchReportReaderImpl zipReader = readerOfZippedReport();
+
+    assertThat(zipReader.readComponentIssues(COMPONENT_REF)).isEmpty();
+    assertThat(zipReader.readChangesets(COMPONENT_REF)).isNull();
+    assertThat(zipReader.readFileSource(COMPONENT_REF)).isAbsent();
+    assertThat(zipReader.readTests(COMPONENT_REF)).isEmpty();
+    assertThat(zipReader.readScannerLogs()).isEmpty();
+    zipReader.stop();
+  }
+
+  @Test
+  public void readMetadata_throws_ISE_if_no_metadata_in_zipped_report() throws IOException {
+    writer.writeComponent(COMPONENT);
+    BatchReportReaderImpl zipReader = readerOfZippedReport();
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Metadata file is missing in analysis report");
+    expectedException.expectMessage("!/metadata.pb");
+
+    zipReader.readMetadata();
+  }
+
+  @Test
+  public void zipped_report_is_reopened_if_read_after_stop() throws IOException {
+    writer.writeComponent(COMPONENT);
+    BatchReportReaderImpl zipReader = readerOfZippedReport();
+    assertThat(zipReader.readComponent(COMPONENT_REF)).isEqualTo(COMPONENT);
+
+    zipReader.stop();
+
+    assertThat(zipReader.readComponent(COMPONENT_REF)).isEqualTo(COMPONENT);
+    zipReader.stop();
+  }
+
+  private BatchReportReaderImpl readerOfZippedReport() throws IOException {
+    File zip = tempFolder.newFile();
+    ZipUtils.zipDir(reportDir, zip);
+    return new BatchReportReaderImpl(new ImmutableBatchReportDirectoryHolder(zip));
+  }
 }
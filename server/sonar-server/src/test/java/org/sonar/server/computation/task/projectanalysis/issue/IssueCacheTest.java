@@ -0,0 +1,279 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.issue.IssueChangeContext;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class IssueCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void write_and_read() throws Exception {
+    IssueCache cache = new IssueCache(temp.newFile(), System2.INSTANCE);
+    try (CloseableIterator<DefaultIssue> traverse = cache.traverse()) {
+      assertThat(traverse).isEmpty();
+    }
+
+    cache.newAppender()
+      .append(newIssue("ISSUE1", "FILE1"))
+      .append(newIssue("ISSUE2", "FILE1"))
+      .close();
+    cache.newAppender()
+      .append(newIssue("ISSUE3", "FILE2"))
+      .close();
+
+    assertThat(keys(cache.traverse())).containsExactly("ISSUE1", "ISSUE2", "ISSUE3");
+  }
+
+  @Test
+  public void split_blocks_bigger_than_max_size() throws Exception {
+    IssueCache cache = new IssueCache(temp.newFile(), System2.INSTANCE);
+    int count = 2 * IssueCache.MAX_BLOCK_SIZE / 100;
+    IssueCache.Appender appender = cache.newAppender();
+    for (int i = 0; i < count; i++) {
+      appender.append(newIssue("ISSUE" + i, "FILE1"));
+    }
+    appender.close();
+
+    List<String> keys = keys(cache.traverse());
+    assertThat(keys).hasSize(count);
+    assertThat(keys.get(0)).isEqualTo("ISSUE0");
+    assertThat(keys.get(count - 1)).isEqualTo("ISSUE" + (count - 1));
+  }
+
+  @Test
+  public void fail_if_file_is_truncated_in_the_middle_of_a_block() throws Exception {
+    File file = temp.newFile();
+    IssueCache cache = new IssueCache(file, System2.INSTANCE);
+    cache.newAppender().append(newIssue("ISSUE1", "FILE1")).close();
+    cache.newAppender().append(newIssue("ISSUE2", "FILE2")).close();
+    truncate(file, file.length() - 5);
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to read issues, file is truncated");
+
+    keys(cache.traverse());
+  }
+
+  @Test
+  public void fail_if_file_is_truncated_in_the_header_of_a_block() throws Exception {
+    File file = temp.newFile();
+    IssueCache cache = new IssueCache(file, System2.INSTANCE);
+    cache.newAppender().append(newIssue("ISSUE1", "FILE1")).close();
+    long firstBlockLength = file.length();
+    cache.newAppender().append(newIssue("ISSUE2", "FILE2")).close();
+    truncate(file, firstBlockLength + 2);
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to read issues, file is truncated");
+
+    keys(cache.traverse());
+  }
+
+  @Test
+  public void preserve_all_fields() throws Exception {
+    IssueCache cache = new IssueCache(temp.newFile(), System2.INSTANCE);
+    Date date = new Date(1_500_000_000_000L);
+    DbIssues.Locations locations = DbIssues.Locations.newBuilder()
+      .setTextRange(DbCommons.TextRange.newBuilder().setStartLine(3).setEndLine(5))
+      .build();
+    DefaultIssue issue = newIssue("ISSUE", "FILE")
+      .setType(RuleType.VULNERABILITY)
+      .setComponentKey("FILE_KEY")
+      .setModuleUuid("MODULE")
+      .setModuleUuidPath(".PROJECT.MODULE.")
+      .setProjectUuid("PROJECT")
+      .setProjectKey("PROJECT_KEY")
+      .setLanguage("xoo")
+      .setSeverity(Severity.CRITICAL)
+      .setManualSeverity(true)
+      .setMessage("the message")
+      .setLine(12)
+      .setGap(1.5)
+      .setEffort(Duration.create(20L))
+      .setStatus(Issue.STATUS_RESOLVED)
+      .setResolution(Issue.RESOLUTION_FIXED)
+      .setAssignee("john")
+      .setChecksum("abc")
+      .setAuthorLogin("jane")
+      .setCreationDate(date)
+      .setUpdateDate(date)
+      .setCloseDate(date)
+      .setSelectedAt(1_000L)
+      .setNew(false)
+      .setBeingClosed(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setAttributes(ImmutableMap.of("JIRA", "FOO-123"))
+      .setTags(Arrays.asList("tag1", "tag2"))
+      .setLocations(locations)
+      .addComment(new DefaultIssueComment().setKey("COMMENT").setIssueKey("ISSUE").setUserLogin("john")
+        .setMarkdownText("a comment").setCreatedAt(date).setNew(true))
+      .addChange(new FieldDiffs().setUserLogin("john").setCreationDate(date).setDiff("status", "OPEN", "CONFIRMED"));
+    issue.setFieldChange(IssueChangeContext.createScan(date), "effort", 10L, 20L);
+    issue.setFieldChange(IssueChangeContext.createScan(date), "type", RuleType.BUG, RuleType.VULNERABILITY);
+
+    cache.newAppender().append(issue).close();
+
+    DefaultIssue read = cache.traverse().next();
+    assertThat(read.key()).isEqualTo("ISSUE");
+    assertThat(read.ruleKey()).isEqualTo(RuleKey.of("xoo", "S01"));
+    assertThat(read.componentUuid()).isEqualTo("FILE");
+    assertThat(read.type()).isEqualTo(RuleType.VULNERABILITY);
+    assertThat(read.componentKey()).isEqualTo("FILE_KEY");
+    assertThat(read.moduleUuid()).isEqualTo("MODULE");
+    assertThat(read.moduleUuidPath()).isEqualTo(".PROJECT.MODULE.");
+    assertThat(read.projectUuid()).isEqualTo("PROJECT");
+    assertThat(read.projectKey()).isEqualTo("PROJECT_KEY");
+    assertThat(read.language()).isEqualTo("xoo");
+    assertThat(read.severity()).isEqualTo(Severity.CRITICAL);
+    assertThat(read.manualSeverity()).isTrue();
+    assertThat(read.message()).isEqualTo("the message");
+    assertThat(read.line()).isEqualTo(12);
+    assertThat(read.gap()).isEqualTo(1.5);
+    assertThat(read.effort()).isEqualTo(Duration.create(20L));
+    assertThat(read.status()).isEqualTo(Issue.STATUS_RESOLVED);
+    assertThat(read.resolution()).isEqualTo(Issue.RESOLUTION_FIXED);
+    assertThat(read.assignee()).isEqualTo("john");
+    assertThat(read.checksum()).isEqualTo("abc");
+    assertThat(read.authorLogin()).isEqualTo("jane");
+    assertThat(read.creationDate()).isEqualTo(date);
+    assertThat(read.updateDate()).isEqualTo(date);
+    assertThat(read.closeDate()).isEqualTo(date);
+    assertThat(read.selectedAt()).isEqualTo(1_000L);
+    assertThat(read.isNew()).isFalse();
+    assertThat(read.isBeingClosed()).isTrue();
+    assertThat(read.isOnDisabledRule()).isTrue();
+    assertThat(read.isChanged()).isTrue();
+    assertThat(read.mustSendNotifications()).isTrue();
+    assertThat(read.attributes()).containsOnly(entry("JIRA", "FOO-123"));
+    assertThat(read.tags()).containsExactly("tag1", "tag2");
+    assertThat((DbIssues.Locations) read.getLocations()).isEqualTo(locations);
+
+    assertThat(read.comments()).hasSize(1);
+    DefaultIssueComment comment = (DefaultIssueComment) read.comments().get(0);
+    assertThat(comment.key()).isEqualTo("COMMENT");
+    assertThat(comment.markdownText()).isEqualTo("a comment");
+    assertThat(comment.createdAt()).isEqualTo(date);
+    assertThat(comment.updatedAt()).isNull();
+    assertThat(comment.isNew()).isTrue();
+
+    // current change is shared with the list of changes, as it was before serialization
+    assertThat(read.changes()).hasSize(3);
+    assertThat(read.changes().get(0).toString()).isEqualTo("status=OPEN|CONFIRMED");
+    assertThat(read.changes().get(1)).isSameAs(read.currentChange());
+    assertThat(read.changes().get(2)).isSameAs(read.currentChange());
+    assertThat(read.currentChange().diffs().get("effort").oldValue()).isEqualTo(10L);
+    assertThat(read.currentChange().diffs().get("type").newValue()).isEqualTo(RuleType.VULNERABILITY);
+  }
+
+  @Test
+  public void read_issue_with_only_mandatory_fields() throws Exception {
+    IssueCache cache = new IssueCache(temp.newFile(), System2.INSTANCE);
+    cache.newAppender().append(new DefaultIssue().setKey("ISSUE")).close();
+
+    DefaultIssue read = cache.traverse().next();
+    assertThat(read.key()).isEqualTo("ISSUE");
+    assertThat(read.ruleKey()).isNull();
+    assertThat(read.status()).isNull();
+    assertThat(read.line()).isNull();
+    assertThat(read.effort()).isNull();
+    assertThat(read.currentChange()).isNull();
+    assertThat(read.changes()).isEmpty();
+    assertThat(read.comments()).isEmpty();
+    assertThat(read.getLocations()).isNull();
+  }
+
+  @Test
+  public void fail_if_file_is_not_writable() throws Exception {
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to write into file");
+
+    new IssueCache(temp.newFolder(), System2.INSTANCE);
+  }
+
+  @Test
+  public void fail_if_locations_are_not_protobuf() throws Exception {
+    IssueCache cache = new IssueCache(temp.newFile(), System2.INSTANCE);
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Unsupported type of locations");
+
+    cache.newAppender().append(newIssue("ISSUE", "FILE").setLocations("[1-3]"));
+  }
+
+  private static DefaultIssue newIssue(String key, String componentUuid) {
+    return new DefaultIssue()
+      .setKey(key)
+      .setRuleKey(RuleKey.of("xoo", "S01"))
+      .setComponentUuid(componentUuid)
+      .setStatus(Issue.STATUS_OPEN);
+  }
+
+  private static List<String> keys(CloseableIterator<DefaultIssue> issues) {
+    try {
+      List<String> keys = newArrayList();
+      while (issues.hasNext()) {
+        keys.add(issues.next().key());
+      }
+      return keys;
+    } finally {
+      issues.close();
+    }
+  }
+
+  private static void truncate(File file, long length) throws Exception {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      randomAccessFile.setLength(length);
+    }
+  }
+}
@@ -70,7 +70,7 @@ public class ExtractReportStepTest {
   }
 
   @Test
-  public void unzip_report() throws Exception {
+  public void copy_report_without_unzipping_it() throws Exception {
     File reportFile = generateReport();
     try (InputStream input = FileUtils.openInputStream(reportFile)) {
       dbTester.getDbClient().ceTaskInputDao().insert(dbTester.getSession(), TASK_UUID, input);
@@ -80,9 +80,10 @@ public class ExtractReportStepTest {
 
     underTest.execute();
 
-    // directory contains the uncompressed report (which contains only metadata.pb in this test)
-    File unzippedDir = reportDirectoryHolder.getDirectory();
-    assertThat(unzippedDir).isDirectory().exists();
+    // holder references the zipped report (which contains only metadata.pb in this test)
+    File zip = reportDirectoryHolder.getDirectory();
+    assertThat(zip).isFile().hasSameContentAs(reportFile);
+    File unzippedDir = ZipUtils.unzip(zip, tempFolder.newDir());
     assertThat(unzippedDir.listFiles()).hasSize(1);
     assertThat(new File(unzippedDir, "metadata.pb")).hasContent("{metadata}");
   }
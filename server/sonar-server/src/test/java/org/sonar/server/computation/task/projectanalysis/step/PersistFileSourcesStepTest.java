@@ -19,11 +19,14 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -82,12 +85,14 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
   private DbClient dbClient = dbTester.getDbClient();
   private DbSession session = dbTester.getSession();
 
+  private MapSettings settings = new MapSettings();
+
   private PersistFileSourcesStep underTest;
 
   @Before
   public void setup() {
     when(system2.now()).thenReturn(NOW);
-    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository);
+    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository, settings);
   }
 
   @Override
@@ -455,6 +460,45 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getRevision()).isNull();
   }
 
+  @Test
+  public void persist_sources_of_files_computed_by_several_threads() {
+    settings.setProperty("sonar.internal.ce.fileSources.threads", 3);
+    int numberOfFiles = 2 * PersistFileSourcesStep.FILES_PER_TRANSACTION + 7;
+    initReportWithFiles(numberOfFiles);
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(numberOfFiles);
+    for (int i = 0; i < numberOfFiles; i++) {
+      FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, "FILE_" + i);
+      DbFileSources.Data data = fileSourceDto.getSourceData();
+      assertThat(data.getLinesCount()).isEqualTo(1);
+      assertThat(data.getLines(0).getSource()).isEqualTo("source of file " + i);
+    }
+  }
+
+  @Test
+  public void fail_if_source_of_a_file_can_not_be_computed_by_worker() {
+    settings.setProperty("sonar.internal.ce.fileSources.threads", 2);
+    initBasicReport(0);
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("has no source code");
+
+    underTest.execute();
+  }
+
+  @Test
+  public void default_number_of_threads() {
+    assertThat(underTest.getThreads()).isEqualTo(2);
+
+    settings.setProperty("sonar.internal.ce.fileSources.threads", 4);
+    assertThat(underTest.getThreads()).isEqualTo(4);
+
+    settings.setProperty("sonar.internal.ce.fileSources.threads", -1);
+    assertThat(underTest.getThreads()).isEqualTo(1);
+  }
+
   private void initBasicReport(int numberOfLines) {
     treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(
       ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY").addChildren(
@@ -482,4 +526,31 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     }
   }
 
+  private void initReportWithFiles(int numberOfFiles) {
+    List<Component> files = new ArrayList<>();
+    ScannerReport.Component.Builder module = ScannerReport.Component.newBuilder()
+      .setRef(2)
+      .setType(ComponentType.MODULE);
+    for (int i = 0; i < numberOfFiles; i++) {
+      int ref = 3 + i;
+      files.add(ReportComponent.builder(Component.Type.FILE, ref).setUuid("FILE_" + i).setKey("MODULE_KEY:src/Foo" + i + ".java").build());
+      module.addChildRef(ref);
+      reportReader.putComponent(ScannerReport.Component.newBuilder()
+        .setRef(ref)
+        .setType(ComponentType.FILE)
+        .build());
+      fileSourceRepository.addLine(ref, "source of file " + i);
+    }
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(
+      ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY").addChildren(files.toArray(new Component[0]))
+        .build())
+      .build());
+    reportReader.putComponent(ScannerReport.Component.newBuilder()
+      .setRef(1)
+      .setType(ComponentType.PROJECT)
+      .addChildRef(2)
+      .build());
+    reportReader.putComponent(module.build());
+  }
+
 }
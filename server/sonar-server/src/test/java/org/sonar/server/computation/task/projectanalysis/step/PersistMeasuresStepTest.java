@@ -24,6 +24,8 @@ import java.util.Map;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
@@ -83,6 +85,8 @@ public class PersistMeasuresStepTest extends BaseStepTest {
   @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
   @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+  @Rule
   public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
   @Rule
   public MetricRepositoryRule metricRepository = new MetricRepositoryRule();
@@ -101,11 +105,13 @@ public class PersistMeasuresStepTest extends BaseStepTest {
   ComponentDto intermediate2Dto;
   ComponentDto leafDto;
 
+  MapSettings settings = new MapSettings();
+
   PersistMeasuresStep underTest;
 
   @Before
   public void setUp() {
-    underTest = new PersistMeasuresStep(dbClient, metricRepository, new MeasureToMeasureDto(dbIdsRepository, analysisMetadataHolder), treeRootHolder, measureRepository);
+    underTest = new PersistMeasuresStep(dbClient, metricRepository, new MeasureToMeasureDto(dbIdsRepository, analysisMetadataHolder), treeRootHolder, measureRepository, settings);
     analysisMetadataHolder.setUuid(ANALYSIS_UUID);
   }
 
@@ -173,6 +179,25 @@ public class PersistMeasuresStepTest extends BaseStepTest {
     insertMeasures();
   }
 
+  @Test
+  public void insert_measures_with_statements_of_configured_number_of_rows() {
+    settings.setProperty("sonar.internal.ce.measures.rowsPerInsert", 3);
+    setupReportComponents();
+
+    insertMeasures();
+  }
+
+  @Test
+  public void fail_if_configured_number_of_rows_per_insert_is_too_big() {
+    settings.setProperty("sonar.internal.ce.measures.rowsPerInsert", 101);
+    setupReportComponents();
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Property sonar.internal.ce.measures.rowsPerInsert must be between 1 and 100, got 101");
+
+    underTest.execute();
+  }
+
   private void insertMeasures() {
     int stringMetricId = 1;
     int doubleMetricId = 2;
@@ -24,6 +24,7 @@ import com.google.common.collect.FluentIterable;
 import com.tngtech.java.junit.dataprovider.DataProvider;
 import com.tngtech.java.junit.dataprovider.DataProviderRunner;
 import com.tngtech.java.junit.dataprovider.UseDataProvider;
+import java.util.Collections;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -31,8 +32,12 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.sonar.api.config.Settings;
 import org.sonar.api.config.MapSettings;
+import org.sonar.ce.queue.CeQueue;
+import org.sonar.ce.queue.CeTaskSubmit;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.ce.CeQueueDto;
+import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.db.purge.IdUuidPair;
 import org.sonar.server.computation.dbcleaner.ProjectCleaner;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
@@ -50,7 +55,9 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.anyList;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -71,7 +78,11 @@ public class PurgeDatastoresStepTest extends BaseStepTest {
   private SettingsRepository settingsRepository = mock(SettingsRepository.class);
   private MutableDisabledComponentsHolder disabledComponentsHolder = mock(MutableDisabledComponentsHolder.class, RETURNS_DEEP_STUBS);
 
-  private PurgeDatastoresStep underTest = new PurgeDatastoresStep(mock(DbClient.class, Mockito.RETURNS_DEEP_STUBS), projectCleaner, dbIdsRepository, treeRootHolder, settingsRepository, disabledComponentsHolder);
+  private DbClient dbClient = mock(DbClient.class, Mockito.RETURNS_DEEP_STUBS);
+  private CeQueue ceQueue = mock(CeQueue.class);
+
+  private PurgeDatastoresStep underTest = new PurgeDatastoresStep(dbClient, projectCleaner, dbIdsRepository, treeRootHolder, settingsRepository, disabledComponentsHolder,
+    ceQueue);
 
   @Test
   public void call_purge_method_of_the_purge_task_for_project() {
@@ -87,6 +98,54 @@ public class PurgeDatastoresStepTest extends BaseStepTest {
     verify_call_purge_method_of_the_purge_task(project);
   }
 
+  @Test
+  public void submit_purge_task_when_purge_is_asynchronous() {
+    Component project = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build();
+    treeRootHolder.setRoot(project);
+    when(settingsRepository.getSettings(project)).thenReturn(new MapSettings().setProperty(PurgeDatastoresStep.ASYNC_PURGE_PROPERTY, true));
+    when(disabledComponentsHolder.getUuids()).thenReturn(asList("DISABLED_UUID"));
+    when(dbClient.ceQueueDao().selectByComponentUuid(any(DbSession.class), eq(PROJECT_UUID))).thenReturn(Collections.emptyList());
+    when(ceQueue.prepareSubmit()).thenReturn(new CeTaskSubmit.Builder("TASK_UUID"));
+
+    underTest.execute();
+
+    verify(projectCleaner).purgeDisabledComponents(any(DbSession.class), eq(asList("DISABLED_UUID")));
+    verifyNoMoreInteractions(projectCleaner);
+    ArgumentCaptor<CeTaskSubmit> submit = ArgumentCaptor.forClass(CeTaskSubmit.class);
+    verify(ceQueue).submit(submit.capture());
+    assertThat(submit.getValue().getType()).isEqualTo(CeTaskTypes.PURGE);
+    assertThat(submit.getValue().getComponentUuid()).isEqualTo(PROJECT_UUID);
+  }
+
+  @Test
+  public void do_not_submit_purge_task_when_one_is_already_pending() {
+    Component project = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build();
+    treeRootHolder.setRoot(project);
+    when(settingsRepository.getSettings(project)).thenReturn(new MapSettings().setProperty(PurgeDatastoresStep.ASYNC_PURGE_PROPERTY, true));
+    CeQueueDto pendingPurge = new CeQueueDto().setUuid("PENDING_UUID").setTaskType(CeTaskTypes.PURGE).setComponentUuid(PROJECT_UUID)
+      .setStatus(CeQueueDto.Status.PENDING);
+    when(dbClient.ceQueueDao().selectByComponentUuid(any(DbSession.class), eq(PROJECT_UUID))).thenReturn(asList(pendingPurge));
+
+    underTest.execute();
+
+    verify(projectCleaner).purgeDisabledComponents(any(DbSession.class), anyList());
+    verify(ceQueue, never()).submit(any(CeTaskSubmit.class));
+  }
+
+  @Test
+  public void purge_synchronously_when_submits_are_paused() {
+    Component project = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build();
+    when(ceQueue.isSubmitPaused()).thenReturn(true);
+    treeRootHolder.setRoot(project);
+    when(settingsRepository.getSettings(project)).thenReturn(new MapSettings().setProperty(PurgeDatastoresStep.ASYNC_PURGE_PROPERTY, true));
+    dbIdsRepository.setComponentId(project, PROJECT_ID);
+
+    underTest.execute();
+
+    verify(projectCleaner).purge(any(DbSession.class), any(IdUuidPair.class), any(Settings.class), anyList());
+    verify(ceQueue, never()).submit(any(CeTaskSubmit.class));
+  }
+
   @DataProvider
   public static Object[][] nonRootProjectComponentTypes() {
     return dataproviderFromComponentTypeValues(new Predicate<Component.Type>() {
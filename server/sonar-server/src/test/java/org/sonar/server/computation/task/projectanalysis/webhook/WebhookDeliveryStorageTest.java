@@ -20,6 +20,8 @@
 package org.sonar.server.computation.task.projectanalysis.webhook;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.api.utils.System2;
@@ -57,7 +59,7 @@ public class WebhookDeliveryStorageTest {
     when(uuidFactory.create()).thenReturn(DELIVERY_UUID);
     WebhookDelivery delivery = newBuilderTemplate().build();
 
-    underTest.persist(delivery);
+    underTest.persist(Collections.singletonList(delivery));
 
     WebhookDeliveryDto dto = dbClient.webhookDeliveryDao().selectByUuid(dbSession, DELIVERY_UUID).get();
     assertThat(dto.getUuid()).isEqualTo(DELIVERY_UUID);
@@ -79,24 +81,44 @@ public class WebhookDeliveryStorageTest {
       .setError(new IOException("fail to connect"))
       .build();
 
-    underTest.persist(delivery);
+    underTest.persist(Collections.singletonList(delivery));
 
     WebhookDeliveryDto dto = dbClient.webhookDeliveryDao().selectByUuid(dbSession, DELIVERY_UUID).get();
     assertThat(dto.getErrorStacktrace()).contains("java.io.IOException", "fail to connect");
   }
 
   @Test
-  public void purge_deletes_records_older_than_one_month_on_the_project() {
+  public void persist_deliveries_by_batch() {
+    when(uuidFactory.create()).thenReturn("D1", "D2");
+    WebhookDelivery delivery1 = newBuilderTemplate().build();
+    WebhookDelivery delivery2 = newBuilderTemplate().setError(new IOException("fail to connect")).build();
+
+    underTest.persist(Arrays.asList(delivery1, delivery2));
+
+    assertThat(selectAllDeliveryUuids(dbTester, dbSession)).containsOnly("D1", "D2");
+    assertThat(dbClient.webhookDeliveryDao().selectByUuid(dbSession, "D2").get().getErrorStacktrace()).contains("fail to connect");
+  }
+
+  @Test
+  public void persist_deliveries_purges_records_older_than_one_month_on_their_projects() {
     when(system.now()).thenReturn(NOW);
-    dbClient.webhookDeliveryDao().insert(dbSession, newDto("D1", "PROJECT_1", TWO_MONTHS_AGO));
-    dbClient.webhookDeliveryDao().insert(dbSession, newDto("D2", "PROJECT_1", TWO_WEEKS_AGO));
+    when(uuidFactory.create()).thenReturn("D4");
+    dbClient.webhookDeliveryDao().insert(dbSession, newDto("D1", "COMPONENT1", TWO_MONTHS_AGO));
+    dbClient.webhookDeliveryDao().insert(dbSession, newDto("D2", "COMPONENT1", TWO_WEEKS_AGO));
     dbClient.webhookDeliveryDao().insert(dbSession, newDto("D3", "PROJECT_2", TWO_MONTHS_AGO));
     dbSession.commit();
 
-    underTest.purge("PROJECT_1");
+    underTest.persist(Collections.singletonList(newBuilderTemplate().setAt(NOW).build()));
 
     // do not purge another project PROJECT_2
-    assertThat(selectAllDeliveryUuids(dbTester, dbSession)).containsOnly("D2", "D3");
+    assertThat(selectAllDeliveryUuids(dbTester, dbSession)).containsOnly("D2", "D3", "D4");
+  }
+
+  @Test
+  public void persist_empty_list_of_deliveries_does_nothing() {
+    underTest.persist(Collections.emptyList());
+
+    assertThat(selectAllDeliveryUuids(dbTester, dbSession)).isEmpty();
   }
 
   private static WebhookDelivery.Builder newBuilderTemplate() {
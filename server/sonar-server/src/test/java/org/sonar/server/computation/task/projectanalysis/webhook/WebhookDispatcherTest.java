@@ -0,0 +1,252 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.webhook;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.System2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WebhookDispatcherTest {
+
+  private static final long NOW = 1_500_000_000_000L;
+  private static final WebhookPayload PAYLOAD = new WebhookPayload("P1", "{json}");
+
+  private final Settings settings = new MapSettings()
+    .setProperty(WebhookDispatcher.RETRY_DELAY_PROPERTY, 0);
+  private final TestWebhookCaller caller = new TestWebhookCaller();
+  private final WebhookDeliveryStorage deliveryStorage = mock(WebhookDeliveryStorage.class);
+  private final System2 system = mock(System2.class);
+  private final List<WebhookDelivery> persisted = Collections.synchronizedList(new ArrayList<>());
+  private WebhookDispatcher underTest;
+
+  @After
+  public void tearDown() {
+    if (underTest != null) {
+      underTest.stop();
+    }
+  }
+
+  @Test
+  public void persist_deliveries_of_dispatched_webhooks() throws Exception {
+    caller.enqueueSuccess(NOW, 200, 1_234);
+    caller.enqueueSuccess(NOW, 200, 1_234);
+    start();
+
+    underTest.dispatch(newWebhook("First", "http://url1"), PAYLOAD);
+    underTest.dispatch(newWebhook("Second", "http://url2"), PAYLOAD);
+
+    awaitPersisted(2);
+    assertThat(persisted).extracting(d -> d.getWebhook().getName()).containsOnly("First", "Second");
+    assertThat(persisted).extracting(WebhookDelivery::isSuccess).containsOnly(true);
+  }
+
+  @Test
+  public void retry_on_connectivity_error_or_server_error() throws Exception {
+    caller.enqueueFailure(NOW, new IOException("Fail to connect"));
+    caller.enqueueSuccess(NOW, 503, 10);
+    caller.enqueueSuccess(NOW, 200, 1_234);
+    start();
+
+    underTest.dispatch(newWebhook("First", "http://url1"), PAYLOAD);
+
+    awaitPersisted(1);
+    assertThat(caller.countSent()).isEqualTo(3);
+    assertThat(persisted.get(0).getHttpStatus()).contains(200);
+  }
+
+  @Test
+  public void do_not_retry_on_client_error() throws Exception {
+    caller.enqueueSuccess(NOW, 404, 10);
+    start();
+
+    underTest.dispatch(newWebhook("First", "http://url1"), PAYLOAD);
+
+    awaitPersisted(1);
+    assertThat(caller.countSent()).isEqualTo(1);
+    assertThat(persisted.get(0).getHttpStatus()).contains(404);
+  }
+
+  @Test
+  public void persist_last_failure_when_max_attempts_is_reached() throws Exception {
+    settings.setProperty(WebhookDispatcher.MAX_ATTEMPTS_PROPERTY, 2);
+    caller.enqueueFailure(NOW, new IOException("Fail to connect 1"));
+    caller.enqueueFailure(NOW, new IOException("Fail to connect 2"));
+    start();
+
+    underTest.dispatch(newWebhook("First", "http://url1"), PAYLOAD);
+
+    awaitPersisted(1);
+    assertThat(caller.countSent()).isEqualTo(2);
+    assertThat(persisted.get(0).getErrorMessage()).contains("Fail to connect 2");
+  }
+
+  @Test
+  public void limit_concurrent_calls_to_a_same_host() throws Exception {
+    settings.setProperty(WebhookDispatcher.THREADS_PROPERTY, 4);
+    settings.setProperty(WebhookDispatcher.MAX_CALLS_PER_HOST_PROPERTY, 1);
+    AtomicInteger concurrentCalls = new AtomicInteger(0);
+    AtomicInteger maxConcurrentCalls = new AtomicInteger(0);
+    WebhookCaller slowCaller = (webhook, payload) -> {
+      maxConcurrentCalls.accumulateAndGet(concurrentCalls.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(20L);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      concurrentCalls.decrementAndGet();
+      return newDelivery(webhook, payload, 200);
+    };
+    start(slowCaller);
+
+    for (int i = 0; i < 4; i++) {
+      underTest.dispatch(newWebhook("Webhook" + i, "http://same.host/hook" + i), PAYLOAD);
+    }
+
+    awaitPersisted(4);
+    assertThat(maxConcurrentCalls.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void fail_delivery_when_too_many_deliveries_are_pending() throws Exception {
+    settings.setProperty(WebhookDispatcher.QUEUE_SIZE_PROPERTY, 1);
+    CountDownLatch latch = new CountDownLatch(1);
+    WebhookCaller blockedCaller = (webhook, payload) -> {
+      try {
+        latch.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return newDelivery(webhook, payload, 200);
+    };
+    when(system.now()).thenReturn(NOW);
+    start(blockedCaller);
+
+    underTest.dispatch(newWebhook("First", "http://url1"), PAYLOAD);
+    underTest.dispatch(newWebhook("Second", "http://url2"), PAYLOAD);
+    latch.countDown();
+
+    awaitPersisted(2);
+    WebhookDelivery rejected = persisted.stream().filter(d -> d.getWebhook().getName().equals("Second")).findFirst().get();
+    assertThat(rejected.isSuccess()).isFalse();
+    assertThat(rejected.getAt()).isEqualTo(NOW);
+    assertThat(rejected.getErrorMessage()).contains("Too many pending webhook deliveries, limit is 1");
+  }
+
+  @Test
+  public void periodically_persist_completed_deliveries_while_other_deliveries_are_pending() throws Exception {
+    settings.setProperty(WebhookDispatcher.FLUSH_DELAY_PROPERTY, 50L);
+    CountDownLatch latch = new CountDownLatch(1);
+    WebhookCaller blockingCaller = (webhook, payload) -> {
+      if (webhook.getName().equals("Blocked")) {
+        try {
+          latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return newDelivery(webhook, payload, 200);
+    };
+    start(blockingCaller);
+
+    underTest.dispatch(newWebhook("Blocked", "http://url1"), PAYLOAD);
+    underTest.dispatch(newWebhook("Completed", "http://url2"), PAYLOAD);
+
+    // neither the end of pending deliveries nor the batch size triggers the persistence
+    awaitPersisted(1);
+    assertThat(persisted.get(0).getWebhook().getName()).isEqualTo("Completed");
+    latch.countDown();
+    awaitPersisted(2);
+  }
+
+  @Test
+  public void persist_scheduled_retries_as_failed_when_stop_times_out() throws Exception {
+    settings.setProperty(WebhookDispatcher.RETRY_DELAY_PROPERTY, 60_000L);
+    settings.setProperty(WebhookDispatcher.STOP_TIMEOUT_PROPERTY, 100L);
+    caller.enqueueFailure(NOW, new IOException("Fail to connect"));
+    start();
+
+    underTest.dispatch(newWebhook("First", "http://url1"), PAYLOAD);
+    awaitSent(1);
+    underTest.stop();
+
+    assertThat(caller.countSent()).isEqualTo(1);
+    assertThat(persisted).hasSize(1);
+    assertThat(persisted.get(0).isSuccess()).isFalse();
+    assertThat(persisted.get(0).getErrorMessage()).contains("Fail to connect");
+  }
+
+  private void start() {
+    start(caller);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void start(WebhookCaller webhookCaller) {
+    doAnswer(invocation -> persisted.addAll((Collection<WebhookDelivery>) invocation.getArguments()[0]))
+      .when(deliveryStorage).persist(anyCollectionOf(WebhookDelivery.class));
+    underTest = new WebhookDispatcher(settings, webhookCaller, deliveryStorage, system);
+    underTest.start();
+  }
+
+  private void awaitSent(int expectedCount) throws InterruptedException {
+    long timeout = System.currentTimeMillis() + 10_000L;
+    while (caller.countSent() < expectedCount && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10L);
+    }
+    assertThat(caller.countSent()).isEqualTo(expectedCount);
+  }
+
+  private void awaitPersisted(int expectedCount) throws InterruptedException {
+    long timeout = System.currentTimeMillis() + 10_000L;
+    while (persisted.size() < expectedCount && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10L);
+    }
+    assertThat(persisted).hasSize(expectedCount);
+  }
+
+  private static Webhook newWebhook(String name, String url) {
+    return new Webhook("P1_UUID", "TASK_1", name, url);
+  }
+
+  private static WebhookDelivery newDelivery(Webhook webhook, WebhookPayload payload, int httpStatus) {
+    return new WebhookDelivery.Builder()
+      .setWebhook(webhook)
+      .setPayload(payload)
+      .setAt(NOW)
+      .setHttpStatus(httpStatus)
+      .setDurationInMs(10)
+      .build();
+  }
+}
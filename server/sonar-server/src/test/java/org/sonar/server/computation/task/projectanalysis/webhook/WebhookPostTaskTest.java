@@ -19,17 +19,16 @@
  */
 package org.sonar.server.computation.task.projectanalysis.webhook;
 
-import java.io.IOException;
 import java.util.Date;
+import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.sonar.api.ce.posttask.CeTask;
 import org.sonar.api.ce.posttask.PostProjectAnalysisTaskTester;
 import org.sonar.api.config.MapSettings;
-import org.sonar.api.utils.log.LogTester;
-import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.server.computation.task.projectanalysis.component.SettingsRepository;
 import org.sonar.server.computation.task.projectanalysis.component.TestSettingsRepository;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
@@ -47,26 +46,19 @@ import static org.sonar.server.computation.task.projectanalysis.component.Report
 
 public class WebhookPostTaskTest {
 
-  private static final long NOW = 1_500_000_000_000L;
   private static final String PROJECT_UUID = "P1_UUID";
 
-  @Rule
-  public LogTester logTester = new LogTester().setLevel(LoggerLevel.DEBUG);
-
   @Rule
   public TreeRootHolderRule rootHolder = new TreeRootHolderRule().setRoot(DUMB_PROJECT);
 
   private final MapSettings settings = new MapSettings();
-  private final TestWebhookCaller caller = new TestWebhookCaller();
-  private final WebhookDeliveryStorage deliveryStorage = mock(WebhookDeliveryStorage.class);
+  private final WebhookDispatcher dispatcher = mock(WebhookDispatcher.class);
 
   @Test
   public void do_nothing_if_no_webhooks() {
     execute();
 
-    assertThat(caller.countSent()).isEqualTo(0);
-    assertThat(logTester.logs(LoggerLevel.DEBUG)).isEmpty();
-    verifyZeroInteractions(deliveryStorage);
+    verifyZeroInteractions(dispatcher);
   }
 
   @Test
@@ -76,16 +68,14 @@ public class WebhookPostTaskTest {
     settings.setProperty("sonar.webhooks.global.1.url", "http://url1");
     settings.setProperty("sonar.webhooks.global.2.name", "Second");
     settings.setProperty("sonar.webhooks.global.2.url", "http://url2");
-    caller.enqueueSuccess(NOW, 200, 1_234);
-    caller.enqueueFailure(NOW, new IOException("Fail to connect"));
 
     execute();
 
-    assertThat(caller.countSent()).isEqualTo(2);
-    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Sent webhook 'First' | url=http://url1 | time=1234ms | status=200");
-    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Failed to send webhook 'Second' | url=http://url2 | message=Fail to connect");
-    verify(deliveryStorage, times(2)).persist(any(WebhookDelivery.class));
-    verify(deliveryStorage).purge(PROJECT_UUID);
+    List<Webhook> webhooks = captureDispatchedWebhooks(2);
+    assertThat(webhooks).extracting(Webhook::getName).containsExactly("First", "Second");
+    assertThat(webhooks).extracting(Webhook::getUrl).containsExactly("http://url1", "http://url2");
+    assertThat(webhooks).extracting(Webhook::getComponentUuid).containsOnly(PROJECT_UUID);
+    assertThat(webhooks).extracting(Webhook::getCeTaskUuid).containsOnly("#1");
   }
 
   @Test
@@ -93,14 +83,12 @@ public class WebhookPostTaskTest {
     settings.setProperty("sonar.webhooks.project", "1");
     settings.setProperty("sonar.webhooks.project.1.name", "First");
     settings.setProperty("sonar.webhooks.project.1.url", "http://url1");
-    caller.enqueueSuccess(NOW, 200, 1_234);
 
     execute();
 
-    assertThat(caller.countSent()).isEqualTo(1);
-    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Sent webhook 'First' | url=http://url1 | time=1234ms | status=200");
-    verify(deliveryStorage).persist(any(WebhookDelivery.class));
-    verify(deliveryStorage).purge(PROJECT_UUID);
+    List<Webhook> webhooks = captureDispatchedWebhooks(1);
+    assertThat(webhooks).extracting(Webhook::getName).containsExactly("First");
+    assertThat(webhooks).extracting(Webhook::getUrl).containsExactly("http://url1");
   }
 
   @Test
@@ -118,19 +106,26 @@ public class WebhookPostTaskTest {
       .forEach(i -> {
         settings.setProperty(property + "." + i + ".name", "First");
         settings.setProperty(property + "." + i + ".url", "http://url");
-        caller.enqueueSuccess(NOW, 200, 1_234);
       });
     settings.setProperty(property, IntStream.range(1, 15).mapToObj(String::valueOf).collect(Collectors.joining(",")));
 
     execute();
 
-    assertThat(caller.countSent()).isEqualTo(10);
-    assertThat(logTester.logs(LoggerLevel.DEBUG).stream().filter(log -> log.contains("Sent"))).hasSize(10);
+    verify(dispatcher, times(10)).dispatch(any(Webhook.class), any(WebhookPayload.class));
+  }
+
+  private List<Webhook> captureDispatchedWebhooks(int expectedCount) {
+    ArgumentCaptor<Webhook> webhookCaptor = ArgumentCaptor.forClass(Webhook.class);
+    ArgumentCaptor<WebhookPayload> payloadCaptor = ArgumentCaptor.forClass(WebhookPayload.class);
+    verify(dispatcher, times(expectedCount)).dispatch(webhookCaptor.capture(), payloadCaptor.capture());
+    // the same payload is sent to all the webhooks
+    assertThat(payloadCaptor.getAllValues()).extracting(WebhookPayload::getProjectKey).containsOnly("P1");
+    return webhookCaptor.getAllValues();
   }
 
   private void execute() {
     SettingsRepository settingsRepository = new TestSettingsRepository(settings);
-    WebhookPostTask task = new WebhookPostTask(rootHolder, settingsRepository, caller, deliveryStorage);
+    WebhookPostTask task = new WebhookPostTask(rootHolder, settingsRepository, dispatcher);
 
     PostProjectAnalysisTaskTester.of(task)
       .at(new Date())
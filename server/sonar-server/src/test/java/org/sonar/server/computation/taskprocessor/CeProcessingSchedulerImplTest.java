@@ -44,6 +44,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.Timeout;
 import org.sonar.server.computation.configuration.CeConfigurationRule;
+import org.sonar.server.computation.queue.PendingTaskNotifier;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -67,8 +68,12 @@ public class CeProcessingSchedulerImplTest {
   private StubCeProcessingSchedulerExecutorService processingExecutorService = new StubCeProcessingSchedulerExecutorService();
   private SchedulerCall regularDelayedPoll = new SchedulerCall(ceWorkerRunnable, 2000L, TimeUnit.MILLISECONDS);
   private SchedulerCall notDelayedPoll = new SchedulerCall(ceWorkerRunnable);
+  private SchedulerCall firstShortDelayedPoll = new SchedulerCall(ceWorkerRunnable, 250L, TimeUnit.MILLISECONDS);
+  private SchedulerCall secondShortDelayedPoll = new SchedulerCall(ceWorkerRunnable, 500L, TimeUnit.MILLISECONDS);
+  private SchedulerCall thirdShortDelayedPoll = new SchedulerCall(ceWorkerRunnable, 1000L, TimeUnit.MILLISECONDS);
+  private PendingTaskNotifier pendingTaskNotifier = new PendingTaskNotifier();
 
-  private CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable);
+  private CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable, pendingTaskNotifier);
 
   @Test
   public void polls_without_delay_when_CeWorkerCallable_returns_true() throws Exception {
@@ -132,11 +137,35 @@ public class CeProcessingSchedulerImplTest {
       regularDelayedPoll,
       notDelayedPoll,
       notDelayedPoll,
-      regularDelayedPoll,
+      firstShortDelayedPoll,
       notDelayedPoll,
-      regularDelayedPoll,
+      firstShortDelayedPoll,
       notDelayedPoll,
+      secondShortDelayedPoll,
+      thirdShortDelayedPoll,
+      regularDelayedPoll
+      );
+  }
+
+  @Test
+  public void polls_with_shorter_delays_after_a_task_is_processed() throws Exception {
+    when(ceWorkerRunnable.call())
+      .thenReturn(true)
+      .thenReturn(false)
+      .thenReturn(false)
+      .thenReturn(false)
+      .thenReturn(false)
+      .thenReturn(false)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    startSchedulingAndRun();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
       regularDelayedPoll,
+      notDelayedPoll,
+      firstShortDelayedPoll,
+      secondShortDelayedPoll,
+      thirdShortDelayedPoll,
       regularDelayedPoll,
       regularDelayedPoll
       );
@@ -177,6 +206,37 @@ public class CeProcessingSchedulerImplTest {
       regularDelayedPoll,
       regularDelayedPoll,
       notDelayedPoll,
+      firstShortDelayedPoll
+      );
+  }
+
+  @Test
+  public void pending_tasks_wake_up_idle_worker_without_waiting_for_polling_delay() throws Exception {
+    when(ceWorkerRunnable.call())
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    underTest.startScheduling();
+    pendingTaskNotifier.notifyPendingTasks(1);
+    processingExecutorService.runFutures();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      notDelayedPoll
+      );
+  }
+
+  @Test
+  public void pending_tasks_do_not_wake_up_workers_once_stopped() throws Exception {
+    when(ceWorkerRunnable.call())
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    underTest.startScheduling();
+    underTest.stop();
+    pendingTaskNotifier.notifyPendingTasks(1);
+    underTest.onPendingTasks(1);
+    processingExecutorService.runFutures();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
       regularDelayedPoll
       );
   }
@@ -189,7 +249,7 @@ public class CeProcessingSchedulerImplTest {
 
     ListenableScheduledFuture listenableScheduledFuture = mock(ListenableScheduledFuture.class);
     CeProcessingSchedulerExecutorService processingExecutorService = mock(CeProcessingSchedulerExecutorService.class);
-    CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable);
+    CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable, pendingTaskNotifier);
     when(processingExecutorService.schedule(ceWorkerRunnable, ceConfiguration.getQueuePollingDelay(), MILLISECONDS))
         .thenReturn(listenableScheduledFuture);
 
@@ -0,0 +1,195 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BaseIndexerTest {
+
+  private EsClient esClient = mock(EsClient.class);
+  private FakeIndexer underTest = new FakeIndexer(esClient);
+  private List<Thread> threads = new ArrayList<>();
+
+  @After
+  public void tearDown() throws InterruptedException {
+    for (Thread thread : threads) {
+      thread.interrupt();
+      thread.join();
+    }
+    underTest.stop();
+  }
+
+  @Test
+  public void isEmpty_if_type_has_no_documents() {
+    when(esClient.getMaxFieldValue("fakes", "fake", "updatedAt")).thenReturn(Long.MIN_VALUE);
+
+    assertThat(underTest.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void date_of_last_document_is_kept_if_type_is_not_empty() {
+    when(esClient.getMaxFieldValue("fakes", "fake", "updatedAt")).thenReturn(100L);
+    List<Long> dates = Collections.synchronizedList(new ArrayList<>());
+
+    assertThat(underTest.isEmpty()).isFalse();
+    underTest.index(lastUpdatedAt -> {
+      dates.add(lastUpdatedAt);
+      return 0L;
+    });
+
+    assertThat(dates).containsExactly(100L);
+    verify(esClient, times(1)).getMaxFieldValue("fakes", "fake", "updatedAt");
+  }
+
+  @Test
+  public void index_project_since_date_of_its_last_document() {
+    when(esClient.getMaxFieldValue(eq("fakes"), eq("fake"), eq("updatedAt"), any(QueryBuilder.class))).thenReturn(100L);
+    List<Long> dates = Collections.synchronizedList(new ArrayList<>());
+
+    underTest.indexProject("P1", lastUpdatedAt -> {
+      dates.add(lastUpdatedAt);
+      return 200L;
+    });
+    underTest.indexProject("P1", lastUpdatedAt -> {
+      dates.add(lastUpdatedAt);
+      return 0L;
+    });
+    underTest.indexProject("P2", lastUpdatedAt -> {
+      dates.add(lastUpdatedAt);
+      return 0L;
+    });
+
+    assertThat(dates).containsExactly(100L, 200L, 100L);
+    verify(esClient, times(2)).getMaxFieldValue(anyString(), anyString(), anyString(), any(QueryBuilder.class));
+  }
+
+  @Test
+  public void get_date_of_last_document_again_after_reset() {
+    underTest.indexProject("P1", lastUpdatedAt -> 200L);
+    underTest.resetProject("P1");
+    underTest.indexProject("P1", lastUpdatedAt -> 200L);
+
+    verify(esClient, times(2)).getMaxFieldValue(anyString(), anyString(), anyString(), any(QueryBuilder.class));
+  }
+
+  @Test
+  public void index_different_projects_in_parallel() throws InterruptedException {
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    AtomicInteger completed = new AtomicInteger();
+
+    for (String projectUuid : new String[] {"P1", "P2"}) {
+      start(() -> underTest.indexProject(projectUuid, lastUpdatedAt -> {
+        bothStarted.countDown();
+        awaitUninterruptibly(bothStarted);
+        completed.incrementAndGet();
+        return 0L;
+      }));
+    }
+    joinThreads();
+
+    assertThat(completed.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void coalesce_requests_waiting_for_the_same_project() throws InterruptedException {
+    CountDownLatch running = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger executions = new AtomicInteger();
+
+    Thread first = start(() -> underTest.indexProject("P1", lastUpdatedAt -> {
+      executions.incrementAndGet();
+      running.countDown();
+      awaitUninterruptibly(release);
+      return 0L;
+    }));
+    running.await(10, TimeUnit.SECONDS);
+    Thread second = start(() -> underTest.indexProject("P1", lastUpdatedAt -> executions.incrementAndGet()));
+    Thread third = start(() -> underTest.indexProject("P1", lastUpdatedAt -> executions.incrementAndGet()));
+    waitUntilBlocked(second);
+    waitUntilBlocked(third);
+    // next indexing starts strictly after the requests
+    Thread.sleep(5L);
+    release.countDown();
+    joinThreads();
+
+    assertThat(first.isAlive()).isFalse();
+    assertThat(executions.get()).isEqualTo(2);
+  }
+
+  private Thread start(Runnable runnable) {
+    Thread thread = new Thread(runnable);
+    threads.add(thread);
+    thread.start();
+    return thread;
+  }
+
+  private void joinThreads() throws InterruptedException {
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(10));
+      assertThat(thread.isAlive()).isFalse();
+    }
+  }
+
+  private static void waitUntilBlocked(Thread thread) throws InterruptedException {
+    while (thread.getState() != Thread.State.BLOCKED) {
+      Thread.sleep(1L);
+    }
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    try {
+      assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class FakeIndexer extends BaseIndexer {
+    FakeIndexer(EsClient client) {
+      super(client, 0L, "fakes", "fake", "updatedAt");
+    }
+
+    void indexProject(String projectUuid, IndexerTask task) {
+      indexProject(projectUuid, "projectUuid", task);
+    }
+
+    @Override
+    protected long doIndex(long lastUpdatedAt) {
+      return 0L;
+    }
+  }
+}
@@ -59,6 +59,20 @@ public class BulkIndexerTest {
     assertThat(count()).isEqualTo(2);
   }
 
+  @Test
+  public void record_throughput_of_index() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX);
+    indexer.start();
+    indexer.add(newIndexRequest(42));
+    indexer.add(newIndexRequest(78));
+    indexer.stop();
+
+    BulkIndexerStats stats = esTester.client().getBulkIndexerStats(FakeIndexDefinition.INDEX);
+    assertThat(stats.getDocs()).isEqualTo(2);
+    assertThat(stats.getBytes()).isGreaterThan(0);
+    assertThat(stats.getRejections()).isEqualTo(0);
+  }
+
   @Test
   public void large_indexing() {
     // index has one replica
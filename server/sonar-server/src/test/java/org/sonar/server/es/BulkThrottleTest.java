@@ -0,0 +1,112 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.es.BulkThrottle.MAX_FLUSH_BYTE_SIZE;
+import static org.sonar.server.es.BulkThrottle.MIN_FLUSH_BYTE_SIZE;
+import static org.sonar.server.es.BulkThrottle.TARGET_LATENCY_MS;
+
+public class BulkThrottleTest {
+
+  private static final long ONE_MB = 1_024L * 1_024L;
+
+  private BulkThrottle underTest = new BulkThrottle(2, 4, ONE_MB, true);
+
+  @Test
+  public void grow_size_and_concurrency_when_requests_are_fast() {
+    underTest.onResponse(10L, 0);
+    assertThat(underTest.getFlushByteSize()).isEqualTo(ONE_MB * 3 / 2);
+    assertThat(underTest.getConcurrency()).isEqualTo(2);
+
+    underTest.onResponse(10L, 0);
+    assertThat(underTest.getConcurrency()).isEqualTo(3);
+
+    for (int i = 0; i < 100; i++) {
+      underTest.onResponse(10L, 0);
+    }
+    assertThat(underTest.getConcurrency()).isEqualTo(4);
+    assertThat(underTest.getFlushByteSize()).isEqualTo(MAX_FLUSH_BYTE_SIZE);
+  }
+
+  @Test
+  public void keep_size_when_latency_is_close_to_target() {
+    underTest.onResponse(TARGET_LATENCY_MS, 0);
+
+    assertThat(underTest.getFlushByteSize()).isEqualTo(ONE_MB);
+  }
+
+  @Test
+  public void shrink_size_and_concurrency_when_requests_are_slow() {
+    underTest.onResponse(3 * TARGET_LATENCY_MS, 0);
+
+    assertThat(underTest.getFlushByteSize()).isEqualTo(ONE_MB / 2);
+    assertThat(underTest.getConcurrency()).isEqualTo(1);
+  }
+
+  @Test
+  public void back_off_when_documents_are_rejected() {
+    BulkThrottle throttle = new BulkThrottle(4, 4, ONE_MB, true);
+
+    throttle.onResponse(10L, 3);
+    assertThat(throttle.getFlushByteSize()).isEqualTo(ONE_MB / 2);
+    assertThat(throttle.getConcurrency()).isEqualTo(2);
+
+    throttle.onFailure(true);
+    throttle.onFailure(true);
+    throttle.onFailure(true);
+    assertThat(throttle.getFlushByteSize()).isEqualTo(MIN_FLUSH_BYTE_SIZE);
+    assertThat(throttle.getConcurrency()).isEqualTo(1);
+  }
+
+  @Test
+  public void do_not_back_off_on_other_failures() {
+    underTest.onFailure(false);
+
+    assertThat(underTest.getFlushByteSize()).isEqualTo(ONE_MB);
+    assertThat(underTest.getConcurrency()).isEqualTo(2);
+  }
+
+  @Test
+  public void flush_size_is_not_changed_if_not_adaptive() {
+    BulkThrottle throttle = new BulkThrottle(2, 4, 500L, false);
+
+    throttle.onResponse(10L, 0);
+    throttle.onResponse(10L, 2);
+
+    assertThat(throttle.getFlushByteSize()).isEqualTo(500L);
+  }
+
+  @Test
+  public void await_completion_of_requests_in_flight() throws Exception {
+    assertThat(underTest.awaitCompletion(10, TimeUnit.MILLISECONDS)).isTrue();
+
+    underTest.acquire();
+    underTest.acquire();
+    assertThat(underTest.awaitCompletion(10, TimeUnit.MILLISECONDS)).isFalse();
+
+    underTest.release();
+    underTest.release();
+    assertThat(underTest.awaitCompletion(10, TimeUnit.MILLISECONDS)).isTrue();
+  }
+}
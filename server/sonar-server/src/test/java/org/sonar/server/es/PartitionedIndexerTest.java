@@ -0,0 +1,166 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbTester;
+import org.sonar.server.property.InternalProperties;
+import org.sonar.server.property.InternalPropertiesImpl;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonar.db.component.ComponentTesting.newProjectDto;
+import static org.sonar.server.es.FakeIndexDefinition.INDEX;
+import static org.sonar.server.es.FakeIndexDefinition.TYPE;
+
+public class PartitionedIndexerTest {
+
+  private static final String CHECKPOINT_KEY = PartitionedIndexer.CHECKPOINT_PREFIX + INDEX + "." + TYPE;
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  @Rule
+  public EsTester es = new EsTester(new FakeIndexDefinition());
+
+  private MapSettings settings = new MapSettings();
+  private InternalProperties internalProperties = new InternalPropertiesImpl(db.getDbClient());
+  private BaseIndexer indexer = mock(BaseIndexer.class);
+  private PartitionedIndexer underTest = new PartitionedIndexer(db.getDbClient(), es.client(), internalProperties, settings);
+
+  @Test
+  public void required_if_type_is_empty() {
+    when(indexer.isEmpty()).thenReturn(true);
+    assertThat(underTest.isRequired(INDEX, TYPE, indexer)).isTrue();
+
+    when(indexer.isEmpty()).thenReturn(false);
+    assertThat(underTest.isRequired(INDEX, TYPE, indexer)).isFalse();
+  }
+
+  @Test
+  public void required_if_previous_indexing_is_not_completed() {
+    internalProperties.write(CHECKPOINT_KEY, "STARTED");
+
+    assertThat(underTest.isRequired(INDEX, TYPE, indexer)).isTrue();
+    verify(indexer, never()).isEmpty();
+  }
+
+  @Test
+  public void index_all_projects_by_partitions() {
+    insertProjects("P5", "P3", "P1", "P4", "P2");
+    settings.setProperty(PartitionedIndexer.THREADS_PROPERTY, 2);
+    List<List<String>> partitions = Collections.synchronizedList(new ArrayList<>());
+
+    underTest.index(INDEX, TYPE, partitions::add);
+
+    assertThat(partitions).hasSize(5);
+    assertThat(partitions.stream().flatMap(List::stream).collect(Collectors.toList())).containsOnly("P1", "P2", "P3", "P4", "P5");
+    assertThat(internalProperties.read(CHECKPOINT_KEY)).isEqualTo(Optional.of(""));
+    assertThat(underTest.isRequired(INDEX, TYPE, indexer)).isFalse();
+  }
+
+  @Test
+  public void do_not_write_checkpoint_if_there_are_no_projects() {
+    underTest.index(INDEX, TYPE, projectUuids -> fail("no projects to index"));
+
+    assertThat(internalProperties.read(CHECKPOINT_KEY)).isEmpty();
+  }
+
+  @Test
+  public void resume_interrupted_indexing() {
+    insertProjects("P1", "P2", "P3", "P4", "P5");
+    settings.setProperty(PartitionedIndexer.THREADS_PROPERTY, 1);
+    List<String> indexed = Collections.synchronizedList(new ArrayList<>());
+
+    try {
+      underTest.index(INDEX, TYPE, projectUuids -> {
+        if (projectUuids.contains("P3")) {
+          throw new IllegalStateException("crash");
+        }
+        indexed.addAll(projectUuids);
+      });
+      fail("indexing should fail");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to index fakes/fake");
+      assertThat(e.getCause()).hasMessage("crash");
+    }
+    assertThat(indexed).contains("P1", "P2").doesNotContain("P3");
+    assertThat(internalProperties.read(CHECKPOINT_KEY)).isEqualTo(Optional.of("STARTED:P2"));
+    assertThat(underTest.isRequired(INDEX, TYPE, indexer)).isTrue();
+
+    List<String> resumed = Collections.synchronizedList(new ArrayList<>());
+    underTest.index(INDEX, TYPE, resumed::addAll);
+
+    assertThat(resumed).contains("P3").doesNotContain("P1", "P2");
+    assertThat(internalProperties.read(CHECKPOINT_KEY)).isEqualTo(Optional.of(""));
+  }
+
+  @Test
+  public void resume_after_the_last_project_of_contiguous_completed_partitions() {
+    insertProjects("P1", "P2", "P3", "P4", "P5");
+    // P4 was indexed, but not P3
+    internalProperties.write(CHECKPOINT_KEY, "STARTED:P2");
+    List<String> resumed = Collections.synchronizedList(new ArrayList<>());
+
+    underTest.index(INDEX, TYPE, resumed::addAll);
+
+    assertThat(resumed).containsOnly("P3", "P4", "P5");
+    assertThat(internalProperties.read(CHECKPOINT_KEY)).isEqualTo(Optional.of(""));
+  }
+
+  @Test
+  public void partition_sorted_uuids() {
+    List<String> uuids = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      uuids.add(String.format("U%04d", i));
+    }
+
+    List<PartitionedIndexer.Partition> partitions = PartitionedIndexer.partition(uuids, 2);
+
+    assertThat(partitions).hasSize(10);
+    assertThat(partitions.get(0).getProjectUuids()).hasSize(100).startsWith("U0000").endsWith("U0099");
+    assertThat(partitions.get(0).getLastUuid()).isEqualTo("U0099");
+    assertThat(PartitionedIndexer.partition(asList("U1", "U2"), 8)).hasSize(2);
+    assertThat(PartitionedIndexer.partition(Collections.emptyList(), 8)).isEmpty();
+  }
+
+  private void insertProjects(String... uuids) {
+    for (String uuid : uuids) {
+      db.components().insertComponent(newProjectDto(uuid));
+    }
+  }
+}
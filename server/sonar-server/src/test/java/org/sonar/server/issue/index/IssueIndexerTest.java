@@ -108,6 +108,30 @@ public class IssueIndexerTest {
     verifyIssueKeys("ABCDE");
   }
 
+  @Test
+  public void index_issues_from_projects_updated_at_the_same_date() {
+    dbTester.prepareDbUnit(getClass(), "index_project.xml");
+
+    IssueIndexer indexer = createIndexer();
+    indexer.index("THE_PROJECT_1");
+    indexer.index("THE_PROJECT_2");
+
+    // date of last indexed issue is kept per project
+    verifyIssueKeys("ABCDE", "EDCBA");
+  }
+
+  @Test
+  public void index_project_again_after_deletion() {
+    dbTester.prepareDbUnit(getClass(), "index_project.xml");
+
+    IssueIndexer indexer = createIndexer();
+    indexer.index("THE_PROJECT_1");
+    indexer.deleteProject("THE_PROJECT_1");
+    indexer.index("THE_PROJECT_1");
+
+    verifyIssueKeys("ABCDE");
+  }
+
   @Test
   public void delete_issues_by_keys() throws Exception {
     addIssue("P1", "Issue1");
@@ -56,6 +56,7 @@ import org.sonarqube.ws.WsMeasures;
 import org.sonarqube.ws.WsMeasures.ComponentTreeWsResponse;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.sonar.api.measures.CoreMetrics.NEW_SECURITY_RATING_KEY;
 import static org.sonar.api.utils.DateUtils.parseDateTime;
 import static org.sonar.db.component.ComponentTesting.newDevProjectCopy;
@@ -292,6 +293,40 @@ public class ComponentTreeActionTest {
     assertThat(response.getPaging().getTotal()).isEqualTo(9);
   }
 
+  @Test
+  public void load_measures_of_all_metrics_for_the_components_of_the_page_sorted_by_metric() {
+    ComponentDto projectDto = newProjectDto("project-uuid");
+    SnapshotDto projectSnapshot = componentDb.insertProjectAndSnapshot(projectDto);
+    ComponentDto file1 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-1"));
+    ComponentDto file2 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-2"));
+    ComponentDto file3 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-3"));
+    MetricDto ncloc = insertNclocMetric();
+    MetricDto coverage = insertCoverageMetric();
+    dbClient.measureDao().insert(dbSession,
+      newMeasureDto(ncloc, projectDto, projectSnapshot).setValue(6.0d),
+      newMeasureDto(ncloc, file1, projectSnapshot).setValue(1.0d),
+      newMeasureDto(ncloc, file2, projectSnapshot).setValue(2.0d),
+      newMeasureDto(ncloc, file3, projectSnapshot).setValue(3.0d),
+      newMeasureDto(coverage, file1, projectSnapshot).setValue(10.0d),
+      newMeasureDto(coverage, file2, projectSnapshot).setValue(20.0d),
+      newMeasureDto(coverage, file3, projectSnapshot).setValue(30.0d));
+    db.commit();
+
+    ComponentTreeWsResponse response = call(ws.newRequest()
+      .setParam(PARAM_BASE_COMPONENT_ID, "project-uuid")
+      .setParam(Param.SORT, METRIC_SORT)
+      .setParam(Param.ASCENDING, "false")
+      .setParam(PARAM_METRIC_SORT, "ncloc")
+      .setParam(PARAM_METRIC_KEYS, "ncloc,coverage")
+      .setParam(Param.PAGE, "2")
+      .setParam(Param.PAGE_SIZE, "1"));
+
+    assertThat(response.getBaseComponent().getMeasuresList()).extracting("metric", "value").containsOnly(tuple("ncloc", "6"));
+    assertThat(response.getComponentsList()).extracting("id").containsExactly("file-uuid-2");
+    assertThat(response.getComponents(0).getMeasuresList()).extracting("metric", "value").containsOnly(tuple("ncloc", "2"), tuple("coverage", "20.0"));
+    assertThat(response.getPaging().getTotal()).isEqualTo(3);
+  }
+
   @Test
   public void sort_by_metric_value() {
     ComponentDto projectDto = newProjectDto("project-uuid");
@@ -0,0 +1,131 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.notification;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.sonar.api.notifications.Notification;
+import org.sonar.api.notifications.NotificationChannel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class ChannelDeliveriesTest {
+
+  private Notification notification1 = new Notification("test1");
+  private Notification notification2 = new Notification("test2");
+  private NotificationChannel emailChannel = mock(NotificationChannel.class);
+  private NotificationChannel gtalkChannel = mock(NotificationChannel.class);
+
+  private ChannelDeliveries underTest = new ChannelDeliveries(0d, 5_000L);
+
+  @After
+  public void tearDown() {
+    underTest.stop();
+  }
+
+  @Test
+  public void deliveries_of_a_channel_are_done_in_order_of_submission() {
+    underTest.submit(notification1, "simon", emailChannel);
+    underTest.submit(notification2, "simon", emailChannel);
+    underTest.submit(notification1, "evgeny", gtalkChannel);
+    underTest.awaitTermination();
+
+    InOrder inOrder = inOrder(emailChannel);
+    inOrder.verify(emailChannel).deliver(notification1, "simon");
+    inOrder.verify(emailChannel).deliver(notification2, "simon");
+    verify(gtalkChannel).deliver(notification1, "evgeny");
+  }
+
+  @Test
+  public void failure_of_a_channel_does_not_stop_deliveries() {
+    doThrow(new IllegalStateException("SMTP is down")).when(emailChannel).deliver(any(Notification.class), anyString());
+
+    underTest.submit(notification1, "simon", emailChannel);
+    underTest.submit(notification2, "simon", emailChannel);
+    underTest.submit(notification1, "evgeny", gtalkChannel);
+    underTest.awaitTermination();
+
+    verify(emailChannel).deliver(notification2, "simon");
+    verify(gtalkChannel).deliver(notification1, "evgeny");
+  }
+
+  @Test
+  public void deliveries_are_rate_limited() {
+    underTest = new ChannelDeliveries(1_000d, 5_000L);
+
+    for (int i = 0; i < 10; i++) {
+      underTest.submit(notification1, "user" + i, emailChannel);
+    }
+    underTest.awaitTermination();
+
+    verify(emailChannel).deliver(notification1, "user9");
+  }
+
+  @Test
+  public void awaitTermination_returns_no_notifications_when_all_deliveries_are_executed() {
+    underTest.submit(notification1, "simon", emailChannel);
+    underTest.submit(notification2, "evgeny", gtalkChannel);
+
+    assertThat(underTest.awaitTermination()).isEmpty();
+  }
+
+  @Test
+  public void stop_cancels_deliveries_which_are_not_started() throws Exception {
+    underTest = new ChannelDeliveries(0d, 100L);
+    CountDownLatch started = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      started.countDown();
+      // interrupted by stop()
+      Thread.sleep(10_000L);
+      return null;
+    }).when(emailChannel).deliver(notification1, "simon");
+
+    underTest.submit(notification1, "simon", emailChannel);
+    underTest.submit(notification2, "simon", emailChannel);
+    underTest.submit(notification2, "evgeny", gtalkChannel);
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    underTest.stop();
+
+    assertThat(underTest.awaitTermination()).containsExactly(notification2);
+    verify(emailChannel, never()).deliver(notification2, "simon");
+    verify(gtalkChannel).deliver(notification2, "evgeny");
+  }
+
+  @Test
+  public void deliveries_submitted_after_stop_are_not_executed() {
+    underTest.stop();
+
+    underTest.submit(notification1, "simon", emailChannel);
+
+    assertThat(underTest.awaitTermination()).containsExactly(notification1);
+    verify(emailChannel, never()).deliver(any(Notification.class), anyString());
+  }
+}
@@ -24,6 +24,7 @@ import com.google.common.collect.Multimap;
 import java.io.InvalidClassException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import org.junit.Before;
@@ -41,6 +42,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.only;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -106,6 +108,42 @@ public class DefaultNotificationManagerTest {
     inOrder.verify(notificationQueueDao).delete(dtos);
   }
 
+  @Test
+  public void get_batch_from_queue_and_delete() {
+    Notification notification1 = new Notification("test1");
+    Notification notification2 = new Notification("test2");
+    List<NotificationQueueDto> dtos = Arrays.asList(NotificationQueueDto.toNotificationQueueDto(notification1), NotificationQueueDto.toNotificationQueueDto(notification2));
+    when(notificationQueueDao.selectOldest(10)).thenReturn(dtos);
+
+    assertThat(manager.getFromQueue(10)).containsExactly(notification1, notification2);
+
+    InOrder inOrder = inOrder(notificationQueueDao);
+    inOrder.verify(notificationQueueDao).selectOldest(10);
+    inOrder.verify(notificationQueueDao).delete(dtos);
+  }
+
+  @Test
+  public void get_empty_batch_from_empty_queue() {
+    when(notificationQueueDao.selectOldest(10)).thenReturn(Collections.emptyList());
+
+    assertThat(manager.getFromQueue(10)).isEmpty();
+
+    verify(notificationQueueDao, never()).delete(any(List.class));
+  }
+
+  @Test
+  public void ignore_notifications_of_batch_which_can_not_be_deserialized() throws Exception {
+    Notification notification = new Notification("test");
+    NotificationQueueDto dto1 = mock(NotificationQueueDto.class);
+    when(dto1.toNotification()).thenThrow(new InvalidClassException("Pouet"));
+    when(notificationQueueDao.selectOldest(10)).thenReturn(Arrays.asList(dto1, NotificationQueueDto.toNotificationQueueDto(notification)));
+
+    manager = spy(manager);
+    assertThat(manager.getFromQueue(10)).containsExactly(notification);
+
+    verify(manager).logDeserializationIssue();
+  }
+
   // SONAR-4739
   @Test
   public void shouldNotFailWhenUnableToDeserialize() throws Exception {
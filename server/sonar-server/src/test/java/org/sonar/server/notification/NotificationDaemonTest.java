@@ -21,6 +21,9 @@ package org.sonar.server.notification;
 
 import com.google.common.collect.Sets;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -31,8 +34,11 @@ import org.sonar.api.notifications.NotificationChannel;
 import org.sonar.db.DbClient;
 import org.sonar.db.property.PropertiesDao;
 
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
@@ -68,7 +74,7 @@ public class NotificationDaemonTest {
     when(commentOnIssueCreatedByMe.getType()).thenReturn("issue-changes");
     when(qualityGateChange.getKey()).thenReturn("QGateChange");
     when(qualityGateChange.getType()).thenReturn("qgate-changes");
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenReturn(singletonList(notification)).thenReturn(Collections.emptyList());
 
     Settings settings = new MapSettings().setProperty("sonar.notifications.delay", 1L);
 
@@ -174,7 +180,8 @@ public class NotificationDaemonTest {
   @Test
   public void shouldNotStopWhenException() {
     setUpMocks();
-    when(manager.getFromQueue()).thenThrow(new RuntimeException("Unexpected exception")).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenThrow(new RuntimeException("Unexpected exception")).thenReturn(singletonList(notification))
+      .thenReturn(Collections.emptyList());
     doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
     doAnswer(addUser(CREATOR_SIMON, emailChannel)).when(commentOnIssueCreatedByMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
 
@@ -216,7 +223,8 @@ public class NotificationDaemonTest {
   public void shouldLogEvery10Minutes() {
     setUpMocks();
     // Emulate 2 notifications in DB
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenReturn(singletonList(notification)).thenReturn(singletonList(notification))
+      .thenReturn(Collections.emptyList());
     when(manager.count()).thenReturn(1L).thenReturn(0L);
     underTest = spy(underTest);
     // Emulate processing of each notification take 10 min to have a log each time
@@ -227,6 +235,56 @@ public class NotificationDaemonTest {
     underTest.stop();
   }
 
+  @Test
+  public void dequeue_notifications_by_batches() {
+    setUpMocks();
+    Notification notification2 = mock(Notification.class);
+    when(manager.getFromQueue(anyInt())).thenReturn(Arrays.asList(notification, notification2)).thenReturn(Collections.emptyList());
+    doAnswer(addUser(ASSIGNEE_SIMON, new NotificationChannel[] {emailChannel, gtalkChannel}))
+      .when(commentOnIssueAssignedToMe).dispatch(any(Notification.class), any(NotificationDispatcher.Context.class));
+    Settings settings = new MapSettings()
+      .setProperty("sonar.notifications.delay", 1L)
+      .setProperty("sonar.internal.notifications.batchSize", 2)
+      .setProperty("sonar.internal.notifications.maxDeliveriesPerSecondByChannel", 100);
+    underTest = new NotificationDaemon(settings, manager, service);
+
+    underTest.start();
+    verify(emailChannel, timeout(2000)).deliver(notification, ASSIGNEE_SIMON);
+    verify(emailChannel, timeout(2000)).deliver(notification2, ASSIGNEE_SIMON);
+    verify(gtalkChannel, timeout(2000)).deliver(notification, ASSIGNEE_SIMON);
+    verify(gtalkChannel, timeout(2000)).deliver(notification2, ASSIGNEE_SIMON);
+    underTest.stop();
+
+    verify(manager, atLeastOnce()).getFromQueue(2);
+  }
+
+  @Test
+  public void put_back_in_queue_the_notifications_not_delivered_when_stopping() throws Exception {
+    setUpMocks();
+    Notification notification2 = mock(Notification.class);
+    when(manager.getFromQueue(anyInt())).thenReturn(Arrays.asList(notification, notification2)).thenReturn(Collections.emptyList());
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel))
+      .when(commentOnIssueAssignedToMe).dispatch(any(Notification.class), any(NotificationDispatcher.Context.class));
+    CountDownLatch deliveryStarted = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      deliveryStarted.countDown();
+      // interrupted by stop()
+      Thread.sleep(10_000L);
+      return null;
+    }).when(emailChannel).deliver(notification, ASSIGNEE_SIMON);
+    Settings settings = new MapSettings()
+      .setProperty("sonar.notifications.delay", 1L)
+      .setProperty("sonar.internal.notifications.stopTimeoutMs", 100L);
+    underTest = new NotificationDaemon(settings, manager, service);
+
+    underTest.start();
+    assertThat(deliveryStarted.await(5, TimeUnit.SECONDS)).isTrue();
+    underTest.stop();
+
+    verify(manager, timeout(2000)).scheduleForSending(singletonList(notification2));
+    verify(emailChannel, never()).deliver(notification2, ASSIGNEE_SIMON);
+  }
+
   @Test
   public void hasProjectSubscribersForType() {
     setUpMocks();
@@ -76,6 +76,10 @@ public class EsMonitorTest {
     assertThat(indexAttributes.get("Docs")).isEqualTo(0L);
     assertThat((int) indexAttributes.get("Shards")).isGreaterThan(0);
     assertThat(indexAttributes.get("Store Size")).isNotNull();
+    assertThat(indexAttributes.get("Bulk Indexed Docs")).isEqualTo(0L);
+    assertThat(indexAttributes.get("Bulk Indexing Docs/sec")).isEqualTo(0L);
+    assertThat(indexAttributes.get("Bulk Indexing Bytes/sec")).isEqualTo(0L);
+    assertThat(indexAttributes.get("Bulk Rejections")).isEqualTo(0L);
   }
 
   @Test
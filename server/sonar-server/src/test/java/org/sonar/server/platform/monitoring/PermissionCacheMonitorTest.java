@@ -0,0 +1,45 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.db.permission.PermissionVersion;
+import org.sonar.server.user.PermissionCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PermissionCacheMonitorTest {
+
+  private PermissionCache permissionCache = new PermissionCache(new PermissionVersion(), new MapSettings());
+  private PermissionCacheMonitor underTest = new PermissionCacheMonitor(permissionCache);
+
+  @Test
+  public void name_is_not_empty() {
+    assertThat(underTest.name()).isNotEmpty();
+  }
+
+  @Test
+  public void attributes_of_empty_cache() {
+    assertThat(underTest.attributes()).containsKeys("Hit Rate", "Hits", "Misses", "Evictions", "Entries", "Estimated Memory (bytes)");
+    assertThat(underTest.getEntryCount()).isEqualTo(0L);
+    assertThat(underTest.getEstimatedMemoryBytes()).isEqualTo(0L);
+  }
+}
@@ -925,6 +925,24 @@ public class RuleActivatorMediumTest {
     assertThat(result.countFailed()).isEqualTo(0);
   }
 
+  @Test
+  public void bulk_activation_propagates_to_descendant_profiles() {
+    createChildProfiles();
+    // x1 is overridden on P2 before being activated on P1
+    activate(new RuleActivation(XOO_X1).setSeverity(BLOCKER).setParameter("max", "7"), XOO_P2_KEY);
+
+    BulkChangeResult result = ruleActivator.bulkActivate(new RuleQuery().setLanguages(Arrays.asList("xoo")).setIsTemplate(false), XOO_P1_KEY, MINOR);
+
+    assertThat(result.countSucceeded()).isGreaterThanOrEqualTo(2);
+    dbSession.clearCache();
+    verifyHasActiveRuleInDbAndIndex(ActiveRuleKey.of(XOO_P1_KEY, XOO_X1), MINOR, null, ImmutableMap.of("max", "10"));
+    verifyHasActiveRuleInDbAndIndex(ActiveRuleKey.of(XOO_P2_KEY, XOO_X1), BLOCKER, OVERRIDES, ImmutableMap.of("max", "7"));
+    verifyHasActiveRuleInDbAndIndex(ActiveRuleKey.of(XOO_P3_KEY, XOO_X1), BLOCKER, INHERITED, ImmutableMap.of("max", "7"));
+    verifyHasActiveRuleInDbAndIndex(ActiveRuleKey.of(XOO_P1_KEY, XOO_X2), MINOR, null, Collections.<String, String>emptyMap());
+    verifyHasActiveRuleInDbAndIndex(ActiveRuleKey.of(XOO_P2_KEY, XOO_X2), MINOR, INHERITED, Collections.<String, String>emptyMap());
+    verifyHasActiveRuleInDbAndIndex(ActiveRuleKey.of(XOO_P3_KEY, XOO_X2), MINOR, INHERITED, Collections.<String, String>emptyMap());
+  }
+
   @Test
   public void bulk_activation_ignores_errors() {
     // 1. bulk activate all the rules, even non xoo-rules and xoo templates
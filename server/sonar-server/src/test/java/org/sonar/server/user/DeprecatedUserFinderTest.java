@@ -25,6 +25,7 @@ import org.junit.Test;
 import org.sonar.api.database.model.User;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
+import org.sonar.db.permission.PermissionVersion;
 import org.sonar.db.user.UserDao;
 
 import static org.hamcrest.Matchers.is;
@@ -45,7 +46,7 @@ public class DeprecatedUserFinderTest {
 
   @Test
   public void shouldFindUserByLogin() {
-    DeprecatedUserFinder finder = new DeprecatedUserFinder(new UserDao(dbTester.myBatis(), mock(System2.class)));
+    DeprecatedUserFinder finder = new DeprecatedUserFinder(new UserDao(dbTester.myBatis(), mock(System2.class), new PermissionVersion()));
     User user = finder.findByLogin("simon");
     assertThat(user.getId(), is(1));
     assertThat(user.getLogin(), is("simon"));
@@ -64,7 +65,7 @@ public class DeprecatedUserFinderTest {
 
   @Test
   public void shouldFindUserById() {
-    DeprecatedUserFinder finder = new DeprecatedUserFinder(new UserDao(dbTester.myBatis(), mock(System2.class)));
+    DeprecatedUserFinder finder = new DeprecatedUserFinder(new UserDao(dbTester.myBatis(), mock(System2.class), new PermissionVersion()));
     User user = finder.findById(1);
     assertThat(user.getId(), is(1));
     assertThat(user.getLogin(), is("simon"));
@@ -0,0 +1,101 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.db.permission.PermissionVersion;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.user.PermissionCache.Kind.GLOBAL_PERMISSIONS;
+import static org.sonar.server.user.PermissionCache.Kind.PROJECT_KEYS;
+
+public class PermissionCacheTest {
+
+  private PermissionVersion permissionVersion = new PermissionVersion();
+  private MapSettings settings = new MapSettings();
+  private AtomicInteger loads = new AtomicInteger();
+
+  @Test
+  public void values_are_loaded_once_per_version() {
+    PermissionCache underTest = new PermissionCache(permissionVersion, settings);
+
+    assertThat(underTest.get("marius", GLOBAL_PERMISSIONS, null, loader("admin", "scan"))).containsExactly("admin", "scan");
+    assertThat(underTest.get("marius", GLOBAL_PERMISSIONS, null, loader("other"))).containsExactly("admin", "scan");
+    assertThat(loads.get()).isEqualTo(1);
+
+    permissionVersion.increment();
+    assertThat(underTest.get("marius", GLOBAL_PERMISSIONS, null, loader("other"))).containsExactly("other");
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void values_are_cached_per_user_kind_and_parameter() {
+    PermissionCache underTest = new PermissionCache(permissionVersion, settings);
+
+    underTest.get("marius", PROJECT_KEYS, "user", loader("P1"));
+    underTest.get("marius", PROJECT_KEYS, "codeviewer", loader("P2"));
+    underTest.get(null, PROJECT_KEYS, "user", loader("P3"));
+    underTest.get("marius", GLOBAL_PERMISSIONS, "user", loader("admin"));
+
+    assertThat(loads.get()).isEqualTo(4);
+    assertThat(underTest.get(null, PROJECT_KEYS, "user", loader("other"))).containsExactly("P3");
+    assertThat(loads.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void stats() {
+    PermissionCache underTest = new PermissionCache(permissionVersion, settings);
+
+    underTest.get("marius", GLOBAL_PERMISSIONS, null, loader("admin", "scan"));
+    underTest.get("marius", GLOBAL_PERMISSIONS, null, loader("admin", "scan"));
+    underTest.get("marius", GLOBAL_PERMISSIONS, null, loader("admin", "scan"));
+
+    assertThat(underTest.getHitCount()).isEqualTo(2L);
+    assertThat(underTest.getMissCount()).isEqualTo(1L);
+    assertThat(underTest.getHitRate()).isEqualTo(2.0 / 3);
+    assertThat(underTest.getSize()).isEqualTo(1L);
+    assertThat(underTest.getValueCount()).isEqualTo(2L);
+    assertThat(underTest.getEstimatedMemoryBytes()).isGreaterThan(0L);
+  }
+
+  @Test
+  public void size_is_bounded_by_number_of_values() {
+    settings.setProperty(PermissionCache.MAX_VALUES_PROPERTY, 0);
+    PermissionCache underTest = new PermissionCache(permissionVersion, settings);
+
+    underTest.get("marius", GLOBAL_PERMISSIONS, null, loader("admin"));
+    underTest.get("marius", GLOBAL_PERMISSIONS, null, loader("admin"));
+
+    assertThat(loads.get()).isEqualTo(2);
+    assertThat(underTest.getSize()).isEqualTo(0L);
+  }
+
+  private Supplier<Collection<String>> loader(String... values) {
+    return () -> {
+      loads.incrementAndGet();
+      return Arrays.asList(values);
+    };
+  }
+}
@@ -24,6 +24,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.api.web.UserRole;
 import org.sonar.core.permission.GlobalPermissions;
@@ -32,6 +33,7 @@ import org.sonar.db.DbTester;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTesting;
 import org.sonar.db.organization.OrganizationDto;
+import org.sonar.db.permission.PermissionVersion;
 import org.sonar.db.user.UserDto;
 import org.sonar.server.exceptions.ForbiddenException;
 
@@ -355,6 +357,37 @@ public class ServerUserSessionTest {
     assertThat(session.hasOrganizationPermission("another-org", GlobalPermissions.PROVISIONING)).isFalse();
   }
 
+  @Test
+  public void permissions_are_shared_by_sessions_through_cache_until_version_is_incremented() {
+    PermissionVersion permissionVersion = new PermissionVersion();
+    PermissionCache permissionCache = new PermissionCache(permissionVersion, new MapSettings());
+    addGlobalPermissions("admin");
+
+    assertThat(createForUser(dbClient, permissionCache, userDto).hasPermission(SYSTEM_ADMIN)).isTrue();
+    assertThat(permissionCache.getMissCount()).isGreaterThan(0);
+
+    // not visible by the sessions using the cache while version is not incremented
+    addGlobalPermissions("profileadmin");
+    long misses = permissionCache.getMissCount();
+    assertThat(createForUser(dbClient, permissionCache, userDto).hasPermission(QUALITY_PROFILE_ADMIN)).isFalse();
+    assertThat(permissionCache.getMissCount()).isEqualTo(misses);
+    assertThat(permissionCache.getHitCount()).isGreaterThan(0);
+
+    permissionVersion.increment();
+    assertThat(createForUser(dbClient, permissionCache, userDto).hasPermission(QUALITY_PROFILE_ADMIN)).isTrue();
+  }
+
+  @Test
+  public void project_permissions_of_anonymous_are_cached() {
+    PermissionCache permissionCache = new PermissionCache(new PermissionVersion(), new MapSettings());
+    addAnyonePermissions(project, UserRole.USER);
+
+    assertThat(createForAnonymous(dbClient, permissionCache).hasComponentPermission(UserRole.USER, FILE_KEY)).isTrue();
+    long misses = permissionCache.getMissCount();
+    assertThat(createForAnonymous(dbClient, permissionCache).hasComponentPermission(UserRole.USER, FILE_KEY)).isTrue();
+    assertThat(permissionCache.getMissCount()).isEqualTo(misses);
+  }
+
   private ServerUserSession newUserSession(UserDto userDto) {
     return createForUser(dbClient, userDto);
   }
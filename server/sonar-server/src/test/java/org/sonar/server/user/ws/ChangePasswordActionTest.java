@@ -30,6 +30,7 @@ import org.sonar.core.permission.GlobalPermissions;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
+import org.sonar.db.permission.PermissionVersion;
 import org.sonar.db.user.GroupDao;
 import org.sonar.db.user.GroupTesting;
 import org.sonar.db.user.UserDao;
@@ -78,9 +79,10 @@ public class ChangePasswordActionTest {
   @Before
   public void setUp() {
     System2 system2 = new System2();
-    UserDao userDao = new UserDao(dbTester.myBatis(), system2);
-    UserGroupDao userGroupDao = new UserGroupDao();
-    GroupDao groupDao = new GroupDao(system2);
+    PermissionVersion permissionVersion = new PermissionVersion();
+    UserDao userDao = new UserDao(dbTester.myBatis(), system2, permissionVersion);
+    UserGroupDao userGroupDao = new UserGroupDao(permissionVersion);
+    GroupDao groupDao = new GroupDao(system2, permissionVersion);
     dbClient = new DbClient(dbTester.database(), dbTester.myBatis(), userDao, userGroupDao, groupDao);
     session = dbClient.openSession(false);
     groupDao.insert(session, GroupTesting.newGroupDto().setName("sonar-users"));
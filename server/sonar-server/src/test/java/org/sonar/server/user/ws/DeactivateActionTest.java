@@ -29,6 +29,7 @@ import org.sonar.core.permission.GlobalPermissions;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
+import org.sonar.db.permission.PermissionVersion;
 import org.sonar.db.user.GroupMembershipDao;
 import org.sonar.db.user.UserDao;
 import org.sonar.db.user.UserDto;
@@ -75,7 +76,7 @@ public class DeactivateActionTest {
   @Before
   public void setUp() {
     System2 system2 = new System2();
-    UserDao userDao = new UserDao(db.myBatis(), system2);
+    UserDao userDao = new UserDao(db.myBatis(), system2, new PermissionVersion());
     dbClient = new DbClient(db.database(), db.myBatis(), userDao, new GroupMembershipDao(), new UserTokenDao());
     dbSession = db.getSession();
     dbSession.commit();
@@ -30,6 +30,7 @@ import org.sonar.core.permission.GlobalPermissions;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
+import org.sonar.db.permission.PermissionVersion;
 import org.sonar.db.user.GroupDao;
 import org.sonar.db.user.GroupDto;
 import org.sonar.db.user.GroupMembershipDao;
@@ -59,9 +60,10 @@ public class GroupsActionTest {
   @Before
   public void setUp() {
     System2 system2 = new System2();
-    UserDao userDao = new UserDao(dbTester.myBatis(), system2);
-    GroupDao groupDao = new GroupDao(system2);
-    UserGroupDao userGroupDao = new UserGroupDao();
+    PermissionVersion permissionVersion = new PermissionVersion();
+    UserDao userDao = new UserDao(dbTester.myBatis(), system2, permissionVersion);
+    GroupDao groupDao = new GroupDao(system2, permissionVersion);
+    UserGroupDao userGroupDao = new UserGroupDao(permissionVersion);
     GroupMembershipDao groupMembershipDao = new GroupMembershipDao();
 
     dbClient = new DbClient(dbTester.database(), dbTester.myBatis(), userDao, groupDao, userGroupDao, groupMembershipDao);
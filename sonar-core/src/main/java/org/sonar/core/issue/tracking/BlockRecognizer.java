@@ -20,17 +20,31 @@
 package org.sonar.core.issue.tracking;
 
 import com.google.common.collect.LinkedHashMultimap;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
 
+  /**
+   * Maximum number of base lines that are compared to a raw line, both among all the base lines and among
+   * the ones having the same hash.
+   */
+  private static final int MAX_CANDIDATES_PER_LINE = 20;
+
+  /**
+   * Below this number of combinations of base and raw lines, all of them are considered
+   */
+  private static final long MAX_EXHAUSTIVE_PAIRS = 250_000L;
+
   /**
    * If base source code is available, then detect code moves through block hashes.
    * Only the issues associated to a line can be matched here.
@@ -75,17 +89,14 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
       }
     }
 
-    // Check if remaining number of lines exceeds threshold. It avoids processing too many combinations.
-    if (basesByLine.keySet().size() * rawsByLine.keySet().size() >= 250_000) {
+    if (basesByLine.isEmpty() || rawsByLine.isEmpty()) {
       return;
     }
-
-    List<LinePair> possibleLinePairs = Lists.newArrayList();
-    for (Integer baseLine : basesByLine.keySet()) {
-      for (Integer rawLine : rawsByLine.keySet()) {
-        int weight = lengthOfMaximalBlock(baseInput.getLineHashSequence(), baseLine, rawInput.getLineHashSequence(), rawLine);
-        possibleLinePairs.add(new LinePair(baseLine, rawLine, weight));
-      }
+    List<LinePair> possibleLinePairs;
+    if ((long) basesByLine.keySet().size() * rawsByLine.keySet().size() < MAX_EXHAUSTIVE_PAIRS) {
+      possibleLinePairs = allLinePairs(rawInput, baseInput, rawsByLine.keySet(), basesByLine.keySet());
+    } else {
+      possibleLinePairs = nearestLinePairs(rawInput, baseInput, rawsByLine.keySet(), basesByLine.keySet());
     }
     Collections.sort(possibleLinePairs, LinePairComparator.INSTANCE);
     for (LinePair linePair : possibleLinePairs) {
@@ -94,6 +105,67 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
     }
   }
 
+  private static List<LinePair> allLinePairs(Input<?> rawInput, Input<?> baseInput, Collection<Integer> rawLines, Collection<Integer> baseLines) {
+    LineHashSequence rawHashes = rawInput.getLineHashSequence();
+    LineHashSequence baseHashes = baseInput.getLineHashSequence();
+    List<LinePair> result = new ArrayList<>(baseLines.size() * rawLines.size());
+    int baseIndex = 0;
+    for (Integer baseLine : baseLines) {
+      int rawIndex = 0;
+      for (Integer rawLine : rawLines) {
+        int weight = lengthOfMaximalBlock(baseHashes, baseLine, rawHashes, rawLine);
+        result.add(new LinePair(baseLine, rawLine, weight, baseIndex, rawIndex));
+        rawIndex++;
+      }
+      baseIndex++;
+    }
+    return result;
+  }
+
+  /**
+   * Used when there are too many combinations of lines to consider all of them. Pairs each raw line with the
+   * {@link #MAX_CANDIDATES_PER_LINE} nearest base lines, and with the {@link #MAX_CANDIDATES_PER_LINE} nearest
+   * base lines having the same line hash. Only the latter can be part of a moved block. That keeps the number
+   * of pairs linear in the number of lines.
+   */
+  private static List<LinePair> nearestLinePairs(Input<?> rawInput, Input<?> baseInput, Collection<Integer> rawLines, Collection<Integer> baseLines) {
+    LineHashSequence rawHashes = rawInput.getLineHashSequence();
+    LineHashSequence baseHashes = baseInput.getLineHashSequence();
+    LineHashBlocks blocks = new LineHashBlocks(baseHashes, rawHashes);
+
+    int[] baseLinesByIndex = new int[baseLines.size()];
+    NearestLines nearestBaseLines = new NearestLines();
+    Map<String, NearestLines> nearestBaseLinesByHash = new HashMap<>();
+    int baseIndex = 0;
+    for (Integer baseLine : baseLines) {
+      baseLinesByIndex[baseIndex] = baseLine;
+      nearestBaseLines.add(baseLine, baseIndex);
+      nearestBaseLinesByHash.computeIfAbsent(baseHashes.getHashForLine(baseLine), h -> new NearestLines()).add(baseLine, baseIndex);
+      baseIndex++;
+    }
+    nearestBaseLines.sort();
+    nearestBaseLinesByHash.values().forEach(NearestLines::sort);
+
+    List<LinePair> result = new ArrayList<>();
+    Set<Integer> candidates = new HashSet<>();
+    int rawIndex = 0;
+    for (Integer rawLine : rawLines) {
+      candidates.clear();
+      nearestBaseLines.collect(rawLine, candidates);
+      NearestLines sameHashBaseLines = nearestBaseLinesByHash.get(rawHashes.getHashForLine(rawLine));
+      if (sameHashBaseLines != null) {
+        sameHashBaseLines.collect(rawLine, candidates);
+      }
+      for (Integer candidate : candidates) {
+        int baseLine = baseLinesByIndex[candidate];
+        int weight = blocks.lengthOfMaximalBlock(baseLine, rawLine);
+        result.add(new LinePair(baseLine, rawLine, weight, candidate, rawIndex));
+      }
+      rawIndex++;
+    }
+    return result;
+  }
+
   /**
    * @param startLineA number of line from first version of text (numbering starts from 1)
    * @param startLineB number of line from second version of text (numbering starts from 1)
@@ -147,11 +219,67 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
     int baseLine;
     int rawLine;
     int weight;
+    int baseIndex;
+    int rawIndex;
 
-    public LinePair(int baseLine, int rawLine, int weight) {
+    public LinePair(int baseLine, int rawLine, int weight, int baseIndex, int rawIndex) {
       this.baseLine = baseLine;
       this.rawLine = rawLine;
       this.weight = weight;
+      this.baseIndex = baseIndex;
+      this.rawIndex = rawIndex;
+    }
+  }
+
+  /**
+   * Lines sorted by number, so that the nearest ones of a given line are found by binary search
+   */
+  private static class NearestLines {
+    private int[] lines = new int[16];
+    private int[] indexes = new int[16];
+    private int size = 0;
+
+    void add(int line, int index) {
+      if (size == lines.length) {
+        lines = Arrays.copyOf(lines, size * 2);
+        indexes = Arrays.copyOf(indexes, size * 2);
+      }
+      lines[size] = line;
+      indexes[size] = index;
+      size++;
+    }
+
+    void sort() {
+      // lines are distinct, so that line and index can be packed and sorted by line
+      long[] packed = new long[size];
+      for (int i = 0; i < size; i++) {
+        packed[i] = ((long) lines[i] << 32) | indexes[i];
+      }
+      Arrays.sort(packed);
+      for (int i = 0; i < size; i++) {
+        lines[i] = (int) (packed[i] >>> 32);
+        indexes[i] = (int) packed[i];
+      }
+    }
+
+    /**
+     * Adds the indexes of the {@link #MAX_CANDIDATES_PER_LINE} lines which are the nearest of the given line
+     */
+    void collect(int line, Set<Integer> result) {
+      int after = Arrays.binarySearch(lines, 0, size, line);
+      if (after < 0) {
+        after = -after - 1;
+      }
+      int before = after - 1;
+      for (int count = 0; count < MAX_CANDIDATES_PER_LINE && (before >= 0 || after < size); count++) {
+        if (after >= size || (before >= 0 && line - lines[before] <= lines[after] - line)) {
+          result.add(indexes[before]);
+          before--;
+        } else {
+          result.add(indexes[after]);
+          after++;
+        }
+      }
     }
   }
 
@@ -170,9 +298,14 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
       int weightDiff = o2.weight - o1.weight;
       if (weightDiff != 0) {
         return weightDiff;
-      } else {
-        return Math.abs(o1.baseLine - o1.rawLine) - Math.abs(o2.baseLine - o2.rawLine);
       }
+      int distanceDiff = Math.abs(o1.baseLine - o1.rawLine) - Math.abs(o2.baseLine - o2.rawLine);
+      if (distanceDiff != 0) {
+        return distanceDiff;
+      }
+      // same order as when all the combinations of base and raw lines are listed
+      int baseIndexDiff = o1.baseIndex - o2.baseIndex;
+      return baseIndexDiff != 0 ? baseIndexDiff : (o1.rawIndex - o2.rawIndex);
     }
   }
 }
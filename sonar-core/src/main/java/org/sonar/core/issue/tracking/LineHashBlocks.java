@@ -0,0 +1,151 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computes the length of the maximal block of identical lines shared by two versions of a file around a pair
+ * of lines. Ranges of lines are compared in constant time thanks to polynomial rolling hashes of the line hashes,
+ * so that the length is found by binary search instead of a line-by-line comparison.
+ */
+class LineHashBlocks {
+
+  private static final long MOD_1 = 2_147_483_647L;
+  private static final long MOD_2 = 1_000_000_007L;
+  private static final long BASE_1 = 1_000_003L;
+  private static final long BASE_2 = 911_382_323L;
+
+  private final int lengthA;
+  private final int lengthB;
+  private final long[] powers1;
+  private final long[] powers2;
+  private final long[] prefixesA1;
+  private final long[] prefixesA2;
+  private final long[] prefixesB1;
+  private final long[] prefixesB2;
+
+  LineHashBlocks(LineHashSequence hashesA, LineHashSequence hashesB) {
+    this.lengthA = hashesA.length();
+    this.lengthB = hashesB.length();
+    Map<String, Integer> ids = new HashMap<>();
+    int[] idsA = toIds(hashesA, ids);
+    int[] idsB = toIds(hashesB, ids);
+
+    int maxLength = Math.max(lengthA, lengthB);
+    this.powers1 = powers(BASE_1, MOD_1, maxLength);
+    this.powers2 = powers(BASE_2, MOD_2, maxLength);
+    this.prefixesA1 = prefixes(idsA, BASE_1, MOD_1);
+    this.prefixesA2 = prefixes(idsA, BASE_2, MOD_2);
+    this.prefixesB1 = prefixes(idsB, BASE_1, MOD_1);
+    this.prefixesB2 = prefixes(idsB, BASE_2, MOD_2);
+  }
+
+  /**
+   * Same result as {@link BlockRecognizer#lengthOfMaximalBlock(LineHashSequence, int, LineHashSequence, int)}.
+   *
+   * @param lineA number of line from first version of text (numbering starts from 1)
+   * @param lineB number of line from second version of text (numbering starts from 1)
+   */
+  int lengthOfMaximalBlock(int lineA, int lineB) {
+    if (!sameRange(lineA - 1, lineB - 1, 1)) {
+      return 0;
+    }
+    // lines lineA and lineB are counted both forward and backward
+    return forwardLength(lineA - 1, lineB - 1) + backwardLength(lineA, lineB) - 1;
+  }
+
+  /**
+   * Number of identical lines starting at the given 0-based indexes
+   */
+  private int forwardLength(int fromA, int fromB) {
+    int low = 1;
+    int high = Math.min(lengthA - fromA, lengthB - fromB);
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (sameRange(fromA, fromB, middle)) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Number of identical lines ending just before the given 0-based exclusive indexes
+   */
+  private int backwardLength(int toA, int toB) {
+    int low = 1;
+    int high = Math.min(toA, toB);
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (sameRange(toA - middle, toB - middle, middle)) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  private boolean sameRange(int fromA, int fromB, int length) {
+    return hash(prefixesA1, powers1, MOD_1, fromA, length) == hash(prefixesB1, powers1, MOD_1, fromB, length)
+      && hash(prefixesA2, powers2, MOD_2, fromA, length) == hash(prefixesB2, powers2, MOD_2, fromB, length);
+  }
+
+  private static long hash(long[] prefixes, long[] powers, long mod, int from, int length) {
+    long hash = (prefixes[from + length] - prefixes[from] * powers[length] % mod) % mod;
+    return hash < 0 ? (hash + mod) : hash;
+  }
+
+  private static int[] toIds(LineHashSequence hashes, Map<String, Integer> ids) {
+    int[] result = new int[hashes.length()];
+    for (int line = 1; line <= hashes.length(); line++) {
+      String hash = hashes.getHashForLine(line);
+      Integer id = ids.get(hash);
+      if (id == null) {
+        // ids start with 1, so that leading lines are taken into account in hashes
+        id = ids.size() + 1;
+        ids.put(hash, id);
+      }
+      result[line - 1] = id;
+    }
+    return result;
+  }
+
+  private static long[] powers(long base, long mod, int maxLength) {
+    long[] result = new long[maxLength + 1];
+    result[0] = 1L;
+    for (int i = 1; i <= maxLength; i++) {
+      result[i] = result[i - 1] * base % mod;
+    }
+    return result;
+  }
+
+  private static long[] prefixes(int[] ids, long base, long mod) {
+    long[] result = new long[ids.length + 1];
+    for (int i = 0; i < ids.length; i++) {
+      result[i + 1] = (result[i] * base + ids[i]) % mod;
+    }
+    return result;
+  }
+}
@@ -19,15 +19,13 @@
  */
 package org.sonar.core.issue.tracking;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
 import java.util.Collection;
-import java.util.Objects;
-import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.CheckForNull;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.InstantiationStrategy;
-import org.sonar.api.rule.RuleKey;
 
 @InstantiationStrategy(InstantiationStrategy.PER_BATCH)
 @ScannerSide
@@ -35,22 +33,26 @@ public class Tracker<RAW extends Trackable, BASE extends Trackable> {
 
   public Tracking<RAW, BASE> track(Input<RAW> rawInput, Input<BASE> baseInput) {
     Tracking<RAW, BASE> tracking = new Tracking<>(rawInput, baseInput);
+    if (tracking.isComplete()) {
+      return tracking;
+    }
+    SearchKeys searchKeys = new SearchKeys(tracking.getRaws(), tracking.getBases());
 
     // 1. match issues with same rule, same line and same line hash, but not necessarily with same message
-    match(tracking, LineAndLineHashKeyFactory.INSTANCE);
+    match(tracking, searchKeys, SearchKeys.LINE_AND_LINE_HASH);
 
     // 2. detect code moves by comparing blocks of codes
     detectCodeMoves(rawInput, baseInput, tracking);
 
     // 3. match issues with same rule, same message and same line hash
-    match(tracking, LineHashAndMessageKeyFactory.INSTANCE);
+    match(tracking, searchKeys, SearchKeys.LINE_HASH_AND_MESSAGE);
 
     // 4. match issues with same rule, same line and same message
-    match(tracking, LineAndMessageKeyFactory.INSTANCE);
+    match(tracking, searchKeys, SearchKeys.LINE_AND_MESSAGE);
 
     // 5. match issues with same rule and same line hash but different line and different message.
     // See SONAR-2812
-    match(tracking, LineHashKeyFactory.INSTANCE);
+    match(tracking, searchKeys, SearchKeys.LINE_HASH);
 
     return tracking;
   }
@@ -61,189 +63,162 @@ public class Tracker<RAW extends Trackable, BASE extends Trackable> {
     }
   }
 
-  private void match(Tracking<RAW, BASE> tracking, SearchKeyFactory factory) {
+  /**
+   * For each unmatched raw issue, in order, matches the first unmatched base issue (in order) having the same
+   * search key.
+   */
+  private void match(Tracking<RAW, BASE> tracking, SearchKeys searchKeys, int keyType) {
     if (tracking.isComplete()) {
       return;
     }
 
-    Multimap<SearchKey, BASE> baseSearch = ArrayListMultimap.create();
-    for (BASE base : tracking.getUnmatchedBases()) {
-      baseSearch.put(factory.create(base), base);
-    }
-
-    for (RAW raw : tracking.getUnmatchedRaws()) {
-      SearchKey rawKey = factory.create(raw);
-      Collection<BASE> bases = baseSearch.get(rawKey);
-      if (!bases.isEmpty()) {
-        // TODO taking the first one. Could be improved if there are more than 2 issues on the same line.
-        // Message could be checked to take the best one.
-        BASE match = bases.iterator().next();
-        tracking.match(raw, match);
-        baseSearch.remove(rawKey, match);
+    BaseIndex<BASE> baseIndex = new BaseIndex<>(tracking.getBases(), searchKeys.baseKeys[keyType], searchKeys.keyCount(keyType));
+    int[] rawKeys = searchKeys.rawKeys[keyType];
+    int rawIndex = 0;
+    for (RAW raw : tracking.getRaws()) {
+      if (tracking.containsUnmatchedRaw(raw)) {
+        BASE match = baseIndex.pollFirstUnmatched(rawKeys[rawIndex], tracking);
+        if (match != null) {
+          // TODO taking the first one. Could be improved if there are more than 2 issues on the same line.
+          // Message could be checked to take the best one.
+          tracking.match(raw, match);
+        }
       }
+      rawIndex++;
     }
   }
 
-  private interface SearchKey {
-  }
-
-  private interface SearchKeyFactory {
-    SearchKey create(Trackable trackable);
-  }
-
-  private static class LineAndLineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
-    private final Integer line;
-
-    LineAndLineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.line = trackable.getLine();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+  /**
+   * Bases grouped by search key, in their original order. Groups are stored contiguously in a single array,
+   * in the manner of a counting sort, and each group has a cursor which skips bases already matched.
+   */
+  private static final class BaseIndex<BASE extends Trackable> {
+    private final Object[] bases;
+    private final int[] groupEnds;
+    private final int[] cursors;
+    private final int[] sortedBases;
+
+    BaseIndex(Collection<BASE> bases, int[] baseKeys, int keyCount) {
+      this.bases = bases.toArray();
+      this.groupEnds = new int[keyCount];
+      for (int baseKey : baseKeys) {
+        groupEnds[baseKey]++;
       }
-      LineAndLineHashKey that = (LineAndLineHashKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
-    }
-  }
-
-  private enum LineAndLineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineAndLineHashKey(t);
-    }
-  }
-
-  private static class LineHashAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final String lineHash;
-
-    LineHashAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+      this.cursors = new int[keyCount];
+      int offset = 0;
+      for (int key = 0; key < keyCount; key++) {
+        cursors[key] = offset;
+        offset += groupEnds[key];
+        groupEnds[key] = offset;
+      }
+      this.sortedBases = new int[baseKeys.length];
+      int[] positions = cursors.clone();
+      for (int baseIndex = 0; baseIndex < baseKeys.length; baseIndex++) {
+        sortedBases[positions[baseKeys[baseIndex]]++] = baseIndex;
       }
-      LineHashAndMessageKey that = (LineHashAndMessageKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
     }
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + lineHash.hashCode();
+    @CheckForNull
+    @SuppressWarnings("unchecked")
+    <RAW extends Trackable> BASE pollFirstUnmatched(int key, Tracking<RAW, BASE> tracking) {
+      int cursor = cursors[key];
+      int end = groupEnds[key];
+      BASE result = null;
+      while (result == null && cursor < end) {
+        BASE candidate = (BASE) bases[sortedBases[cursor]];
+        cursor++;
+        if (tracking.containsUnmatchedBase(candidate)) {
+          result = candidate;
+        }
+      }
+      cursors[key] = cursor;
       return result;
     }
   }
 
-  private enum LineHashAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineHashAndMessageKey(t);
-    }
-  }
-
-  private static class LineAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final Integer line;
-
-    LineAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.line = trackable.getLine();
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+  /**
+   * Search keys of all raw and base issues, computed once per tracking. Rule keys, line hashes and messages are
+   * interned into ints, then the combinations required by each kind of search are interned into dense
+   * ids, so that two issues have the same search key if and only if they have the same id.
+   */
+  private static final class SearchKeys {
+    private static final int LINE_AND_LINE_HASH = 0;
+    private static final int LINE_HASH_AND_MESSAGE = 1;
+    private static final int LINE_AND_MESSAGE = 2;
+    private static final int LINE_HASH = 3;
+    private static final int KEY_TYPES = 4;
+    private static final int NULL_ID = -1;
+
+    private final Interner<Object> valueIds = new Interner<>();
+    private final Interner<Long> lineHashKeyIds = new Interner<>();
+    private final Interner<Long> ruleAndMessageIds = new Interner<>();
+    private final Interner<Long> lineAndLineHashKeyIds = new Interner<>();
+    private final Interner<Long> lineHashAndMessageKeyIds = new Interner<>();
+    private final Interner<Long> lineAndMessageKeyIds = new Interner<>();
+    private final int[][] rawKeys;
+    private final int[][] baseKeys;
+
+    SearchKeys(Collection<? extends Trackable> raws, Collection<? extends Trackable> bases) {
+      this.rawKeys = computeKeys(raws);
+      this.baseKeys = computeKeys(bases);
+    }
+
+    int keyCount(int keyType) {
+      switch (keyType) {
+        case LINE_AND_LINE_HASH:
+          return lineAndLineHashKeyIds.size();
+        case LINE_HASH_AND_MESSAGE:
+          return lineHashAndMessageKeyIds.size();
+        case LINE_AND_MESSAGE:
+          return lineAndMessageKeyIds.size();
+        case LINE_HASH:
+          return lineHashKeyIds.size();
+        default:
+          throw new IllegalArgumentException("Unsupported type of search key: " + keyType);
       }
-      LineAndMessageKey that = (LineAndMessageKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
     }
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
+    private int[][] computeKeys(Collection<? extends Trackable> trackables) {
+      int[][] keys = new int[KEY_TYPES][trackables.size()];
+      int index = 0;
+      for (Trackable trackable : trackables) {
+        int ruleId = valueIds.idOf(trackable.getRuleKey());
+        int lineHashId = valueIds.idOf(StringUtils.defaultString(trackable.getLineHash(), ""));
+        String message = trackable.getMessage();
+        int messageId = message == null ? NULL_ID : valueIds.idOf(message);
+        Integer line = trackable.getLine();
+        int lineId = line == null ? Integer.MIN_VALUE : line;
+
+        int ruleAndLineHashId = lineHashKeyIds.idOf(pack(ruleId, lineHashId));
+        int ruleAndMessageId = ruleAndMessageIds.idOf(pack(ruleId, messageId));
+        keys[LINE_AND_LINE_HASH][index] = lineAndLineHashKeyIds.idOf(pack(ruleAndLineHashId, lineId));
+        keys[LINE_HASH_AND_MESSAGE][index] = lineHashAndMessageKeyIds.idOf(pack(ruleAndMessageId, lineHashId));
+        keys[LINE_AND_MESSAGE][index] = lineAndMessageKeyIds.idOf(pack(ruleAndMessageId, lineId));
+        keys[LINE_HASH][index] = ruleAndLineHashId;
+        index++;
+      }
+      return keys;
     }
-  }
 
-  private enum LineAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineAndMessageKey(t);
+    private static long pack(int high, int low) {
+      return ((long) high << 32) | (low & 0xFFFFFFFFL);
     }
   }
 
-  private static class LineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
-
-    LineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
+  private static final class Interner<T> {
+    private final Map<T, Integer> ids = new HashMap<>();
 
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+    int idOf(T value) {
+      Integer id = ids.get(value);
+      if (id == null) {
+        id = ids.size();
+        ids.put(value, id);
       }
-      LineHashKey that = (LineHashKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
+      return id;
     }
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      return result;
-    }
-  }
-
-  private enum LineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineHashKey(t);
+    int size() {
+      return ids.size();
     }
   }
 }
@@ -72,6 +72,18 @@ public class Tracking<RAW extends Trackable, BASE extends Trackable> {
     return Iterables.filter(bases, unmatchedBasePredicate);
   }
 
+  Collection<RAW> getRaws() {
+    return raws;
+  }
+
+  Collection<BASE> getBases() {
+    return bases;
+  }
+
+  boolean containsUnmatchedRaw(RAW raw) {
+    return !rawToBase.containsKey(raw);
+  }
+
   boolean containsUnmatchedBase(BASE base) {
     return !baseToRaw.containsKey(base);
   }
@@ -20,8 +20,13 @@
 package org.sonar.core.issue.tracking;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import org.junit.Test;
+import org.sonar.api.rule.RuleKey;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -41,10 +46,142 @@ public class BlockRecognizerTest {
     assertThat(compute(seq("bcde"), seq("abcde"), 3, 4)).isEqualTo(4);
   }
 
+  @Test
+  public void lengthOfMaximalBlock_with_rolling_hashes() {
+    assertThat(new LineHashBlocks(seq("abcde"), seq("abcde")).lengthOfMaximalBlock(4, 4)).isEqualTo(5);
+    assertThat(new LineHashBlocks(seq("abcde"), seq("abcd")).lengthOfMaximalBlock(4, 4)).isEqualTo(4);
+    assertThat(new LineHashBlocks(seq("bcde"), seq("abcde")).lengthOfMaximalBlock(4, 4)).isEqualTo(0);
+    assertThat(new LineHashBlocks(seq("bcde"), seq("abcde")).lengthOfMaximalBlock(3, 4)).isEqualTo(4);
+
+    Random random = new Random(42L);
+    for (int i = 0; i < 100; i++) {
+      LineHashSequence seqA = seq(randomText(random));
+      LineHashSequence seqB = seq(randomText(random));
+      LineHashBlocks blocks = new LineHashBlocks(seqA, seqB);
+      for (int ai = 1; ai <= seqA.length(); ai++) {
+        for (int bi = 1; bi <= seqB.length(); bi++) {
+          assertThat(blocks.lengthOfMaximalBlock(ai, bi)).isEqualTo(compute(seqA, seqB, ai, bi));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void detect_code_moves_in_large_files() {
+    List<String> baseHashes = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      baseHashes.add("h" + (i % 50));
+    }
+    List<String> rawHashes = new ArrayList<>();
+    for (int i = 0; i < 7; i++) {
+      rawHashes.add("new" + i);
+    }
+    rawHashes.addAll(baseHashes);
+    FakeInput baseInput = new FakeInput(baseHashes);
+    FakeInput rawInput = new FakeInput(rawHashes);
+    for (int line = 1; line <= baseHashes.size(); line++) {
+      baseInput.issues.add(new Issue(line));
+      rawInput.issues.add(new Issue(line + 7));
+    }
+
+    Tracking<Issue, Issue> tracking = new Tracking<>(rawInput, baseInput);
+    new BlockRecognizer<Issue, Issue>().match(rawInput, baseInput, tracking);
+
+    assertThat(tracking.isComplete()).isTrue();
+    for (Issue raw : rawInput.issues) {
+      assertThat(tracking.baseFor(raw).getLine()).isEqualTo(raw.getLine() - 7);
+    }
+  }
+
+  @Test
+  public void consider_all_pairs_of_lines_when_they_are_not_too_many() {
+    Random random = new Random(42L);
+    for (int i = 0; i < 50; i++) {
+      // more than 20 unmatched base lines, so that the nearest lines would not be enough
+      List<String> baseHashes = randomHashes(random, 30 + random.nextInt(50));
+      List<String> rawHashes = new ArrayList<>(baseHashes);
+      for (int j = 0; j < 10; j++) {
+        rawHashes.add(random.nextInt(rawHashes.size()), "h" + random.nextInt(4));
+      }
+      FakeInput baseInput = new FakeInput(baseHashes);
+      FakeInput rawInput = new FakeInput(rawHashes);
+      for (int line = 1; line <= baseHashes.size(); line++) {
+        baseInput.issues.add(new Issue(line));
+      }
+      for (int line = 1; line <= rawHashes.size(); line++) {
+        rawInput.issues.add(new Issue(line));
+      }
+
+      Tracking<Issue, Issue> tracking = new Tracking<>(rawInput, baseInput);
+      new BlockRecognizer<Issue, Issue>().match(rawInput, baseInput, tracking);
+      Tracking<Issue, Issue> expected = new Tracking<>(rawInput, baseInput);
+      matchAllPairs(rawInput, baseInput, expected);
+
+      assertThat(tracking.getMatchedRaws()).isEqualTo(expected.getMatchedRaws());
+    }
+  }
+
+  /**
+   * Matching of lines when all the combinations of base and raw lines are considered, as implemented
+   * before the selection of the nearest lines
+   */
+  private static void matchAllPairs(FakeInput rawInput, FakeInput baseInput, Tracking<Issue, Issue> tracking) {
+    BlockHashSequence rawBlocks = rawInput.getBlockHashSequence();
+    BlockHashSequence baseBlocks = baseInput.getBlockHashSequence();
+    Map<Integer, Issue> rawsByLine = new LinkedHashMap<>();
+    tracking.getUnmatchedRaws().forEach(raw -> rawsByLine.put(raw.getLine(), raw));
+    Map<Integer, Issue> basesByLine = new LinkedHashMap<>();
+    tracking.getUnmatchedBases().forEach(base -> basesByLine.put(base.getLine(), base));
+
+    Map<Integer, List<Integer>> baseLinesByHash = new LinkedHashMap<>();
+    basesByLine.keySet().forEach(line -> baseLinesByHash.computeIfAbsent(baseBlocks.getBlockHashForLine(line), h -> new ArrayList<>()).add(line));
+    Map<Integer, List<Integer>> rawLinesByHash = new LinkedHashMap<>();
+    rawsByLine.keySet().forEach(line -> rawLinesByHash.computeIfAbsent(rawBlocks.getBlockHashForLine(line), h -> new ArrayList<>()).add(line));
+    for (Map.Entry<Integer, List<Integer>> baseLines : baseLinesByHash.entrySet()) {
+      List<Integer> rawLines = rawLinesByHash.get(baseLines.getKey());
+      if (baseLines.getValue().size() == 1 && rawLines != null && rawLines.size() == 1) {
+        tracking.match(rawsByLine.remove(rawLines.get(0)), basesByLine.remove(baseLines.getValue().get(0)));
+      }
+    }
+
+    List<int[]> pairs = new ArrayList<>();
+    for (Integer baseLine : basesByLine.keySet()) {
+      for (Integer rawLine : rawsByLine.keySet()) {
+        int weight = BlockRecognizer.lengthOfMaximalBlock(baseInput.getLineHashSequence(), baseLine, rawInput.getLineHashSequence(), rawLine);
+        pairs.add(new int[] {baseLine, rawLine, weight});
+      }
+    }
+    // stable sort by weight, then by distance
+    pairs.sort((p1, p2) -> p1[2] != p2[2] ? (p2[2] - p1[2]) : (Math.abs(p1[0] - p1[1]) - Math.abs(p2[0] - p2[1])));
+    for (int[] pair : pairs) {
+      Issue base = basesByLine.get(pair[0]);
+      if (tracking.containsUnmatchedBase(base)) {
+        tracking.match(rawsByLine.get(pair[1]), base);
+      }
+    }
+  }
+
+  private static List<String> randomHashes(Random random, int size) {
+    List<String> hashes = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      hashes.add("h" + random.nextInt(4));
+    }
+    return hashes;
+  }
+
   private int compute(LineHashSequence seqA, LineHashSequence seqB, int ai, int bi) {
     return BlockRecognizer.lengthOfMaximalBlock(seqA, ai, seqB, bi);
   }
 
+  private static String randomText(Random random) {
+    StringBuilder text = new StringBuilder();
+    int length = 1 + random.nextInt(20);
+    for (int i = 0; i < length; i++) {
+      text.append((char) ('a' + random.nextInt(3)));
+    }
+    return text.toString();
+  }
+
   private static LineHashSequence seq(String text) {
     List<String> hashes = new ArrayList<>();
     for (int i = 0; i < text.length(); i++) {
@@ -53,4 +190,55 @@ public class BlockRecognizerTest {
     return new LineHashSequence(hashes);
   }
 
+  private static class Issue implements Trackable {
+    private final int line;
+
+    Issue(int line) {
+      this.line = line;
+    }
+
+    @Override
+    public Integer getLine() {
+      return line;
+    }
+
+    @Override
+    public String getMessage() {
+      return "msg";
+    }
+
+    @Override
+    public String getLineHash() {
+      return null;
+    }
+
+    @Override
+    public RuleKey getRuleKey() {
+      return RuleKey.of("java", "S1");
+    }
+  }
+
+  private static class FakeInput implements Input<Issue> {
+    private final List<Issue> issues = new ArrayList<>();
+    private final List<String> lineHashes;
+
+    FakeInput(List<String> lineHashes) {
+      this.lineHashes = lineHashes;
+    }
+
+    @Override
+    public LineHashSequence getLineHashSequence() {
+      return new LineHashSequence(lineHashes);
+    }
+
+    @Override
+    public BlockHashSequence getBlockHashSequence() {
+      return BlockHashSequence.create(getLineHashSequence());
+    }
+
+    @Override
+    public Collection<Issue> getIssues() {
+      return issues;
+    }
+  }
 }
@@ -0,0 +1,199 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+import org.sonar.api.rule.RuleKey;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link Tracker} matches exactly the same issues as the straightforward implementation based
+ * on multimaps of search keys, which is kept here as a reference.
+ */
+public class TrackerEquivalenceTest {
+
+  private static final RuleKey[] RULES = {RuleKey.of("java", "S1"), RuleKey.of("java", "S2"), RuleKey.of("xoo", "S1")};
+  private static final String[] MESSAGES = {"msg1", "msg2", "msg3", "msg4"};
+  private static final String[] LINE_HASHES = {"h1", "h2", "h3", "h4", "h5", "h6"};
+
+  private Random random = new Random(42L);
+  private Tracker<Issue, Issue> tracker = new Tracker<>();
+
+  @Test
+  public void match_same_issues_as_reference_implementation() {
+    for (int i = 0; i < 500; i++) {
+      FakeInput baseInput = randomInput();
+      FakeInput rawInput = randomInput();
+
+      Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+      Tracking<Issue, Issue> expected = referenceTrack(rawInput, baseInput);
+
+      for (Issue raw : rawInput.getIssues()) {
+        assertThat(tracking.baseFor(raw)).isSameAs(expected.baseFor(raw));
+      }
+    }
+  }
+
+  @Test
+  public void match_same_issues_as_reference_implementation_on_large_files() {
+    for (int i = 0; i < 5; i++) {
+      FakeInput baseInput = randomInput(2_000, 5_000);
+      FakeInput rawInput = randomInput(2_000, 5_000);
+
+      Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+      Tracking<Issue, Issue> expected = referenceTrack(rawInput, baseInput);
+
+      for (Issue raw : rawInput.getIssues()) {
+        assertThat(tracking.baseFor(raw)).isSameAs(expected.baseFor(raw));
+      }
+    }
+  }
+
+  private FakeInput randomInput() {
+    return randomInput(1 + random.nextInt(30), random.nextInt(40));
+  }
+
+  private FakeInput randomInput(int lines, int issues) {
+    List<String> lineHashes = new ArrayList<>();
+    for (int line = 0; line < lines; line++) {
+      lineHashes.add(LINE_HASHES[random.nextInt(LINE_HASHES.length)]);
+    }
+    FakeInput input = new FakeInput(lineHashes);
+    for (int i = 0; i < issues; i++) {
+      RuleKey ruleKey = RULES[random.nextInt(RULES.length)];
+      String message = MESSAGES[random.nextInt(MESSAGES.length)];
+      if (random.nextInt(10) == 0) {
+        input.addIssue(new Issue(null, random.nextBoolean() ? null : "", ruleKey, message));
+      } else {
+        int line = 1 + random.nextInt(lines);
+        input.addIssue(new Issue(line, lineHashes.get(line - 1), ruleKey, message));
+      }
+    }
+    return input;
+  }
+
+  private static Tracking<Issue, Issue> referenceTrack(Input<Issue> rawInput, Input<Issue> baseInput) {
+    Tracking<Issue, Issue> tracking = new Tracking<>(rawInput, baseInput);
+    referenceMatch(tracking, t -> asList(t.getRuleKey(), t.getLine(), lineHash(t)));
+    if (!tracking.isComplete()) {
+      new BlockRecognizer<Issue, Issue>().match(rawInput, baseInput, tracking);
+    }
+    referenceMatch(tracking, t -> asList(t.getRuleKey(), t.getMessage(), lineHash(t)));
+    referenceMatch(tracking, t -> asList(t.getRuleKey(), t.getLine(), t.getMessage()));
+    referenceMatch(tracking, t -> asList(t.getRuleKey(), lineHash(t)));
+    return tracking;
+  }
+
+  private static void referenceMatch(Tracking<Issue, Issue> tracking, Function<Trackable, List<Object>> keyFunction) {
+    if (tracking.isComplete()) {
+      return;
+    }
+    Multimap<List<Object>, Issue> baseSearch = ArrayListMultimap.create();
+    for (Issue base : tracking.getUnmatchedBases()) {
+      baseSearch.put(keyFunction.apply(base), base);
+    }
+    for (Issue raw : tracking.getUnmatchedRaws()) {
+      List<Object> rawKey = keyFunction.apply(raw);
+      Collection<Issue> bases = baseSearch.get(rawKey);
+      if (!bases.isEmpty()) {
+        Issue match = bases.iterator().next();
+        tracking.match(raw, match);
+        baseSearch.remove(rawKey, match);
+      }
+    }
+  }
+
+  private static String lineHash(Trackable trackable) {
+    return StringUtils.defaultString(trackable.getLineHash(), "");
+  }
+
+  private static class Issue implements Trackable {
+    private final RuleKey ruleKey;
+    private final Integer line;
+    private final String message;
+    private final String lineHash;
+
+    Issue(@Nullable Integer line, @Nullable String lineHash, RuleKey ruleKey, String message) {
+      this.line = line;
+      this.lineHash = lineHash;
+      this.ruleKey = ruleKey;
+      this.message = message;
+    }
+
+    @Override
+    public Integer getLine() {
+      return line;
+    }
+
+    @Override
+    public String getMessage() {
+      return message;
+    }
+
+    @Override
+    public String getLineHash() {
+      return lineHash;
+    }
+
+    @Override
+    public RuleKey getRuleKey() {
+      return ruleKey;
+    }
+  }
+
+  private static class FakeInput implements Input<Issue> {
+    private final List<Issue> issues = new ArrayList<>();
+    private final List<String> lineHashes;
+
+    FakeInput(List<String> lineHashes) {
+      this.lineHashes = lineHashes;
+    }
+
+    void addIssue(Issue issue) {
+      issues.add(issue);
+    }
+
+    @Override
+    public LineHashSequence getLineHashSequence() {
+      return new LineHashSequence(lineHashes);
+    }
+
+    @Override
+    public BlockHashSequence getBlockHashSequence() {
+      return new BlockHashSequence(getLineHashSequence(), 2);
+    }
+
+    @Override
+    public Collection<Issue> getIssues() {
+      return issues;
+    }
+  }
+}
@@ -19,8 +19,17 @@
  */
 package org.sonar.db;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.apache.ibatis.executor.BatchResult;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
@@ -29,13 +38,34 @@ import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.session.SqlSession;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 
+/**
+ * Session sending writes to database by JDBC batches. Pending statements are not flushed on every query, but
+ * only before a query which SQL refers to one of the tables modified by the pending statements. Other queries
+ * are executed on the same connection without flushing the batch.
+ */
 public class BatchSession extends DbSession {
 
   public static final int MAX_BATCH_SIZE = 250;
 
+  private static final Logger LOG = Loggers.get(BatchSession.class);
+
+  /**
+   * Marker of a pending statement which table is unknown. Any query flushes the batch.
+   */
+  private static final String ANY_TABLE = "*";
+  private static final Pattern WRITTEN_TABLE = Pattern.compile("^\\s*(?:insert\\s+into|update|delete\\s+from|delete)\\s+([a-z0-9_]+)", Pattern.CASE_INSENSITIVE);
+  private static final Pattern NOT_WORD = Pattern.compile("[^a-z0-9_]+");
+
   private final int batchSize;
+  private final Set<String> pendingTables = new HashSet<>();
+  private final Map<String, String> writtenTableByStatement = new HashMap<>();
   private int count = 0;
+  private int pendingStatementCount = 0;
+  private long flushCount = 0L;
+  private long flushedStatementCount = 0L;
 
   public BatchSession(SqlSession session) {
     this(session, MAX_BATCH_SIZE);
@@ -48,81 +78,81 @@ public class BatchSession extends DbSession {
 
   @Override
   public void select(String statement, Object parameter, ResultHandler handler) {
-    reset();
+    flushIfReadOfPendingTables(statement, parameter);
     super.select(statement, parameter, handler);
   }
 
   @Override
   public void select(String statement, ResultHandler handler) {
-    reset();
+    flushIfReadOfPendingTables(statement, null);
     super.select(statement, handler);
   }
 
   @Override
   public <T> T selectOne(String statement) {
-    reset();
+    flushIfReadOfPendingTables(statement, null);
     return super.selectOne(statement);
   }
 
   @Override
   public <T> T selectOne(String statement, Object parameter) {
-    reset();
+    flushIfReadOfPendingTables(statement, parameter);
     return super.selectOne(statement, parameter);
   }
 
   @Override
   public <E> List<E> selectList(String statement) {
-    reset();
+    flushIfReadOfPendingTables(statement, null);
     return super.selectList(statement);
   }
 
   @Override
   public <E> List<E> selectList(String statement, Object parameter) {
-    reset();
+    flushIfReadOfPendingTables(statement, parameter);
     return super.selectList(statement, parameter);
   }
 
   @Override
   public <E> List<E> selectList(String statement, Object parameter, RowBounds rowBounds) {
-    reset();
+    flushIfReadOfPendingTables(statement, parameter);
     return super.selectList(statement, parameter, rowBounds);
   }
 
   @Override
   public <K, V> Map<K, V> selectMap(String statement, String mapKey) {
-    reset();
+    flushIfReadOfPendingTables(statement, null);
     return super.selectMap(statement, mapKey);
   }
 
   @Override
   public <K, V> Map<K, V> selectMap(String statement, Object parameter, String mapKey) {
-    reset();
+    flushIfReadOfPendingTables(statement, parameter);
     return super.selectMap(statement, parameter, mapKey);
   }
 
   @Override
   public <K, V> Map<K, V> selectMap(String statement, Object parameter, String mapKey, RowBounds rowBounds) {
-    reset();
+    flushIfReadOfPendingTables(statement, parameter);
     return super.selectMap(statement, parameter, mapKey, rowBounds);
   }
 
   @Override
   public void select(String statement, Object parameter, RowBounds rowBounds, ResultHandler handler) {
-    reset();
+    flushIfReadOfPendingTables(statement, parameter);
     super.select(statement, parameter, rowBounds, handler);
   }
 
   @Override
   public int insert(String statement) {
     makeSureGeneratedKeysAreNotUsedInBatchInserts(statement);
-    increment();
+    increment(statement, null);
     return super.insert(statement);
   }
 
   @Override
   public int insert(String statement, Object parameter) {
     makeSureGeneratedKeysAreNotUsedInBatchInserts(statement);
-    increment();
+    increment(statement, parameter);
     return super.insert(statement, parameter);
   }
 
@@ -141,38 +171,38 @@ public class BatchSession extends DbSession {
 
   @Override
   public int update(String statement) {
-    increment();
+    increment(statement, null);
     return super.update(statement);
   }
 
   @Override
   public int update(String statement, Object parameter) {
-    increment();
+    increment(statement, parameter);
     return super.update(statement, parameter);
   }
 
   @Override
   public int delete(String statement) {
-    increment();
+    increment(statement, null);
     return super.delete(statement);
   }
 
   @Override
   public int delete(String statement, Object parameter) {
-    increment();
+    increment(statement, parameter);
     return super.delete(statement, parameter);
   }
 
   @Override
   public void commit() {
     super.commit();
-    reset();
+    recordFlush();
   }
 
   @Override
   public void commit(boolean force) {
     super.commit(force);
-    reset();
+    recordFlush();
   }
 
   @Override
@@ -190,24 +220,125 @@ public class BatchSession extends DbSession {
   @Override
   public List<BatchResult> flushStatements() {
     List<BatchResult> batchResults = super.flushStatements();
-    reset();
+    recordFlush();
     return batchResults;
   }
 
+  @Override
+  public void close() {
+    super.close();
+    if (flushCount > 0L) {
+      LOG.debug("Batch session flushed {} statements in {} batches", flushedStatementCount, flushCount);
+    }
+  }
+
   @Override
   public <T> T getMapper(Class<T> type) {
     return getConfiguration().getMapper(type, this);
   }
 
-  private BatchSession increment() {
+  /**
+   * Number of batches of statements sent to database since the session has been opened
+   */
+  public long getFlushCount() {
+    return flushCount;
+  }
+
+  /**
+   * Number of statements sent to database since the session has been opened
+   */
+  public long getFlushedStatementCount() {
+    return flushedStatementCount;
+  }
+
+  private void increment(String statement, @Nullable Object parameter) {
     count += 1;
     if (count >= batchSize) {
       commit();
     }
-    return this;
+    pendingStatementCount++;
+    pendingTables.add(writtenTableByStatement.computeIfAbsent(statement, s -> writtenTable(s, parameter)));
+  }
+
+  private String writtenTable(String statement, @Nullable Object parameter) {
+    String sql = sqlOf(statement, parameter);
+    if (sql != null) {
+      Matcher matcher = WRITTEN_TABLE.matcher(sql);
+      if (matcher.find()) {
+        return matcher.group(1).toLowerCase(Locale.ENGLISH);
+      }
+    }
+    return ANY_TABLE;
+  }
+
+  private void flushIfReadOfPendingTables(String statement, @Nullable Object parameter) {
+    if (!pendingTables.isEmpty() && readsPendingTables(statement, parameter)) {
+      flushStatements();
+    }
+  }
+
+  private boolean readsPendingTables(String statement, @Nullable Object parameter) {
+    if (pendingTables.contains(ANY_TABLE)) {
+      return true;
+    }
+    String sql = sqlOf(statement, parameter);
+    if (sql == null) {
+      return true;
+    }
+    for (String word : NOT_WORD.split(sql.toLowerCase(Locale.ENGLISH))) {
+      if (pendingTables.contains(word)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @CheckForNull
+  private String sqlOf(String statement, @Nullable Object parameter) {
+    Configuration configuration = super.getConfiguration();
+    if (configuration == null || !configuration.hasStatement(statement)) {
+      return null;
+    }
+    try {
+      return configuration.getMappedStatement(statement).getBoundSql(wrapCollection(parameter)).getSql();
+    } catch (RuntimeException e) {
+      // SQL can not be evaluated, the batch is flushed to be safe
+      return null;
+    }
+  }
+
+  /**
+   * Same wrapping of collection parameters as MyBatis default session, so that dynamic SQL can be evaluated
+   */
+  @CheckForNull
+  private static Object wrapCollection(@Nullable Object parameter) {
+    if (parameter instanceof Collection) {
+      Map<String, Object> map = new HashMap<>();
+      map.put("collection", parameter);
+      if (parameter instanceof List) {
+        map.put("list", parameter);
+      }
+      return map;
+    }
+    if (parameter != null && parameter.getClass().isArray()) {
+      Map<String, Object> map = new HashMap<>();
+      map.put("array", parameter);
+      return map;
+    }
+    return parameter;
+  }
+
+  private void recordFlush() {
+    if (pendingStatementCount > 0) {
+      flushCount++;
+      flushedStatementCount += pendingStatementCount;
+    }
+    reset();
   }
 
   private void reset() {
     count = 0;
+    pendingStatementCount = 0;
+    pendingTables.clear();
   }
 }
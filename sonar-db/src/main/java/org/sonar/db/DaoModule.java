@@ -44,6 +44,7 @@ import org.sonar.db.notification.NotificationQueueDao;
 import org.sonar.db.organization.OrganizationDao;
 import org.sonar.db.permission.AuthorizationDao;
 import org.sonar.db.permission.GroupPermissionDao;
+import org.sonar.db.permission.PermissionVersion;
 import org.sonar.db.permission.UserPermissionDao;
 import org.sonar.db.permission.template.PermissionTemplateCharacteristicDao;
 import org.sonar.db.permission.template.PermissionTemplateDao;
@@ -118,6 +119,7 @@ public class DaoModule extends Module {
 
   @Override
   protected void configureModule() {
+    add(PermissionVersion.class);
     add(classes.toArray());
   }
 
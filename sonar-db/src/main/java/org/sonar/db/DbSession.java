@@ -20,8 +20,11 @@
 package org.sonar.db;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.apache.ibatis.executor.BatchResult;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
@@ -31,19 +34,37 @@ import org.apache.ibatis.session.SqlSession;
 public class DbSession implements SqlSession {
 
   private SqlSession session;
+  private final Set<Runnable> afterCommitActions = new LinkedHashSet<>();
 
   public DbSession(SqlSession session) {
     this.session = session;
   }
 
+  /**
+   * Registers an action to be executed once, after the next commit. Registering the same
+   * action several times does not execute it several times. Pending actions are dropped
+   * on rollback and on close.
+   */
+  public void afterCommit(Runnable action) {
+    afterCommitActions.add(action);
+  }
+
   @Override
   public void commit() {
     session.commit();
+    executeAfterCommitActions();
   }
 
   @Override
   public void commit(boolean force) {
     session.commit(force);
+    executeAfterCommitActions();
+  }
+
+  private void executeAfterCommitActions() {
+    List<Runnable> actions = new ArrayList<>(afterCommitActions);
+    afterCommitActions.clear();
+    actions.forEach(Runnable::run);
   }
 
   /**
@@ -138,11 +159,13 @@ public class DbSession implements SqlSession {
 
   @Override
   public void rollback() {
+    afterCommitActions.clear();
     session.rollback();
   }
 
   @Override
   public void rollback(boolean force) {
+    afterCommitActions.clear();
     session.rollback(force);
   }
 
@@ -153,6 +176,7 @@ public class DbSession implements SqlSession {
 
   @Override
   public void close() {
+    afterCommitActions.clear();
     session.close();
   }
 
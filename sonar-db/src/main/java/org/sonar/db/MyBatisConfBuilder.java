@@ -38,7 +38,7 @@ public final class MyBatisConfBuilder {
   private final Configuration conf;
 
   public MyBatisConfBuilder(Database database) {
-    this.conf = new Configuration();
+    this.conf = new WriteBehindConfiguration();
     this.conf.setEnvironment(new Environment("production", createTransactionFactory(), database.getDataSource()));
     this.conf.setUseGeneratedKeys(true);
     this.conf.setLazyLoadingEnabled(false);
@@ -0,0 +1,40 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.transaction.Transaction;
+
+/**
+ * Executors of batch sessions do not flush pending statements on queries. See {@link WriteBehindExecutor}.
+ */
+class WriteBehindConfiguration extends Configuration {
+
+  @Override
+  public Executor newExecutor(Transaction transaction, ExecutorType executorType) {
+    Executor executor = super.newExecutor(transaction, executorType);
+    if (executorType == ExecutorType.BATCH) {
+      return WriteBehindExecutor.wrap(this, executor);
+    }
+    return executor;
+  }
+}
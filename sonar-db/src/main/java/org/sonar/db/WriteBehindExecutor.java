@@ -0,0 +1,70 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * MyBatis {@link org.apache.ibatis.executor.BatchExecutor} flushes all the pending statements before
+ * executing any query. This wrapper executes the queries on the same transaction, hence on the same
+ * connection, but without flushing the batch. It's up to {@link BatchSession} to flush the pending
+ * statements before a query reading the tables they modify.
+ */
+class WriteBehindExecutor implements InvocationHandler {
+
+  private final Configuration configuration;
+  private final Executor delegate;
+
+  private WriteBehindExecutor(Configuration configuration, Executor delegate) {
+    this.configuration = configuration;
+    this.delegate = delegate;
+  }
+
+  static Executor wrap(Configuration configuration, Executor batchExecutor) {
+    return (Executor) Proxy.newProxyInstance(Executor.class.getClassLoader(), new Class[] {Executor.class},
+      new WriteBehindExecutor(configuration, batchExecutor));
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (isQueryWithoutCacheKey(method, args)) {
+      Executor reader = new SimpleExecutor(configuration, delegate.getTransaction());
+      return reader.query((MappedStatement) args[0], args[1], (RowBounds) args[2], (ResultHandler) args[3]);
+    }
+    try {
+      return method.invoke(delegate, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static boolean isQueryWithoutCacheKey(Method method, Object[] args) {
+    return "query".equals(method.getName()) && args != null && args.length == 4;
+  }
+}
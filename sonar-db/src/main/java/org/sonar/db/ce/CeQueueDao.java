@@ -20,13 +20,18 @@
 package org.sonar.db.ce;
 
 import com.google.common.base.Optional;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import javax.annotation.Nullable;
 import org.apache.ibatis.session.RowBounds;
 import org.sonar.api.utils.System2;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Collections.emptyList;
 import static org.sonar.db.ce.CeQueueDto.Status.IN_PROGRESS;
 import static org.sonar.db.ce.CeQueueDto.Status.PENDING;
@@ -118,6 +123,71 @@ public class CeQueueDao implements Dao {
     return tryToPeek(session, taskUuid);
   }
 
+  /**
+   * Peeks up to {@code maxTasks} of the oldest pending tasks, at most one per component, and changes their status
+   * to {@link CeQueueDto.Status#IN_PROGRESS} with a single update.
+   * <p>
+   * If some of the candidates are concurrently peeked by another process, the update is rolled back and the
+   * candidates are peeked one by one.
+   * </p>
+   *
+   * @return the peeked tasks, ordered from the oldest to the newest
+   */
+  public List<CeQueueDto> peek(DbSession session, int maxTasks) {
+    checkArgument(maxTasks > 0, "Max number of tasks must be strictly positive");
+    List<String> taskUuids = selectEligibleTaskUuids(session, maxTasks);
+    if (taskUuids.isEmpty()) {
+      return emptyList();
+    }
+
+    long now = system2.now();
+    int touchedRows = mapper(session).updateIfStatusByUuids(taskUuids, IN_PROGRESS, now, now, PENDING);
+    if (touchedRows != taskUuids.size()) {
+      session.rollback();
+      return tryToPeek(session, taskUuids);
+    }
+
+    List<CeQueueDto> result = mapper(session).selectByUuids(taskUuids);
+    session.commit();
+    return result;
+  }
+
+  /**
+   * Only the oldest task of a component is eligible, as tasks of a same component must be processed sequentially.
+   */
+  private static List<String> selectEligibleTaskUuids(DbSession session, int maxTasks) {
+    List<CeQueueDto> candidates = mapper(session).selectEligibleDtosForPeek(new RowBounds(0, maxTasks));
+    Set<String> componentUuids = new HashSet<>();
+    List<String> taskUuids = new ArrayList<>(candidates.size());
+    for (CeQueueDto candidate : candidates) {
+      String componentUuid = candidate.getComponentUuid();
+      if (componentUuid == null || componentUuids.add(componentUuid)) {
+        taskUuids.add(candidate.getUuid());
+      }
+    }
+    return taskUuids;
+  }
+
+  private List<CeQueueDto> tryToPeek(DbSession session, List<String> taskUuids) {
+    List<CeQueueDto> result = new ArrayList<>(taskUuids.size());
+    for (String taskUuid : taskUuids) {
+      Optional<CeQueueDto> peeked = tryToPeek(session, taskUuid);
+      if (peeked.isPresent()) {
+        result.add(peeked.get());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Update the given tasks with: STATUS='PENDING', STARTED_AT=NULL, UPDATED_AT={now}, if they are still in progress
+   */
+  public void resetToPendingStatus(DbSession session, Collection<String> taskUuids) {
+    if (!taskUuids.isEmpty()) {
+      mapper(session).updateIfStatusByUuids(taskUuids, PENDING, null, system2.now(), IN_PROGRESS);
+    }
+  }
+
   private Optional<CeQueueDto> tryToPeek(DbSession session, String taskUuid) {
     int touchedRows = mapper(session).updateIfStatus(taskUuid, IN_PROGRESS, system2.now(), system2.now(), PENDING);
     if (touchedRows != 1) {
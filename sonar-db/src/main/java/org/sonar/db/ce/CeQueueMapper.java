@@ -19,6 +19,7 @@
  */
 package org.sonar.db.ce;
 
+import java.util.Collection;
 import java.util.List;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
@@ -37,6 +38,10 @@ public interface CeQueueMapper {
 
   List<String> selectEligibleForPeek(RowBounds rowBounds);
 
+  List<CeQueueDto> selectEligibleDtosForPeek(RowBounds rowBounds);
+
+  List<CeQueueDto> selectByUuids(@Param("uuids") Collection<String> uuids);
+
   @CheckForNull
   CeQueueDto selectByUuid(@Param("uuid") String uuid);
 
@@ -52,5 +57,11 @@ public interface CeQueueMapper {
     @Param("updatedAt") long updatedAt,
     @Param("oldStatus") CeQueueDto.Status oldStatus);
 
+  int updateIfStatusByUuids(@Param("uuids") Collection<String> uuids,
+    @Param("newStatus") CeQueueDto.Status newStatus,
+    @Nullable @Param("startedAt") Long startedAt,
+    @Param("updatedAt") long updatedAt,
+    @Param("oldStatus") CeQueueDto.Status oldStatus);
+
   void deleteByUuid(@Param("uuid") String uuid);
 }
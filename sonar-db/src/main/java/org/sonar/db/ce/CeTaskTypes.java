@@ -23,6 +23,11 @@ public final class CeTaskTypes {
   
   public static final String REPORT = "REPORT";
 
+  /**
+   * Purge of the historical data of a project, submitted at the end of the processing of its report
+   */
+  public static final String PURGE = "PURGE";
+
   private CeTaskTypes() {
     // only statics
   }
@@ -83,6 +83,14 @@ public interface Dialect {
    */
   int getScrollSingleRowFetchSize();
 
+  /**
+   * Maximum number of statements sent in a single JDBC batch by {@link org.sonar.db.BatchSession}
+   * before the batch is committed.
+   *
+   * @since 6.2
+   */
+  int getBatchSize();
+
   /**
    * Indicates whether DB migration can be perform on the DB vendor implementation associated with the current dialect.
    *
@@ -41,4 +41,9 @@ public class Oracle extends AbstractDialect {
   public boolean supportsMigration() {
     return true;
   }
+
+  @Override
+  public int getBatchSize() {
+    return 1000;
+  }
 }
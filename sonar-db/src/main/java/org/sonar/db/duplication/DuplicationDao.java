@@ -22,10 +22,13 @@ package org.sonar.db.duplication;
 import java.util.Collection;
 import java.util.List;
 import javax.annotation.Nullable;
+import org.apache.ibatis.session.ResultHandler;
+import org.sonar.core.util.stream.Collectors;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 
 import static org.sonar.db.DatabaseUtils.executeLargeInputs;
+import static org.sonar.db.DatabaseUtils.executeLargeInputsWithoutOutput;
 
 public class DuplicationDao implements Dao {
 
@@ -38,6 +41,25 @@ public class DuplicationDao implements Dao {
       partition -> session.getMapper(DuplicationMapper.class).selectCandidates(analysisUuid, language, partition));
   }
 
+  /**
+   * Same as {@link #selectCandidates(DbSession, String, String, Collection)} but for all the hashes of an analysis,
+   * for example the hashes of all the files of a given language. Hashes are deduplicated and sorted, so that each
+   * partition of the SQL request reads a contiguous range of the index on column HASH. Rows are not loaded
+   * in memory but are passed to {@code resultHandler}.
+   * <p>
+   * Objects passed to {@code resultHandler} are {@link DuplicationUnitDto}.
+   * </p>
+   */
+  public void selectCandidates(DbSession session, @Nullable String analysisUuid, String language, Collection<String> hashes, ResultHandler resultHandler) {
+    DuplicationMapper mapper = session.getMapper(DuplicationMapper.class);
+    executeLargeInputsWithoutOutput(
+      hashes.stream().distinct().sorted().collect(Collectors.toList()),
+      partition -> {
+        mapper.selectCandidates(analysisUuid, language, partition, resultHandler);
+        return null;
+      });
+  }
+
   /**
    * Insert rows in the table DUPLICATIONS_INDEX.
    * Note that generated ids are not returned.
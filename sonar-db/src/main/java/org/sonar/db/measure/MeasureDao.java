@@ -30,11 +30,18 @@ import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static org.sonar.db.DatabaseUtils.executeLargeInputs;
 import static org.sonar.db.DatabaseUtils.executeLargeInputsWithoutOutput;
 
 public class MeasureDao implements Dao {
 
+  /**
+   * Maximum number of rows of a multi-row insert. Each row binds 15 parameters, while SQLServer
+   * accepts at most 2'100 parameters per statement.
+   */
+  public static final int MAX_ROWS_PER_INSERT = 100;
+
   public Optional<MeasureDto> selectSingle(DbSession dbSession, MeasureQuery query) {
     List<MeasureDto> measures = selectByQuery(dbSession, query);
     return Optional.ofNullable(Iterables.getOnlyElement(measures, null));
@@ -111,13 +118,17 @@ public class MeasureDao implements Dao {
     return mapper(dbSession).selectTreeByQuery(query, baseComponent.uuid(), query.getUuidPath(baseComponent));
   }
 
-  public List<PastMeasureDto> selectPastMeasures(DbSession dbSession,
-    String componentUuid,
-    String analysisUuid,
-    Collection<Integer> metricIds) {
-    return executeLargeInputs(
+  /**
+   * Streams the measures of all the components of an analysis, excluding the measures of files and of developers.
+   * Objects passed to {@code resultHandler} are {@link PastMeasureDto}.
+   */
+  public void selectPastMeasuresOfAnalysis(DbSession dbSession, String analysisUuid, Collection<Integer> metricIds, ResultHandler resultHandler) {
+    executeLargeInputsWithoutOutput(
       metricIds,
-      ids -> mapper(dbSession).selectPastMeasures(componentUuid, analysisUuid, ids));
+      ids -> {
+        mapper(dbSession).selectPastMeasuresOfAnalysis(analysisUuid, ids, resultHandler);
+        return null;
+      });
   }
 
   /**
@@ -133,9 +144,24 @@ public class MeasureDao implements Dao {
     mapper(session).insert(measureDto);
   }
 
+  /**
+   * Inserts the measures with multi-row statements of {@link #MAX_ROWS_PER_INSERT} rows.
+   */
   public void insert(DbSession session, Collection<MeasureDto> items) {
-    for (MeasureDto item : items) {
-      insert(session, item);
+    insert(session, items, MAX_ROWS_PER_INSERT);
+  }
+
+  /**
+   * Inserts the measures with multi-row statements of at most {@code rowsPerStatement} rows.
+   *
+   * @param rowsPerStatement between 1 and {@link #MAX_ROWS_PER_INSERT}
+   */
+  public void insert(DbSession session, Collection<MeasureDto> items, int rowsPerStatement) {
+    checkArgument(rowsPerStatement > 0 && rowsPerStatement <= MAX_ROWS_PER_INSERT,
+      "Number of rows per statement must be between 1 and %s, got %s", MAX_ROWS_PER_INSERT, rowsPerStatement);
+    MeasureMapper mapper = mapper(session);
+    for (List<MeasureDto> partition : Iterables.partition(items, rowsPerStatement)) {
+      mapper.insertMany(partition);
     }
   }
 
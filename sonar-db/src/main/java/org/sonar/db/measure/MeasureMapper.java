@@ -40,9 +40,11 @@ public interface MeasureMapper {
 
   List<MeasureDto> selectTreeByQuery(@Param("query") MeasureTreeQuery measureQuery, @Param("baseUuid") String baseUuid, @Param("baseUuidPath") String baseUuidPath);
 
-  List<PastMeasureDto> selectPastMeasures(@Param("componentUuid") String componentUuid, @Param("analysisUuid") String analysisUuid, @Param("metricIds") List<Integer> metricIds);
+  void selectPastMeasuresOfAnalysis(@Param("analysisUuid") String analysisUuid, @Param("metricIds") List<Integer> metricIds, ResultHandler resultHandler);
 
   List<MeasureDto> selectProjectMeasuresOfDeveloper(@Param("developerId") long developerId, @Param("metricIds") Collection<Integer> metricIds);
 
   void insert(MeasureDto measureDto);
+
+  void insertMany(@Param("measures") List<MeasureDto> measures);
 }
@@ -36,6 +36,12 @@ public class GroupPermissionDao implements Dao {
 
   private static final String ANYONE_GROUP_PARAMETER = "anyoneGroup";
 
+  private final PermissionVersion permissionVersion;
+
+  public GroupPermissionDao(PermissionVersion permissionVersion) {
+    this.permissionVersion = permissionVersion;
+  }
+
   /**
    * Returns the names of the groups that match the given query, for the given organization.
    * The virtual group "Anyone" may be returned as the value {@link DefaultGroups#ANYONE}.
@@ -103,6 +109,7 @@ public class GroupPermissionDao implements Dao {
 
   public void insert(DbSession dbSession, GroupPermissionDto dto) {
     mapper(dbSession).insert(dto);
+    permissionVersion.increment(dbSession);
   }
 
   /**
@@ -110,6 +117,7 @@ public class GroupPermissionDao implements Dao {
    */
   public void deleteByRootComponentId(DbSession dbSession, long rootComponentId) {
     mapper(dbSession).deleteByRootComponentId(rootComponentId);
+    permissionVersion.increment(dbSession);
   }
 
   /**
@@ -128,10 +136,12 @@ public class GroupPermissionDao implements Dao {
    */
   public void delete(DbSession dbSession, String permission, String organizationUuid, @Nullable Long groupId, @Nullable Long rootComponentId) {
     mapper(dbSession).delete(permission, organizationUuid, groupId, rootComponentId);
+    permissionVersion.increment(dbSession);
   }
 
   public void deleteByOrganization(DbSession dbSession, String organizationUuid) {
     mapper(dbSession).deleteByOrganization(organizationUuid);
+    permissionVersion.increment(dbSession);
   }
 
   private static GroupPermissionMapper mapper(DbSession session) {
@@ -0,0 +1,54 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.permission;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.sonar.db.DbSession;
+
+/**
+ * Version of the permissions and of the groups of users. It is incremented by the DAOs on each write
+ * of permissions, of groups or of group memberships, so that the permissions cached by the web server
+ * are not used anymore. It is incremented again when the write is committed, as the permissions loaded
+ * meanwhile by other sessions do not see the uncommitted write.
+ * <p>
+ * Version is local to the JVM. Writes done by other processes can't be detected.
+ * </p>
+ */
+public class PermissionVersion {
+
+  private final AtomicLong version = new AtomicLong();
+  private final Runnable incrementAction = this::increment;
+
+  public long get() {
+    return version.get();
+  }
+
+  public void increment() {
+    version.incrementAndGet();
+  }
+
+  /**
+   * Increments the version now and after the commit of the given session.
+   */
+  public void increment(DbSession dbSession) {
+    increment();
+    dbSession.afterCommit(incrementAction);
+  }
+}
@@ -34,6 +34,12 @@ import static org.sonar.db.DatabaseUtils.executeLargeInputs;
 
 public class UserPermissionDao implements Dao {
 
+  private final PermissionVersion permissionVersion;
+
+  public UserPermissionDao(PermissionVersion permissionVersion) {
+    this.permissionVersion = permissionVersion;
+  }
+
   /**
    * List of user permissions ordered by alphabetical order of user names
    *
@@ -108,6 +114,7 @@ public class UserPermissionDao implements Dao {
 
   public void insert(DbSession dbSession, UserPermissionDto dto) {
     mapper(dbSession).insert(dto);
+    permissionVersion.increment(dbSession);
   }
 
   /**
@@ -115,6 +122,7 @@ public class UserPermissionDao implements Dao {
    */
   public void deleteGlobalPermission(DbSession dbSession, long userId, String permission, String organizationUuid) {
     mapper(dbSession).deleteGlobalPermission(userId, permission, organizationUuid);
+    permissionVersion.increment(dbSession);
   }
 
   /**
@@ -122,6 +130,7 @@ public class UserPermissionDao implements Dao {
    */
   public void deleteProjectPermission(DbSession dbSession, long userId, String permission, long projectId) {
     mapper(dbSession).deleteProjectPermission(userId, permission, projectId);
+    permissionVersion.increment(dbSession);
   }
 
   /**
@@ -129,10 +138,12 @@ public class UserPermissionDao implements Dao {
    */
   public void deleteProjectPermissions(DbSession dbSession, long projectId) {
     mapper(dbSession).deleteProjectPermissions(projectId);
+    permissionVersion.increment(dbSession);
   }
 
   public void deleteByOrganization(DbSession dbSession, String organizationUuid) {
     mapper(dbSession).deleteByOrganization(organizationUuid);
+    permissionVersion.increment(dbSession);
   }
 
   private static UserPermissionMapper mapper(DbSession dbSession) {
@@ -136,7 +136,7 @@ class PurgeCommands {
     profiler.start("deleteComponentMeasures");
     for (List<String> analysisUuidsPartition : analysisUuidsPartitions) {
       for (List<String> componentUuidsPartition : componentUuidsPartitions) {
-        purgeMapper.deleteComponentMeasures(analysisUuidsPartition, componentUuidsPartition);
+        profiler.addRows(purgeMapper.deleteComponentMeasures(analysisUuidsPartition, componentUuidsPartition));
       }
     }
     session.commit();
@@ -157,17 +157,17 @@ class PurgeCommands {
     deleteAnalysisDuplications(analysisUuidsPartitions);
 
     profiler.start("deleteAnalyses (events)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalysisEvents);
+    analysisUuidsPartitions.forEach(partition -> profiler.addRows(purgeMapper.deleteAnalysisEvents(partition)));
     session.commit();
     profiler.stop();
 
     profiler.start("deleteAnalyses (project_measures)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalysisMeasures);
+    analysisUuidsPartitions.forEach(partition -> profiler.addRows(purgeMapper.deleteAnalysisMeasures(partition)));
     session.commit();
     profiler.stop();
 
     profiler.start("deleteAnalyses (snapshots)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalyses);
+    analysisUuidsPartitions.forEach(partition -> profiler.addRows(purgeMapper.deleteAnalyses(partition)));
     session.commit();
     profiler.stop();
   }
@@ -179,20 +179,20 @@ class PurgeCommands {
 
     profiler.start("deleteSnapshotWastedMeasures (project_measures)");
     List<Long> metricIdsWithoutHistoricalData = purgeMapper.selectMetricIdsWithoutHistoricalData();
-    analysisUuidsPartitions.stream()
-        .forEach(analysisUuidsPartition -> purgeMapper.deleteAnalysisWastedMeasures(analysisUuidsPartition, metricIdsWithoutHistoricalData));
+    analysisUuidsPartitions
+      .forEach(analysisUuidsPartition -> profiler.addRows(purgeMapper.deleteAnalysisWastedMeasures(analysisUuidsPartition, metricIdsWithoutHistoricalData)));
     session.commit();
     profiler.stop();
 
     profiler.start("updatePurgeStatusToOne (snapshots)");
-    analysisUuidsPartitions.forEach(purgeMapper::updatePurgeStatusToOne);
+    analysisUuidsPartitions.forEach(partition -> profiler.addRows(purgeMapper.updatePurgeStatusToOne(partition)));
     session.commit();
     profiler.stop();
   }
 
   private void deleteAnalysisDuplications(List<List<String>> snapshotUuidsPartitions) {
     profiler.start("deleteAnalysisDuplications (duplications_index)");
-    snapshotUuidsPartitions.forEach(purgeMapper::deleteAnalysisDuplications);
+    snapshotUuidsPartitions.forEach(partition -> profiler.addRows(purgeMapper.deleteAnalysisDuplications(partition)));
     session.commit();
     profiler.stop();
   }
@@ -123,7 +123,10 @@ public class PurgeDao implements Dao {
     purgeCommands.deleteComponentMeasures(analysisUuids, componentWithoutHistoricalDataUuids);
   }
 
-  private void purgeDisabledComponents(DbSession session, Collection<String> uuids, PurgeListener listener) {
+  /**
+   * Deletes the data of the given components which have been disabled by an analysis and resolves their issues.
+   */
+  public void purgeDisabledComponents(DbSession session, Collection<String> uuids, PurgeListener listener) {
     PurgeMapper mapper = mapper(session);
     executeLargeInputs(uuids,
       input -> {
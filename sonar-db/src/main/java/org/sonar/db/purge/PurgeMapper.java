@@ -32,23 +32,23 @@ public interface PurgeMapper {
    */
   List<IdUuidPair> selectComponentsByProjectUuid(String projectUuid);
 
-  void deleteAnalyses(@Param("analysisUuids") List<String> analysisUuids);
+  int deleteAnalyses(@Param("analysisUuids") List<String> analysisUuids);
 
-  void deleteAnalysisDuplications(@Param("analysisUuids") List<String> analysisUuids);
+  int deleteAnalysisDuplications(@Param("analysisUuids") List<String> analysisUuids);
 
-  void deleteAnalysisEvents(@Param("analysisUuids") List<String> analysisUuids);
+  int deleteAnalysisEvents(@Param("analysisUuids") List<String> analysisUuids);
 
-  void deleteAnalysisMeasures(@Param("analysisUuids") List<String> analysisUuids);
+  int deleteAnalysisMeasures(@Param("analysisUuids") List<String> analysisUuids);
 
   void deleteSnapshotMeasures(@Param("analysisUuids") List<String> analysisUuids);
 
-  void deleteComponentMeasures(@Param("analysisUuids") List<String> analysisUuids, @Param("componentUuids") List<String> componentUuids);
+  int deleteComponentMeasures(@Param("analysisUuids") List<String> analysisUuids, @Param("componentUuids") List<String> componentUuids);
 
   List<Long> selectMetricIdsWithoutHistoricalData();
 
-  void deleteAnalysisWastedMeasures(@Param("analysisUuids") List<String> analysisUuids, @Param("metricIds") List<Long> metricIds);
+  int deleteAnalysisWastedMeasures(@Param("analysisUuids") List<String> analysisUuids, @Param("metricIds") List<Long> metricIds);
 
-  void updatePurgeStatusToOne(@Param("analysisUuids") List<String> analysisUuid);
+  int updatePurgeStatusToOne(@Param("analysisUuids") List<String> analysisUuid);
 
   void resolveComponentIssuesNotAlreadyResolved(@Param("componentUuids") List<String> componentUuids, @Param("dateAsLong") Long dateAsLong);
 
@@ -32,6 +32,7 @@ import org.sonar.api.utils.log.Logger;
 public class PurgeProfiler {
 
   private Map<String, Long> durations = new HashMap<>();
+  private Map<String, Long> rows = new HashMap<>();
   private long startTime;
   private String currentTable;
   private final Clock clock;
@@ -47,6 +48,7 @@ public class PurgeProfiler {
 
   public void reset() {
     durations.clear();
+    rows.clear();
   }
 
   void start(String table) {
@@ -64,6 +66,19 @@ public class PurgeProfiler {
     durations.put(currentTable, cumulatedDuration + (clock.now() - startTime));
   }
 
+  /**
+   * Adds rows deleted or updated by the current statement. Negative counts, returned by JDBC batches, are ignored.
+   */
+  void addRows(int count) {
+    if (count > 0) {
+      rows.merge(currentTable, (long) count, Long::sum);
+    }
+  }
+
+  public long getTotalRows() {
+    return rows.values().stream().mapToLong(Long::longValue).sum();
+  }
+
   public void dump(long totalTime, Logger logger) {
     List<Entry<String, Long>> data = new ArrayList<>(durations.entrySet());
     Collections.sort(data, (o1, o2) -> o2.getValue().compareTo(o1.getValue()));
@@ -72,6 +87,13 @@ public class PurgeProfiler {
       StringBuilder sb = new StringBuilder();
       sb.append("   o ").append(entry.getKey()).append(": ").append(TimeUtils.formatDuration(entry.getValue()))
         .append(" (").append((int) (entry.getValue() / percent)).append("%)");
+      Long tableRows = rows.get(entry.getKey());
+      if (tableRows != null) {
+        sb.append(", ").append(tableRows).append(" rows");
+        if (entry.getValue() > 0) {
+          sb.append(" (").append(tableRows * 1000L / entry.getValue()).append(" rows/s)");
+        }
+      }
       logger.info(sb.toString());
     }
   }
@@ -40,27 +40,25 @@ public class DefaultPeriodCleaner {
 
   private static final Logger LOG = Loggers.get(DefaultPeriodCleaner.class);
   private final PurgeDao purgeDao;
-  private final PurgeProfiler profiler;
 
-  public DefaultPeriodCleaner(PurgeDao purgeDao, PurgeProfiler profiler) {
+  public DefaultPeriodCleaner(PurgeDao purgeDao) {
     this.purgeDao = purgeDao;
-    this.profiler = profiler;
   }
 
-  public void clean(DbSession session, String rootUuid, Settings settings) {
-    doClean(rootUuid, new Filters(settings).all(), session);
+  public void clean(DbSession session, String rootUuid, Settings settings, PurgeProfiler profiler) {
+    doClean(rootUuid, new Filters(settings).all(), session, profiler);
   }
 
   @VisibleForTesting
-  void doClean(String rootUuid, List<Filter> filters, DbSession session) {
+  void doClean(String rootUuid, List<Filter> filters, DbSession session, PurgeProfiler profiler) {
     List<PurgeableAnalysisDto> history = new ArrayList<>(selectAnalysesOfComponent(rootUuid, session));
     for (Filter filter : filters) {
       filter.log();
-      history.removeAll(delete(rootUuid, filter.filter(history), session));
+      history.removeAll(delete(rootUuid, filter.filter(history), session, profiler));
     }
   }
 
-  private List<PurgeableAnalysisDto> delete(String rootUuid, List<PurgeableAnalysisDto> snapshots, DbSession session) {
+  private List<PurgeableAnalysisDto> delete(String rootUuid, List<PurgeableAnalysisDto> snapshots, DbSession session, PurgeProfiler profiler) {
     if (LOG.isDebugEnabled()) {
       LOG.debug("<- Delete analyses of component {}: {}",
         rootUuid,
@@ -21,6 +21,8 @@ package org.sonar.db.qualityprofile;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import javax.annotation.CheckForNull;
 import org.sonar.db.Dao;
@@ -65,6 +67,18 @@ public class ActiveRuleDao implements Dao {
     return executeLargeInputs(ids, mapper(dbSession)::selectByRuleIds);
   }
 
+  /**
+   * Active rules of the given rules on the given profiles. The number of profile keys is expected to be small,
+   * for example the profiles of a hierarchy.
+   */
+  public List<ActiveRuleDto> selectByRuleIdsAndProfileKeys(DbSession dbSession, List<Integer> ruleIds, Collection<String> profileKeys) {
+    if (profileKeys.isEmpty()) {
+      return Collections.emptyList();
+    }
+    ActiveRuleMapper mapper = mapper(dbSession);
+    return executeLargeInputs(ruleIds, partition -> mapper.selectByRuleIdsAndProfileKeys(partition, profileKeys));
+  }
+
   // TODO As it's only used by MediumTest, it should be replaced by DbTester.countRowsOfTable()
   public List<ActiveRuleDto> selectAll(DbSession dbSession) {
     return mapper(dbSession).selectAll();
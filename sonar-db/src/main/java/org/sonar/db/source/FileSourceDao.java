@@ -26,6 +26,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import javax.annotation.CheckForNull;
@@ -36,6 +37,8 @@ import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
 import org.sonar.db.source.FileSourceDto.Type;
 
+import static org.sonar.db.DatabaseUtils.executeLargeInputs;
+
 public class FileSourceDao implements Dao {
 
   private static final Splitter END_OF_LINE_SPLITTER = Splitter.on('\n');
@@ -85,6 +88,15 @@ public class FileSourceDao implements Dao {
     }
   }
 
+  /**
+   * Line hashes of the sources of the given files, loaded with a single request per partition of files. Only the
+   * fields {@code fileUuid} and {@code lineHashes} of the returned DTOs are set. Files without sources are ignored.
+   */
+  public List<FileSourceDto> selectLineHashesByFileUuids(DbSession dbSession, Collection<String> fileUuids) {
+    FileSourceMapper mapper = mapper(dbSession);
+    return executeLargeInputs(fileUuids, partition -> mapper.selectLineHashesByFileUuids(partition, Type.SOURCE));
+  }
+
   public <T> void readLineHashesStream(DbSession dbSession, String fileUuid, Function<Reader, T> function) {
     Connection connection = dbSession.getConnection();
     PreparedStatement pstmt = null;
@@ -38,6 +38,16 @@ import static java.lang.String.format;
 
 public class FileSourceDto {
 
+  /**
+   * Tag of field {@code lines} of message {@link DbFileSources.Data}: number 1, length-delimited
+   */
+  private static final int DATA_LINES_TAG = (1 << 3) | 2;
+
+  /**
+   * Tag of field {@code line} of message {@link DbFileSources.Line}: number 1, varint
+   */
+  private static final int LINE_NUMBER_TAG = 1 << 3;
+
   private static final String SIZE_LIMIT_EXCEEDED_EXCEPTION_MESSAGE = "Protocol message was too large.  May be malicious.  " +
     "Use CodedInputStream.setSizeLimit() to increase the size limit.";
 
@@ -122,6 +132,61 @@ public class FileSourceDto {
     }
   }
 
+  /**
+   * Decompress and deserialize only the lines of {@link DbFileSources.Data} which number is greater than or equal to
+   * {@code from}, up to {@code toInclusive - from + 1} lines. Messages {@link DbFileSources.Line} are read one by one
+   * from the stream: the ones before the range are skipped without being parsed and reading stops as soon as the
+   * range is served, so that the whole file is not deserialized to display a page of lines.
+   *
+   * @param from starts from 1
+   * @param toInclusive starts from 1, must be greater than or equal param {@code from}
+   */
+  public List<DbFileSources.Line> decodeSourceLines(byte[] binaryData, int from, int toInclusive) {
+    try {
+      return decodeSourceLinesInRange(binaryData, from, (long) toInclusive - from + 1);
+    } catch (IOException e) {
+      throw new IllegalStateException(
+        format("Fail to decompress and deserialize source lines [id=%s,fileUuid=%s,projectUuid=%s]", id, fileUuid, projectUuid),
+        e);
+    }
+  }
+
+  private static List<DbFileSources.Line> decodeSourceLinesInRange(byte[] binaryData, int from, long maxLines) throws IOException {
+    List<DbFileSources.Line> lines = new ArrayList<>();
+    try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData))) {
+      CodedInputStream input = CodedInputStream.newInstance(lz4Input);
+      input.setSizeLimit(Integer.MAX_VALUE);
+      int tag = input.readTag();
+      while (tag != 0 && lines.size() < maxLines) {
+        if (tag == DATA_LINES_TAG) {
+          int length = input.readRawVarint32();
+          int oldLimit = input.pushLimit(length);
+          readLineIfInRange(input, from, lines);
+          input.popLimit(oldLimit);
+        } else {
+          input.skipField(tag);
+        }
+        tag = input.readTag();
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * Line number is the first serialized field of {@link DbFileSources.Line}, so that it is read before deciding to
+   * parse or to skip the remaining bytes of the message.
+   */
+  private static void readLineIfInRange(CodedInputStream input, int from, List<DbFileSources.Line> lines) throws IOException {
+    if (input.getBytesUntilLimit() > 0 && input.readTag() == LINE_NUMBER_TAG) {
+      int lineNumber = input.readInt32();
+      if (lineNumber >= from) {
+        lines.add(DbFileSources.Line.newBuilder().setLine(lineNumber).mergeFrom(input).build());
+        return;
+      }
+    }
+    input.skipRawBytes(input.getBytesUntilLimit());
+  }
+
   /**
    * Serialize and compress protobuf message {@link org.sonar.db.protobuf.DbFileSources.Data}
    * in the column BINARY_DATA.
@@ -212,6 +277,14 @@ public class FileSourceDto {
     return decodeSourceData(binaryData);
   }
 
+  /**
+   * Range of lines of the protobuf message {@link org.sonar.db.protobuf.DbFileSources.Data}
+   * @see #decodeSourceLines(byte[], int, int)
+   */
+  public List<DbFileSources.Line> getSourceLines(int from, int toInclusive) {
+    return decodeSourceLines(binaryData, from, toInclusive);
+  }
+
   public FileSourceDto setSourceData(DbFileSources.Data data) {
     this.dataType = Type.SOURCE;
     this.binaryData = encodeSourceData(data);
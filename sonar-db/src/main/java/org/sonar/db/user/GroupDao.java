@@ -33,15 +33,18 @@ import org.sonar.db.Dao;
 import org.sonar.db.DatabaseUtils;
 import org.sonar.db.DbSession;
 import org.sonar.db.WildcardPosition;
+import org.sonar.db.permission.PermissionVersion;
 
 import static org.sonar.db.DatabaseUtils.executeLargeInputs;
 
 public class GroupDao implements Dao {
 
   private final System2 system;
+  private final PermissionVersion permissionVersion;
 
-  public GroupDao(System2 system) {
+  public GroupDao(System2 system, PermissionVersion permissionVersion) {
     this.system = system;
+    this.permissionVersion = permissionVersion;
   }
 
   /**
@@ -69,10 +72,12 @@ public class GroupDao implements Dao {
 
   public void deleteById(DbSession dbSession, long groupId) {
     mapper(dbSession).deleteById(groupId);
+    permissionVersion.increment(dbSession);
   }
 
   public void deleteByOrganization(DbSession dbSession, String organizationUuid) {
     mapper(dbSession).deleteByOrganization(organizationUuid);
+    permissionVersion.increment(dbSession);
   }
 
   public int countByQuery(DbSession session, String organizationUuid, @Nullable String query) {
@@ -94,6 +99,7 @@ public class GroupDao implements Dao {
   public GroupDto update(DbSession session, GroupDto item) {
     item.setUpdatedAt(new Date(system.now()));
     mapper(session).update(item);
+    permissionVersion.increment(session);
     return item;
   }
 
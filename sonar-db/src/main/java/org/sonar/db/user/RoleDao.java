@@ -22,9 +22,16 @@ package org.sonar.db.user;
 import java.util.List;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
+import org.sonar.db.permission.PermissionVersion;
 
 public class RoleDao implements Dao {
 
+  private final PermissionVersion permissionVersion;
+
+  public RoleDao(PermissionVersion permissionVersion) {
+    this.permissionVersion = permissionVersion;
+  }
+
   /**
    * All the projects on which the user has {@code permission}, directly or through
    * groups.
@@ -35,6 +42,7 @@ public class RoleDao implements Dao {
 
   public void deleteGroupRolesByGroupId(DbSession session, long groupId) {
     mapper(session).deleteGroupRolesByGroupId(groupId);
+    permissionVersion.increment(session);
   }
 
   private static RoleMapper mapper(DbSession session) {
@@ -34,6 +34,7 @@ import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
 import org.sonar.db.RowNotFoundException;
+import org.sonar.db.permission.PermissionVersion;
 
 import static com.google.common.collect.FluentIterable.from;
 import static java.util.Arrays.asList;
@@ -44,10 +45,12 @@ public class UserDao implements Dao {
 
   private final MyBatis mybatis;
   private final System2 system2;
+  private final PermissionVersion permissionVersion;
 
-  public UserDao(MyBatis mybatis, System2 system2) {
+  public UserDao(MyBatis mybatis, System2 system2, PermissionVersion permissionVersion) {
     this.mybatis = mybatis;
     this.system2 = system2;
+    this.permissionVersion = permissionVersion;
   }
 
   public UserDto selectUserById(long userId) {
@@ -161,6 +164,7 @@ public class UserDao implements Dao {
     mapper.deleteUserRoles(dto.getId());
     mapper.deletePropertiesMatchingLogin(asList(DEFAULT_ISSUE_ASSIGNEE), dto.getLogin());
     mapper.deactivateUser(dto.getId(), system2.now());
+    permissionVersion.increment(dbSession);
     dbSession.commit();
     return true;
   }
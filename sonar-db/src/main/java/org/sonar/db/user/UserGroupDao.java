@@ -21,20 +21,30 @@ package org.sonar.db.user;
 
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
+import org.sonar.db.permission.PermissionVersion;
 
 public class UserGroupDao implements Dao {
 
+  private final PermissionVersion permissionVersion;
+
+  public UserGroupDao(PermissionVersion permissionVersion) {
+    this.permissionVersion = permissionVersion;
+  }
+
   public UserGroupDto insert(DbSession session, UserGroupDto dto) {
     mapper(session).insert(dto);
+    permissionVersion.increment(session);
     return dto;
   }
 
   public void delete(DbSession session, long groupId, long userId) {
     mapper(session).delete(groupId, userId);
+    permissionVersion.increment(session);
   }
 
   public void deleteByGroupId(DbSession session, long groupId) {
     mapper(session).deleteByGroupId(groupId);
+    permissionVersion.increment(session);
   }
 
   private static UserGroupMapper mapper(DbSession session) {
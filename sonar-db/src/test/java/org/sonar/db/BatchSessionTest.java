@@ -19,14 +19,20 @@
  */
 package org.sonar.db;
 
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSession;
 import org.junit.Test;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class BatchSessionTest {
   @Test
@@ -71,4 +77,78 @@ public class BatchSessionTest {
     verify(mybatisSession, times(3)).commit();
     session.close();
   }
+
+  @Test
+  public void does_not_flush_pending_statements_on_read_of_other_tables() {
+    SqlSession mybatisSession = mockSessionWithStatements();
+    BatchSession session = new BatchSession(mybatisSession, 10);
+
+    session.insert("insertIssueChange", "foo");
+    session.selectList("selectRules");
+    session.selectList("selectIssues", "foo");
+
+    verify(mybatisSession, never()).flushStatements();
+    assertThat(session.getFlushCount()).isEqualTo(0L);
+  }
+
+  @Test
+  public void flushes_pending_statements_on_read_of_a_modified_table() {
+    SqlSession mybatisSession = mockSessionWithStatements();
+    BatchSession session = new BatchSession(mybatisSession, 10);
+
+    session.insert("insertIssue", "foo");
+    session.insert("insertIssueChange", "foo");
+    session.selectList("selectIssues", "foo");
+    verify(mybatisSession).flushStatements();
+    assertThat(session.getFlushCount()).isEqualTo(1L);
+    assertThat(session.getFlushedStatementCount()).isEqualTo(2L);
+
+    // nothing left to flush
+    session.selectList("selectIssues", "foo");
+    verify(mybatisSession).flushStatements();
+  }
+
+  @Test
+  public void flushes_pending_statements_on_any_read_when_modified_table_is_unknown() {
+    SqlSession mybatisSession = mockSessionWithStatements();
+    BatchSession session = new BatchSession(mybatisSession, 10);
+
+    session.update("unknownStatement", "foo");
+    session.selectList("selectRules");
+
+    verify(mybatisSession).flushStatements();
+  }
+
+  @Test
+  public void count_flushes_and_flushed_statements() {
+    SqlSession mybatisSession = mock(SqlSession.class);
+    BatchSession session = new BatchSession(mybatisSession, 10);
+
+    for (int i = 0; i < 25; i++) {
+      session.insert("id" + i);
+    }
+    session.commit();
+    // no pending statements
+    session.commit();
+
+    assertThat(session.getFlushCount()).isEqualTo(3L);
+    assertThat(session.getFlushedStatementCount()).isEqualTo(25L);
+    session.close();
+  }
+
+  private static SqlSession mockSessionWithStatements() {
+    Configuration configuration = new Configuration();
+    addStatement(configuration, "insertIssue", "insert into issues (kee) values (?)", SqlCommandType.INSERT);
+    addStatement(configuration, "insertIssueChange", "INSERT INTO issue_changes (kee) VALUES (?)", SqlCommandType.INSERT);
+    addStatement(configuration, "selectRules", "select r.id from rules r", SqlCommandType.SELECT);
+    addStatement(configuration, "selectIssues", "select i.kee from issues i inner join rules r on r.id=i.rule_id", SqlCommandType.SELECT);
+
+    SqlSession mybatisSession = mock(SqlSession.class);
+    when(mybatisSession.getConfiguration()).thenReturn(configuration);
+    return mybatisSession;
+  }
+
+  private static void addStatement(Configuration configuration, String id, String sql, SqlCommandType type) {
+    configuration.addMappedStatement(new MappedStatement.Builder(configuration, id, new StaticSqlSource(configuration, sql), type).build());
+  }
 }
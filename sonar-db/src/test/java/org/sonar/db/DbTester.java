@@ -68,6 +68,7 @@ import org.sonar.db.component.ComponentDbTester;
 import org.sonar.db.organization.OrganizationDbTester;
 import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.organization.OrganizationTesting;
+import org.sonar.db.permission.PermissionVersion;
 import org.sonar.db.permission.template.PermissionTemplateDbTester;
 import org.sonar.db.user.RootFlagAssertions;
 import org.sonar.db.user.UserDbTester;
@@ -128,6 +129,7 @@ public class DbTester extends ExternalResource {
     ioc.addComponent(db.getMyBatis());
     ioc.addComponent(system2);
     ioc.addComponent(new SequenceUuidFactory());
+    ioc.addComponent(new PermissionVersion());
     for (Class daoClass : DaoModule.classes()) {
       ioc.addComponent(daoClass);
     }
@@ -25,9 +25,13 @@ import org.hamcrest.core.Is;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.sonar.db.ce.CeQueueDto;
+import org.sonar.db.ce.CeQueueMapper;
 import org.sonar.db.rule.RuleMapper;
+import org.sonar.db.webhook.WebhookDeliveryMapper;
 
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class MyBatisTest {
@@ -68,4 +72,30 @@ public class MyBatisTest {
       session.close();
     }
   }
+
+  @Test
+  public void batch_session_flushes_pending_statements_only_before_reading_their_tables() {
+    MyBatis myBatis = new MyBatis(database);
+    myBatis.start();
+
+    BatchSession session = (BatchSession) myBatis.openSession(true);
+    try {
+      session.getMapper(CeQueueMapper.class).insert(new CeQueueDto()
+        .setUuid("TASK_1")
+        .setTaskType("REPORT")
+        .setStatus(CeQueueDto.Status.PENDING)
+        .setCreatedAt(1_000L)
+        .setUpdatedAt(1_000L));
+
+      assertThat(session.getMapper(WebhookDeliveryMapper.class).selectByUuid("DELIVERY_1"), nullValue());
+      assertThat(session.getFlushCount(), Is.is(0L));
+
+      assertThat(session.getMapper(CeQueueMapper.class).selectByUuid("TASK_1"), notNullValue());
+      assertThat(session.getFlushCount(), Is.is(1L));
+      assertThat(session.getFlushedStatementCount(), Is.is(1L));
+    } finally {
+      session.rollback();
+      session.close();
+    }
+  }
 }
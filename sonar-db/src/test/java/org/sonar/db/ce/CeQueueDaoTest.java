@@ -29,11 +29,13 @@ import java.util.Map;
 import javax.annotation.Nullable;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.sonar.api.utils.internal.TestSystem2;
 import org.sonar.db.DbTester;
 
 import static com.google.common.collect.FluentIterable.from;
 import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.sonar.db.ce.CeQueueDto.Status.IN_PROGRESS;
@@ -52,6 +54,8 @@ public class CeQueueDaoTest {
 
   @Rule
   public DbTester db = DbTester.create(system2);
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
 
   private CeQueueDao underTest = new CeQueueDao(system2);
   private static final String SELECT_QUEUE_UUID_AND_STATUS_QUERY = "select uuid,status from ce_queue";
@@ -182,6 +186,64 @@ public class CeQueueDaoTest {
     assertThat(peek.get().getUuid()).isEqualTo(TASK_UUID_2);
   }
 
+  @Test
+  public void peek_batch_of_oldest_pending_tasks_in_a_single_update() throws Exception {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 1_000);
+    insert(TASK_UUID_2, COMPONENT_UUID_2, PENDING);
+    system2.setNow(INIT_TIME + 2_000);
+    insert(TASK_UUID_3, "PROJECT_3", PENDING);
+    system2.setNow(INIT_TIME + 3_000);
+
+    List<CeQueueDto> peeked = underTest.peek(db.getSession(), 2);
+
+    assertThat(peeked).extracting(CeQueueDto::getUuid).containsExactly(TASK_UUID_1, TASK_UUID_2);
+    assertThat(peeked).extracting(CeQueueDto::getStatus).containsOnly(IN_PROGRESS);
+    assertThat(peeked).extracting(CeQueueDto::getStartedAt).containsOnly(INIT_TIME + 3_000);
+    verifyCeQueueStatuses(TASK_UUID_1, IN_PROGRESS, TASK_UUID_2, IN_PROGRESS, TASK_UUID_3, PENDING);
+
+    assertThat(underTest.peek(db.getSession(), 2)).extracting(CeQueueDto::getUuid).containsExactly(TASK_UUID_3);
+    assertThat(underTest.peek(db.getSession(), 2)).isEmpty();
+  }
+
+  @Test
+  public void peek_batch_does_not_peek_multiple_tasks_on_same_project() throws Exception {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 1_000);
+    insert(TASK_UUID_2, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 2_000);
+    insert(TASK_UUID_3, COMPONENT_UUID_2, PENDING);
+
+    List<CeQueueDto> peeked = underTest.peek(db.getSession(), 3);
+
+    assertThat(peeked).extracting(CeQueueDto::getUuid).containsExactly(TASK_UUID_1, TASK_UUID_3);
+    verifyCeQueueStatuses(TASK_UUID_1, IN_PROGRESS, TASK_UUID_2, PENDING, TASK_UUID_3, IN_PROGRESS);
+
+    // second task of project is not eligible as long as first one is in progress
+    assertThat(underTest.peek(db.getSession(), 3)).isEmpty();
+  }
+
+  @Test
+  public void peek_batch_fails_if_max_is_not_strictly_positive() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Max number of tasks must be strictly positive");
+
+    underTest.peek(db.getSession(), 0);
+  }
+
+  @Test
+  public void resetToPendingStatus_resets_only_given_tasks_in_progress() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, IN_PROGRESS);
+    insert(TASK_UUID_2, COMPONENT_UUID_2, IN_PROGRESS);
+    insert(TASK_UUID_3, "PROJECT_3", PENDING);
+
+    underTest.resetToPendingStatus(db.getSession(), asList(TASK_UUID_1, TASK_UUID_3));
+    db.commit();
+
+    verifyCeQueueStatuses(TASK_UUID_1, PENDING, TASK_UUID_2, IN_PROGRESS, TASK_UUID_3, PENDING);
+    assertThat(underTest.selectByUuid(db.getSession(), TASK_UUID_1).get().getStartedAt()).isNull();
+  }
+
   @Test
   public void select_by_query() {
     // task status not in query
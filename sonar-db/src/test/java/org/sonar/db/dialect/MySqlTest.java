@@ -56,6 +56,11 @@ public class MySqlTest {
     assertThat(mySql.getScrollSingleRowFetchSize()).isEqualTo(Integer.MIN_VALUE);
   }
 
+  @Test
+  public void batch_size() {
+    assertThat(mySql.getBatchSize()).isEqualTo(250);
+  }
+
   @Test
   public void mysql_does_supportMigration() {
     assertThat(mySql.supportsMigration()).isTrue();
@@ -53,6 +53,11 @@ public class OracleTest {
     assertThat(dialect.getScrollSingleRowFetchSize()).isEqualTo(1);
   }
 
+  @Test
+  public void batch_size() {
+    assertThat(dialect.getBatchSize()).isEqualTo(1000);
+  }
+
   @Test
   public void oracle_does_supportMigration() {
     assertThat(dialect.supportsMigration()).isTrue();
@@ -57,6 +57,11 @@ public class PostgreSqlTest {
     assertThat(dialect.getScrollDefaultFetchSize()).isEqualTo(200);
   }
 
+  @Test
+  public void batch_size() {
+    assertThat(dialect.getBatchSize()).isEqualTo(1000);
+  }
+
   @Test
   public void postgres_does_supportMigration() {
     assertThat(dialect.supportsMigration()).isTrue();
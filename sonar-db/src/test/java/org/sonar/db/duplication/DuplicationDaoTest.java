@@ -25,8 +25,10 @@ import org.sonar.api.utils.System2;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -61,6 +63,20 @@ public class DuplicationDaoTest {
     assertThat(blocks).hasSize(2);
   }
 
+  @Test
+  public void select_candidates_of_many_hashes_with_result_handler() {
+    db.prepareDbUnit(getClass(), "select_candidates.xml");
+    dbSession.commit();
+
+    List<DuplicationUnitDto> blocks = new ArrayList<>();
+    dao.selectCandidates(dbSession, "u7", "java", asList("bb", "aa", "aa", "cc"), context -> blocks.add((DuplicationUnitDto) context.getResultObject()));
+    assertThat(blocks).extracting(DuplicationUnitDto::getComponentKey).containsExactly("bar-last");
+
+    blocks.clear();
+    dao.selectCandidates(dbSession, null, "java", asList("bb", "aa"), context -> blocks.add((DuplicationUnitDto) context.getResultObject()));
+    assertThat(blocks).extracting(DuplicationUnitDto::getComponentKey).containsOnly("bar-last", "foo-last");
+  }
+
   @Test
   public void insert() {
     db.prepareDbUnit(getClass(), "insert.xml");
@@ -38,11 +38,13 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.sonar.api.resources.Qualifiers.FILE;
 import static org.sonar.api.resources.Qualifiers.PROJECT;
 import static org.sonar.api.resources.Qualifiers.UNIT_TEST_FILE;
 import static org.sonar.api.resources.Qualifiers.VIEW;
 import static org.sonar.db.component.ComponentTesting.newDeveloper;
+import static org.sonar.db.component.ComponentTesting.newDirectory;
 import static org.sonar.db.component.ComponentTesting.newFileDto;
 import static org.sonar.db.component.ComponentTesting.newModuleDto;
 import static org.sonar.db.measure.MeasureTreeQuery.Strategy.CHILDREN;
@@ -109,6 +111,33 @@ public class MeasureDaoTest {
     assertThat(selected.getAlertText()).isEqualTo(inserted.getAlertText());
   }
 
+  @Test
+  public void insert_measures_with_multi_row_statements() {
+    ComponentDto project = db.components().insertProject();
+    insertAnalysis(LAST_ANALYSIS_UUID, project.uuid(), true);
+    List<MeasureDto> measures = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      measures.add(MeasureTesting.newMeasure()
+        .setAnalysisUuid(LAST_ANALYSIS_UUID)
+        .setComponentUuid(project.uuid())
+        .setMetricId(i)
+        .setData("M" + i));
+    }
+
+    underTest.insert(db.getSession(), measures, 2);
+    db.commit();
+
+    verifyMeasures(MeasureQuery.builder().setComponentUuid(project.uuid()), "M0", "M1", "M2", "M3", "M4");
+  }
+
+  @Test
+  public void fail_to_insert_measures_if_too_many_rows_per_statement() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Number of rows per statement must be between 1 and 100, got 101");
+
+    underTest.insert(db.getSession(), singletonList(MeasureTesting.newMeasure()), 101);
+  }
+
   @Test
   public void selectByQuery() {
     ComponentDto project1 = db.components().insertProject();
@@ -413,6 +442,59 @@ public class MeasureDaoTest {
     verifyMeasures(project, MeasureTreeQuery.builder().setQualifiers(asList(FILE, UNIT_TEST_FILE)).setStrategy(LEAVES), "M2", "M3", "M6");
   }
 
+  @Test
+  public void selectPastMeasuresOfAnalysis() {
+    ComponentDto project = db.components().insertProject();
+    ComponentDto module = db.components().insertComponent(newModuleDto(project));
+    db.components().insertComponent(newDirectory(module, "D1", "src/main/java"));
+    db.components().insertComponent(newDirectory(module, "D2", "src/test/java"));
+    insertAnalysis(LAST_ANALYSIS_UUID, project.uuid(), true);
+    insertAnalysis(OTHER_ANALYSIS_UUID, project.uuid(), false);
+
+    insertMeasure("P1", LAST_ANALYSIS_UUID, project.uuid(), NCLOC_METRIC_ID);
+    insertMeasure("M1", LAST_ANALYSIS_UUID, module.uuid(), NCLOC_METRIC_ID);
+    insertMeasure("D1_1", LAST_ANALYSIS_UUID, "D1", NCLOC_METRIC_ID);
+    insertMeasure("D1_2", LAST_ANALYSIS_UUID, "D1", COVERAGE_METRIC_ID);
+    insertMeasure("D1_3", LAST_ANALYSIS_UUID, "D1", COMPLEXITY_METRIC_ID);
+    insertMeasureOnPerson("D1_4", LAST_ANALYSIS_UUID, "D1", NCLOC_METRIC_ID, A_PERSON_ID);
+    insertMeasure("D2_1", LAST_ANALYSIS_UUID, "D2", COVERAGE_METRIC_ID);
+    insertMeasure("D2_2", OTHER_ANALYSIS_UUID, "D2", NCLOC_METRIC_ID);
+    db.commit();
+
+    List<PastMeasureDto> measures = selectPastMeasuresOfAnalysis(LAST_ANALYSIS_UUID, asList(NCLOC_METRIC_ID, COVERAGE_METRIC_ID));
+
+    assertThat(measures)
+      .extracting(PastMeasureDto::getComponentUuid, PastMeasureDto::getMetricId, PastMeasureDto::getPersonId)
+      .containsOnly(
+        tuple(project.uuid(), NCLOC_METRIC_ID, null),
+        tuple(module.uuid(), NCLOC_METRIC_ID, null),
+        tuple("D1", NCLOC_METRIC_ID, null),
+        tuple("D1", COVERAGE_METRIC_ID, null),
+        tuple("D2", COVERAGE_METRIC_ID, null));
+    assertThat(selectPastMeasuresOfAnalysis(OTHER_ANALYSIS_UUID, singletonList(COVERAGE_METRIC_ID))).isEmpty();
+    assertThat(selectPastMeasuresOfAnalysis("MISSING_ANALYSIS", singletonList(NCLOC_METRIC_ID))).isEmpty();
+  }
+
+  @Test
+  public void selectPastMeasuresOfAnalysis_does_not_return_measures_of_files() {
+    ComponentDto project = db.components().insertProject();
+    ComponentDto module = db.components().insertComponent(newModuleDto(project));
+    ComponentDto directory = db.components().insertComponent(newDirectory(module, "src/main/java"));
+    db.components().insertComponent(newFileDto(module, directory, "C1"));
+    db.components().insertComponent(newFileDto(module, directory, "C2").setQualifier(UNIT_TEST_FILE));
+    insertAnalysis(LAST_ANALYSIS_UUID, project.uuid(), true);
+
+    insertMeasure("P1", LAST_ANALYSIS_UUID, project.uuid(), NCLOC_METRIC_ID);
+    insertMeasure("D1", LAST_ANALYSIS_UUID, directory.uuid(), NCLOC_METRIC_ID);
+    insertMeasure("C1", LAST_ANALYSIS_UUID, "C1", NCLOC_METRIC_ID);
+    insertMeasure("C2", LAST_ANALYSIS_UUID, "C2", NCLOC_METRIC_ID);
+    db.commit();
+
+    List<PastMeasureDto> measures = selectPastMeasuresOfAnalysis(LAST_ANALYSIS_UUID, singletonList(NCLOC_METRIC_ID));
+
+    assertThat(measures).extracting(PastMeasureDto::getComponentUuid).containsOnly(project.uuid(), directory.uuid());
+  }
+
   private Optional<MeasureDto> selectSingle(MeasureQuery.Builder query) {
     return underTest.selectSingle(db.getSession(), query.build());
   }
@@ -452,6 +534,12 @@ public class MeasureDaoTest {
     return measures;
   }
 
+  private List<PastMeasureDto> selectPastMeasuresOfAnalysis(String analysisUuid, List<Integer> metricIds) {
+    List<PastMeasureDto> measures = new ArrayList<>();
+    underTest.selectPastMeasuresOfAnalysis(db.getSession(), analysisUuid, metricIds, resultContext -> measures.add((PastMeasureDto) resultContext.getResultObject()));
+    return measures;
+  }
+
   private void insertMeasure(String id, String analysisUuid, String componentUuid, int metricId) {
     insertMeasure(id, analysisUuid, componentUuid, null, metricId);
   }
@@ -502,6 +590,4 @@ public class MeasureDaoTest {
       .setLast(isLast));
   }
 
-  // TODO test selectPastMeasures
-
 }
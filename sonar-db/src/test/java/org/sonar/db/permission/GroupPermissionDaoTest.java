@@ -56,7 +56,7 @@ public class GroupPermissionDaoTest {
   public DbTester db = DbTester.create(System2.INSTANCE);
 
   private DbSession dbSession = db.getSession();
-  private GroupPermissionDao underTest = new GroupPermissionDao();
+  private GroupPermissionDao underTest = new GroupPermissionDao(new PermissionVersion());
   private String defaultOrganizationUuid;
 
   @Before
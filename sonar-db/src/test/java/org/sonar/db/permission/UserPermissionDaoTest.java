@@ -50,7 +50,8 @@ public class UserPermissionDaoTest {
   @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
 
-  private UserPermissionDao underTest = new UserPermissionDao();
+  private PermissionVersion permissionVersion = new PermissionVersion();
+  private UserPermissionDao underTest = new UserPermissionDao(permissionVersion);
   private UserDto user1 = newUserDto().setLogin("login1").setName("Marius").setActive(true);
   private UserDto user2 = newUserDto().setLogin("login2").setName("Marie").setActive(true);
   private UserDto user3 = newUserDto().setLogin("login3").setName("Bernard").setActive(true);
@@ -393,6 +394,35 @@ public class UserPermissionDaoTest {
     verifyOrganizationUuidsInTable();
   }
 
+  @Test
+  public void writes_increment_permission_version() {
+    long initialVersion = permissionVersion.get();
+
+    // incremented on write and on commit
+    UserPermissionDto permission = addGlobalPermissionOnDefaultOrganization(SYSTEM_ADMIN, user1);
+    assertThat(permissionVersion.get()).isEqualTo(initialVersion + 2);
+
+    underTest.deleteGlobalPermission(dbSession, user1.getId(), permission.getPermission(), permission.getOrganizationUuid());
+    assertThat(permissionVersion.get()).isEqualTo(initialVersion + 3);
+    dbTester.commit();
+    assertThat(permissionVersion.get()).isEqualTo(initialVersion + 4);
+
+    underTest.selectGlobalPermissionsOfUser(dbSession, user1.getId(), permission.getOrganizationUuid());
+    dbTester.commit();
+    assertThat(permissionVersion.get()).isEqualTo(initialVersion + 4);
+  }
+
+  @Test
+  public void permission_version_is_not_incremented_on_commit_after_rollback() {
+    long initialVersion = permissionVersion.get();
+
+    underTest.insert(dbSession, new UserPermissionDto(dbTester.getDefaultOrganization().getUuid(), SYSTEM_ADMIN, user1.getId(), null));
+    dbSession.rollback();
+    dbTester.commit();
+
+    assertThat(permissionVersion.get()).isEqualTo(initialVersion + 1);
+  }
+
   private void verifyOrganizationUuidsInTable(String... organizationUuids) {
     assertThat(dbTester.select("select organization_uuid as \"organizationUuid\" from user_roles"))
         .extracting((row) -> (String) row.get("organizationUuid"))
@@ -23,6 +23,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.utils.log.Logger;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.contains;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -59,6 +60,26 @@ public class PurgeProfilerTest {
     verify(logger).info(contains("bar: 5ms"));
   }
 
+  @Test
+  public void dump_rows_per_second() {
+    profiler.start("foo");
+    clock.sleep(500);
+    profiler.addRows(100);
+    profiler.addRows(200);
+    profiler.stop();
+
+    profiler.start("bar");
+    clock.sleep(5);
+    // negative counts are returned by JDBC batches
+    profiler.addRows(-2147482646);
+    profiler.stop();
+
+    assertThat(profiler.getTotalRows()).isEqualTo(300L);
+    profiler.dump(505, logger);
+    verify(logger).info(contains("foo: 500ms (99%), 300 rows (600 rows/s)"));
+    verify(logger).info("   o bar: 5ms (0%)");
+  }
+
   @Test
   public void shouldResetPurgeProfiling() {
     profiler.start("foo");
@@ -53,8 +53,8 @@ public class DefaultPeriodCleanerTest {
     Filter filter2 = newFirstSnapshotInListFilter();
 
     PurgeProfiler profiler = new PurgeProfiler();
-    DefaultPeriodCleaner cleaner = new DefaultPeriodCleaner(dao, profiler);
-    cleaner.doClean("uuid_123", Arrays.asList(filter1, filter2), session);
+    DefaultPeriodCleaner cleaner = new DefaultPeriodCleaner(dao);
+    cleaner.doClean("uuid_123", Arrays.asList(filter1, filter2), session, profiler);
 
     InOrder inOrder = Mockito.inOrder(dao, filter1, filter2);
     inOrder.verify(filter1).log();
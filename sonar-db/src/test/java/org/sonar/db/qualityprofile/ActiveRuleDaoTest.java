@@ -173,6 +173,26 @@ public class ActiveRuleDaoTest {
       .extracting("key").containsOnly(activeRule1.getKey(), activeRule2.getKey(), activeRule3.getKey());
   }
 
+  @Test
+  public void select_by_rule_ids_and_profile_keys() {
+    ActiveRuleDto activeRule1 = createFor(profile1, rule1).setSeverity(BLOCKER);
+    ActiveRuleDto activeRule2 = createFor(profile1, rule2).setSeverity(BLOCKER);
+    ActiveRuleDto activeRule3 = createFor(profile2, rule1).setSeverity(BLOCKER);
+    underTest.insert(dbSession, activeRule1);
+    underTest.insert(dbSession, activeRule2);
+    underTest.insert(dbSession, activeRule3);
+    dbSession.commit();
+
+    assertThat(underTest.selectByRuleIdsAndProfileKeys(dbSession, Collections.singletonList(rule1.getId()), Collections.singletonList(profile1.getKey())))
+      .extracting("key").containsOnly(activeRule1.getKey());
+    assertThat(underTest.selectByRuleIdsAndProfileKeys(dbSession, newArrayList(rule1.getId(), rule2.getId()), Collections.singletonList(profile1.getKey())))
+      .extracting("key").containsOnly(activeRule1.getKey(), activeRule2.getKey());
+    assertThat(underTest.selectByRuleIdsAndProfileKeys(dbSession, Collections.singletonList(rule1.getId()), newArrayList(profile1.getKey(), profile2.getKey())))
+      .extracting("key").containsOnly(activeRule1.getKey(), activeRule3.getKey());
+    assertThat(underTest.selectByRuleIdsAndProfileKeys(dbSession, Collections.singletonList(rule1.getId()), Collections.emptyList())).isEmpty();
+    assertThat(underTest.selectByRuleIdsAndProfileKeys(dbSession, Collections.emptyList(), Collections.singletonList(profile1.getKey()))).isEmpty();
+  }
+
   @Test
   public void select_all() {
     ActiveRuleDto activeRule1 = createFor(profile1, rule1).setSeverity(BLOCKER);
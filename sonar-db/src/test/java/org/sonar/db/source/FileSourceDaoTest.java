@@ -24,6 +24,8 @@ import com.google.common.base.Throwables;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.util.Arrays;
+import java.util.List;
 import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
@@ -73,6 +75,33 @@ public class FileSourceDaoTest {
     assertThat(fn.result).isEqualTo("ABC\\nDEF\\nGHI");
   }
 
+  @Test
+  public void select_line_hashes_of_several_files() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    underTest.insert(new FileSourceDto()
+      .setProjectUuid("PRJ_UUID")
+      .setFileUuid("FILE2_UUID")
+      .setBinaryData("FILE2_BINARY_DATA".getBytes())
+      .setDataHash("FILE2_DATA_HASH")
+      .setLineHashes("LINE1_HASH\nLINE2_HASH")
+      .setSrcHash("FILE2_HASH")
+      .setDataType(Type.SOURCE)
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000001L));
+
+    List<FileSourceDto> dtos = underTest.selectLineHashesByFileUuids(session, Arrays.asList("FILE1_UUID", "FILE2_UUID", "unknown"));
+
+    assertThat(dtos).extracting(FileSourceDto::getFileUuid).containsOnly("FILE1_UUID", "FILE2_UUID");
+    assertThat(dtos).extracting(FileSourceDto::getLineHashes).containsOnly("ABC\\nDEF\\nGHI", "LINE1_HASH\nLINE2_HASH");
+  }
+
+  @Test
+  public void no_line_hashes_of_several_files_when_only_test_data() {
+    dbTester.prepareDbUnit(getClass(), "no_line_hashes_when_only_test_data.xml");
+
+    assertThat(underTest.selectLineHashesByFileUuids(session, Arrays.asList("FILE1_UUID"))).isEmpty();
+  }
+
   @Test
   public void no_line_hashes_on_unknown_file() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
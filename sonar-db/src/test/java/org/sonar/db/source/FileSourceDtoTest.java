@@ -80,6 +80,62 @@ public class FileSourceDtoTest {
     assertThat(data.getLinesCount()).isEqualTo(build.getLinesCount());
   }
 
+  @Test
+  public void getSourceLines_decodes_only_lines_of_range() {
+    DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
+    for (int i = 1; i <= 10; i++) {
+      dataBuilder.addLinesBuilder().setLine(i).setSource("SOURCE_" + i).setScmAuthor("AUTHOR_" + i).setUtLineHits(i);
+    }
+    FileSourceDto underTest = new FileSourceDto().setSourceData(dataBuilder.build());
+
+    List<DbFileSources.Line> lines = underTest.getSourceLines(4, 6);
+
+    assertThat(lines).extracting(DbFileSources.Line::getLine).containsExactly(4, 5, 6);
+    assertThat(lines).extracting(DbFileSources.Line::getSource).containsExactly("SOURCE_4", "SOURCE_5", "SOURCE_6");
+    assertThat(lines.get(0).getScmAuthor()).isEqualTo("AUTHOR_4");
+    assertThat(lines.get(0).getUtLineHits()).isEqualTo(4);
+    assertThat(lines).containsExactlyElementsOf(dataBuilder.getLinesList().subList(3, 6));
+    assertThat(underTest.getSourceLines(9, Integer.MAX_VALUE)).extracting(DbFileSources.Line::getLine).containsExactly(9, 10);
+    assertThat(underTest.getSourceLines(11, 20)).isEmpty();
+  }
+
+  @Test
+  public void getSourceLines_ignores_lines_without_number() {
+    DbFileSources.Data data = DbFileSources.Data.newBuilder()
+      .addLines(DbFileSources.Line.newBuilder().setSource("no line"))
+      .addLines(DbFileSources.Line.newBuilder().setLine(1).setSource("SOURCE_1"))
+      .addLines(DbFileSources.Line.newBuilder())
+      .addLines(DbFileSources.Line.newBuilder().setLine(2).setSource("SOURCE_2"))
+      .build();
+
+    List<DbFileSources.Line> lines = new FileSourceDto().setSourceData(data).getSourceLines(1, 5);
+
+    assertThat(lines).extracting(DbFileSources.Line::getSource).containsExactly("SOURCE_1", "SOURCE_2");
+  }
+
+  @Test
+  public void getSourceLines_throws_ISE_when_data_cant_be_read() {
+    FileSourceDto underTest = new FileSourceDto()
+      .setBinaryData(new byte[] {1, 2, 3, 4, 5})
+      .setId(12L)
+      .setFileUuid("file uuid")
+      .setProjectUuid("project uuid");
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to decompress and deserialize source lines [id=12,fileUuid=file uuid,projectUuid=project uuid]");
+
+    underTest.getSourceLines(1, 10);
+  }
+
+  @Test
+  public void getSourceLines_reads_Data_object_bigger_than_default_size_limit() {
+    DbFileSources.Data build = createOver64MBDataStructure();
+    byte[] bytes = FileSourceDto.encodeSourceData(build);
+
+    List<DbFileSources.Line> lines = new FileSourceDto().decodeSourceLines(bytes, 199990, 200010);
+    assertThat(lines).extracting(DbFileSources.Line::getLine).containsExactly(199990, 199991, 199992, 199993, 199994, 199995, 199996, 199997, 199998);
+  }
+
   private static DbFileSources.Data createOver64MBDataStructure() {
     DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
     DbFileSources.Line.Builder lineBuilder = DbFileSources.Line.newBuilder();
@@ -44,6 +44,10 @@ import javax.annotation.Nullable;
  * <p>
  * Note that this implementation currently does not support deletion, however it's possible to implement.
  * </p>
+ * <p>
+ * Index is not thread-safe while blocks are inserted. Once all blocks are inserted and index is sorted, for example
+ * by a call to {@link #noResources()}, it can be read concurrently.
+ * </p>
  */
 public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
@@ -70,8 +74,6 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
   private int[] resourceIdsIndex;
 
-  private final Block.Builder blockBuilder = Block.builder();
-
   public PackedMemoryCloneIndex() {
     this(8, DEFAULT_INITIAL_CAPACITY);
   }
@@ -100,19 +102,21 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   public Collection<Block> getByResourceId(String resourceId) {
     ensureSorted();
 
-    // prepare resourceId for binary search
-    resourceIds[size] = resourceId;
-    resourceIdsIndex[size] = size;
-
-    int index = DataUtils.binarySearch(byResourceId);
+    // binary search of the first block of resource. Index is not modified, so that reads are thread-safe
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (FastStringComparator.INSTANCE.compare(resourceIds[resourceIdsIndex[mid]], resourceId) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
 
     List<Block> result = new ArrayList<>();
-    int realIndex = resourceIdsIndex[index];
-    while (index < size && FastStringComparator.INSTANCE.compare(resourceIds[realIndex], resourceId) == 0) {
-      result.add(getBlock(realIndex, resourceId));
-
-      index++;
-      realIndex = resourceIdsIndex[index];
+    for (int index = lower; index < size && FastStringComparator.INSTANCE.compare(resourceIds[resourceIdsIndex[index]], resourceId) == 0; index++) {
+      result.add(getBlock(resourceIdsIndex[index], resourceId));
     }
     return result;
   }
@@ -138,7 +142,7 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     int startUnit = blockData[offset++];
     int endUnit = blockData[offset];
 
-    return blockBuilder
+    return Block.builder()
       .setResourceId(resourceId)
       .setBlockHash(blockHash)
       .setIndexInFile(indexInFile)
@@ -217,20 +221,26 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
     ensureSorted();
 
-    // prepare hash for binary search
     int[] hash = sequenceHash.toIntArray();
     if (hash.length != hashInts) {
       throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
     }
-    int offset = size * blockInts;
-    for (int i = 0; i < hashInts; i++) {
-      blockData[offset++] = hash[i];
-    }
 
-    int index = DataUtils.binarySearch(byBlockHash);
+    // binary search of the first block with hash. Index is not modified, so that reads are thread-safe
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (compareHash(mid, hash) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
 
     List<Block> result = new ArrayList<>();
-    while (index < size && !isLessByHash(size, index)) {
+    int index = lower;
+    while (index < size && compareHash(index, hash) == 0) {
       // extract block (note that there is no need to extract hash)
       String resourceId = resourceIds[index];
       result.add(createBlock(index, resourceId, sequenceHash));
@@ -309,6 +319,19 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     sorted = true;
   }
 
+  /**
+   * Compares hash of block at given index with the given hash, in the same order as {@link #isLessByHash(int, int)}
+   */
+  private int compareHash(int index, int[] hash) {
+    int offset = index * blockInts;
+    for (int k = 0; k < hashInts; k++, offset++) {
+      if (blockData[offset] != hash[k]) {
+        return blockData[offset] < hash[k] ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
   private boolean isLessByHash(int i, int j) {
     int i2 = i * blockInts;
     int j2 = j * blockInts;
@@ -28,6 +28,10 @@ import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -142,6 +146,36 @@ public class PackedMemoryCloneIndexTest {
     index.getBySequenceHash(new ByteArray(1L));
   }
 
+  @Test
+  public void concurrent_reads_once_sorted() throws Exception {
+    for (int i = 0; i < 1_000; i++) {
+      index.insert(newBlock("r" + (i % 10), i % 100));
+    }
+    assertThat(index.noResources(), is(10));
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 1_000; i++) {
+            Collection<Block> blocks = index.getBySequenceHash(new ByteArray((long) (i % 100)));
+            assertThat(blocks.size(), is(10));
+            for (Block block : blocks) {
+              assertThat(block.getBlockHash(), is(new ByteArray((long) (i % 100))));
+            }
+            assertThat(index.getByResourceId("r" + (i % 10)).size(), is(100));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   private static Block newBlock(String resourceId, long hash) {
     return Block.builder()
         .setResourceId(resourceId)
@@ -19,7 +19,6 @@
  */
 package org.sonar.api.batch.fs.internal;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -27,11 +26,16 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
@@ -56,6 +60,19 @@ public class FileMetadata {
   private static final char LINE_FEED = '\n';
   private static final char CARRIAGE_RETURN = '\r';
 
+  /**
+   * Files of at least this size are memory-mapped instead of being read through a stream
+   */
+  static final long MAPPED_FILE_MIN_SIZE = 1024L * 1024L;
+
+  private static final int CHAR_BUFFER_SIZE = 8192;
+
+  /**
+   * Sorted by decreasing length, like in {@link BOMInputStream}, so that UTF-32LE is not read as UTF-16LE
+   */
+  private static final ByteOrderMark[] BYTE_ORDER_MARKS = {ByteOrderMark.UTF_32LE, ByteOrderMark.UTF_32BE, ByteOrderMark.UTF_8,
+    ByteOrderMark.UTF_16LE, ByteOrderMark.UTF_16BE};
+
   public abstract static class CharHandler {
 
     protected void handleAll(char c) {
@@ -295,21 +312,106 @@ public class FileMetadata {
   }
 
   public static void readFile(File file, Charset encoding, CharHandler... handlers) {
-    try (BOMInputStream bomIn = new BOMInputStream(new FileInputStream(file),
-      ByteOrderMark.UTF_8, ByteOrderMark.UTF_16LE, ByteOrderMark.UTF_16BE, ByteOrderMark.UTF_32LE, ByteOrderMark.UTF_32BE);
-      Reader reader = new BufferedReader(new InputStreamReader(bomIn, encoding))) {
-      read(reader, handlers);
+    try {
+      long size = file.length();
+      if (size >= MAPPED_FILE_MIN_SIZE && size <= Integer.MAX_VALUE) {
+        readMappedFile(file, encoding, handlers);
+      } else {
+        readStream(file, encoding, handlers);
+      }
     } catch (IOException e) {
       throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", file.getAbsolutePath(), encoding), e);
     }
   }
 
+  private static void readStream(File file, Charset encoding, CharHandler... handlers) throws IOException {
+    try (BOMInputStream bomIn = new BOMInputStream(new FileInputStream(file), BYTE_ORDER_MARKS);
+      Reader reader = new InputStreamReader(bomIn, encoding)) {
+      read(reader, handlers);
+    }
+  }
+
+  /**
+   * Large files are mapped in memory and decoded by chunks, which avoids to copy their content through the buffers
+   * of a stream. Chars are the same as the ones read by {@link #readStream(File, Charset, CharHandler...)}: the
+   * byte order mark is skipped and malformed input is replaced.
+   */
+  private static void readMappedFile(File file, Charset encoding, CharHandler... handlers) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      skipByteOrderMark(bytes);
+      CharsetDecoder decoder = encoding.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+      CharDispatcher dispatcher = new CharDispatcher(handlers);
+      CoderResult result;
+      do {
+        result = decoder.decode(bytes, chars, true);
+        dispatch(chars, dispatcher);
+      } while (result.isOverflow());
+      do {
+        result = decoder.flush(chars);
+        dispatch(chars, dispatcher);
+      } while (result.isOverflow());
+      dispatcher.eof();
+    }
+  }
+
+  private static void skipByteOrderMark(ByteBuffer bytes) {
+    for (ByteOrderMark bom : BYTE_ORDER_MARKS) {
+      if (startsWith(bytes, bom)) {
+        bytes.position(bom.length());
+        return;
+      }
+    }
+  }
+
+  private static boolean startsWith(ByteBuffer bytes, ByteOrderMark bom) {
+    if (bytes.remaining() < bom.length()) {
+      return false;
+    }
+    for (int i = 0; i < bom.length(); i++) {
+      if ((bytes.get(i) & 0xFF) != bom.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void dispatch(CharBuffer chars, CharDispatcher dispatcher) {
+    chars.flip();
+    while (chars.hasRemaining()) {
+      dispatcher.handle(chars.get());
+    }
+    chars.clear();
+  }
+
   private static void read(Reader reader, CharHandler... handlers) throws IOException {
-    char c;
-    int i = reader.read();
-    boolean afterCR = false;
-    while (i != -1) {
-      c = (char) i;
+    CharDispatcher dispatcher = new CharDispatcher(handlers);
+    char[] buffer = new char[CHAR_BUFFER_SIZE];
+    int read = reader.read(buffer);
+    while (read != -1) {
+      for (int i = 0; i < read; i++) {
+        dispatcher.handle(buffer[i]);
+      }
+      read = reader.read(buffer);
+    }
+    dispatcher.eof();
+  }
+
+  /**
+   * Notifies the handlers of each char and of each end of line. Supported ends of line are LF, CR and CR+LF.
+   */
+  private static class CharDispatcher {
+    private final CharHandler[] handlers;
+    private boolean afterCR = false;
+
+    CharDispatcher(CharHandler[] handlers) {
+      this.handlers = handlers;
+    }
+
+    void handle(char c) {
       if (afterCR) {
         for (CharHandler handler : handlers) {
           if (c == CARRIAGE_RETURN) {
@@ -341,13 +443,15 @@ public class FileMetadata {
           handler.handleAll(c);
         }
       }
-      i = reader.read();
     }
-    for (CharHandler handler : handlers) {
-      if (afterCR) {
-        handler.newLine();
+
+    void eof() {
+      for (CharHandler handler : handlers) {
+        if (afterCR) {
+          handler.newLine();
+        }
+        handler.eof();
       }
-      handler.eof();
     }
   }
 
@@ -19,12 +19,16 @@
  */
 package org.sonar.api.batch.fs.internal;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -316,4 +320,43 @@ public class FileMetadataTest {
       "glyphicons-halflings-regular.woff at line 1 for encoding UTF-8. Please fix file content or configure the encoding to be used using property 'sonar.sourceEncoding'.");
   }
 
+  @Test
+  public void read_large_file_with_bom_and_mixed_newlines() throws Exception {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; content.length() < FileMetadata.MAPPED_FILE_MIN_SIZE; i++) {
+      content.append("line ").append(i).append(" \u00e9\u00e0\u4e2d ").append(i % 3 == 0 ? "\r\n" : (i % 3 == 1 ? "\n" : "\r"));
+    }
+    content.append("\r");
+
+    assertSameMetadataAsReader(("\uFEFF" + content).getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, content.toString());
+    assertSameMetadataAsReader(("\uFEFF" + content).getBytes(StandardCharsets.UTF_16BE), StandardCharsets.UTF_16BE, content.toString());
+  }
+
+  @Test
+  public void read_large_binary_file_with_unmappable_characters() throws Exception {
+    File woff = new File(this.getClass().getResource("glyphicons-halflings-regular.woff").toURI());
+    byte[] woffBytes = FileUtils.readFileToByteArray(woff);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    while (bytes.size() < FileMetadata.MAPPED_FILE_MIN_SIZE) {
+      bytes.write(woffBytes);
+    }
+
+    String decoded = IOUtils.toString(new ByteArrayInputStream(bytes.toByteArray()), StandardCharsets.UTF_8);
+    assertSameMetadataAsReader(bytes.toByteArray(), StandardCharsets.UTF_8, decoded);
+  }
+
+  private void assertSameMetadataAsReader(byte[] bytes, Charset encoding, String expectedContent) throws Exception {
+    File tempFile = temp.newFile();
+    FileUtils.writeByteArrayToFile(tempFile, bytes);
+    assertThat(tempFile.length()).isGreaterThanOrEqualTo(FileMetadata.MAPPED_FILE_MIN_SIZE);
+
+    FileMetadata.Metadata metadata = new FileMetadata().readMetadata(tempFile, encoding);
+    FileMetadata.Metadata expected = new FileMetadata().readMetadata(new StringReader(expectedContent));
+    assertThat(metadata.lines).isEqualTo(expected.lines);
+    assertThat(metadata.nonBlankLines).isEqualTo(expected.nonBlankLines);
+    assertThat(metadata.hash).isEqualTo(expected.hash);
+    assertThat(metadata.originalLineOffsets).isEqualTo(expected.originalLineOffsets);
+    assertThat(metadata.lastValidOffset).isEqualTo(expected.lastValidOffset);
+  }
+
 }
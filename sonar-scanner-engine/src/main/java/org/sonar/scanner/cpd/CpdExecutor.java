@@ -22,7 +22,10 @@ package org.sonar.scanner.cpd;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -30,6 +33,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.Logger;
@@ -54,6 +58,10 @@ import static com.google.common.collect.FluentIterable.from;
  * Runs on the root module, at the end of the project analysis.
  * It executes copy paste detection involving all files of all modules, which were indexed during sensors execution for each module
  * by {@link CpdSensor). The sensor is responsible for handling exclusions and block sizes.
+ * <p>
+ * Detection can be executed by several threads, see {@link #THREADS_PROPERTY}. The block index is read-only
+ * at this stage. Whatever the number of threads, duplications are saved by the calling thread, in the order of files in index.
+ * </p>
  */
 public class CpdExecutor {
   private static final Logger LOG = Loggers.get(CpdExecutor.class);
@@ -61,12 +69,12 @@ public class CpdExecutor {
   private static final int TIMEOUT = 5 * 60;
   static final int MAX_CLONE_GROUP_PER_FILE = 100;
   static final int MAX_CLONE_PART_PER_GROUP = 100;
+  static final String THREADS_PROPERTY = "sonar.cpd.threads";
 
   private final SonarCpdBlockIndex index;
   private final ReportPublisher publisher;
   private final BatchComponentCache batchComponentCache;
   private final Settings settings;
-  private final ExecutorService executorService;
   private final ProgressReport progressReport;
   private int count;
   private int total;
@@ -76,50 +84,78 @@ public class CpdExecutor {
     this.index = index;
     this.publisher = publisher;
     this.batchComponentCache = batchComponentCache;
-    this.executorService = Executors.newSingleThreadExecutor();
     this.progressReport = new ProgressReport("CPD computation", TimeUnit.SECONDS.toMillis(10));
   }
 
   public void execute() {
+    // sorts the index, so that it can then be read concurrently
     total = index.noResources();
+    int threads = getThreads();
     progressReport.start(String.format("Calculating CPD for %d files", total));
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("CPD-%d")
+      .setDaemon(true)
+      .build());
     try {
       Iterator<ResourceBlocks> it = index.iterator();
-
+      // detections are submitted in advance, but their results are saved in order
+      Deque<CpdTask> pendingTasks = new ArrayDeque<>();
       while (it.hasNext()) {
         ResourceBlocks resourceBlocks = it.next();
-        runCpdAnalysis(resourceBlocks.resourceId(), resourceBlocks.blocks());
-        count++;
+        CpdTask task = submit(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks());
+        if (task == null) {
+          count++;
+        } else {
+          pendingTasks.add(task);
+        }
+        while (pendingTasks.size() > 2 * threads) {
+          complete(pendingTasks.poll());
+        }
+      }
+      while (!pendingTasks.isEmpty()) {
+        complete(pendingTasks.poll());
       }
       progressReport.stop("CPD calculation finished");
     } catch (Exception e) {
       progressReport.stop("");
       throw e;
+    } finally {
+      executorService.shutdownNow();
     }
   }
 
-  private void runCpdAnalysis(String resource, final Collection<Block> fileBlocks) {
-    LOG.debug("Detection of duplications for {}", resource);
+  @VisibleForTesting
+  int getThreads() {
+    return Math.max(1, settings.getInt(THREADS_PROPERTY));
+  }
 
+  @CheckForNull
+  private CpdTask submit(ExecutorService executorService, String resource, Collection<Block> fileBlocks) {
     BatchComponent component = batchComponentCache.get(resource);
     if (component == null) {
       LOG.error("Resource not found in component cache: {}. Skipping CPD computation for it", resource);
-      return;
+      return null;
     }
+    Future<List<CloneGroup>> futureResult = executorService.submit(() -> {
+      LOG.debug("Detection of duplications for {}", resource);
+      return SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks);
+    });
+    return new CpdTask(component, futureResult);
+  }
 
+  private void complete(CpdTask task) {
+    BatchComponent component = task.component;
     InputFile inputFile = (InputFile) component.inputComponent();
     progressReport.message(String.format("%d/%d - current file: %s", count, total, inputFile.absolutePath()));
+    count++;
 
     List<CloneGroup> duplications;
-    Future<List<CloneGroup>> futureResult = null;
     try {
-      futureResult = executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
-      duplications = futureResult.get(TIMEOUT, TimeUnit.SECONDS);
+      // tasks are completed in order of submission, so the task has been running for at least the time spent in previous tasks
+      duplications = task.futureResult.get(TIMEOUT, TimeUnit.SECONDS);
     } catch (TimeoutException e) {
       LOG.warn("Timeout during detection of duplications for " + inputFile.absolutePath());
-      if (futureResult != null) {
-        futureResult.cancel(true);
-      }
+      task.futureResult.cancel(true);
       return;
     } catch (Exception e) {
       throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
@@ -136,6 +172,16 @@ public class CpdExecutor {
     saveDuplications(component, filtered);
   }
 
+  private static class CpdTask {
+    private final BatchComponent component;
+    private final Future<List<CloneGroup>> futureResult;
+
+    CpdTask(BatchComponent component, Future<List<CloneGroup>> futureResult) {
+      this.component = component;
+      this.futureResult = futureResult;
+    }
+  }
+
   @VisibleForTesting
   /**
    * Not applicable to Java, as the {@link BlockChunker} that it uses does not record start and end units of each block. 
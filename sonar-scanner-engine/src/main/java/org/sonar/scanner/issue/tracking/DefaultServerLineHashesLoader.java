@@ -19,18 +19,22 @@
  */
 package org.sonar.scanner.issue.tracking;
 
-import org.sonarqube.ws.client.GetRequest;
-
-import java.io.IOException;
-import java.io.Reader;
-
+import com.google.common.base.Function;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Iterators;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Collection;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.api.utils.log.Profiler;
 import org.sonar.scanner.bootstrap.BatchWsClient;
+import org.sonar.scanner.protocol.input.ScannerInput.FileLineHashes;
 import org.sonar.scanner.util.BatchUtils;
+import org.sonarqube.ws.MediaTypes;
+import org.sonarqube.ws.client.GetRequest;
+import org.sonarqube.ws.client.PostRequest;
 
 public class DefaultServerLineHashesLoader implements ServerLineHashesLoader {
   private BatchWsClient wsClient;
@@ -60,4 +64,29 @@ public class DefaultServerLineHashesLoader implements ServerLineHashesLoader {
       profiler.stopDebug();
     }
   }
+
+  @Override
+  public void load(Collection<String> fileKeys, Function<FileLineHashes, Void> consumer) {
+    Profiler profiler = Profiler.createIfDebug(Loggers.get(getClass()))
+      .addContext("files", fileKeys.size())
+      .startDebug("Load line hashes");
+
+    // keys are sent in the body of a POST request, as they may not fit in the URL
+    PostRequest postRequest = new PostRequest("/batch/line_hashes")
+      .setMediaType(MediaTypes.PROTOBUF)
+      .setParam("keys", fileKeys);
+    InputStream is = wsClient.call(postRequest).contentStream();
+    try {
+      FileLineHashes lineHashes = FileLineHashes.parseDelimitedFrom(is);
+      while (lineHashes != null) {
+        consumer.apply(lineHashes);
+        lineHashes = FileLineHashes.parseDelimitedFrom(is);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to get line hashes", e);
+    } finally {
+      IOUtils.closeQuietly(is);
+      profiler.stopDebug();
+    }
+  }
 }
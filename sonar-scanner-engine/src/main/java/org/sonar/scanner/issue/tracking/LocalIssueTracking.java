@@ -40,6 +40,7 @@ import org.sonar.core.issue.tracking.Tracker;
 import org.sonar.core.issue.tracking.Tracking;
 import org.sonar.scanner.analysis.DefaultAnalysisMode;
 import org.sonar.scanner.index.BatchComponent;
+import org.sonar.scanner.index.BatchComponentCache;
 import org.sonar.scanner.issue.IssueTransformer;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.repository.ProjectRepositories;
@@ -47,29 +48,49 @@ import org.sonar.scanner.repository.ProjectRepositories;
 @ScannerSide
 public class LocalIssueTracking {
   private final Tracker<TrackedIssue, ServerIssueFromWs> tracker;
-  private final ServerLineHashesLoader lastLineHashes;
+  private final ServerLineHashesRepository lastLineHashes;
   private final ActiveRules activeRules;
   private final ServerIssueRepository serverIssueRepository;
   private final DefaultAnalysisMode mode;
+  private final BatchComponentCache componentCache;
 
   private boolean hasServerAnalysis;
 
-  public LocalIssueTracking(Tracker<TrackedIssue, ServerIssueFromWs> tracker, ServerLineHashesLoader lastLineHashes,
-    ActiveRules activeRules, ServerIssueRepository serverIssueRepository, ProjectRepositories projectRepositories, DefaultAnalysisMode mode) {
+  public LocalIssueTracking(Tracker<TrackedIssue, ServerIssueFromWs> tracker, ServerLineHashesRepository lastLineHashes,
+    ActiveRules activeRules, ServerIssueRepository serverIssueRepository, ProjectRepositories projectRepositories, DefaultAnalysisMode mode,
+    BatchComponentCache componentCache) {
     this.tracker = tracker;
     this.lastLineHashes = lastLineHashes;
     this.serverIssueRepository = serverIssueRepository;
     this.mode = mode;
     this.activeRules = activeRules;
+    this.componentCache = componentCache;
     this.hasServerAnalysis = projectRepositories.lastAnalysisDate() != null;
   }
 
   public void init() {
     if (hasServerAnalysis) {
       serverIssueRepository.load();
+      lastLineHashes.prefetch(changedFileKeys());
     }
   }
 
+  /**
+   * Keys of the files which line hashes on server are required to track issues, see {@link SourceHashHolder}
+   */
+  private List<String> changedFileKeys() {
+    List<String> keys = new ArrayList<>();
+    for (BatchComponent component : componentCache.all()) {
+      if (component.isFile()) {
+        DefaultInputFile file = (DefaultInputFile) component.inputComponent();
+        if (file.status() == Status.CHANGED) {
+          keys.add(file.key());
+        }
+      }
+    }
+    return keys;
+  }
+
   public List<TrackedIssue> trackIssues(BatchComponent component, Collection<ScannerReport.Issue> reportIssues, Date analysisDate) {
     List<TrackedIssue> trackedIssues = new LinkedList<>();
     if (hasServerAnalysis) {
@@ -19,10 +19,18 @@
  */
 package org.sonar.scanner.issue.tracking;
 
+import com.google.common.base.Function;
+import java.util.Collection;
 import org.sonar.api.batch.ScannerSide;
+import org.sonar.scanner.protocol.input.ScannerInput.FileLineHashes;
 
 @ScannerSide
 public interface ServerLineHashesLoader {
 
   String[] getLineHashes(String fileKey);
+
+  /**
+   * Loads the line hashes of several files with a single request. Files unknown by server are ignored.
+   */
+  void load(Collection<String> fileKeys, Function<FileLineHashes, Void> consumer);
 }
@@ -0,0 +1,113 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.issue.tracking;
+
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.api.utils.log.Profiler;
+import org.sonar.scanner.protocol.input.ScannerInput.FileLineHashes;
+import org.sonar.scanner.storage.Storage;
+import org.sonar.scanner.storage.Storages;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Line hashes of the files on server. They are prefetched by batches of files, with several concurrent requests, and
+ * stored in {@link Storages}. If they are not prefetched, or if a file is missing from the prefetched ones, then they
+ * are requested file by file.
+ */
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+@ScannerSide
+public class ServerLineHashesRepository {
+
+  private static final Logger LOG = Loggers.get(ServerLineHashesRepository.class);
+  static final int FILES_PER_REQUEST = 100;
+  private static final int CONCURRENT_REQUESTS = 4;
+
+  private final Storages storages;
+  private final ServerLineHashesLoader loader;
+  private Storage<FileLineHashes> lineHashesByFileKey;
+
+  public ServerLineHashesRepository(Storages storages, ServerLineHashesLoader loader) {
+    this.storages = storages;
+    this.loader = loader;
+  }
+
+  public void prefetch(Collection<String> fileKeys) {
+    checkState(lineHashesByFileKey == null, "Line hashes are already prefetched");
+    if (fileKeys.isEmpty()) {
+      return;
+    }
+    Profiler profiler = Profiler.create(LOG).startInfo("Load line hashes of " + fileKeys.size() + " files");
+    lineHashesByFileKey = storages.createCache("serverLineHashes");
+    storages.registerValueCoder(FileLineHashes.class, new FileLineHashesValueCoder());
+
+    ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_REQUESTS, new ThreadFactoryBuilder()
+      .setNameFormat("line-hashes-loader-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      List<Future<List<FileLineHashes>>> futures = new ArrayList<>();
+      for (List<String> keys : Iterables.partition(fileKeys, FILES_PER_REQUEST)) {
+        futures.add(executor.submit(() -> load(keys)));
+      }
+      // storages are not necessarily thread-safe, so they are fed by the current thread
+      for (Future<List<FileLineHashes>> future : futures) {
+        for (FileLineHashes lineHashes : Futures.getUnchecked(future)) {
+          lineHashesByFileKey.put(lineHashes.getKey(), lineHashes);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    profiler.stopInfo();
+  }
+
+  private List<FileLineHashes> load(List<String> fileKeys) {
+    List<FileLineHashes> result = new ArrayList<>(fileKeys.size());
+    loader.load(fileKeys, lineHashes -> {
+      result.add(lineHashes);
+      return null;
+    });
+    return result;
+  }
+
+  /**
+   * @return the line hashes of the file on server
+   */
+  public String[] getLineHashes(String fileKey) {
+    FileLineHashes lineHashes = lineHashesByFileKey == null ? null : lineHashesByFileKey.get(fileKey);
+    if (lineHashes == null) {
+      return loader.getLineHashes(fileKey);
+    }
+    return lineHashes.getLineHashList().toArray(new String[lineHashes.getLineHashCount()]);
+  }
+}
@@ -55,6 +55,7 @@ import org.sonar.scanner.issue.tracking.IssueTransition;
 import org.sonar.scanner.issue.tracking.LocalIssueTracking;
 import org.sonar.scanner.issue.tracking.ServerIssueRepository;
 import org.sonar.scanner.issue.tracking.ServerLineHashesLoader;
+import org.sonar.scanner.issue.tracking.ServerLineHashesRepository;
 import org.sonar.scanner.mediumtest.ScanTaskObservers;
 import org.sonar.scanner.phases.PhasesTimeProfiler;
 import org.sonar.scanner.profiling.PhasesSumUpTimeProfiler;
@@ -210,7 +211,8 @@ public class ProjectScanContainer extends ComponentContainer {
   private void addIssueTrackingComponents() {
     add(
       LocalIssueTracking.class,
-      ServerIssueRepository.class);
+      ServerIssueRepository.class,
+      ServerLineHashesRepository.class);
     addIfMissing(DefaultServerIssuesLoader.class, ServerIssuesLoader.class);
     addIfMissing(DefaultServerLineHashesLoader.class, ServerLineHashesLoader.class);
   }
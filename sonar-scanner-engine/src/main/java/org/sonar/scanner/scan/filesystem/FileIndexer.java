@@ -19,28 +19,25 @@
  */
 package org.sonar.scanner.scan.filesystem;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileSystemLoopException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitOption;
-import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.ScannerSide;
@@ -67,8 +64,8 @@ public class FileIndexer {
   private final InputFileBuilderFactory inputFileBuilderFactory;
 
   private ProgressReport progressReport;
-  private ExecutorService executorService;
-  private List<Future<Void>> tasks;
+  private ForkJoinPool forkJoinPool;
+  private AtomicReference<RuntimeException> failure;
 
   public FileIndexer(ExclusionFilters exclusionFilters, InputFileBuilderFactory inputFileBuilderFactory, ProjectDefinition def, InputFileFilter[] filters) {
     this.filters = filters;
@@ -94,12 +91,16 @@ public class FileIndexer {
 
     InputFileBuilder inputFileBuilder = inputFileBuilderFactory.create(fileSystem);
     int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
-    executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("FileIndexer-%d").build());
-    tasks = new ArrayList<>();
-    indexFiles(fileSystem, progress, inputFileBuilder, fileSystem.sources(), InputFile.Type.MAIN);
-    indexFiles(fileSystem, progress, inputFileBuilder, fileSystem.tests(), InputFile.Type.TEST);
-
-    waitForTasksToComplete();
+    forkJoinPool = new ForkJoinPool(threads, FileIndexerThreadFactory.INSTANCE, null, false);
+    failure = new AtomicReference<>();
+    try {
+      List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+      indexFiles(new IndexContext(inputFileBuilder, fileSystem, progress, InputFile.Type.MAIN), fileSystem.sources(), tasks);
+      indexFiles(new IndexContext(inputFileBuilder, fileSystem, progress, InputFile.Type.TEST), fileSystem.tests(), tasks);
+      waitForTasksToComplete(tasks);
+    } finally {
+      forkJoinPool.shutdownNow();
+    }
 
     progressReport.stop(progress.count() + " files indexed");
 
@@ -108,76 +109,56 @@ public class FileIndexer {
     }
   }
 
-  private void waitForTasksToComplete() {
-    executorService.shutdown();
-    for (Future<Void> task : tasks) {
-      try {
-        task.get();
-      } catch (ExecutionException e) {
-        // Unwrap ExecutionException
-        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
-      } catch (InterruptedException e) {
-        throw new IllegalStateException(e);
-      }
+  private void waitForTasksToComplete(List<ForkJoinTask<Void>> tasks) {
+    for (ForkJoinTask<Void> task : tasks) {
+      task.join();
+    }
+    // failures are recorded by the tasks, so that the original exception is thrown
+    RuntimeException e = failure.get();
+    if (e != null) {
+      throw e;
     }
   }
 
-  private void indexFiles(DefaultModuleFileSystem fileSystem, Progress progress, InputFileBuilder inputFileBuilder, List<File> sources, InputFile.Type type) {
-    try {
-      for (File dirOrFile : sources) {
-        if (dirOrFile.isDirectory()) {
-          indexDirectory(inputFileBuilder, fileSystem, progress, dirOrFile, type);
-        } else {
-          indexFile(inputFileBuilder, fileSystem, progress, dirOrFile.toPath(), type);
-        }
+  private void indexFiles(IndexContext context, List<File> sources, List<ForkJoinTask<Void>> tasks) {
+    for (File dirOrFile : sources) {
+      if (dirOrFile.isDirectory()) {
+        Path dir = dirOrFile.toPath().normalize();
+        tasks.add(forkJoinPool.submit(new IndexDirectoryTask(context, dir, null)));
+      } else {
+        tasks.add(forkJoinPool.submit(new IndexFileTask(context, dirOrFile.toPath())));
       }
-    } catch (IOException e) {
-      throw new IllegalStateException("Failed to index files", e);
     }
   }
 
-  private void indexDirectory(final InputFileBuilder inputFileBuilder, final DefaultModuleFileSystem fileSystem, final Progress status,
-    final File dirToIndex, final InputFile.Type type) throws IOException {
-    Files.walkFileTree(dirToIndex.toPath().normalize(), Collections.singleton(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
-      new IndexFileVisitor(inputFileBuilder, fileSystem, status, type));
-  }
-
-  private void indexFile(InputFileBuilder inputFileBuilder, DefaultModuleFileSystem fileSystem, Progress progress, Path sourceFile, InputFile.Type type) throws IOException {
+  private void indexFile(IndexContext context, Path sourceFile) throws IOException {
     // get case of real file without resolving link
     Path realFile = sourceFile.toRealPath(LinkOption.NOFOLLOW_LINKS);
-    DefaultInputFile inputFile = inputFileBuilder.create(realFile.toFile());
+    DefaultInputFile inputFile = context.inputFileBuilder.create(realFile.toFile());
     if (inputFile != null) {
       // Set basedir on input file prior to adding it to the FS since exclusions filters may require the absolute path
-      inputFile.setModuleBaseDir(fileSystem.baseDirPath());
-      if (exclusionFilters.accept(inputFile, type)) {
-        indexFile(inputFileBuilder, fileSystem, progress, inputFile, type);
+      inputFile.setModuleBaseDir(context.fileSystem.baseDirPath());
+      if (exclusionFilters.accept(inputFile, context.type)) {
+        indexFile(context, inputFile);
       } else {
-        progress.increaseExcludedByPatternsCount();
+        context.progress.increaseExcludedByPatternsCount();
       }
     }
   }
 
-  private void indexFile(final InputFileBuilder inputFileBuilder, final DefaultModuleFileSystem fs,
-    final Progress status, final DefaultInputFile inputFile, final InputFile.Type type) {
-
-    tasks.add(executorService.submit(new Callable<Void>() {
-      @Override
-      public Void call() {
-        DefaultInputFile completedInputFile = inputFileBuilder.completeAndComputeMetadata(inputFile, type);
-        if (completedInputFile != null && accept(completedInputFile)) {
-          fs.add(completedInputFile);
-          status.markAsIndexed(completedInputFile);
-          File parentDir = completedInputFile.file().getParentFile();
-          String relativePath = new PathResolver().relativePath(fs.baseDir(), parentDir);
-          if (relativePath != null) {
-            DefaultInputDir inputDir = new DefaultInputDir(fs.moduleKey(), relativePath);
-            fs.add(inputDir);
-          }
-        }
-        return null;
+  private void indexFile(IndexContext context, DefaultInputFile inputFile) {
+    DefaultModuleFileSystem fs = context.fileSystem;
+    DefaultInputFile completedInputFile = context.inputFileBuilder.completeAndComputeMetadata(inputFile, context.type);
+    if (completedInputFile != null && accept(completedInputFile)) {
+      fs.add(completedInputFile);
+      context.progress.markAsIndexed(completedInputFile);
+      File parentDir = completedInputFile.file().getParentFile();
+      String relativePath = new PathResolver().relativePath(fs.baseDir(), parentDir);
+      if (relativePath != null) {
+        DefaultInputDir inputDir = new DefaultInputDir(fs.moduleKey(), relativePath);
+        fs.add(inputDir);
       }
-    }));
-
+    }
   }
 
   private boolean accept(InputFile inputFile) {
@@ -190,53 +171,156 @@ public class FileIndexer {
     return true;
   }
 
-  private class IndexFileVisitor implements FileVisitor<Path> {
-    private InputFileBuilder inputFileBuilder;
-    private DefaultModuleFileSystem fileSystem;
-    private Progress status;
-    private Type type;
+  private static class IndexContext {
+    private final InputFileBuilder inputFileBuilder;
+    private final DefaultModuleFileSystem fileSystem;
+    private final Progress progress;
+    private final Type type;
 
-    IndexFileVisitor(InputFileBuilder inputFileBuilder, DefaultModuleFileSystem fileSystem, Progress status, InputFile.Type type) {
+    IndexContext(InputFileBuilder inputFileBuilder, DefaultModuleFileSystem fileSystem, Progress progress, InputFile.Type type) {
       this.inputFileBuilder = inputFileBuilder;
       this.fileSystem = fileSystem;
-      this.status = status;
+      this.progress = progress;
       this.type = type;
     }
+  }
 
+  /**
+   * Base of the tasks executed by {@link #forkJoinPool}. The first failure is kept and the remaining tasks are
+   * skipped, so that the exception raised by the indexation is not wrapped by {@link ForkJoinTask#join()}.
+   */
+  private abstract class IndexTask extends RecursiveAction {
     @Override
-    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-      Path fileName = dir.getFileName();
-
-      if (fileName != null && fileName.toString().length() > 1 && fileName.toString().charAt(0) == '.') {
-        return FileVisitResult.SKIP_SUBTREE;
+    protected final void compute() {
+      if (failure.get() != null) {
+        return;
       }
-      if (Files.isHidden(dir)) {
-        return FileVisitResult.SKIP_SUBTREE;
+      try {
+        doCompute();
+      } catch (IOException e) {
+        failure.compareAndSet(null, new IllegalStateException("Failed to index files", e));
+      } catch (RuntimeException e) {
+        failure.compareAndSet(null, e);
       }
-      return FileVisitResult.CONTINUE;
+    }
+
+    abstract void doCompute() throws IOException;
+  }
+
+  private class IndexFileTask extends IndexTask {
+    private final IndexContext context;
+    private final Path file;
+
+    IndexFileTask(IndexContext context, Path file) {
+      this.context = context;
+      this.file = file;
     }
 
     @Override
-    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-      if (!Files.isHidden(file)) {
-        indexFile(inputFileBuilder, fileSystem, status, file, type);
-      }
-      return FileVisitResult.CONTINUE;
+    void doCompute() throws IOException {
+      indexFile(context, file);
+    }
+  }
+
+  /**
+   * Lists the children of a directory, then indexes its files and its sub-directories in parallel. Idle workers
+   * steal the pending tasks, so that a large tree is not walked by a single thread. Symbolic links are followed,
+   * as with {@link FileVisitOption#FOLLOW_LINKS}.
+   */
+  private class IndexDirectoryTask extends IndexTask {
+    private final IndexContext context;
+    private final Path dir;
+    private final Ancestor parent;
+
+    IndexDirectoryTask(IndexContext context, Path dir, @Nullable Ancestor parent) {
+      this.context = context;
+      this.dir = dir;
+      this.parent = parent;
     }
 
     @Override
-    public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-      if (exc instanceof FileSystemLoopException) {
-        LOG.warn("Not indexing due to symlink loop: {}", file.toFile());
-        return FileVisitResult.CONTINUE;
+    void doCompute() throws IOException {
+      if (isExcludedDirectory(dir)) {
+        return;
+      }
+      BasicFileAttributes attrs = Files.readAttributes(dir, BasicFileAttributes.class);
+      Ancestor ancestor = new Ancestor(dir, attrs.fileKey(), parent);
+      if (ancestor.isLoop()) {
+        LOG.warn("Not indexing due to symlink loop: {}", dir.toFile());
+        return;
       }
 
-      throw exc;
+      List<IndexTask> children = new ArrayList<>();
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+        for (Path child : stream) {
+          if (isDirectory(child)) {
+            children.add(new IndexDirectoryTask(context, child, ancestor));
+          } else if (!Files.isHidden(child)) {
+            children.add(new IndexFileTask(context, child));
+          }
+        }
+      }
+      invokeAll(children);
     }
+  }
+
+  private static boolean isExcludedDirectory(Path dir) throws IOException {
+    Path fileName = dir.getFileName();
+    if (fileName != null && fileName.toString().length() > 1 && fileName.toString().charAt(0) == '.') {
+      return true;
+    }
+    return Files.isHidden(dir);
+  }
+
+  /**
+   * Attributes of links are read when their target does not exist, in which case they are indexed as files.
+   */
+  private static boolean isDirectory(Path path) throws IOException {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class).isDirectory();
+    } catch (IOException e) {
+      return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isDirectory();
+    }
+  }
+
+  /**
+   * Directories being walked from the root, used to detect cycles of symbolic links
+   */
+  private static class Ancestor {
+    private final Path dir;
+    @Nullable
+    private final Object fileKey;
+    @Nullable
+    private final Ancestor parent;
+
+    Ancestor(Path dir, @Nullable Object fileKey, @Nullable Ancestor parent) {
+      this.dir = dir;
+      this.fileKey = fileKey;
+      this.parent = parent;
+    }
+
+    boolean isLoop() throws IOException {
+      for (Ancestor a = parent; a != null; a = a.parent) {
+        if (fileKey != null && a.fileKey != null) {
+          if (fileKey.equals(a.fileKey)) {
+            return true;
+          }
+        } else if (Files.isSameFile(dir, a.dir)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private enum FileIndexerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+    INSTANCE;
 
     @Override
-    public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-      return FileVisitResult.CONTINUE;
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName("FileIndexer-" + thread.getPoolIndex());
+      return thread;
     }
   }
 
@@ -253,15 +337,15 @@ public class FileIndexer {
       progressReport.message(indexed.size() + " files indexed...  (last one was " + inputFile.relativePath() + ")");
     }
 
-    void increaseExcludedByPatternsCount() {
+    synchronized void increaseExcludedByPatternsCount() {
       excludedByPatternsCount++;
     }
 
-    public int excludedByPatternsCount() {
+    public synchronized int excludedByPatternsCount() {
       return excludedByPatternsCount;
     }
 
-    int count() {
+    synchronized int count() {
       return indexed.size();
     }
   }
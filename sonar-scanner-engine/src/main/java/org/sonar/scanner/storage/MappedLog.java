@@ -0,0 +1,107 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Append-only log of records, stored in memory-mapped files of at least {@link #SEGMENT_SIZE} bytes.
+ * Records are never moved nor overwritten, so they can be read concurrently without locking. The space
+ * of obsolete records is reclaimed only when the log is closed, at the end of analysis.
+ * <p>
+ * The address of a record, as returned by {@link #append(byte[])}, is the index of its segment in the
+ * 32 high-order bits and its offset in the segment in the 32 low-order bits.
+ * </p>
+ */
+class MappedLog implements Closeable {
+
+  static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+  private static final int HEADER_SIZE = 4;
+
+  private final File dir;
+  private final int segmentSize;
+  private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+  private final List<RandomAccessFile> files = new ArrayList<>();
+  private ByteBuffer current = null;
+
+  MappedLog(File dir) {
+    this(dir, SEGMENT_SIZE);
+  }
+
+  MappedLog(File dir, int segmentSize) {
+    this.dir = dir;
+    this.segmentSize = segmentSize;
+  }
+
+  synchronized long append(byte[] record) {
+    int size = HEADER_SIZE + record.length;
+    if (current == null || current.remaining() < size) {
+      current = newSegment(Math.max(segmentSize, size));
+    }
+    int offset = current.position();
+    current.putInt(record.length);
+    current.put(record);
+    return ((long) (segments.size() - 1) << 32) | offset;
+  }
+
+  byte[] read(long address) {
+    ByteBuffer buffer = segments.get((int) (address >>> 32)).duplicate();
+    buffer.position((int) address);
+    byte[] record = new byte[buffer.getInt()];
+    buffer.get(record);
+    return record;
+  }
+
+  private ByteBuffer newSegment(int size) {
+    File file = new File(dir, "segment-" + segments.size());
+    try {
+      RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+      files.add(randomAccessFile);
+      MappedByteBuffer segment = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+      segments.add(segment);
+      return segment.duplicate();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to create storage segment " + file, e);
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    current = null;
+    segments.clear();
+    for (RandomAccessFile file : files) {
+      try {
+        file.close();
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to close storage segment", e);
+      }
+    }
+    files.clear();
+  }
+}
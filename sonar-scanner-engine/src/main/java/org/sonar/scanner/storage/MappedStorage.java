@@ -0,0 +1,202 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.primitives.UnsignedBytes;
+import com.persistit.Key;
+import com.persistit.Persistit;
+import com.persistit.Value;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiFunction;
+import javax.annotation.CheckForNull;
+
+import static com.google.common.collect.Sets.newLinkedHashSet;
+
+/**
+ * Storage of values in a {@link MappedLog}, indexed in memory by their keys. Keys and values are encoded
+ * by Persistit, so that ordering of keys and value coders are the same as in {@link PersistitStorage}.
+ * <p>
+ * This storage is thread-safe. Iterators are weakly consistent: they never fail but may not reflect
+ * the changes done after their creation.
+ * </p>
+ */
+class MappedStorage<V> extends Storage<V> {
+
+  private final MappedLog log;
+  private final ConcurrentSkipListMap<byte[], Long> index = new ConcurrentSkipListMap<>(UnsignedBytes.lexicographicalComparator());
+  private final ThreadLocal<Key> keys;
+  private final ThreadLocal<Value> values;
+
+  MappedStorage(String name, MappedLog log, Persistit persistit) {
+    super(name);
+    this.log = log;
+    this.keys = ThreadLocal.withInitial(() -> new Key(persistit));
+    this.values = ThreadLocal.withInitial(() -> new Value(persistit, Value.INITIAL_SIZE, Value.MAXIMUM_SIZE));
+  }
+
+  @Override
+  Storage<V> doPut(Object[] key, V value) {
+    try {
+      Value encoder = values.get();
+      encoder.clear();
+      encoder.put(value);
+      byte[] encoded = Arrays.copyOf(encoder.getEncodedBytes(), encoder.getEncodedSize());
+      index.put(encodeKey(key), log.append(encoded));
+      return this;
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail to put element in the storage '" + name() + "'", e);
+    }
+  }
+
+  @CheckForNull
+  @Override
+  V doGet(Object[] key) {
+    Long address = index.get(encodeKey(key));
+    return address == null ? null : decodeValue(address);
+  }
+
+  @Override
+  boolean doContainsKey(Object[] key) {
+    return index.containsKey(encodeKey(key));
+  }
+
+  @Override
+  boolean doRemove(Object[] key) {
+    return index.remove(encodeKey(key)) != null;
+  }
+
+  @Override
+  Storage<V> doClear(Object[] key) {
+    byte[] prefix = encodeKey(key);
+    index.remove(prefix);
+    descendants(prefix).clear();
+    return this;
+  }
+
+  @Override
+  public void clear() {
+    index.clear();
+  }
+
+  @Override
+  Set<Object> doKeySet(Object[] prefix) {
+    Set<Object> result = newLinkedHashSet();
+    for (byte[] key : descendants(encodeKey(prefix)).keySet()) {
+      result.add(decodeKey(key)[prefix.length]);
+    }
+    return result;
+  }
+
+  @Override
+  Iterable<V> doValues(Object[] prefix) {
+    return new EntryIterable<>(encodeKey(prefix), (key, address) -> decodeValue(address));
+  }
+
+  @Override
+  Iterable<Entry<V>> doEntries(Object[] prefix) {
+    return new EntryIterable<>(encodeKey(prefix), (key, address) -> new Entry<>(decodeKey(key), decodeValue(address)));
+  }
+
+  @Override
+  void close() {
+    index.clear();
+  }
+
+  /**
+   * Encoded keys are prefixed by the encoded keys of their parents
+   */
+  private ConcurrentNavigableMap<byte[], Long> descendants(byte[] prefix) {
+    ConcurrentNavigableMap<byte[], Long> tail = index.tailMap(prefix, false);
+    // smallest key greater than all the keys starting with prefix
+    for (int i = prefix.length - 1; i >= 0; i--) {
+      if (prefix[i] != (byte) 0xFF) {
+        byte[] end = Arrays.copyOf(prefix, i + 1);
+        end[i]++;
+        return tail.headMap(end, false);
+      }
+    }
+    return tail;
+  }
+
+  private byte[] encodeKey(Object[] parts) {
+    Key key = keys.get();
+    key.clear();
+    for (Object part : parts) {
+      key.append(part);
+    }
+    return Arrays.copyOf(key.getEncodedBytes(), key.getEncodedSize());
+  }
+
+  private Object[] decodeKey(byte[] encoded) {
+    Key key = keys.get();
+    key.clear();
+    System.arraycopy(encoded, 0, key.getEncodedBytes(), 0, encoded.length);
+    key.setEncodedSize(encoded.length);
+    Object[] parts = new Object[key.getDepth()];
+    for (int i = 0; i < parts.length; i++) {
+      parts[i] = key.indexTo(i).decode();
+    }
+    return parts;
+  }
+
+  @SuppressWarnings("unchecked")
+  private V decodeValue(long address) {
+    try {
+      Value decoder = values.get();
+      decoder.clear();
+      byte[] encoded = log.read(address);
+      decoder.putEncodedBytes(encoded, 0, encoded.length);
+      return (V) decoder.get();
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail to get element from cache " + name(), e);
+    }
+  }
+
+  private class EntryIterable<T> implements Iterable<T> {
+    private final byte[] prefix;
+    private final BiFunction<byte[], Long, T> function;
+
+    private EntryIterable(byte[] prefix, BiFunction<byte[], Long, T> function) {
+      this.prefix = prefix;
+      this.function = function;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      Iterator<Map.Entry<byte[], Long>> entries = descendants(prefix).entrySet().iterator();
+      return new AbstractIterator<T>() {
+        @Override
+        protected T computeNext() {
+          if (!entries.hasNext()) {
+            return endOfData();
+          }
+          Map.Entry<byte[], Long> entry = entries.next();
+          return function.apply(entry.getKey(), entry.getValue());
+        }
+      };
+    }
+  }
+}
@@ -19,68 +19,50 @@
  */
 package org.sonar.scanner.storage;
 
-import com.google.common.collect.Sets;
-import com.persistit.Exchange;
-import com.persistit.Key;
-import com.persistit.KeyFilter;
-import com.persistit.exception.PersistitException;
-import java.util.Iterator;
-import java.util.NoSuchElementException;
 import java.util.Set;
 import javax.annotation.CheckForNull;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
 /**
+ * Key-value storage of an analysis. Keys are made of one or several parts, so that values can be
+ * grouped, and are sorted.
  * <p>
- * This storage is not thread-safe, due to direct usage of {@link com.persistit.Exchange}
+ * Thread-safety depends on the storage engine, see {@link Storages}.
  * </p>
  */
-public class Storage<V> {
+public abstract class Storage<V> {
 
   private final String name;
-  private final Exchange exchange;
 
-  Storage(String name, Exchange exchange) {
+  Storage(String name) {
     this.name = name;
-    this.exchange = exchange;
+  }
+
+  String name() {
+    return name;
   }
 
   public Storage<V> put(Object key, V value) {
-    resetKey(key);
-    return doPut(value);
+    return doPut(new Object[] {key}, value);
   }
 
   public Storage<V> put(Object firstKey, Object secondKey, V value) {
-    resetKey(firstKey, secondKey);
-    return doPut(value);
+    return doPut(new Object[] {firstKey, secondKey}, value);
   }
 
   public Storage<V> put(Object firstKey, Object secondKey, Object thirdKey, V value) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doPut(value);
+    return doPut(new Object[] {firstKey, secondKey, thirdKey}, value);
   }
 
   public Storage<V> put(Object[] key, V value) {
-    resetKey(key);
-    return doPut(value);
-  }
-
-  private Storage<V> doPut(V value) {
-    try {
-      exchange.getValue().put(value);
-      exchange.store();
-      return this;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to put element in the storage '" + name + "'", e);
-    }
+    return doPut(key, value);
   }
 
   /**
    * Returns the value object associated with keys, or null if not found.
    */
   public V get(Object key) {
-    resetKey(key);
-    return doGet();
+    return doGet(new Object[] {key});
   }
 
   /**
@@ -88,8 +70,7 @@ public class Storage<V> {
    */
   @CheckForNull
   public V get(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doGet();
+    return doGet(new Object[] {firstKey, secondKey});
   }
 
   /**
@@ -97,8 +78,7 @@ public class Storage<V> {
    */
   @CheckForNull
   public V get(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doGet();
+    return doGet(new Object[] {firstKey, secondKey, thirdKey});
   }
 
   /**
@@ -106,82 +86,39 @@ public class Storage<V> {
    */
   @CheckForNull
   public V get(Object[] key) {
-    resetKey(key);
-    return doGet();
-  }
-
-  @SuppressWarnings("unchecked")
-  @CheckForNull
-  private V doGet() {
-    try {
-      exchange.fetch();
-      if (!exchange.getValue().isDefined()) {
-        return null;
-      }
-      return (V) exchange.getValue().get();
-    } catch (Exception e) {
-      // TODO add parameters to message
-      throw new IllegalStateException("Fail to get element from cache " + name, e);
-    }
+    return doGet(key);
   }
 
   public boolean containsKey(Object key) {
-    resetKey(key);
-    return doContainsKey();
+    return doContainsKey(new Object[] {key});
   }
 
   public boolean containsKey(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doContainsKey();
+    return doContainsKey(new Object[] {firstKey, secondKey});
   }
 
   public boolean containsKey(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doContainsKey();
+    return doContainsKey(new Object[] {firstKey, secondKey, thirdKey});
   }
 
   public boolean containsKey(Object[] key) {
-    resetKey(key);
-    return doContainsKey();
-  }
-
-  private boolean doContainsKey() {
-    try {
-      exchange.fetch();
-      return exchange.isValueDefined();
-    } catch (Exception e) {
-      // TODO add parameters to message
-      throw new IllegalStateException("Fail to check if element is in cache " + name, e);
-    }
+    return doContainsKey(key);
   }
 
   public boolean remove(Object key) {
-    resetKey(key);
-    return doRemove();
+    return doRemove(new Object[] {key});
   }
 
   public boolean remove(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doRemove();
+    return doRemove(new Object[] {firstKey, secondKey});
   }
 
   public boolean remove(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doRemove();
+    return doRemove(new Object[] {firstKey, secondKey, thirdKey});
   }
 
   public boolean remove(Object[] key) {
-    resetKey(key);
-    return doRemove();
-  }
-
-  private boolean doRemove() {
-    try {
-      return exchange.remove();
-    } catch (Exception e) {
-      // TODO add parameters to message
-      throw new IllegalStateException("Fail to get element from cache " + name, e);
-    }
+    return doRemove(key);
   }
 
   /**
@@ -190,47 +127,25 @@ public class Storage<V> {
    * @param group The group name.
    */
   public Storage<V> clear(Object key) {
-    resetKey(key);
-    return doClear();
+    return doClear(new Object[] {key});
   }
 
   public Storage<V> clear(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doClear();
+    return doClear(new Object[] {firstKey, secondKey});
   }
 
   public Storage<V> clear(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doClear();
+    return doClear(new Object[] {firstKey, secondKey, thirdKey});
   }
 
   public Storage<V> clear(Object[] key) {
-    resetKey(key);
-    return doClear();
-  }
-
-  private Storage<V> doClear() {
-    try {
-      Key to = new Key(exchange.getKey());
-      to.append(Key.AFTER);
-      exchange.removeKeyRange(exchange.getKey(), to);
-      return this;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to clear values from cache " + name, e);
-    }
+    return doClear(key);
   }
 
   /**
    * Clears the default as well as all group caches.
    */
-  public void clear() {
-    try {
-      exchange.clear();
-      exchange.removeAll();
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to clear cache", e);
-    }
-  }
+  public abstract void clear();
 
   /**
    * Returns the set of cache keys associated with this group.
@@ -241,37 +156,12 @@ public class Storage<V> {
    */
   @SuppressWarnings("rawtypes")
   public Set keySet(Object key) {
-    try {
-      Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(key);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
-      }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
-    }
+    return doKeySet(new Object[] {key});
   }
 
   @SuppressWarnings("rawtypes")
   public Set keySet(Object firstKey, Object secondKey) {
-    try {
-      Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(firstKey);
-      iteratorExchange.append(secondKey);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
-      }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
-    }
+    return doKeySet(new Object[] {firstKey, secondKey});
   }
 
   /**
@@ -280,202 +170,71 @@ public class Storage<V> {
    * @return The set containing the keys for this cache.
    */
   public Set<Object> keySet() {
-    try {
-      Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
-      }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
-    }
+    return doKeySet(new Object[0]);
   }
 
   /**
    * Lazy-loading values for given keys
    */
   public Iterable<V> values(Object firstKey, Object secondKey) {
-    return new ValueIterable<>(exchange, firstKey, secondKey);
+    return doValues(new Object[] {firstKey, secondKey});
   }
 
   /**
    * Lazy-loading values for a given key
    */
   public Iterable<V> values(Object firstKey) {
-    return new ValueIterable<>(exchange, firstKey);
+    return doValues(new Object[] {firstKey});
   }
 
   /**
    * Lazy-loading values
    */
   public Iterable<V> values() {
-    return new ValueIterable<>(exchange);
+    return doValues(new Object[0]);
   }
 
   public Iterable<Entry<V>> entries() {
-    return new EntryIterable<>(exchange);
+    return doEntries(new Object[0]);
   }
 
   public Iterable<Entry<V>> entries(Object firstKey) {
-    return new EntryIterable<>(exchange, firstKey);
-  }
-
-  private void resetKey(Object key) {
-    exchange.clear();
-    exchange.append(key);
+    return doEntries(new Object[] {firstKey});
   }
 
-  private void resetKey(Object first, Object second) {
-    exchange.clear();
-    exchange.append(first).append(second);
-  }
+  abstract Storage<V> doPut(Object[] key, V value);
 
-  private void resetKey(Object first, Object second, Object third) {
-    exchange.clear();
-    exchange.append(first).append(second).append(third);
-  }
-
-  private void resetKey(Object[] keys) {
-    exchange.clear();
-    for (Object o : keys) {
-      exchange.append(o);
-    }
-  }
-
-  //
-  // LAZY ITERATORS AND ITERABLES
-  //
-
-  private static class ValueIterable<T> implements Iterable<T> {
-    private final Exchange originExchange;
-    private final Object[] keys;
-
-    private ValueIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
-      this.keys = keys;
-    }
-
-    @Override
-    public Iterator<T> iterator() {
-      originExchange.clear();
-      KeyFilter filter = new KeyFilter();
-      for (Object key : keys) {
-        originExchange.append(key);
-        filter = filter.append(KeyFilter.simpleTerm(key));
-      }
-      originExchange.append(Key.BEFORE);
-      Exchange iteratorExchange = new Exchange(originExchange);
-      return new ValueIterator<>(iteratorExchange, filter);
-    }
-  }
-
-  private static class ValueIterator<T> implements Iterator<T> {
-    private final Exchange exchange;
-    private final KeyFilter keyFilter;
-
-    private ValueIterator(Exchange exchange, KeyFilter keyFilter) {
-      this.exchange = exchange;
-      this.keyFilter = keyFilter;
-    }
-
-    @Override
-    public boolean hasNext() {
-      try {
-        return exchange.hasNext(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-    }
-
-    @SuppressWarnings("unchecked")
-    @Override
-    public T next() {
-      try {
-        exchange.next(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-      if (exchange.getValue().isDefined()) {
-        return (T) exchange.getValue().get();
-      }
-      throw new NoSuchElementException();
-    }
-
-    @Override
-    public void remove() {
-      throw new UnsupportedOperationException("Removing an item is not supported");
-    }
-  }
+  @CheckForNull
+  abstract V doGet(Object[] key);
 
-  private static class EntryIterable<T> implements Iterable<Entry<T>> {
-    private final Exchange originExchange;
-    private final Object[] keys;
+  abstract boolean doContainsKey(Object[] key);
 
-    private EntryIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
-      this.keys = keys;
-    }
-
-    @Override
-    public Iterator<Entry<T>> iterator() {
-      originExchange.clear();
-      KeyFilter filter = new KeyFilter();
-      for (Object key : keys) {
-        originExchange.append(key);
-        filter = filter.append(KeyFilter.simpleTerm(key));
-      }
-      originExchange.append(Key.BEFORE);
-      Exchange iteratorExchange = new Exchange(originExchange);
-      return new EntryIterator<>(iteratorExchange, filter);
-    }
-  }
+  abstract boolean doRemove(Object[] key);
 
-  private static class EntryIterator<T> implements Iterator<Entry<T>> {
-    private final Exchange exchange;
-    private final KeyFilter keyFilter;
+  /**
+   * Removes the given key and all the keys it prefixes
+   */
+  abstract Storage<V> doClear(Object[] key);
 
-    private EntryIterator(Exchange exchange, KeyFilter keyFilter) {
-      this.exchange = exchange;
-      this.keyFilter = keyFilter;
-    }
+  /**
+   * Distinct parts following the given prefix in the keys it prefixes, in order
+   */
+  abstract Set<Object> doKeySet(Object[] prefix);
 
-    @Override
-    public boolean hasNext() {
-      try {
-        return exchange.hasNext(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-    }
+  /**
+   * Values of the keys strictly prefixed by the given prefix, in order of keys
+   */
+  abstract Iterable<V> doValues(Object[] prefix);
 
-    @SuppressWarnings("unchecked")
-    @Override
-    public Entry<T> next() {
-      try {
-        exchange.next(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-      if (exchange.getValue().isDefined()) {
-        T value = (T) exchange.getValue().get();
-        Key key = exchange.getKey();
-        Object[] array = new Object[key.getDepth()];
-        for (int i = 0; i < key.getDepth(); i++) {
-          array[i] = key.indexTo(i - key.getDepth()).decode();
-        }
-        return new Entry<>(array, value);
-      }
-      throw new NoSuchElementException();
-    }
+  /**
+   * Entries of the keys strictly prefixed by the given prefix, in order of keys
+   */
+  abstract Iterable<Entry<V>> doEntries(Object[] prefix);
 
-    @Override
-    public void remove() {
-      throw new UnsupportedOperationException("Removing an item is not supported");
-    }
-  }
+  /**
+   * Releases resources. Storage can't be used anymore.
+   */
+  abstract void close();
 
   public static class Entry<V> {
     private final Object[] key;
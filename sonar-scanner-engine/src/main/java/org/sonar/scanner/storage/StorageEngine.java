@@ -0,0 +1,52 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.util.Locale;
+import javax.annotation.Nullable;
+
+/**
+ * Engines of {@link Storage}, selected with the property {@link #PROPERTY}
+ */
+enum StorageEngine {
+
+  /**
+   * B-trees in a temporary Persistit volume. Storages are not thread-safe.
+   */
+  PERSISTIT,
+
+  /**
+   * Append-only memory-mapped log, indexed in memory. Storages are thread-safe.
+   */
+  MMAP;
+
+  static final String PROPERTY = "sonar.scanner.storage";
+
+  static StorageEngine parse(@Nullable String value) {
+    if (value == null || value.isEmpty()) {
+      return PERSISTIT;
+    }
+    try {
+      return valueOf(value.toUpperCase(Locale.ENGLISH));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unsupported value of property " + PROPERTY + ": " + value, e);
+    }
+  }
+}
@@ -19,29 +19,49 @@
  */
 package org.sonar.scanner.storage;
 
-import com.google.common.collect.Maps;
-
-import java.util.Map;
-import java.util.Map.Entry;
-
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
 import com.persistit.Exchange;
+import com.persistit.Persistit;
 import com.persistit.Value;
+import com.persistit.Volume;
 import com.persistit.encoding.CoderManager;
-import com.persistit.Persistit;
 import com.persistit.encoding.ValueCoder;
 import com.persistit.exception.PersistitException;
-import com.persistit.Volume;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
 import org.picocontainer.Startable;
 import org.sonar.api.batch.ScannerSide;
 
+import static org.sonar.core.util.FileUtils.deleteQuietly;
+
+/**
+ * Factory of the {@link Storage}s of an analysis. The storage engine is selected by the property
+ * {@link StorageEngine#PROPERTY}:
+ * <ul>
+ *   <li>"persistit" (default): storages are not thread-safe</li>
+ *   <li>"mmap": storages are thread-safe, and their values are stored off-heap in memory-mapped files</li>
+ * </ul>
+ */
 @ScannerSide
 public class Storages implements Startable {
-  private final Map<String, Exchange> cacheMap = Maps.newHashMap();
+  private final Map<String, Storage<?>> cacheMap = Maps.newHashMap();
+  private final StoragesManager storagesManager;
+  private final StorageEngine engine;
   private Persistit persistit;
   private Volume volume;
+  private File logDir;
+  private MappedLog log;
 
   public Storages(StoragesManager storagesManager) {
+    this(storagesManager, storagesManager.engine());
+  }
+
+  Storages(StoragesManager storagesManager, StorageEngine engine) {
+    this.storagesManager = storagesManager;
+    this.engine = engine;
     persistit = storagesManager.persistit();
     doStart();
   }
@@ -52,6 +72,15 @@ public class Storages implements Startable {
   }
 
   private void doStart() {
+    if (engine == StorageEngine.MMAP) {
+      try {
+        logDir = Files.createTempDirectory(storagesManager.tempDir().toPath(), "storages").toFile();
+        log = new MappedLog(logDir);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to create a cache directory", e);
+      }
+      return;
+    }
     try {
       persistit.flush();
       volume = persistit.createTemporaryVolume();
@@ -66,13 +95,18 @@ public class Storages implements Startable {
   }
 
   public <V> Storage<V> createCache(String cacheName) {
-    Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
+    Preconditions.checkState(log != null || (volume != null && volume.isOpened()), "Caches are not initialized");
     Preconditions.checkState(!cacheMap.containsKey(cacheName), "Cache is already created: " + cacheName);
     try {
-      Exchange exchange = persistit.getExchange(volume, cacheName, true);
-      exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
-      Storage<V> cache = new Storage<>(cacheName, exchange);
-      cacheMap.put(cacheName, exchange);
+      Storage<V> cache;
+      if (log != null) {
+        cache = new MappedStorage<>(cacheName, log, persistit);
+      } else {
+        Exchange exchange = persistit.getExchange(volume, cacheName, true);
+        exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
+        cache = new PersistitStorage<>(cacheName, exchange);
+      }
+      cacheMap.put(cacheName, cache);
       return cache;
     } catch (Exception e) {
       throw new IllegalStateException("Fail to create cache: " + cacheName, e);
@@ -81,8 +115,11 @@ public class Storages implements Startable {
 
   @Override
   public void stop() {
-    for (Entry<String, Exchange> e : cacheMap.entrySet()) {
-      persistit.releaseExchange(e.getValue());
+    for (Storage<?> cache : cacheMap.values()) {
+      cache.close();
+      if (cache instanceof PersistitStorage) {
+        persistit.releaseExchange(((PersistitStorage<?>) cache).exchange());
+      }
     }
 
     cacheMap.clear();
@@ -96,5 +133,11 @@ public class Storages implements Startable {
       }
       volume = null;
     }
+    if (log != null) {
+      log.close();
+      log = null;
+      deleteQuietly(logDir);
+      logDir = null;
+    }
   }
 }
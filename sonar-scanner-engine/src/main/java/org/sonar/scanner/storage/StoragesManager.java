@@ -28,6 +28,7 @@ import org.picocontainer.Startable;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.scanner.bootstrap.GlobalProperties;
 
 import static org.sonar.core.util.FileUtils.deleteQuietly;
 
@@ -41,9 +42,20 @@ public class StoragesManager implements Startable {
   private File tempDir;
   private Persistit persistit;
   private final TempFolder tempFolder;
+  private final StorageEngine engine;
+
+  public StoragesManager(TempFolder tempFolder, GlobalProperties globalProperties) {
+    this(tempFolder, StorageEngine.parse(globalProperties.property(StorageEngine.PROPERTY)));
+  }
 
   public StoragesManager(TempFolder tempFolder) {
+    this(tempFolder, StorageEngine.PERSISTIT);
+  }
+
+  StoragesManager(TempFolder tempFolder, StorageEngine engine) {
     this.tempFolder = tempFolder;
+    this.engine = engine;
+    // Persistit is also used by other engines to encode keys and values
     initPersistit();
   }
 
@@ -95,4 +107,8 @@ public class StoragesManager implements Startable {
   Persistit persistit() {
     return persistit;
   }
+
+  StorageEngine engine() {
+    return engine;
+  }
 }
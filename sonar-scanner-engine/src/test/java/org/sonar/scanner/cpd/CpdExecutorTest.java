@@ -113,6 +113,20 @@ public class CpdExecutorTest {
     assertThat(executor.getMinimumTokens("php")).isEqualTo(33);
   }
 
+  @Test
+  public void one_thread_by_default() {
+    assertThat(executor.getThreads()).isEqualTo(1);
+  }
+
+  @Test
+  public void configure_threads() {
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "4");
+    assertThat(executor.getThreads()).isEqualTo(4);
+
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "-1");
+    assertThat(executor.getThreads()).isEqualTo(1);
+  }
+
   @Test
   public void testNothingToSave() {
     executor.saveDuplications(batchComponent1, Collections.<CloneGroup>emptyList());
@@ -19,19 +19,29 @@
  */
 package org.sonar.scanner.issue.tracking;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.StringReader;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
 import org.sonar.api.utils.HttpDownloader;
 import org.sonar.scanner.WsTestUtil;
 import org.sonar.scanner.bootstrap.BatchWsClient;
+import org.sonar.scanner.protocol.input.ScannerInput.FileLineHashes;
+import org.sonarqube.ws.client.WsRequest;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 public class DefaultServerLineHashesLoaderTest {
   private BatchWsClient wsClient;
@@ -73,4 +83,27 @@ public class DefaultServerLineHashesLoaderTest {
     lastSnapshots.getLineHashes("foo");
   }
 
+  @Test
+  public void load_line_hashes_of_several_files() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    FileLineHashes.newBuilder().setKey("myproject:Foo.c").addLineHash("ae12").addLineHash("").build().writeDelimitedTo(bytes);
+    FileLineHashes.newBuilder().setKey("myproject:Bar.c").addLineHash("43fb").build().writeDelimitedTo(bytes);
+    WsTestUtil.mockStream(wsClient, "/batch/line_hashes", new ByteArrayInputStream(bytes.toByteArray()));
+    ServerLineHashesLoader underTest = new DefaultServerLineHashesLoader(wsClient);
+
+    List<FileLineHashes> result = new ArrayList<>();
+    underTest.load(Arrays.asList("myproject:Foo.c", "myproject:Bar.c", "myproject:Foo, Bar.c"), lineHashes -> {
+      result.add(lineHashes);
+      return null;
+    });
+
+    assertThat(result).extracting(FileLineHashes::getKey).containsExactly("myproject:Foo.c", "myproject:Bar.c");
+    assertThat(result.get(0).getLineHashList()).containsExactly("ae12", "");
+    ArgumentCaptor<WsRequest> request = ArgumentCaptor.forClass(WsRequest.class);
+    verify(wsClient).call(request.capture());
+    assertThat(request.getValue().getPath()).isEqualTo("/batch/line_hashes");
+    // keys are sent as a multi-value parameter, so that they can contain commas
+    assertThat(request.getValue().getParameters().getValues("keys")).containsExactly("myproject:Foo.c", "myproject:Bar.c", "myproject:Foo, Bar.c");
+  }
+
 }
@@ -0,0 +1,112 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.issue.tracking;
+
+import com.google.common.base.Function;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.scanner.index.AbstractCachesTest;
+import org.sonar.scanner.protocol.input.ScannerInput.FileLineHashes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ServerLineHashesRepositoryTest extends AbstractCachesTest {
+
+  private FakeLoader loader = new FakeLoader();
+  private ServerLineHashesRepository underTest;
+
+  @Before
+  public void setUp() {
+    underTest = new ServerLineHashesRepository(caches, loader);
+  }
+
+  @Test
+  public void prefetch_line_hashes_by_batches_of_files() {
+    List<String> keys = IntStream.range(0, ServerLineHashesRepository.FILES_PER_REQUEST + 10)
+      .mapToObj(i -> "file" + i)
+      .collect(Collectors.toList());
+
+    underTest.prefetch(keys);
+
+    assertThat(loader.bulkRequests).hasSize(2);
+    assertThat(underTest.getLineHashes("file0")).containsExactly("file0_1", "", "file0_3");
+    assertThat(underTest.getLineHashes("file" + ServerLineHashesRepository.FILES_PER_REQUEST)).hasSize(3);
+    assertThat(loader.singleRequests).isEmpty();
+  }
+
+  @Test
+  public void load_line_hashes_file_by_file_if_missing_from_prefetched_files() {
+    loader.unknownFileKeys.add("missing");
+
+    underTest.prefetch(keys("file0", "missing"));
+
+    assertThat(underTest.getLineHashes("missing")).containsExactly("missing_1", "", "missing_3");
+    assertThat(underTest.getLineHashes("not_prefetched")).containsExactly("not_prefetched_1", "", "not_prefetched_3");
+    assertThat(underTest.getLineHashes("file0")).containsExactly("file0_1", "", "file0_3");
+    assertThat(loader.singleRequests).containsExactly("missing", "not_prefetched");
+  }
+
+  @Test
+  public void load_line_hashes_file_by_file_if_not_prefetched() {
+    underTest.prefetch(Collections.emptyList());
+
+    assertThat(underTest.getLineHashes("file0")).containsExactly("file0_1", "", "file0_3");
+    assertThat(loader.singleRequests).containsExactly("file0");
+    assertThat(loader.bulkRequests).isEmpty();
+  }
+
+  private static List<String> keys(String... keys) {
+    List<String> result = new ArrayList<>();
+    Collections.addAll(result, keys);
+    return result;
+  }
+
+  private static class FakeLoader implements ServerLineHashesLoader {
+    private final List<String> singleRequests = Collections.synchronizedList(new ArrayList<>());
+    private final List<Collection<String>> bulkRequests = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> unknownFileKeys = new ArrayList<>();
+
+    @Override
+    public String[] getLineHashes(String fileKey) {
+      singleRequests.add(fileKey);
+      return hashesOf(fileKey).toArray(new String[0]);
+    }
+
+    @Override
+    public void load(Collection<String> fileKeys, Function<FileLineHashes, Void> consumer) {
+      bulkRequests.add(fileKeys);
+      fileKeys.stream()
+        .filter(fileKey -> !unknownFileKeys.contains(fileKey))
+        .forEach(fileKey -> consumer.apply(FileLineHashes.newBuilder().setKey(fileKey).addAllLineHash(hashesOf(fileKey)).build()));
+    }
+
+    private static List<String> hashesOf(String fileKey) {
+      List<String> hashes = new ArrayList<>();
+      Collections.addAll(hashes, fileKey + "_1", "", fileKey + "_3");
+      return hashes;
+    }
+  }
+}
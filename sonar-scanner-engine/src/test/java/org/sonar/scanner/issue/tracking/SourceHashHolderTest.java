@@ -27,7 +27,7 @@ import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
-import org.sonar.scanner.issue.tracking.ServerLineHashesLoader;
+import org.sonar.scanner.issue.tracking.ServerLineHashesRepository;
 import org.sonar.scanner.issue.tracking.SourceHashHolder;
 import java.io.File;
 import java.nio.charset.StandardCharsets;
@@ -45,14 +45,14 @@ public class SourceHashHolderTest {
 
   SourceHashHolder sourceHashHolder;
 
-  ServerLineHashesLoader lastSnapshots;
+  ServerLineHashesRepository lastSnapshots;
   DefaultInputFile file;
 
   private File ioFile;
 
   @Before
   public void setUp() throws Exception {
-    lastSnapshots = mock(ServerLineHashesLoader.class);
+    lastSnapshots = mock(ServerLineHashesRepository.class);
     file = mock(DefaultInputFile.class);
     ioFile = temp.newFile();
     when(file.file()).thenReturn(ioFile);
@@ -39,6 +39,7 @@ import org.sonar.scanner.issue.tracking.ServerLineHashesLoader;
 import org.sonar.scanner.mediumtest.FakePluginInstaller;
 import org.sonar.scanner.mediumtest.TaskResult;
 import org.sonar.scanner.protocol.input.GlobalRepositories;
+import org.sonar.scanner.protocol.input.ScannerInput.FileLineHashes;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
 import org.sonar.scanner.report.ReportPublisher;
 import org.sonar.scanner.repository.FileData;
@@ -59,6 +60,8 @@ import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -489,6 +492,16 @@ public class BatchMediumTester {
         throw new IllegalStateException("You forgot to mock line hashes for " + fileKey);
       }
     }
+
+    @Override
+    public void load(Collection<String> fileKeys, Function<FileLineHashes, Void> consumer) {
+      for (String fileKey : fileKeys) {
+        consumer.apply(FileLineHashes.newBuilder()
+          .setKey(fileKey)
+          .addAllLineHash(Arrays.asList(getLineHashes(fileKey)))
+          .build());
+      }
+    }
   }
 
 }
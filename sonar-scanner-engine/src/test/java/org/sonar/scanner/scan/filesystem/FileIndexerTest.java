@@ -0,0 +1,197 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan.filesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.SystemUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.scan.filesystem.FileExclusions;
+import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.api.utils.MessageException;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FileIndexerTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private File baseDir;
+  private File srcDir;
+  private MapSettings settings = new MapSettings();
+  private InputFileBuilder inputFileBuilder = mock(InputFileBuilder.class);
+  private DefaultModuleFileSystem fs = mock(DefaultModuleFileSystem.class);
+
+  @Before
+  public void setUp() throws IOException {
+    baseDir = temp.newFolder();
+    srcDir = new File(baseDir, "src");
+    when(fs.baseDir()).thenReturn(baseDir);
+    when(fs.baseDirPath()).thenReturn(baseDir.toPath());
+    when(fs.moduleKey()).thenReturn("foo");
+    when(fs.sources()).thenReturn(Collections.singletonList(srcDir));
+    when(fs.tests()).thenReturn(Collections.emptyList());
+    when(inputFileBuilder.create(any(File.class)))
+      .thenAnswer(invocation -> new DefaultInputFile("foo", new PathResolver().relativePath(baseDir, (File) invocation.getArguments()[0])));
+    when(inputFileBuilder.completeAndComputeMetadata(any(DefaultInputFile.class), any(InputFile.Type.class)))
+      .thenAnswer(invocation -> invocation.getArguments()[0]);
+  }
+
+  @Test
+  public void index_files_of_nested_directories() throws IOException {
+    createFile("src/Foo.java");
+    createFile("src/a/A.java");
+    createFile("src/a/b/B.java");
+    createFile("src/a/b/c/C1.java");
+    createFile("src/a/b/c/C2.java");
+
+    assertThat(index()).containsOnly("src/Foo.java", "src/a/A.java", "src/a/b/B.java", "src/a/b/c/C1.java", "src/a/b/c/C2.java");
+  }
+
+  @Test
+  public void do_not_index_symlink_loops() throws IOException {
+    assumeTrue(SystemUtils.IS_OS_UNIX);
+    createFile("src/a/A.java");
+    Files.createSymbolicLink(srcDir.toPath().resolve("a/loop"), srcDir.toPath());
+
+    assertThat(index()).containsOnly("src/a/A.java");
+  }
+
+  @Test
+  public void follow_symlinks_to_directories() throws IOException {
+    assumeTrue(SystemUtils.IS_OS_UNIX);
+    createFile("other/B.java");
+    srcDir.mkdirs();
+    Files.createSymbolicLink(srcDir.toPath().resolve("link"), new File(baseDir, "other").toPath());
+
+    assertThat(index()).containsOnly("src/link/B.java");
+  }
+
+  @Test
+  public void do_not_index_hidden_directories_and_files() throws IOException {
+    assumeTrue(SystemUtils.IS_OS_UNIX);
+    createFile("src/Foo.java");
+    createFile("src/.hidden/Bar.java");
+    createFile("src/a/.Hidden.java");
+
+    assertThat(index()).containsOnly("src/Foo.java");
+  }
+
+  @Test
+  public void do_not_index_excluded_files() throws IOException {
+    settings.setProperty(CoreProperties.PROJECT_EXCLUSIONS_PROPERTY, "**/*Excluded.java");
+    createFile("src/Foo.java");
+    createFile("src/a/FooExcluded.java");
+
+    assertThat(index()).containsOnly("src/Foo.java");
+    verify(inputFileBuilder, never()).completeAndComputeMetadata(eq(new DefaultInputFile("foo", "src/a/FooExcluded.java")), any(InputFile.Type.class));
+  }
+
+  @Test
+  public void index_single_source_file() throws IOException {
+    File file = createFile("src/Foo.java");
+    when(fs.sources()).thenReturn(Collections.singletonList(file));
+
+    assertThat(index()).containsOnly("src/Foo.java");
+  }
+
+  @Test
+  public void fail_with_exception_raised_while_indexing_a_file() throws IOException {
+    createFile("src/Foo.java");
+    createFile("src/a/b/Bar.java");
+    when(inputFileBuilder.completeAndComputeMetadata(eq(new DefaultInputFile("foo", "src/a/b/Bar.java")), any(InputFile.Type.class)))
+      .thenThrow(new IllegalStateException("Fail to read Bar.java"));
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to read Bar.java");
+
+    index();
+  }
+
+  @Test
+  public void fail_if_file_is_both_main_and_test() throws IOException {
+    createFile("src/Foo.java");
+    when(fs.tests()).thenReturn(Collections.singletonList(srcDir));
+
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("can't be indexed twice");
+
+    index();
+  }
+
+  @Test
+  public void do_not_index_aggregator_modules() throws IOException {
+    createFile("src/Foo.java");
+    ProjectDefinition def = ProjectDefinition.create();
+    def.addSubProject(ProjectDefinition.create());
+
+    newIndexer(def).index(fs);
+
+    verify(fs, never()).add(any(DefaultInputFile.class));
+  }
+
+  private File createFile(String relativePath) throws IOException {
+    File file = new File(baseDir, relativePath);
+    FileUtils.write(file, "content");
+    return file;
+  }
+
+  private List<String> index() {
+    newIndexer(ProjectDefinition.create()).index(fs);
+
+    ArgumentCaptor<DefaultInputFile> captor = ArgumentCaptor.forClass(DefaultInputFile.class);
+    verify(fs, atLeast(0)).add(captor.capture());
+    return captor.getAllValues().stream().map(DefaultInputFile::relativePath).collect(toList());
+  }
+
+  private FileIndexer newIndexer(ProjectDefinition def) {
+    InputFileBuilderFactory inputFileBuilderFactory = mock(InputFileBuilderFactory.class);
+    when(inputFileBuilderFactory.create(fs)).thenReturn(inputFileBuilder);
+    return new FileIndexer(new ExclusionFilters(new FileExclusions(settings)), inputFileBuilderFactory, def);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.File;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedLogTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private MappedLog underTest;
+
+  @After
+  public void tearDown() {
+    if (underTest != null) {
+      underTest.close();
+    }
+  }
+
+  @Test
+  public void read_appended_records() throws Exception {
+    underTest = new MappedLog(temp.newFolder());
+
+    long first = underTest.append(new byte[] {1, 2, 3});
+    long second = underTest.append(new byte[0]);
+    long third = underTest.append(new byte[] {4});
+
+    assertThat(underTest.read(first)).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(underTest.read(second)).isEmpty();
+    assertThat(underTest.read(third)).isEqualTo(new byte[] {4});
+  }
+
+  @Test
+  public void create_new_segments_when_full() throws Exception {
+    File dir = temp.newFolder();
+    underTest = new MappedLog(dir, 10);
+
+    long first = underTest.append(new byte[] {1, 2, 3, 4});
+    long second = underTest.append(new byte[] {5, 6, 7});
+    // larger than a segment
+    long third = underTest.append(new byte[] {8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18});
+
+    assertThat(underTest.read(first)).isEqualTo(new byte[] {1, 2, 3, 4});
+    assertThat(underTest.read(second)).isEqualTo(new byte[] {5, 6, 7});
+    assertThat(underTest.read(third)).isEqualTo(new byte[] {8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18});
+    assertThat(dir.list()).hasSize(3);
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Same behavior as Persistit storage, plus thread-safety
+ */
+public class MappedStorageTest extends StorageTest {
+
+  @Before
+  @Override
+  public void start() {
+    caches = new Storages(cachesManager, StorageEngine.MMAP);
+    caches.start();
+  }
+
+  @Test
+  public void override_value() {
+    Storage<String> cache = caches.createCache("capitals");
+
+    cache.put("europe", "germany", "bonn");
+    cache.put("europe", "germany", "berlin");
+
+    assertThat(cache.get("europe", "germany")).isEqualTo("berlin");
+    assertThat(cache.values()).containsExactly("berlin");
+  }
+
+  @Test
+  public void concurrent_puts_and_gets() throws Exception {
+    Storage<String> cache = caches.createCache("concurrent");
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 8; thread++) {
+        String group = "group" + thread;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 10_000; i++) {
+            cache.put(group, i, "value" + i);
+            assertThat(cache.get(group, i)).isEqualTo("value" + i);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(cache.keySet()).hasSize(8);
+    assertThat(cache.values("group3")).hasSize(10_000);
+    assertThat(cache.get("group5", 42)).isEqualTo("value42");
+  }
+}
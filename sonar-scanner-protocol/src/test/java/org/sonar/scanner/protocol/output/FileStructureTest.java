@@ -71,6 +71,12 @@ public class FileStructureTest {
     assertThat(structure.fileFor(FileStructure.Domain.ISSUES, 42)).doesNotExist();
   }
 
+  @Test
+  public void file_names_are_relative_to_root_of_report() {
+    assertThat(FileStructure.Domain.COMPONENT.fileName(42)).isEqualTo("component-42.pb");
+    assertThat(FileStructure.Domain.SOURCE.fileName(3)).isEqualTo("source-3.txt");
+  }
+
   @Test
   public void contextProperties_file() throws Exception {
     File dir = temp.newFolder();